@@ -4,6 +4,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.javakontor.sherlog.domain.filter.LogEventFilter;
 import org.javakontor.sherlog.domain.filter.LogEventFilterChangeEvent;
+import org.javakontor.sherlog.domain.filter.LogEventFilterChangeType;
 import org.javakontor.sherlog.domain.filter.LogEventFilterListener;
 import org.javakontor.sherlog.domain.filter.LogEventFilterMemento;
 import org.javakontor.sherlog.util.Assert;
@@ -60,16 +61,39 @@ public abstract class AbstractLogEventFilter implements LogEventFilter {
    * <p>
    * This implementation delegates to {@link #onRestoreFromMemento(Memento)} which must be implemented in subclasses.
    * <p>
-   * After the filter has been restored, a {@link LogEventFilterChangeEvent} is fired
+   * After the filter has been restored, a {@link LogEventFilterChangeEvent} is fired. The change type of the event is
+   * computed by {@link #getChangeType(LogEventFilterMemento, LogEventFilterMemento)}.
    */
   public synchronized final void restoreFromMemento(LogEventFilterMemento memento) {
     Assert.notNull(memento);
 
+    final LogEventFilterMemento oldMemento = saveToMemento();
+
     // delegate to 'onRestoreFromMemento'
     onRestoreFromMemento(memento);
 
     // fire change event
-    fireFilterChange();
+    final LogEventFilterChangeType changeType = getChangeType(oldMemento, memento);
+    if (changeType != LogEventFilterChangeType.UNCHANGED) {
+      fireFilterChange(changeType);
+    }
+  }
+
+  /**
+   * Returns how restoring the new memento changes the set of matching log events.
+   * 
+   * <p>
+   * This implementation returns {@link LogEventFilterChangeType#CHANGED}. Subclasses whose mementos are comparable
+   * should overwrite this method to enable incremental refiltering.
+   * 
+   * @param oldMemento
+   *          the memento of the filter before the restore (might be <code>null</code>)
+   * @param newMemento
+   *          the restored memento
+   * @return the change type
+   */
+  protected LogEventFilterChangeType getChangeType(LogEventFilterMemento oldMemento, LogEventFilterMemento newMemento) {
+    return LogEventFilterChangeType.CHANGED;
   }
 
   /**
@@ -80,10 +104,22 @@ public abstract class AbstractLogEventFilter implements LogEventFilter {
   protected abstract void onRestoreFromMemento(LogEventFilterMemento memento);
 
   /**
-   * Sends a {@link LogEventFilterChangeEvent} to all registered {@link LogEventFilterListener LogFilterListeners}
+   * Sends a {@link LogEventFilterChangeEvent} with the change type {@link LogEventFilterChangeType#CHANGED} to all
+   * registered {@link LogEventFilterListener LogFilterListeners}
    */
   protected void fireFilterChange() {
-    final LogEventFilterChangeEvent event = new LogEventFilterChangeEvent(this);
+    fireFilterChange(LogEventFilterChangeType.CHANGED);
+  }
+
+  /**
+   * Sends a {@link LogEventFilterChangeEvent} with the given change type to all registered
+   * {@link LogEventFilterListener LogFilterListeners}
+   * 
+   * @param changeType
+   *          the change type
+   */
+  protected void fireFilterChange(LogEventFilterChangeType changeType) {
+    final LogEventFilterChangeEvent event = new LogEventFilterChangeEvent(this, changeType);
 
     for (LogEventFilterListener listener : _logFilterListener) {
       listener.filterChanged(event);
@@ -0,0 +1,59 @@
+package org.javakontor.sherlog.domain.impl.internal.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.javakontor.sherlog.domain.LogEventSource;
+import org.javakontor.sherlog.domain.reader.LogEventReaderInputSource;
+
+/**
+ * <p>
+ * A reader that reads the log events from the stream of its input source. Stopping the reader closes the stream.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public abstract class AbstractInputStreamLogEventReader extends AbstractLogEventReader {
+
+  private InputStream _logInputStream;
+
+  /**
+   * @param inputSource
+   *          The {@link LogEventReaderInputSource} to read log events from
+   */
+  public AbstractInputStreamLogEventReader(final LogEventReaderInputSource inputSource) {
+    super(inputSource);
+  }
+
+  @Override
+  public void stop() {
+    if (_logInputStream != null) {
+      try {
+        _logInputStream.close();
+      } catch (final IOException ioe) {
+        _logger.warn("Could not close input stream: " + ioe, ioe);
+      }
+    }
+    super.stop();
+  }
+
+  @Override
+  public void readLogFiles() {
+    // notify LogEventHandler
+    fireSetup();
+
+    final LogEventSource logEventSource = new LogEventSourceImpl(getInputSource().getId());
+    try {
+      _logInputStream = getInputSource().openStream();
+      readLogFileStream(_logInputStream, logEventSource);
+    } catch (final IOException e) {
+      e.printStackTrace();
+    }
+
+    // notify LogEventHandler
+    fireTearDown();
+  }
+
+  protected abstract void readLogFileStream(InputStream stream, LogEventSource logEventSource);
+
+}
@@ -1,13 +1,10 @@
 package org.javakontor.sherlog.domain.impl.internal.reader;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CancellationException;
 
 import org.javakontor.sherlog.domain.LogEvent;
-import org.javakontor.sherlog.domain.LogEventSource;
 import org.javakontor.sherlog.domain.impl.filter.AbstractFilterable;
 import org.javakontor.sherlog.domain.reader.LogEventHandler;
 import org.javakontor.sherlog.domain.reader.LogEventReader;
@@ -27,8 +24,6 @@ public abstract class AbstractLogEventReader extends AbstractFilterable implemen
 
   private final LogEventReaderInputSource _inputSource;
 
-  private InputStream                     _logInputStream;
-
   /**
    * @param inputSource
    *          The {@link LogEventReaderInputSource} to read log events from
@@ -55,13 +50,6 @@ public abstract class AbstractLogEventReader extends AbstractFilterable implemen
   }
 
   public void stop() {
-    if (_logInputStream != null) {
-      try {
-        _logInputStream.close();
-      } catch (final IOException ioe) {
-        _logger.warn("Could not close input stream: " + ioe, ioe);
-      }
-    }
     _stopRequested = true;
   }
 
@@ -73,6 +61,17 @@ public abstract class AbstractLogEventReader extends AbstractFilterable implemen
     return _stopRequested;
   }
 
+  /**
+   * <p>
+   * Returns the input source this reader reads log events from.
+   * </p>
+   *
+   * @return the input source this reader reads log events from.
+   */
+  protected LogEventReaderInputSource getInputSource() {
+    return _inputSource;
+  }
+
   public final void addLogEventHandler(final LogEventHandler handler) {
     _listener.add(handler);
   }
@@ -86,6 +85,19 @@ public abstract class AbstractLogEventReader extends AbstractFilterable implemen
       return;
     }
 
+    fireFilteredLogEventHandler(event);
+  }
+
+  /**
+   * <p>
+   * Passes the given log event to the handlers without evaluating the filters (e.g. because a worker thread has already
+   * evaluated them).
+   * </p>
+   *
+   * @param event
+   *          the log event that matches the filters
+   */
+  protected final void fireFilteredLogEventHandler(final LogEvent event) {
     for (final LogEventHandler handler : _listener) {
       handler.handle(event);
     }
@@ -103,22 +115,13 @@ public abstract class AbstractLogEventReader extends AbstractFilterable implemen
     }
   }
 
-  public void readLogFiles() {
-    // notify LogEventHandler
-    fireSetup();
-
-    final LogEventSource logEventSource = new LogEventSourceImpl(_inputSource.getId());
-    try {
-      _logInputStream = _inputSource.openStream();
-      readLogFileStream(_logInputStream, logEventSource);
-    } catch (final IOException e) {
-      e.printStackTrace();
-    }
-
-    // notify LogEventHandler
-    fireTearDown();
-  }
-
-  protected abstract void readLogFileStream(InputStream stream, LogEventSource logEventSource);
+  /**
+   * <p>
+   * Reads the log events of the input source and passes them to the handlers. Invoked by the reader thread.
+   * Implementations notify the handlers with {@link #fireSetup()} before and {@link #fireTearDown()} after the log
+   * events.
+   * </p>
+   */
+  public abstract void readLogFiles();
 
 }
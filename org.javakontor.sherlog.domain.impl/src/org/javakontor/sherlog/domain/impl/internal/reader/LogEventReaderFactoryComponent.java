@@ -1,16 +1,21 @@
 package org.javakontor.sherlog.domain.impl.internal.reader;
 
+import java.io.File;
+import java.nio.charset.Charset;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.javakontor.sherlog.domain.impl.reader.ObjectLogEventProvider;
 import org.javakontor.sherlog.domain.impl.reader.TextLogEventProvider;
+import org.javakontor.sherlog.domain.impl.reader.UrlLogEventReaderInputSource;
 import org.javakontor.sherlog.domain.reader.LogEventFlavour;
 import org.javakontor.sherlog.domain.reader.LogEventReader;
 import org.javakontor.sherlog.domain.reader.LogEventReaderFactory;
 import org.javakontor.sherlog.domain.reader.LogEventReaderInputSource;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * <p>
@@ -20,10 +25,31 @@ import org.osgi.service.component.ComponentContext;
  */
 public class LogEventReaderFactoryComponent implements LogEventReaderFactory {
 
+  /**
+   * the component property that defines the size in megabytes from which local text files are read in parallel (0
+   * disables the parallel reading)
+   */
+  public static final String           PARALLEL_THRESHOLD_PROPERTY                 = "reader.parallel.threshold";
+
+  /** the component property that defines the number of threads used for reading in parallel (0 = all processors) */
+  public static final String           PARALLELISM_PROPERTY                        = "reader.parallel.threads";
+
   private static final String          DS_REFERENCE_NAME_OBJECT_LOG_EVENT_PROVIDER = "objectLogEventProvider";
 
   private static final String          DS_REFERENCE_NAME_TEXT_LOG_EVENT_PROVIDER   = "textLogEventProvider";
 
+  /** the default size in megabytes from which local text files are read in parallel */
+  private static final int             DEFAULT_PARALLEL_THRESHOLD                  = 32;
+
+  private final Logger                 _logger                                     = LoggerFactory
+                                                                                       .getLogger(getClass());
+
+  /** the size in bytes from which local text files are read in parallel, 0 if disabled */
+  private long                         _parallelThreshold;
+
+  /** the number of threads used for reading in parallel */
+  private int                          _parallelism;
+
   /** the component context */
   private ComponentContext             _componentContext;
 
@@ -42,6 +68,8 @@ public class LogEventReaderFactoryComponent implements LogEventReaderFactory {
     // initialize the lists of LogEventProvider references
     _objectLogEventProviderReferences = new LinkedList<ServiceReference>();
     _textLogEventProviderReferences = new LinkedList<ServiceReference>();
+    _parallelThreshold = DEFAULT_PARALLEL_THRESHOLD * 1024L * 1024L;
+    _parallelism = Runtime.getRuntime().availableProcessors();
   }
 
   /**
@@ -100,10 +128,24 @@ public class LogEventReaderFactoryComponent implements LogEventReaderFactory {
   }
 
   /**
+   * <p>
+   * Activates this component. Local text files are scanned on memory-mapped bytes, files of at least
+   * {@value #PARALLEL_THRESHOLD_PROPERTY} megabytes by {@value #PARALLELISM_PROPERTY} threads in parallel.
+   * </p>
+   *
    * @param context
+   *          the component context
    */
   protected void activate(final ComponentContext context) {
     _componentContext = context;
+
+    final Object parallelThreshold = context.getProperties().get(PARALLEL_THRESHOLD_PROPERTY);
+    if (parallelThreshold != null) {
+      _parallelThreshold = Integer.parseInt(parallelThreshold.toString().trim()) * 1024L * 1024L;
+    }
+    final Object parallelism = context.getProperties().get(PARALLELISM_PROPERTY);
+    final int threads = parallelism == null ? 0 : Integer.parseInt(parallelism.toString().trim());
+    _parallelism = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
   }
 
   /**
@@ -155,7 +197,15 @@ public class LogEventReaderFactoryComponent implements LogEventReaderFactory {
     LogEventReader logEventReader = null;
 
     try {
-      logEventReader = new TextInputStreamReader(inputSource, logEventProvider);
+      final File file = getMappableFile(inputSource);
+      if (file != null) {
+        final int parallelism = (_parallelThreshold > 0) && (file.length() >= _parallelThreshold) ? _parallelism : 1;
+        _logger.debug("Reading " + file + " with " + parallelism + " threads");
+        logEventReader = new ParallelTextFileReader(inputSource, file, logEventProvider, parallelism,
+            ParallelTextFileReader.DEFAULT_RANGE_SIZE);
+      } else {
+        logEventReader = new TextInputStreamReader(inputSource, logEventProvider);
+      }
     } catch (final Exception e) {
       e.printStackTrace();
     }
@@ -164,6 +214,24 @@ public class LogEventReaderFactoryComponent implements LogEventReaderFactory {
     return logEventReader;
   }
 
+  /**
+   * <p>
+   * Returns the local file of the given input source if it can be read from memory-mapped byte ranges: if the input
+   * source denotes a local file and the platform charset allows to scan the file on bytes.
+   * </p>
+   *
+   * @param inputSource
+   *          the input source
+   * @return the local file, <code>null</code> if the input source has to be read as a stream.
+   */
+  private File getMappableFile(final LogEventReaderInputSource inputSource) {
+    if (!(inputSource instanceof UrlLogEventReaderInputSource)
+        || !ParallelTextFileReader.isSupported(Charset.defaultCharset())) {
+      return null;
+    }
+    return ((UrlLogEventReaderInputSource) inputSource).getFile();
+  }
+
   /**
    * @param inputSource
    * @param serviceReference
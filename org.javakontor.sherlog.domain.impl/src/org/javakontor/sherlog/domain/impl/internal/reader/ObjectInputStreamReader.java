@@ -14,7 +14,7 @@ import org.javakontor.sherlog.domain.impl.reader.ObjectLogEventProvider;
 import org.javakontor.sherlog.domain.reader.LogEventReaderInputSource;
 import org.osgi.framework.Bundle;
 
-public class ObjectInputStreamReader extends AbstractLogEventReader {
+public class ObjectInputStreamReader extends AbstractInputStreamLogEventReader {
 
   /** the bundle to load classes from */
   private final Bundle                 _bundle;
@@ -0,0 +1,522 @@
+package org.javakontor.sherlog.domain.impl.internal.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogEventSource;
+import org.javakontor.sherlog.domain.filter.LogEventFilter;
+import org.javakontor.sherlog.domain.filter.ThreadSafeLogEventFilter;
+import org.javakontor.sherlog.domain.impl.reader.AbstractLogEvent;
+import org.javakontor.sherlog.domain.impl.reader.LogEventStartRecognizer;
+import org.javakontor.sherlog.domain.impl.reader.RawTextDecoder;
+import org.javakontor.sherlog.domain.impl.reader.RawTextLogEventProvider;
+import org.javakontor.sherlog.domain.impl.reader.TextLogEventProvider;
+import org.javakontor.sherlog.domain.reader.LogEventReaderInputSource;
+import org.javakontor.sherlog.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Reads a local text log file from memory-mapped byte ranges, large files with several threads. The file is split into
+ * byte ranges, each range is aligned to the next log event start (see {@link LogEventStartRecognizer}) and scanned
+ * by a worker: the log event boundaries are found on the mapped bytes, no line is decoded on its own. A
+ * {@link RawTextLogEventProvider} receives the raw bytes of each log event and only decodes the fields it needs, any
+ * other {@link TextLogEventProvider} receives the decoded log event. The log events are passed to the handlers in file
+ * order and get their ids in that order (see {@link AbstractLogEvent#renewIdentifier()}), so the result is the same as
+ * the result of the {@link TextInputStreamReader}.
+ * </p>
+ * <p>
+ * If all filters of this reader are {@link ThreadSafeLogEventFilter ThreadSafeLogEventFilters}, the workers evaluate
+ * them: rejected log events are dropped before they are queued, and log events that decode their fields lazily only
+ * decode the fields the filters need. The workers decode the remaining fields of the accepted log events, so that the
+ * decoding stays parallel.
+ * </p>
+ * <p>
+ * The scanning works on bytes, so the platform charset must encode ASCII characters as single bytes (see
+ * {@link #isSupported(Charset)}).
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class ParallelTextFileReader extends AbstractLogEventReader {
+
+  /** the default size of the byte ranges */
+  public static final int               DEFAULT_RANGE_SIZE = 8 * 1024 * 1024;
+
+  /** the ASCII characters that must be encoded as single bytes */
+  private static final String           ASCII              = "\t\n\r !\"#$%&'()*+,-./0123456789:;<=>?@"
+                                                             + "ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~";
+
+  /** the number of bytes read at once while searching the start of a log event */
+  private static final int              ALIGN_WINDOW       = 8 * 1024;
+
+  /** the logger */
+  private final Logger                  _logger            = LoggerFactory.getLogger(getClass());
+
+  /** the file */
+  private final File                    _file;
+
+  /** the provider */
+  private final TextLogEventProvider    _logEventProvider;
+
+  /** the number of worker threads */
+  private final int                     _parallelism;
+
+  /** the size of the byte ranges */
+  private final int                     _rangeSize;
+
+  /** the decoder for the charset of the file */
+  private final RawTextDecoder          _decoder;
+
+  /** recognizes the first line of a log event */
+  private final LogEventStartRecognizer _logEventStartRecognizer;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ParallelTextFileReader}.
+   * </p>
+   *
+   * @param inputSource
+   *          the input source (used as the id of the log event source)
+   * @param file
+   *          the local file of the input source
+   * @param logEventProvider
+   *          the (thread-safe) provider
+   * @param parallelism
+   *          the number of worker threads (1 to read the file on the reader thread)
+   * @param rangeSize
+   *          the size of the byte ranges
+   */
+  public ParallelTextFileReader(final LogEventReaderInputSource inputSource, final File file,
+      final TextLogEventProvider logEventProvider, final int parallelism, final int rangeSize) {
+    super(inputSource);
+    Assert.isFile(file);
+    Assert.notNull(logEventProvider);
+    Assert.assertTrue(parallelism > 0, "Parameter 'parallelism' must be greater than 0");
+    Assert.assertTrue(rangeSize > 0, "Parameter 'rangeSize' must be greater than 0");
+
+    _file = file;
+    _logEventProvider = logEventProvider;
+    _parallelism = parallelism;
+    _rangeSize = rangeSize;
+    _decoder = new RawTextDecoder(Charset.defaultCharset(), System.getProperty("line.separator"));
+    _logEventStartRecognizer = StartTagRecognizer.getLogEventStartRecognizer(logEventProvider);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if files in the given charset can be split on bytes, i.e. if the ASCII characters
+   * (including the line terminators) are encoded as single ASCII bytes.
+   * </p>
+   *
+   * @param charset
+   *          the charset
+   * @return <code>true</code> if files in the given charset can be split on bytes.
+   */
+  public static boolean isSupported(final Charset charset) {
+    try {
+      if (!charset.canEncode()) {
+        return false;
+      }
+      final byte[] expected = new byte[ASCII.length()];
+      for (int i = 0; i < expected.length; i++) {
+        expected[i] = (byte) ASCII.charAt(i);
+      }
+      return Arrays.equals(expected, ASCII.getBytes(charset.name()));
+    } catch (final UnsupportedEncodingException e) {
+      return false;
+    }
+  }
+
+  /**
+   * <p>
+   * Reads the file with the worker threads. At most two ranges per worker are parsed ahead of the range whose log
+   * events are passed to the handlers. With a single worker the ranges are parsed on the reader thread.
+   * </p>
+   */
+  @Override
+  public void readLogFiles() {
+    fireSetup();
+
+    final long start = System.currentTimeMillis();
+    final LogEventSource logEventSource = new LogEventSourceImpl(getInputSource().getId());
+    final ExecutorService executorService = _parallelism == 1 ? null : Executors.newFixedThreadPool(_parallelism,
+        new ThreadFactory() {
+          public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "ParallelTextFileReader-Worker");
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    try {
+      final RandomAccessFile randomAccessFile = new RandomAccessFile(_file, "r");
+      try {
+        final FileChannel channel = randomAccessFile.getChannel();
+        final long size = channel.size();
+        final LinkedList<Future<ParsedRange>> pending = new LinkedList<Future<ParsedRange>>();
+        long position = 0;
+        while ((position < size) || !pending.isEmpty()) {
+          if (executorService == null) {
+            fireLogEventHandler(new RangeParser(channel, position, Math.min(size, position + _rangeSize), size,
+                logEventSource).call());
+            position += _rangeSize;
+            continue;
+          }
+          while ((position < size) && (pending.size() < 2 * _parallelism)) {
+            pending.add(executorService.submit(new RangeParser(channel, position, Math.min(size, position
+                + _rangeSize), size, logEventSource)));
+            position += _rangeSize;
+          }
+          fireLogEventHandler(pending.removeFirst().get());
+        }
+      } finally {
+        randomAccessFile.close();
+      }
+    } catch (final IOException e) {
+      _logger.error("Could not read log file " + _file + ": " + e, e);
+    } catch (final ExecutionException e) {
+      _logger.error("Could not read log file " + _file + ": " + e.getCause(), e.getCause());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException();
+    } finally {
+      if (executorService != null) {
+        executorService.shutdownNow();
+      }
+    }
+
+    _logger.debug("Reading log events with " + _parallelism + " threads took " + (System.currentTimeMillis() - start)
+        + "ms");
+
+    fireTearDown();
+  }
+
+  /**
+   * <p>
+   * Passes the log events of the given range to the handlers. The filters are only evaluated again if the range has not
+   * been filtered by the worker or if the filters have changed since.
+   * </p>
+   * <p>
+   * The workers create the log events of different ranges concurrently, so the ids are assigned here, on the reader
+   * thread, in file order: log events with equal timestamps keep their order in the store.
+   * </p>
+   */
+  private void fireLogEventHandler(final ParsedRange parsedRange) {
+    final boolean filtered = (parsedRange._logEventFilters != null)
+        && parsedRange._logEventFilters.equals(getLogEventFilters());
+    for (final AbstractLogEvent logEvent : parsedRange._logEvents) {
+      if (isStopRequested()) {
+        throw new CancellationException();
+      }
+      logEvent.renewIdentifier();
+      if (filtered) {
+        fireFilteredLogEventHandler(logEvent);
+      } else {
+        fireLogEventHandler(logEvent);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns a copy of the filters of this reader if all of them can be evaluated by the workers, <code>null</code>
+   * otherwise.
+   * </p>
+   */
+  private List<LogEventFilter> getThreadSafeLogEventFilters() {
+    final List<LogEventFilter> logEventFilters = new ArrayList<LogEventFilter>(getLogEventFilters());
+    for (final LogEventFilter logEventFilter : logEventFilters) {
+      if (!(logEventFilter instanceof ThreadSafeLogEventFilter)) {
+        return null;
+      }
+    }
+    return logEventFilters;
+  }
+
+  /**
+   * <p>
+   * Returns the position of the first log event start at or behind the given position: the position of a line that
+   * follows a line terminator and is recognized as the first line of a log event (or the end of the file).
+   * </p>
+   */
+  private long align(final FileChannel channel, final long position, final long size) throws IOException {
+    if (position == 0) {
+      return 0;
+    }
+    final ByteBuffer window = ByteBuffer.allocate(ALIGN_WINDOW);
+    final Line line = new Line();
+    // the window starts one byte before the candidate, so that the preceding byte can be checked
+    long windowStart = position - 1;
+    while (windowStart < size - 1) {
+      window.clear();
+      while (window.hasRemaining() && (channel.read(window, windowStart + window.position()) > 0)) {
+        // fill the window
+      }
+      final int length = window.position();
+      final boolean lastWindow = windowStart + length >= size;
+      // a candidate whose line might continue behind the window is checked with the next window
+      final int end = lastWindow ? length : length - LogEventStartRecognizer.MAX_START_LENGTH;
+      for (int i = 1; i < end; i++) {
+        if (isLineTerminator(window.get(i - 1)) && isLogEventStart(line, window, i, length)) {
+          return windowStart + i;
+        }
+      }
+      if (lastWindow) {
+        break;
+      }
+      // the byte before the first unchecked candidate is the first byte of the next window
+      windowStart += end - 1;
+    }
+    return size;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the line at the given index of the buffer is the first line of a log event.
+   * </p>
+   */
+  private boolean isLogEventStart(final Line line, final ByteBuffer buffer, final int index, final int limit) {
+    line.reset(buffer, index, limit);
+    return _logEventStartRecognizer.isLogEventStart(line);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given byte is a line terminator.
+   * </p>
+   */
+  private static boolean isLineTerminator(final byte b) {
+    return (b == '\n') || (b == '\r');
+  }
+
+  /**
+   * <p>
+   * Parses the log events of a byte range.
+   * </p>
+   */
+  private class RangeParser implements Callable<ParsedRange> {
+
+    /** the channel */
+    private final FileChannel           _channel;
+
+    /** the (unaligned) start of the range */
+    private final long                  _from;
+
+    /** the (unaligned) end of the range */
+    private final long                  _to;
+
+    /** the size of the file */
+    private final long                  _size;
+
+    /** the log event source */
+    private final LogEventSource        _logEventSource;
+
+    /** the filters the worker evaluates, <code>null</code> if they are evaluated by the reader thread */
+    private final List<LogEventFilter>  _logEventFilters;
+
+    /** the bytes of the current log event */
+    private byte[]                      _bytes;
+
+    public RangeParser(final FileChannel channel, final long from, final long to, final long size,
+        final LogEventSource logEventSource) {
+      _channel = channel;
+      _from = from;
+      _to = to;
+      _size = size;
+      _logEventSource = logEventSource;
+      _logEventFilters = getThreadSafeLogEventFilters();
+      _bytes = new byte[4096];
+    }
+
+    public ParsedRange call() throws IOException {
+      final List<AbstractLogEvent> result = new ArrayList<AbstractLogEvent>();
+
+      // both neighbouring ranges align the common boundary alike
+      final long from = align(_channel, _from, _size);
+      final long to = _to == _size ? _size : align(_channel, _to, _size);
+      if (from >= to) {
+        return new ParsedRange(result, _logEventFilters);
+      }
+      if (to - from > Integer.MAX_VALUE) {
+        throw new IOException("Log event too large at position " + from);
+      }
+
+      // scan the mapped range for the log event starts
+      final MappedByteBuffer buffer = _channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+      final int length = buffer.capacity();
+      final Line line = new Line();
+      // an aligned range starts with a log event start, only the start of the file might not
+      boolean logEventStartRecognized = (from > 0) || isLogEventStart(line, buffer, 0, length);
+      int logEventStart = 0;
+      for (int i = 1; i <= length; i++) {
+        if ((i == length) || (isLineTerminator(buffer.get(i - 1)) && isLogEventStart(line, buffer, i, length))) {
+          // the log event ends before the terminator of its last line (if any)
+          int logEventEnd = i;
+          final byte last = buffer.get(i - 1);
+          if (last == '\n') {
+            logEventEnd--;
+            if ((logEventEnd > logEventStart) && (buffer.get(logEventEnd - 1) == '\r')) {
+              logEventEnd--;
+            }
+          } else if (last == '\r') {
+            logEventEnd--;
+          }
+          final AbstractLogEvent logEvent = createLogEvent(buffer, logEventStart, logEventEnd, logEventStartRecognized);
+          if (matches(logEvent)) {
+            result.add(logEvent);
+          }
+          logEventStart = i;
+          logEventStartRecognized = true;
+        }
+      }
+      return new ParsedRange(result, _logEventFilters);
+    }
+
+    /**
+     * <p>
+     * Evaluates the filters of the worker. The fields of an accepted log event are decoded by the worker thread, the
+     * handlers read all of them anyway.
+     * </p>
+     */
+    private boolean matches(final LogEvent logEvent) {
+      if (_logEventFilters == null) {
+        return true;
+      }
+      for (final LogEventFilter logEventFilter : _logEventFilters) {
+        if (!logEventFilter.matches(logEvent)) {
+          return false;
+        }
+      }
+      if (_parallelism > 1) {
+        logEvent.getCategory();
+        logEvent.getThreadName();
+        logEvent.getMessage();
+        logEvent.getNestedDiagnosticContext();
+      }
+      return true;
+    }
+
+    /**
+     * <p>
+     * Creates the log event of the given range of the buffer. Only the first log event of the file might not start with
+     * a recognized first line, it is prefixed with a line separator like the {@link TextInputStreamReader} does.
+     * </p>
+     */
+    private AbstractLogEvent createLogEvent(final ByteBuffer buffer, final int from, final int to,
+        final boolean logEventStartRecognized) {
+      final int length = to - from;
+      if (_bytes.length < length) {
+        _bytes = new byte[Math.max(length, 2 * _bytes.length)];
+      }
+      buffer.position(from);
+      buffer.get(_bytes, 0, length);
+
+      if (logEventStartRecognized && (_logEventProvider instanceof RawTextLogEventProvider)) {
+        final AbstractLogEvent logEvent = ((RawTextLogEventProvider) _logEventProvider).wrapLogEvent(_bytes, 0,
+            length, _decoder);
+        logEvent.setLogEventSource(_logEventSource);
+        return logEvent;
+      }
+      final String text = _decoder.decode(_bytes, 0, length);
+      return createLogEvent(logEventStartRecognized ? text : _decoder.getLineSeparator() + text);
+    }
+
+    private AbstractLogEvent createLogEvent(final String text) {
+      final AbstractLogEvent logEvent = _logEventProvider.wrapLogEvent(text);
+      logEvent.setLogEventSource(_logEventSource);
+      return logEvent;
+    }
+  }
+
+  /**
+   * <p>
+   * The log events of a byte range.
+   * </p>
+   */
+  private static class ParsedRange {
+
+    /** the log events */
+    private final List<AbstractLogEvent> _logEvents;
+
+    /** the filters the log events match, <code>null</code> if they have not been filtered */
+    private final List<LogEventFilter>   _logEventFilters;
+
+    public ParsedRange(final List<AbstractLogEvent> logEvents, final List<LogEventFilter> logEventFilters) {
+      _logEvents = logEvents;
+      _logEventFilters = logEventFilters;
+    }
+  }
+
+  /**
+   * <p>
+   * A line of a byte buffer as a {@link CharSequence} for the {@link LogEventStartRecognizer}: every byte is one
+   * character. The line ends before the first line terminator, but contains at most
+   * {@link LogEventStartRecognizer#MAX_START_LENGTH} characters.
+   * </p>
+   */
+  private static class Line implements CharSequence {
+
+    /** the buffer */
+    private ByteBuffer _buffer;
+
+    /** the index of the first byte of the line */
+    private int        _from;
+
+    /** the length of the line */
+    private int        _length;
+
+    public void reset(final ByteBuffer buffer, final int from, final int limit) {
+      _buffer = buffer;
+      _from = from;
+      final int end = Math.min(limit, from + LogEventStartRecognizer.MAX_START_LENGTH);
+      int i = from;
+      while ((i < end) && !isLineTerminator(buffer.get(i))) {
+        i++;
+      }
+      _length = i - from;
+    }
+
+    public int length() {
+      return _length;
+    }
+
+    public char charAt(final int index) {
+      if ((index < 0) || (index >= _length)) {
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+      }
+      return (char) (_buffer.get(_from + index) & 0xFF);
+    }
+
+    public CharSequence subSequence(final int start, final int end) {
+      final StringBuilder builder = new StringBuilder(end - start);
+      for (int i = start; i < end; i++) {
+        builder.append(charAt(i));
+      }
+      return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+      return subSequence(0, _length).toString();
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package org.javakontor.sherlog.domain.impl.internal.reader;
+
+import org.javakontor.sherlog.domain.impl.reader.LogEventStartRecognizer;
+import org.javakontor.sherlog.domain.impl.reader.TextLogEventProvider;
+
+/**
+ * <p>
+ * The {@link LogEventStartRecognizer} for providers that do not recognize their log events themselves: a log event
+ * starts with a line that starts with the start tag <code>'|'</code>.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class StartTagRecognizer implements LogEventStartRecognizer {
+
+  /** the start tag of a log event */
+  public static final char                     START_TAG = '|';
+
+  /** the shared instance */
+  private static final LogEventStartRecognizer INSTANCE  = new StartTagRecognizer();
+
+  /**
+   * <p>
+   * Returns the {@link LogEventStartRecognizer} for the given provider: the provider itself if it recognizes its log
+   * events, the start tag recognizer otherwise.
+   * </p>
+   *
+   * @param logEventProvider
+   *          the provider
+   * @return the {@link LogEventStartRecognizer} for the given provider.
+   */
+  public static LogEventStartRecognizer getLogEventStartRecognizer(final TextLogEventProvider logEventProvider) {
+    return logEventProvider instanceof LogEventStartRecognizer ? (LogEventStartRecognizer) logEventProvider : INSTANCE;
+  }
+
+  /**
+   * @see org.javakontor.sherlog.domain.impl.reader.LogEventStartRecognizer#isLogEventStart(java.lang.CharSequence)
+   */
+  public boolean isLogEventStart(final CharSequence line) {
+    return (line.length() > 0) && (line.charAt(0) == START_TAG);
+  }
+}
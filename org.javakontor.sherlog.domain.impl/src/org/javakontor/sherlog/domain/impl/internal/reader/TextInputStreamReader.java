@@ -9,18 +9,23 @@ import java.util.concurrent.CancellationException;
 
 import org.javakontor.sherlog.domain.LogEventSource;
 import org.javakontor.sherlog.domain.impl.reader.AbstractLogEvent;
+import org.javakontor.sherlog.domain.impl.reader.LogEventStartRecognizer;
 import org.javakontor.sherlog.domain.impl.reader.TextLogEventProvider;
 import org.javakontor.sherlog.domain.reader.LogEventReaderInputSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class TextInputStreamReader extends AbstractLogEventReader {
+public class TextInputStreamReader extends AbstractInputStreamLogEventReader {
 
 	private final Logger _logger = LoggerFactory.getLogger(getClass());
 
 	private final TextLogEventProvider _logEventProvider;
 
-	private final String startTag = "|";
+	/** recognizes the first line of a log event */
+	private final LogEventStartRecognizer _logEventStartRecognizer;
+
+	/** the line separator that joins the lines of a log event */
+	private final String _lineSeparator = System.getProperty("line.separator");
 
 	private StringBuilder _textLogEventBuilder;
 
@@ -41,6 +46,8 @@ public class TextInputStreamReader extends AbstractLogEventReader {
 		super(inputSource);
 
 		_logEventProvider = logEventProvider;
+		_logEventStartRecognizer = StartTagRecognizer
+				.getLogEventStartRecognizer(logEventProvider);
 
 		_textLogEventBuilder = new StringBuilder();
 	}
@@ -88,7 +95,7 @@ public class TextInputStreamReader extends AbstractLogEventReader {
 	private void processLine(final String aLine,
 			final LogEventSource logEventSource) {
 
-		if (aLine.startsWith(startTag)) {
+		if (_logEventStartRecognizer.isLogEventStart(aLine)) {
 			final String string = _textLogEventBuilder.toString();
 			if (string.length() < 1) {
 				_textLogEventBuilder.append(aLine);
@@ -102,7 +109,7 @@ public class TextInputStreamReader extends AbstractLogEventReader {
 
 			_textLogEventBuilder = new StringBuilder();
 		} else {
-			_textLogEventBuilder.append(System.getProperty("line.separator"));
+			_textLogEventBuilder.append(_lineSeparator);
 		}
 		_textLogEventBuilder.append(aLine);
 	}
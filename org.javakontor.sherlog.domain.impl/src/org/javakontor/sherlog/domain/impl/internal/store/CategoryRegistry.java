@@ -0,0 +1,231 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * A hashed registry of the categories of a store. Each category is registered once (the first registered instance is
+ * the canonical one) and the registry keeps the number of log events and the number of filtered log events per
+ * category.
+ * </p>
+ * <p>
+ * The filtered counts are maintained incrementally as long as filtered log events are only appended. After any other
+ * change the filtered counts are {@link #invalidateFilteredCounts() invalidated} and recomputed on demand.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class CategoryRegistry {
+
+  /** the counters, keyed by category */
+  private final Map<String, Counter> _counters;
+
+  /** the categories in registration order */
+  private final List<String>         _categories;
+
+  /** <code>true</code> if the filtered counts are valid */
+  private boolean                    _filteredCountsValid;
+
+  /** the number of times a category has been added or removed */
+  private int                        _modificationCount;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CategoryRegistry}.
+   * </p>
+   */
+  public CategoryRegistry() {
+    _counters = new HashMap<String, Counter>();
+    _categories = new ArrayList<String>();
+    _filteredCountsValid = true;
+  }
+
+  /**
+   * <p>
+   * Counts a log event of the given category and registers the category if necessary.
+   * </p>
+   *
+   * @param category
+   *          the category (might be <code>null</code>)
+   * @return the canonical instance of the category
+   */
+  public String register(final String category) {
+    Counter counter = _counters.get(category);
+    if (counter == null) {
+      counter = new Counter(category);
+      _counters.put(category, counter);
+      _categories.add(category);
+      _modificationCount++;
+    }
+    counter._count++;
+    return counter._category;
+  }
+
+  /**
+   * <p>
+   * Uncounts a removed log event of the given category. The category is removed if there are no log events left.
+   * </p>
+   *
+   * @param category
+   *          the category
+   * @param filtered
+   *          <code>true</code> if the log event was a filtered log event
+   */
+  public void unregister(final String category, final boolean filtered) {
+    final Counter counter = _counters.get(category);
+    if (counter == null) {
+      return;
+    }
+    counter._count--;
+    if (filtered && _filteredCountsValid) {
+      counter._filteredCount--;
+    }
+    if (counter._count <= 0) {
+      _counters.remove(category);
+      _categories.remove(category);
+      _modificationCount++;
+    }
+  }
+
+  /**
+   * <p>
+   * Counts a filtered log event of the given (registered) category. Ignored if the filtered counts are invalid.
+   * </p>
+   *
+   * @param category
+   *          the category
+   */
+  public void countFiltered(final String category) {
+    if (_filteredCountsValid) {
+      final Counter counter = _counters.get(category);
+      if (counter != null) {
+        counter._filteredCount++;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Invalidates the filtered counts, e.g. after a refilter.
+   * </p>
+   */
+  public void invalidateFilteredCounts() {
+    _filteredCountsValid = false;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the filtered counts are valid.
+   * </p>
+   *
+   * @return <code>true</code> if the filtered counts are valid.
+   */
+  public boolean isFilteredCountsValid() {
+    return _filteredCountsValid;
+  }
+
+  /**
+   * <p>
+   * Sets all filtered counts to 0 and marks them as valid, so that they can be recomputed using
+   * {@link #countFiltered(String)}.
+   * </p>
+   */
+  public void resetFilteredCounts() {
+    for (final Counter counter : _counters.values()) {
+      counter._filteredCount = 0;
+    }
+    _filteredCountsValid = true;
+  }
+
+  /**
+   * <p>
+   * Returns an unmodifiable view on the categories in registration order.
+   * </p>
+   *
+   * @return an unmodifiable view on the categories in registration order.
+   */
+  public List<String> getCategories() {
+    return Collections.unmodifiableList(_categories);
+  }
+
+  /**
+   * <p>
+   * Returns the number of times a category has been added or removed, e.g. to detect whether a copy of the categories
+   * is still up to date.
+   * </p>
+   *
+   * @return the number of times a category has been added or removed.
+   */
+  public int getModificationCount() {
+    return _modificationCount;
+  }
+
+  /**
+   * <p>
+   * Returns the number of log events of the given category.
+   * </p>
+   *
+   * @param category
+   *          the category
+   * @return the number of log events of the given category.
+   */
+  public int getCount(final String category) {
+    final Counter counter = _counters.get(category);
+    return counter == null ? 0 : counter._count;
+  }
+
+  /**
+   * <p>
+   * Returns the number of filtered log events of the given category. Must only be invoked if the filtered counts are
+   * valid.
+   * </p>
+   *
+   * @param category
+   *          the category
+   * @return the number of filtered log events of the given category.
+   */
+  public int getFilteredCount(final String category) {
+    final Counter counter = _counters.get(category);
+    return counter == null ? 0 : counter._filteredCount;
+  }
+
+  /**
+   * <p>
+   * Removes all categories.
+   * </p>
+   */
+  public void clear() {
+    _counters.clear();
+    _categories.clear();
+    _filteredCountsValid = true;
+    _modificationCount++;
+  }
+
+  /**
+   * <p>
+   * The counters of a category.
+   * </p>
+   */
+  private static class Counter {
+
+    /** the canonical instance of the category */
+    private final String _category;
+
+    /** the number of log events */
+    private int          _count;
+
+    /** the number of filtered log events */
+    private int          _filteredCount;
+
+    Counter(final String category) {
+      _category = category;
+    }
+  }
+}
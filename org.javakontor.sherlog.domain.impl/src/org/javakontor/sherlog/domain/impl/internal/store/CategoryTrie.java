@@ -0,0 +1,310 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.javakontor.sherlog.domain.filter.CategoryLogEventFilter;
+
+/**
+ * <p>
+ * A trie of the dot-separated categories of a store. Each node of the trie stands for a category (or a package of
+ * categories, e.g. <code>org.acme</code> for <code>org.acme.payment.Service</code>) and keeps the posting list of the
+ * store positions of the log events with exactly that category as well as the number of log events in its subtree.
+ * </p>
+ * <p>
+ * The postings of a subtree are the union of the postings of its nodes, so a category prefix is resolved without
+ * touching any log event of a non-matching category. Log events without category are kept in a separate posting list.
+ * </p>
+ * <p>
+ * The postings are only valid for the positions that have been added: if log events are merged into the store, the
+ * trie has to be {@link #truncate(int) truncated} at the first changed position and the positions behind have to be
+ * added again.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class CategoryTrie {
+
+  /** the root node (the empty category) */
+  private final Node              _root;
+
+  /** all nodes, keyed by their category */
+  private final Map<String, Node> _nodes;
+
+  /** the positions of the log events without category */
+  private final CompressedBitmap  _nullPostings;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link CategoryTrie}.
+   * </p>
+   */
+  public CategoryTrie() {
+    _root = new Node(null, "");
+    _nodes = new HashMap<String, Node>();
+    _nullPostings = new CompressedBitmap();
+  }
+
+  /**
+   * <p>
+   * Adds the store position of a log event of the given category. Positions should be added in ascending order.
+   * </p>
+   *
+   * @param category
+   *          the category, might be <code>null</code>
+   * @param position
+   *          the store position of the log event
+   */
+  public void add(final String category, final int position) {
+    if (category == null) {
+      _nullPostings.add(position);
+      return;
+    }
+
+    final Node node = getOrCreateNode(category);
+    node._postings.add(position);
+    for (Node current = node; current != null; current = current._parent) {
+      current._subtreeCount++;
+    }
+  }
+
+  /**
+   * <p>
+   * Removes all store positions greater or equal to the given position.
+   * </p>
+   *
+   * @param position
+   *          the first position to remove
+   */
+  public void truncate(final int position) {
+    _nullPostings.truncate(position);
+    for (final Node node : _nodes.values()) {
+      final int cardinality = node._postings.getCardinality();
+      node._postings.truncate(position);
+      final int removed = cardinality - node._postings.getCardinality();
+      if (removed > 0) {
+        for (Node current = node; current != null; current = current._parent) {
+          current._subtreeCount -= removed;
+        }
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Removes all store positions smaller than the given position, e.g. if the oldest log events have been evicted.
+   * Nodes without log events in their subtree are removed.
+   * </p>
+   *
+   * @param position
+   *          the first remaining position
+   */
+  public void removeBelow(final int position) {
+    _nullPostings.removeBelow(position);
+    for (final Node node : _nodes.values()) {
+      final int cardinality = node._postings.getCardinality();
+      node._postings.removeBelow(position);
+      final int removed = cardinality - node._postings.getCardinality();
+      if (removed > 0) {
+        for (Node current = node; current != null; current = current._parent) {
+          current._subtreeCount -= removed;
+        }
+      }
+    }
+
+    // prune empty subtrees
+    for (final Iterator<Node> iterator = _nodes.values().iterator(); iterator.hasNext();) {
+      final Node node = iterator.next();
+      if (node._subtreeCount == 0) {
+        node._parent._children.remove(node._category.substring(node._category.lastIndexOf('.') + 1));
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Subtracts the given delta from all store positions.
+   * </p>
+   *
+   * @see CompressedBitmap#shiftDown(int)
+   */
+  public void shiftDown(final int delta) {
+    _nullPostings.shiftDown(delta);
+    for (final Node node : _nodes.values()) {
+      node._postings.shiftDown(delta);
+    }
+  }
+
+  /**
+   * <p>
+   * Removes all nodes.
+   * </p>
+   */
+  public void clear() {
+    _root._children.clear();
+    _root._subtreeCount = 0;
+    _nodes.clear();
+    _nullPostings.clear();
+  }
+
+  /**
+   * <p>
+   * Returns the number of log events in the subtree of the given category, i.e. the number of log events with that
+   * category or one of its sub categories.
+   * </p>
+   *
+   * @param category
+   *          the category, <code>null</code> or the empty string for the root
+   * @return the number of log events in the subtree of the given category.
+   */
+  public int getSubtreeCount(final String category) {
+    final Node node = getNode(category);
+    return node == null ? 0 : node._subtreeCount;
+  }
+
+  /**
+   * <p>
+   * Returns the direct sub categories of the given category.
+   * </p>
+   *
+   * @param category
+   *          the category, <code>null</code> or the empty string for the root
+   * @return the direct sub categories of the given category.
+   */
+  public List<String> getSubCategories(final String category) {
+    final List<String> result = new ArrayList<String>();
+    final Node node = getNode(category);
+    if (node != null) {
+      for (final Node child : node._children.values()) {
+        result.add(child._category);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the positions of the log events in the subtree of the given category.
+   * </p>
+   *
+   * @param category
+   *          the category, <code>null</code> or the empty string for the root
+   * @return the positions of the log events in the subtree of the given category.
+   */
+  public CompressedBitmap getPostings(final String category) {
+    final Node node = getNode(category);
+    final CompressedBitmap result = new CompressedBitmap();
+    if (node != null) {
+      collectPostings(node, result);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the positions in the range <code>[from, to)</code> of the log events whose category is accepted by the
+   * given filter. As the category restriction is hierarchical, a subtree is not visited any further as soon as its root
+   * is accepted.
+   * </p>
+   *
+   * @param filter
+   *          the filter
+   * @param from
+   *          the first position (inclusive)
+   * @param to
+   *          the last position (exclusive)
+   * @return the positions of the log events whose category is accepted by the given filter.
+   */
+  public CompressedBitmap getPostings(final CategoryLogEventFilter filter, final int from, final int to) {
+    final CompressedBitmap result = filter.matchesCategory(null) ? _nullPostings.range(from, to)
+        : new CompressedBitmap();
+    for (final Node child : _root._children.values()) {
+      collectPostings(child, filter, from, to, result);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Adds the postings of the subtree of the given node to the given result (in place, so the result is not copied for
+   * every node).
+   * </p>
+   */
+  private void collectPostings(final Node node, final CompressedBitmap result) {
+    result.orInPlace(node._postings);
+    for (final Node child : node._children.values()) {
+      collectPostings(child, result);
+    }
+  }
+
+  private void collectPostings(final Node node, final int from, final int to, final CompressedBitmap result) {
+    result.orInPlace(node._postings.range(from, to));
+    for (final Node child : node._children.values()) {
+      collectPostings(child, from, to, result);
+    }
+  }
+
+  private void collectPostings(final Node node, final CategoryLogEventFilter filter, final int from, final int to,
+      final CompressedBitmap result) {
+    if (filter.matchesCategory(node._category)) {
+      collectPostings(node, from, to, result);
+      return;
+    }
+    for (final Node child : node._children.values()) {
+      collectPostings(child, filter, from, to, result);
+    }
+  }
+
+  private Node getNode(final String category) {
+    return (category == null) || (category.length() == 0) ? _root : _nodes.get(category);
+  }
+
+  private Node getOrCreateNode(final String category) {
+    Node node = _nodes.get(category);
+    if (node == null) {
+      final int separator = category.lastIndexOf('.');
+      final Node parent = separator < 0 ? _root : getOrCreateNode(category.substring(0, separator));
+      node = new Node(parent, category);
+      parent._children.put(category.substring(separator + 1), node);
+      _nodes.put(category, node);
+    }
+    return node;
+  }
+
+  /**
+   * <p>
+   * A node of the trie.
+   * </p>
+   */
+  private static class Node {
+
+    /** the parent node, <code>null</code> for the root */
+    private final Node              _parent;
+
+    /** the (full) category */
+    private final String            _category;
+
+    /** the child nodes, keyed by their last category segment */
+    private final Map<String, Node> _children;
+
+    /** the positions of the log events with exactly this category */
+    private final CompressedBitmap  _postings;
+
+    /** the number of log events in the subtree */
+    private int                     _subtreeCount;
+
+    Node(final Node parent, final String category) {
+      _parent = parent;
+      _category = category;
+      _children = new HashMap<String, Node>();
+      _postings = new CompressedBitmap();
+    }
+  }
+}
@@ -0,0 +1,334 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.javakontor.sherlog.domain.LogEvent;
+
+/**
+ * <p>
+ * An append-optimised list of {@link LogEvent LogEvents} that is stored in chunks of {@value #CHUNK_SIZE} elements.
+ * Besides appending, the list supports removing its tail (e.g. to merge out-of-order log events) and removing its
+ * head (e.g. to evict the oldest log events). Other modifications are not supported.
+ * </p>
+ * <p>
+ * {@link #publish()} returns an immutable version of the list that can be read by any number of threads without
+ * locking while the (single) writer keeps modifying the list. Publishing is O(1): the version shares the chunks with
+ * the list. The writer never changes an element that is visible to a published version, it copies the affected
+ * chunk instead (copy-on-write). Since log events are usually appended, this only happens if the tail of the list is
+ * replaced.
+ * </p>
+ * <p>
+ * If the log events are rows of a {@link ColumnarLogEventList} (see
+ * {@link #setColumnarLogEvents(ColumnarLogEventList)}), the chunks only store the row numbers (4 bytes per log event).
+ * The {@link ColumnarLogEvent} views are created on demand by {@link #get(int)}, no view is kept.
+ * </p>
+ * <p>
+ * This class is not thread-safe, it must only be modified by one thread at a time. The published versions are
+ * thread-safe as long as they are published safely (e.g. using a <code>volatile</code> field).
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class ChunkedLogEventList extends AbstractList<LogEvent> implements RandomAccess {
+
+  /** the number of elements per chunk */
+  public static final int CHUNK_SIZE  = 1 << 12;
+
+  /** the shift to compute the chunk of a slot */
+  private static final int CHUNK_SHIFT = 12;
+
+  /** the mask to compute the index of a slot within its chunk */
+  private static final int CHUNK_MASK  = CHUNK_SIZE - 1;
+
+  /** the chunks (log events or rows), the array might be shared with published versions */
+  private Object[]             _chunks;
+
+  /** the list whose rows are stored, <code>null</code> if the log events are stored */
+  private ColumnarLogEventList _columnarLogEvents;
+
+  /** the number of chunks */
+  private int                  _chunkCount;
+
+  /** <code>true</code> if the chunk array is shared with a published version */
+  private boolean              _chunksShared;
+
+  /** the slot of the first element */
+  private int                  _head;
+
+  /** the slot behind the last element */
+  private int                  _end;
+
+  /** the slots below this slot might be visible to a published version and must not be changed */
+  private int                  _publishedEnd;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ChunkedLogEventList}.
+   * </p>
+   */
+  public ChunkedLogEventList() {
+    _chunks = new Object[16];
+  }
+
+  /**
+   * <p>
+   * Sets the list whose rows are stored by this list. Only views on rows of that list can be added. Must only be
+   * invoked while this list is empty.
+   * </p>
+   *
+   * @param columnarLogEvents
+   *          the list whose rows are stored, <code>null</code> to store the log events
+   */
+  public void setColumnarLogEvents(final ColumnarLogEventList columnarLogEvents) {
+    if (!isEmpty()) {
+      throw new IllegalStateException("The storage of a non-empty list cannot be changed");
+    }
+    clear();
+    _columnarLogEvents = columnarLogEvents;
+  }
+
+  /**
+   * <p>
+   * Returns an immutable version of this list. The version is not affected by subsequent modifications of this list.
+   * </p>
+   *
+   * @return an immutable version of this list.
+   */
+  public List<LogEvent> publish() {
+    _chunksShared = true;
+    _publishedEnd = _end;
+    return new Version(_chunks, _columnarLogEvents, _head, _end - _head);
+  }
+
+  /**
+   * <p>
+   * Removes the given number of elements from the head of the list. Chunks that only contain removed elements are
+   * released as soon as they are no longer visible to a published version.
+   * </p>
+   *
+   * @param count
+   *          the number of elements to remove
+   */
+  public void removeFirst(final int count) {
+    if ((count < 0) || (count > size())) {
+      throw new IndexOutOfBoundsException("Count: " + count + ", Size: " + size());
+    }
+
+    _head += count;
+    modCount++;
+
+    // release the leading chunks (the published versions keep their own chunk arrays)
+    final int firstChunk = _head >>> CHUNK_SHIFT;
+    if (firstChunk > 0) {
+      final Object[] chunks = new Object[Math.max(16, _chunks.length - firstChunk)];
+      System.arraycopy(_chunks, firstChunk, chunks, 0, _chunkCount - firstChunk);
+      _chunks = chunks;
+      _chunkCount -= firstChunk;
+      _chunksShared = false;
+      final int delta = firstChunk << CHUNK_SHIFT;
+      _head -= delta;
+      _end -= delta;
+      _publishedEnd = Math.max(0, _publishedEnd - delta);
+    }
+  }
+
+  /**
+   * @see java.util.AbstractList#get(int)
+   */
+  @Override
+  public LogEvent get(final int index) {
+    checkIndex(index, size());
+    return get(_chunks, _columnarLogEvents, _head + index);
+  }
+
+  /**
+   * @see java.util.AbstractCollection#size()
+   */
+  @Override
+  public int size() {
+    return _end - _head;
+  }
+
+  /**
+   * <p>
+   * Only appending is supported.
+   * </p>
+   *
+   * @see java.util.AbstractList#add(int, java.lang.Object)
+   */
+  @Override
+  public void add(final int index, final LogEvent element) {
+    if (index != size()) {
+      throw new UnsupportedOperationException("Log events can only be appended");
+    }
+
+    final int chunk = _end >>> CHUNK_SHIFT;
+    if (chunk == _chunkCount) {
+      if (_chunkCount == _chunks.length) {
+        final Object[] chunks = new Object[_chunks.length << 1];
+        System.arraycopy(_chunks, 0, chunks, 0, _chunkCount);
+        _chunks = chunks;
+        _chunksShared = false;
+      }
+      // appending a chunk does not change the chunks that are visible to a published version
+      _chunks[_chunkCount++] = newChunk();
+    }
+    if (_columnarLogEvents == null) {
+      ((LogEvent[]) _chunks[chunk])[_end & CHUNK_MASK] = element;
+    } else {
+      if (!_columnarLogEvents.isRowOfThisList(element)) {
+        throw new IllegalArgumentException("Only rows of the columnar list can be added: " + element);
+      }
+      ((int[]) _chunks[chunk])[_end & CHUNK_MASK] = ((ColumnarLogEvent) element).getRow();
+    }
+    _end++;
+    modCount++;
+  }
+
+  /**
+   * @see java.util.AbstractList#clear()
+   */
+  @Override
+  public void clear() {
+    _chunks = new Object[16];
+    _chunkCount = 0;
+    _chunksShared = false;
+    _head = 0;
+    _end = 0;
+    _publishedEnd = 0;
+    modCount++;
+  }
+
+  /**
+   * <p>
+   * Only the head or the tail of the list can be removed.
+   * </p>
+   *
+   * @see java.util.AbstractList#removeRange(int, int)
+   */
+  @Override
+  protected void removeRange(final int fromIndex, final int toIndex) {
+    checkIndex(fromIndex, size() + 1);
+    checkIndex(toIndex, size() + 1);
+    if (toIndex <= fromIndex) {
+      return;
+    }
+
+    if (fromIndex == 0) {
+      removeFirst(toIndex);
+    } else if (toIndex == size()) {
+      truncate(_head + fromIndex);
+    } else {
+      throw new UnsupportedOperationException("Only the head or the tail of the list can be removed");
+    }
+  }
+
+  /**
+   * <p>
+   * Removes all elements starting with the given slot. If the removed slots are visible to a published version, the
+   * chunk that contains the new end is copied and the following chunks are dropped, so that new elements never
+   * overwrite published ones.
+   * </p>
+   */
+  private void truncate(final int end) {
+    final int chunk = end >>> CHUNK_SHIFT;
+    final int keptChunks = (end & CHUNK_MASK) == 0 ? chunk : chunk + 1;
+
+    if (end < _publishedEnd) {
+      if (_chunksShared) {
+        final Object[] chunks = new Object[_chunks.length];
+        System.arraycopy(_chunks, 0, chunks, 0, keptChunks);
+        _chunks = chunks;
+        _chunksShared = false;
+      }
+      if (keptChunks > chunk) {
+        final Object copy = newChunk();
+        System.arraycopy(_chunks[chunk], 0, copy, 0, end & CHUNK_MASK);
+        _chunks[chunk] = copy;
+      }
+      _publishedEnd = end;
+    } else if (_columnarLogEvents == null) {
+      // the removed slots are not visible, release the log events
+      for (int slot = end; (slot < _end) && ((slot >>> CHUNK_SHIFT) < keptChunks); slot++) {
+        ((LogEvent[]) _chunks[slot >>> CHUNK_SHIFT])[slot & CHUNK_MASK] = null;
+      }
+    }
+
+    if (!_chunksShared) {
+      for (int i = keptChunks; i < _chunkCount; i++) {
+        _chunks[i] = null;
+      }
+    }
+    _chunkCount = keptChunks;
+    _end = end;
+    modCount++;
+  }
+
+  /**
+   * <p>
+   * Creates a new chunk.
+   * </p>
+   */
+  private Object newChunk() {
+    return _columnarLogEvents == null ? new LogEvent[CHUNK_SIZE] : new int[CHUNK_SIZE];
+  }
+
+  /**
+   * <p>
+   * Returns the log event in the given slot of the given chunks, a new view if the chunks store rows.
+   * </p>
+   */
+  private static LogEvent get(final Object[] chunks, final ColumnarLogEventList columnarLogEvents, final int slot) {
+    final Object chunk = chunks[slot >>> CHUNK_SHIFT];
+    if (columnarLogEvents == null) {
+      return ((LogEvent[]) chunk)[slot & CHUNK_MASK];
+    }
+    return columnarLogEvents.getLogEventOfRow(((int[]) chunk)[slot & CHUNK_MASK]);
+  }
+
+  private static void checkIndex(final int index, final int size) {
+    if ((index < 0) || (index >= size)) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  /**
+   * <p>
+   * An immutable version of the list.
+   * </p>
+   */
+  private static class Version extends AbstractList<LogEvent> implements RandomAccess {
+
+    /** the chunks */
+    private final Object[]             _chunks;
+
+    /** the list whose rows are stored, <code>null</code> if the log events are stored */
+    private final ColumnarLogEventList _columnarLogEvents;
+
+    /** the slot of the first element */
+    private final int                  _head;
+
+    /** the number of elements */
+    private final int                  _size;
+
+    Version(final Object[] chunks, final ColumnarLogEventList columnarLogEvents, final int head, final int size) {
+      _chunks = chunks;
+      _columnarLogEvents = columnarLogEvents;
+      _head = head;
+      _size = size;
+    }
+
+    @Override
+    public LogEvent get(final int index) {
+      checkIndex(index, _size);
+      return ChunkedLogEventList.get(_chunks, _columnarLogEvents, _head + index);
+    }
+
+    @Override
+    public int size() {
+      return _size;
+    }
+  }
+}
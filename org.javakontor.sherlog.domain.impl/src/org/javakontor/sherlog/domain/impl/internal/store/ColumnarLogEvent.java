@@ -0,0 +1,179 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogEventSource;
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * A lightweight view on a row of a {@link ColumnarLogEventList}. All values are read from the columns of the list.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class ColumnarLogEvent implements LogEvent {
+
+  /** the serialVersionUID */
+  private static final long                    serialVersionUID = 1L;
+
+  /** the list that contains the row */
+  private final transient ColumnarLogEventList _list;
+
+  /** the row */
+  private final int                            _row;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ColumnarLogEvent}.
+   * </p>
+   *
+   * @param list
+   *          the list that contains the row
+   * @param row
+   *          the row
+   */
+  ColumnarLogEvent(final ColumnarLogEventList list, final int row) {
+    _list = list;
+    _row = row;
+  }
+
+  /**
+   * <p>
+   * Returns the list that contains the row of this view.
+   * </p>
+   *
+   * @return the list that contains the row of this view.
+   */
+  ColumnarLogEventList getList() {
+    return _list;
+  }
+
+  /**
+   * <p>
+   * Returns the row of this view.
+   * </p>
+   *
+   * @return the row of this view.
+   */
+  int getRow() {
+    return _row;
+  }
+
+  public LogEventSource getLogEventSource() {
+    return _list.getLogEventSource(_row);
+  }
+
+  /**
+   * <p>
+   * Returns the row number, which is unique within the {@link ColumnarLogEventList}.
+   * </p>
+   */
+  public long getIdentifier() {
+    return _row;
+  }
+
+  public long getTimeStamp() {
+    return _list.getTimeStamp(_row);
+  }
+
+  public String getCategory() {
+    return _list.getCategory(_row);
+  }
+
+  public LogLevel getLogLevel() {
+    return _list.getLogLevel(_row);
+  }
+
+  public String getMessage() {
+    return _list.getMessage(_row);
+  }
+
+  public String getThreadName() {
+    return _list.getThreadName(_row);
+  }
+
+  public boolean hasNestedDiagnosticContext() {
+    return _list.getNestedDiagnosticContext(_row) != null;
+  }
+
+  public Object getNestedDiagnosticContext() {
+    return _list.getNestedDiagnosticContext(_row);
+  }
+
+  /**
+   * <p>
+   * Returns the throwable information in its string representation, the original throwable information object is not
+   * kept in the columnar store.
+   * </p>
+   */
+  public Object getThrowableInformation() {
+    return _list.getThrowableInformation(_row);
+  }
+
+  public boolean hasThrowableInformation() {
+    return _list.getThrowableInformation(_row) != null;
+  }
+
+  public String getThrowableInformationAsString() {
+    final String throwableInformation = _list.getThrowableInformation(_row);
+    return throwableInformation == null ? "" : throwableInformation;
+  }
+
+  public void setUserDefinedField(final String fieldName, final Object value) {
+    Assert.notNull("Parameter 'fieldName' must not be null", fieldName);
+
+    _list.setUserDefinedField(this, fieldName, value);
+  }
+
+  public Object getUserDefinedField(final String fieldName) {
+    Assert.notNull("Parameter 'fieldName' must not be null", fieldName);
+
+    return _list.getUserDefinedField(_row, fieldName);
+  }
+
+  public String[] getUserDefinedFieldNames() {
+    return _list.getUserDefinedFieldNames(_row);
+  }
+
+  /**
+   * Compares this LogEvent to the other LogEvent by their timestamps. if the timestamps are equals, their identifiers
+   * are compared
+   */
+  public int compareTo(final LogEvent o) {
+    if (equals(o)) {
+      return 0;
+    }
+    int ret = compare(getTimeStamp(), o.getTimeStamp());
+    if (ret == 0) {
+      ret = compare(getIdentifier(), o.getIdentifier());
+    }
+    return ret;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof ColumnarLogEvent)) {
+      return false;
+    }
+    final ColumnarLogEvent other = (ColumnarLogEvent) obj;
+    return (_list == other._list) && (_row == other._row);
+  }
+
+  @Override
+  public int hashCode() {
+    return _row;
+  }
+
+  @Override
+  public String toString() {
+    return "ColumnarLogEvent [_row=" + _row + "]";
+  }
+
+  private static int compare(final long value1, final long value2) {
+    return (value1 < value2) ? -1 : ((value1 == value2) ? 0 : 1);
+  }
+}
@@ -0,0 +1,726 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogEventSource;
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.domain.impl.reader.LogEventChangeEvent;
+import org.javakontor.sherlog.domain.impl.reader.LogEventChangeListener;
+import org.javakontor.sherlog.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A {@link List} of {@link LogEvent LogEvents} that stores the log events in primitive columns instead of keeping one
+ * object graph per log event.
+ * </p>
+ * <p>
+ * Each imported log event becomes a <i>row</i>: the time stamp is stored in a <code>long</code> column, the log level
+ * in a <code>byte</code> column, categories, thread names and sources are dictionary encoded and the messages are
+ * packed into large <code>char</code> chunks. Columns are allocated in chunks of {@value #ROWS_PER_CHUNK} rows, so
+ * that growing the list never copies the column data.
+ * </p>
+ * <p>
+ * The (sorted) order of the list is kept in a separate <code>int</code> array that references the rows. The elements
+ * returned by {@link #get(int)} are lightweight {@link ColumnarLogEvent} views that are created on demand and only
+ * reference their row.
+ * </p>
+ * <p>
+ * If spilling is enabled (see {@link #setSpilling(File, int)}), the oldest column chunks are written to append-only
+ * {@link LogEventSegment segment files} as soon as more than the configured number of rows is held on the heap. The
+ * heap columns, messages and throwable informations of spilled chunks are dropped and read back from the memory-mapped
+ * segments on demand. The dictionaries, the order array and the (rare) nested diagnostic contexts and user defined
+ * fields stay on the heap.
+ * </p>
+ * <p>
+ * The rows of a saved session (see {@link LogStoreSession}) are loaded the same way: each chunk is a memory-mapped
+ * segment of the session file, only the dictionaries and the rare values are restored on the heap.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class ColumnarLogEventList extends AbstractList<LogEvent> {
+
+  /** the number of rows per column chunk */
+  public static final int                        ROWS_PER_CHUNK     = 1 << 14;
+
+  /** the shift to compute the chunk of a row */
+  private static final int                       CHUNK_SHIFT        = 14;
+
+  /** the mask to compute the index of a row within its chunk */
+  private static final int                       CHUNK_MASK         = ROWS_PER_CHUNK - 1;
+
+  /** the number of chars per message chunk */
+  private static final int                       MESSAGE_CHUNK_SIZE = 1 << 20;
+
+  /** the logger */
+  private final Logger                           _logger            = LoggerFactory.getLogger(getClass());
+
+  /** the listener that is notified if a user defined field changes */
+  private final LogEventChangeListener           _logEventChangeListener;
+
+  /** the time stamp column */
+  private long[][]                               _timeStamps;
+
+  /** the log level column (ordinal of the log level, -1 for null) */
+  private byte[][]                               _logLevels;
+
+  /** the category column (dictionary encoded) */
+  private int[][]                                _categories;
+
+  /** the thread name column (dictionary encoded) */
+  private int[][]                                _threadNames;
+
+  /** the log event source column (dictionary encoded) */
+  private int[][]                                _logEventSources;
+
+  /** the message column (message chunk in the upper, offset in the lower 32 bits) */
+  private long[][]                               _messagePositions;
+
+  /** the message length column (-1 for null) */
+  private int[][]                                _messageLengths;
+
+  /** the message chunks */
+  private final List<char[]>                     _messageChunks;
+
+  /** the number of used chars in the current message chunk */
+  private int                                    _messageChunkFill;
+
+  /** the last row that references a message chunk */
+  private int[]                                  _messageChunkLastRows;
+
+  /** the spilled chunks (<code>null</code> for chunks that are held on the heap) */
+  private LogEventSegment[]                      _segments;
+
+  /** the number of spilled chunks */
+  private int                                    _spilledChunks;
+
+  /** the segment files, <code>null</code> if spilling is disabled */
+  private LogEventSegmentFiles                   _segmentFiles;
+
+  /** the maximum number of rows that are held on the heap if spilling is enabled */
+  private int                                    _spillThreshold;
+
+  /** the category dictionary */
+  private final ValueDictionary<String>          _categoryDictionary;
+
+  /** the thread name dictionary */
+  private final ValueDictionary<String>          _threadNameDictionary;
+
+  /** the log event source dictionary */
+  private final ValueDictionary<LogEventSource>  _logEventSourceDictionary;
+
+  /** the throwable information of the rows that have one */
+  private final Map<Integer, String>             _throwableInformation;
+
+  /** the nested diagnostic context of the rows that have one */
+  private final Map<Integer, Object>             _nestedDiagnosticContexts;
+
+  /** the user defined fields of the rows that have some */
+  private final Map<Integer, Map<String, Object>> _userDefinedFields;
+
+  /** the number of rows */
+  private int                                    _rowCount;
+
+  /** the rows in list order */
+  private int[]                                  _order;
+
+  /** the size of the list */
+  private int                                    _size;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ColumnarLogEventList}.
+   * </p>
+   *
+   * @param logEventChangeListener
+   *          the listener that is notified if a user defined field of a log event changes
+   */
+  public ColumnarLogEventList(final LogEventChangeListener logEventChangeListener) {
+    Assert.notNull(logEventChangeListener);
+
+    _logEventChangeListener = logEventChangeListener;
+    _messageChunks = new ArrayList<char[]>();
+    _categoryDictionary = new ValueDictionary<String>();
+    _threadNameDictionary = new ValueDictionary<String>();
+    _logEventSourceDictionary = new ValueDictionary<LogEventSource>();
+    _throwableInformation = new HashMap<Integer, String>();
+    _nestedDiagnosticContexts = new HashMap<Integer, Object>();
+    _userDefinedFields = new HashMap<Integer, Map<String, Object>>();
+
+    clear();
+  }
+
+  /**
+   * <p>
+   * Copies the given {@link LogEvent} into a new row and returns a view on that row. The returned view is <b>not</b>
+   * added to this list.
+   * </p>
+   *
+   * @param logEvent
+   *          the log event to import
+   * @return a view on the new row
+   */
+  public LogEvent importLogEvent(final LogEvent logEvent) {
+    Assert.notNull(logEvent);
+
+    final int row = _rowCount;
+    ensureRowCapacity(row + 1);
+
+    final int chunk = row >>> CHUNK_SHIFT;
+    final int index = row & CHUNK_MASK;
+
+    _timeStamps[chunk][index] = logEvent.getTimeStamp();
+    final LogLevel logLevel = logEvent.getLogLevel();
+    _logLevels[chunk][index] = (byte) (logLevel == null ? -1 : logLevel.ordinal());
+    _categories[chunk][index] = _categoryDictionary.getId(logEvent.getCategory());
+    _threadNames[chunk][index] = _threadNameDictionary.getId(logEvent.getThreadName());
+    _logEventSources[chunk][index] = _logEventSourceDictionary.getId(logEvent.getLogEventSource());
+    storeMessage(chunk, index, logEvent.getMessage());
+
+    if (logEvent.hasThrowableInformation()) {
+      _throwableInformation.put(Integer.valueOf(row), logEvent.getThrowableInformationAsString());
+    }
+    if (logEvent.hasNestedDiagnosticContext()) {
+      _nestedDiagnosticContexts.put(Integer.valueOf(row), logEvent.getNestedDiagnosticContext());
+    }
+    final String[] fieldNames = logEvent.getUserDefinedFieldNames();
+    if (fieldNames.length > 0) {
+      synchronized (this) {
+        for (final String fieldName : fieldNames) {
+          getUserDefinedFields(row, true).put(fieldName, logEvent.getUserDefinedField(fieldName));
+        }
+      }
+    }
+
+    _rowCount++;
+
+    spillIfNecessary();
+
+    return new ColumnarLogEvent(this, row);
+  }
+
+  /**
+   * @see java.util.AbstractList#get(int)
+   */
+  @Override
+  public LogEvent get(final int index) {
+    if ((index < 0) || (index >= _size)) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+    }
+    return new ColumnarLogEvent(this, _order[index]);
+  }
+
+  /**
+   * @see java.util.AbstractCollection#size()
+   */
+  @Override
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * <p>
+   * Appends the given log event. Log events that are not a view on a row of this list are imported first.
+   * </p>
+   *
+   * @see java.util.AbstractList#add(java.lang.Object)
+   */
+  @Override
+  public boolean add(final LogEvent logEvent) {
+    final LogEvent columnarLogEvent = isRowOfThisList(logEvent) ? logEvent : importLogEvent(logEvent);
+
+    if (_size == _order.length) {
+      final int[] order = new int[Math.max(16, _order.length + (_order.length >> 1))];
+      System.arraycopy(_order, 0, order, 0, _size);
+      _order = order;
+    }
+    _order[_size++] = ((ColumnarLogEvent) columnarLogEvent).getRow();
+    modCount++;
+    return true;
+  }
+
+  /**
+   * <p>
+   * Removes all elements <b>and</b> all rows from this list.
+   * </p>
+   *
+   * @see java.util.AbstractList#clear()
+   */
+  @Override
+  public void clear() {
+    if (_segmentFiles != null) {
+      _segmentFiles.close();
+    }
+    _timeStamps = new long[0][];
+    _logLevels = new byte[0][];
+    _categories = new int[0][];
+    _threadNames = new int[0][];
+    _logEventSources = new int[0][];
+    _messagePositions = new long[0][];
+    _messageLengths = new int[0][];
+    _messageChunks.clear();
+    _messageChunkFill = 0;
+    _messageChunkLastRows = new int[16];
+    _segments = new LogEventSegment[0];
+    _spilledChunks = 0;
+    _categoryDictionary.clear();
+    _threadNameDictionary.clear();
+    _logEventSourceDictionary.clear();
+    _throwableInformation.clear();
+    _nestedDiagnosticContexts.clear();
+    _userDefinedFields.clear();
+    _rowCount = 0;
+    _order = new int[16];
+    _size = 0;
+    modCount++;
+  }
+
+  /**
+   * <p>
+   * Removes the elements in the given range. The rows of the removed elements are kept.
+   * </p>
+   *
+   * @see java.util.AbstractList#removeRange(int, int)
+   */
+  @Override
+  protected void removeRange(final int fromIndex, final int toIndex) {
+    System.arraycopy(_order, toIndex, _order, fromIndex, _size - toIndex);
+    _size -= toIndex - fromIndex;
+    modCount++;
+  }
+
+  /**
+   * <p>
+   * Returns the number of rows.
+   * </p>
+   *
+   * @return the number of rows.
+   */
+  public int getRowCount() {
+    return _rowCount;
+  }
+
+  /**
+   * <p>
+   * Appends a chunk whose rows are read from the given (memory-mapped) segment. The list must not contain any heap
+   * rows, i.e. it must be empty or contain only loaded chunks. The row count is rounded up to the next chunk, so that
+   * a partial segment is only allowed as the last segment and rows imported afterwards start a new chunk.
+   * </p>
+   *
+   * @param segment
+   *          the segment
+   * @param rows
+   *          the number of rows of the segment (at most {@value #ROWS_PER_CHUNK})
+   * @return the first row of the segment
+   */
+  int addSegment(final LogEventSegment segment, final int rows) {
+    Assert.notNull(segment);
+    Assert.assertTrue((rows > 0) && (rows <= ROWS_PER_CHUNK), "Parameter 'rows' must be between 1 and "
+        + ROWS_PER_CHUNK);
+    Assert.assertTrue(_rowCount == (_spilledChunks << CHUNK_SHIFT), "The list must not contain any heap rows");
+
+    final int chunk = _spilledChunks;
+    final int chunks = chunk + 1;
+    _timeStamps = copyOf(_timeStamps, new long[chunks][]);
+    _logLevels = copyOf(_logLevels, new byte[chunks][]);
+    _categories = copyOf(_categories, new int[chunks][]);
+    _threadNames = copyOf(_threadNames, new int[chunks][]);
+    _logEventSources = copyOf(_logEventSources, new int[chunks][]);
+    _messagePositions = copyOf(_messagePositions, new long[chunks][]);
+    _messageLengths = copyOf(_messageLengths, new int[chunks][]);
+    _segments = copyOf(_segments, new LogEventSegment[chunks]);
+    _segments[chunk] = segment;
+    _spilledChunks = chunks;
+    _rowCount = chunks << CHUNK_SHIFT;
+    return chunk << CHUNK_SHIFT;
+  }
+
+  /**
+   * <p>
+   * Restores the dictionaries of loaded rows. The dictionaries must be empty, the ids of the values are their indices.
+   * </p>
+   *
+   * @param categories
+   *          the categories
+   * @param threadNames
+   *          the thread names
+   * @param logEventSources
+   *          the log event sources
+   */
+  void restoreDictionaries(final List<String> categories, final List<String> threadNames,
+      final List<LogEventSource> logEventSources) {
+    Assert.assertTrue((_categoryDictionary.size() == 0) && (_threadNameDictionary.size() == 0)
+        && (_logEventSourceDictionary.size() == 0), "The dictionaries must be empty");
+
+    for (final String category : categories) {
+      _categoryDictionary.getId(category);
+    }
+    for (final String threadName : threadNames) {
+      _threadNameDictionary.getId(threadName);
+    }
+    for (final LogEventSource logEventSource : logEventSources) {
+      _logEventSourceDictionary.getId(logEventSource);
+    }
+  }
+
+  /**
+   * <p>
+   * Restores the nested diagnostic context of a loaded row.
+   * </p>
+   *
+   * @param row
+   *          the row
+   * @param nestedDiagnosticContext
+   *          the nested diagnostic context
+   */
+  void restoreNestedDiagnosticContext(final int row, final Object nestedDiagnosticContext) {
+    _nestedDiagnosticContexts.put(Integer.valueOf(row), nestedDiagnosticContext);
+  }
+
+  /**
+   * <p>
+   * Restores a user defined field of a loaded row without notifying the listener.
+   * </p>
+   *
+   * @param row
+   *          the row
+   * @param fieldName
+   *          the name of the field
+   * @param value
+   *          the value
+   */
+  synchronized void restoreUserDefinedField(final int row, final String fieldName, final Object value) {
+    getUserDefinedFields(row, true).put(fieldName, value);
+  }
+
+  /**
+   * <p>
+   * Returns a view on the given row.
+   * </p>
+   *
+   * @param row
+   *          the row
+   * @return a view on the given row
+   */
+  LogEvent getLogEventOfRow(final int row) {
+    return new ColumnarLogEvent(this, row);
+  }
+
+  /**
+   * <p>
+   * Enables spilling: as soon as more than the given number of rows is held on the heap, the oldest chunks of
+   * {@value #ROWS_PER_CHUNK} rows are written to segment files in the given directory.
+   * </p>
+   *
+   * @param directory
+   *          the directory for the segment files
+   * @param threshold
+   *          the maximum number of rows that are held on the heap
+   */
+  public void setSpilling(final File directory, final int threshold) {
+    Assert.isDirectory(directory);
+    Assert.assertTrue(threshold > 0, "Parameter 'threshold' must be greater than 0");
+
+    if (_segmentFiles != null) {
+      _segmentFiles.close();
+    }
+    _segmentFiles = new LogEventSegmentFiles(directory);
+    _spillThreshold = threshold;
+
+    spillIfNecessary();
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if spilling is enabled.
+   * </p>
+   *
+   * @return <code>true</code> if spilling is enabled.
+   */
+  public boolean isSpilling() {
+    return _segmentFiles != null;
+  }
+
+  /**
+   * <p>
+   * Returns the number of bytes that have been written to segment files.
+   * </p>
+   *
+   * @return the number of bytes that have been written to segment files.
+   */
+  public long getSpilledSize() {
+    return _segmentFiles == null ? 0 : _segmentFiles.getSize();
+  }
+
+  /**
+   * <p>
+   * Returns the number of rows that have been written to segment files.
+   * </p>
+   *
+   * @return the number of rows that have been written to segment files.
+   */
+  public int getSpilledRowCount() {
+    return _spilledChunks << CHUNK_SHIFT;
+  }
+
+  long getTimeStamp(final int row) {
+    final long[] timeStamps = _timeStamps[row >>> CHUNK_SHIFT];
+    return timeStamps != null ? timeStamps[row & CHUNK_MASK] : getSegment(row).getTimeStamp(row & CHUNK_MASK);
+  }
+
+  LogLevel getLogLevel(final int row) {
+    final byte[] logLevels = _logLevels[row >>> CHUNK_SHIFT];
+    final byte ordinal = logLevels != null ? logLevels[row & CHUNK_MASK] : getSegment(row).getLogLevel(
+        row & CHUNK_MASK);
+    return ordinal < 0 ? null : LogLevel.values()[ordinal];
+  }
+
+  String getCategory(final int row) {
+    final int[] categories = _categories[row >>> CHUNK_SHIFT];
+    return _categoryDictionary.getValue(categories != null ? categories[row & CHUNK_MASK] : getSegment(row)
+        .getCategory(row & CHUNK_MASK));
+  }
+
+  String getThreadName(final int row) {
+    final int[] threadNames = _threadNames[row >>> CHUNK_SHIFT];
+    return _threadNameDictionary.getValue(threadNames != null ? threadNames[row & CHUNK_MASK] : getSegment(row)
+        .getThreadName(row & CHUNK_MASK));
+  }
+
+  LogEventSource getLogEventSource(final int row) {
+    final int[] logEventSources = _logEventSources[row >>> CHUNK_SHIFT];
+    return _logEventSourceDictionary.getValue(logEventSources != null ? logEventSources[row & CHUNK_MASK]
+        : getSegment(row).getLogEventSource(row & CHUNK_MASK));
+  }
+
+  String getMessage(final int row) {
+    final int[] messageLengths = _messageLengths[row >>> CHUNK_SHIFT];
+    if (messageLengths == null) {
+      return getSegment(row).getMessage(row & CHUNK_MASK);
+    }
+    final int length = messageLengths[row & CHUNK_MASK];
+    if (length < 0) {
+      return null;
+    }
+    final long position = _messagePositions[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    return new String(_messageChunks.get((int) (position >>> 32)), (int) position, length);
+  }
+
+  String getThrowableInformation(final int row) {
+    if (_timeStamps[row >>> CHUNK_SHIFT] == null) {
+      return getSegment(row).getThrowableInformation(row & CHUNK_MASK);
+    }
+    return _throwableInformation.get(Integer.valueOf(row));
+  }
+
+  Object getNestedDiagnosticContext(final int row) {
+    return _nestedDiagnosticContexts.get(Integer.valueOf(row));
+  }
+
+  synchronized Object getUserDefinedField(final int row, final String fieldName) {
+    final Map<String, Object> userDefinedFields = getUserDefinedFields(row, false);
+    return userDefinedFields == null ? null : userDefinedFields.get(fieldName);
+  }
+
+  synchronized String[] getUserDefinedFieldNames(final int row) {
+    final Map<String, Object> userDefinedFields = getUserDefinedFields(row, false);
+    return userDefinedFields == null ? new String[0] : userDefinedFields.keySet().toArray(new String[0]);
+  }
+
+  void setUserDefinedField(final ColumnarLogEvent logEvent, final String fieldName, final Object value) {
+    synchronized (this) {
+      if (value == null) {
+        final Map<String, Object> userDefinedFields = getUserDefinedFields(logEvent.getRow(), false);
+        if (userDefinedFields != null) {
+          userDefinedFields.remove(fieldName);
+          if (userDefinedFields.isEmpty()) {
+            _userDefinedFields.remove(Integer.valueOf(logEvent.getRow()));
+          }
+        }
+      } else {
+        getUserDefinedFields(logEvent.getRow(), true).put(fieldName, value);
+      }
+    }
+
+    // notify listener about the change
+    _logEventChangeListener.logEventChange(new LogEventChangeEvent(logEvent));
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given log event is a view on a row of this list.
+   * </p>
+   *
+   * @param logEvent
+   *          the log event
+   * @return <code>true</code> if the given log event is a view on a row of this list.
+   */
+  boolean isRowOfThisList(final LogEvent logEvent) {
+    return (logEvent instanceof ColumnarLogEvent) && ((ColumnarLogEvent) logEvent).getList() == this;
+  }
+
+  /**
+   * <p>
+   * Stores the given message in the message chunks.
+   * </p>
+   */
+  private void storeMessage(final int chunk, final int index, final String message) {
+    if (message == null) {
+      _messageLengths[chunk][index] = -1;
+      return;
+    }
+
+    final int length = message.length();
+    if (_messageChunks.isEmpty() || (_messageChunkFill + length > MESSAGE_CHUNK_SIZE)) {
+      // start a new chunk, very large messages get a chunk of their own
+      _messageChunks.add(new char[Math.max(MESSAGE_CHUNK_SIZE, length)]);
+      _messageChunkFill = 0;
+    }
+    final int messageChunk = _messageChunks.size() - 1;
+    if (messageChunk == _messageChunkLastRows.length) {
+      final int[] messageChunkLastRows = new int[_messageChunkLastRows.length * 2];
+      System.arraycopy(_messageChunkLastRows, 0, messageChunkLastRows, 0, _messageChunkLastRows.length);
+      _messageChunkLastRows = messageChunkLastRows;
+    }
+    _messageChunkLastRows[messageChunk] = (chunk << CHUNK_SHIFT) | index;
+    message.getChars(0, length, _messageChunks.get(messageChunk), _messageChunkFill);
+    _messagePositions[chunk][index] = (((long) messageChunk) << 32) | _messageChunkFill;
+    _messageChunkFill += length;
+    _messageLengths[chunk][index] = length;
+  }
+
+  /**
+   * <p>
+   * Returns the segment of the given (spilled) row.
+   * </p>
+   */
+  private LogEventSegment getSegment(final int row) {
+    return _segments[row >>> CHUNK_SHIFT];
+  }
+
+  /**
+   * <p>
+   * Spills the oldest complete chunks until at most {@link #_spillThreshold} rows are held on the heap. If a chunk can
+   * not be written, spilling is disabled and all rows stay on the heap.
+   * </p>
+   */
+  private void spillIfNecessary() {
+    while ((_segmentFiles != null) && (_spilledChunks < (_rowCount >>> CHUNK_SHIFT))
+        && (_rowCount - (_spilledChunks << CHUNK_SHIFT) > _spillThreshold)) {
+      try {
+        spillChunk(_spilledChunks);
+        _spilledChunks++;
+      } catch (final IOException e) {
+        _logger.warn("Could not spill log events to disk, spilling is disabled: " + e, e);
+        _segmentFiles = null;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the given (complete) chunk to the segment files and drops its heap columns.
+   * </p>
+   */
+  private void spillChunk(final int chunk) throws IOException {
+    final int firstRow = chunk << CHUNK_SHIFT;
+
+    // collect the strings of the chunk
+    final String[] messages = new String[ROWS_PER_CHUNK];
+    final String[] throwableInformation = new String[ROWS_PER_CHUNK];
+    for (int index = 0; index < ROWS_PER_CHUNK; index++) {
+      messages[index] = getMessage(firstRow + index);
+      throwableInformation[index] = _throwableInformation.get(Integer.valueOf(firstRow + index));
+    }
+
+    // write the segment
+    _segments[chunk] = _segmentFiles.append(ROWS_PER_CHUNK, _timeStamps[chunk], _logLevels[chunk],
+        _categories[chunk], _threadNames[chunk], _logEventSources[chunk], messages, throwableInformation);
+
+    // drop the heap columns
+    _timeStamps[chunk] = null;
+    _logLevels[chunk] = null;
+    _categories[chunk] = null;
+    _threadNames[chunk] = null;
+    _logEventSources[chunk] = null;
+    _messagePositions[chunk] = null;
+    _messageLengths[chunk] = null;
+    for (int index = 0; index < ROWS_PER_CHUNK; index++) {
+      _throwableInformation.remove(Integer.valueOf(firstRow + index));
+    }
+
+    // drop the message chunks that are only referenced by spilled rows
+    final int lastSpilledRow = firstRow + CHUNK_MASK;
+    for (int messageChunk = 0; messageChunk < _messageChunks.size() - 1; messageChunk++) {
+      if (_messageChunkLastRows[messageChunk] <= lastSpilledRow) {
+        _messageChunks.set(messageChunk, null);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Makes sure that the columns can hold the given number of rows.
+   * </p>
+   */
+  private void ensureRowCapacity(final int rowCount) {
+    final int chunks = (rowCount + CHUNK_MASK) >>> CHUNK_SHIFT;
+    if (chunks <= _timeStamps.length) {
+      return;
+    }
+
+    final int oldChunks = _timeStamps.length;
+    _timeStamps = copyOf(_timeStamps, new long[chunks][]);
+    _logLevels = copyOf(_logLevels, new byte[chunks][]);
+    _categories = copyOf(_categories, new int[chunks][]);
+    _threadNames = copyOf(_threadNames, new int[chunks][]);
+    _logEventSources = copyOf(_logEventSources, new int[chunks][]);
+    _messagePositions = copyOf(_messagePositions, new long[chunks][]);
+    _messageLengths = copyOf(_messageLengths, new int[chunks][]);
+    _segments = copyOf(_segments, new LogEventSegment[chunks]);
+
+    for (int chunk = oldChunks; chunk < chunks; chunk++) {
+      _timeStamps[chunk] = new long[ROWS_PER_CHUNK];
+      _logLevels[chunk] = new byte[ROWS_PER_CHUNK];
+      _categories[chunk] = new int[ROWS_PER_CHUNK];
+      _threadNames[chunk] = new int[ROWS_PER_CHUNK];
+      _logEventSources[chunk] = new int[ROWS_PER_CHUNK];
+      _messagePositions[chunk] = new long[ROWS_PER_CHUNK];
+      _messageLengths[chunk] = new int[ROWS_PER_CHUNK];
+    }
+  }
+
+  /**
+   * <p>
+   * Copies the chunk references from source to target and returns the target.
+   * </p>
+   */
+  private static <T> T[] copyOf(final T[] source, final T[] target) {
+    System.arraycopy(source, 0, target, 0, source.length);
+    return target;
+  }
+
+  /**
+   * <p>
+   * Returns the user defined fields of the given row.
+   * </p>
+   */
+  private Map<String, Object> getUserDefinedFields(final int row, final boolean create) {
+    Map<String, Object> userDefinedFields = _userDefinedFields.get(Integer.valueOf(row));
+    if ((userDefinedFields == null) && create) {
+      userDefinedFields = new Hashtable<String, Object>();
+      _userDefinedFields.put(Integer.valueOf(row), userDefinedFields);
+    }
+    return userDefinedFields;
+  }
+}
@@ -0,0 +1,1160 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * A compressed bitmap of non-negative <code>int</code> values (Roaring-style). The value range is split into blocks of
+ * 2<sup>16</sup> values. Each non-empty block is stored in a <i>container</i>: sparse blocks in a sorted
+ * <code>char</code> array, dense blocks in a plain bitmap of 1024 <code>long</code> words.
+ * </p>
+ * <p>
+ * Besides the usual set operations the bitmap supports {@link #select(int)} (the n-th set bit) and
+ * {@link #rank(int)} (the number of set bits below a value) in O(log n), using cached cumulative cardinalities of the
+ * containers. Adding values in ascending order is the fast path.
+ * </p>
+ * <p>
+ * A {@link #snapshot()} shares the containers with the bitmap it has been taken from; the containers are copied
+ * before they are modified (copy-on-write), so taking a snapshot is O(number of containers).
+ * </p>
+ * <p>
+ * This class is not thread-safe. A snapshot however is never modified, so it can be read concurrently.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class CompressedBitmap {
+
+  /** the maximum cardinality of an array container */
+  private static final int ARRAY_LIMIT    = 4096;
+
+  /** the number of words of a bitmap container */
+  private static final int BITMAP_WORDS   = 1024;
+
+  /** operation: and */
+  private static final int AND            = 0;
+
+  /** operation: or */
+  private static final int OR             = 1;
+
+  /** operation: and not */
+  private static final int AND_NOT        = 2;
+
+  /** the keys (upper 16 bits) of the containers */
+  private char[]           _keys;
+
+  /** the containers */
+  private Container[]      _containers;
+
+  /** the number of containers */
+  private int              _containerCount;
+
+  /** the cumulative cardinalities: the number of set bits in the containers [0..i] */
+  private int[]            _cumulativeCardinalities;
+
+  /** the number of valid cumulative cardinalities */
+  private int              _validCardinalities;
+
+  /** the containers [0.._sharedContainers) might be shared with a snapshot and must be copied before a modification */
+  private int              _sharedContainers;
+
+  /**
+   * <p>
+   * Creates a new, empty instance of type {@link CompressedBitmap}.
+   * </p>
+   */
+  public CompressedBitmap() {
+    this(4);
+  }
+
+  private CompressedBitmap(final int capacity) {
+    _keys = new char[Math.max(4, capacity)];
+    _containers = new Container[_keys.length];
+    _cumulativeCardinalities = new int[_keys.length];
+  }
+
+  /**
+   * <p>
+   * Sets the given value.
+   * </p>
+   *
+   * @param value
+   *          the value (must not be negative)
+   */
+  public void add(final int value) {
+    checkValue(value);
+
+    final char key = (char) (value >>> 16);
+    int index = indexOf(key);
+    if (index < 0) {
+      index = -index - 1;
+      insertContainer(index, key, new ArrayContainer());
+    }
+    ownContainer(index);
+    _containers[index] = _containers[index].add((char) value);
+    invalidate(index);
+  }
+
+  /**
+   * <p>
+   * Sets all values in the range <code>[from, to)</code>.
+   * </p>
+   *
+   * @param from
+   *          the first value (inclusive)
+   * @param to
+   *          the last value (exclusive)
+   */
+  public void addRange(final int from, final int to) {
+    checkValue(from);
+    if (to <= from) {
+      return;
+    }
+
+    for (int key = from >>> 16; key <= ((to - 1) >>> 16); key++) {
+      final int low = key == (from >>> 16) ? from & 0xFFFF : 0;
+      final int high = key == ((to - 1) >>> 16) ? ((to - 1) & 0xFFFF) + 1 : 0x10000;
+
+      int index = indexOf((char) key);
+      if (index < 0) {
+        index = -index - 1;
+        insertContainer(index, (char) key, new ArrayContainer());
+      }
+      ownContainer(index);
+      _containers[index] = _containers[index].addRange(low, high);
+      invalidate(index);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given value is set.
+   * </p>
+   *
+   * @param value
+   *          the value
+   * @return <code>true</code> if the given value is set.
+   */
+  public boolean contains(final int value) {
+    if (value < 0) {
+      return false;
+    }
+    final int index = indexOf((char) (value >>> 16));
+    return (index >= 0) && _containers[index].contains((char) value);
+  }
+
+  /**
+   * <p>
+   * Returns the number of set values.
+   * </p>
+   *
+   * @return the number of set values.
+   */
+  public int getCardinality() {
+    return _containerCount == 0 ? 0 : getCumulativeCardinality(_containerCount - 1);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if no value is set.
+   * </p>
+   *
+   * @return <code>true</code> if no value is set.
+   */
+  public boolean isEmpty() {
+    return _containerCount == 0;
+  }
+
+  /**
+   * <p>
+   * Returns the n-th (zero-based) set value.
+   * </p>
+   *
+   * @param n
+   *          the index of the set value
+   * @return the n-th set value
+   */
+  public int select(final int n) {
+    // getCardinality() validates all cumulative cardinalities
+    if ((n < 0) || (n >= getCardinality())) {
+      throw new IndexOutOfBoundsException("Index: " + n + ", Cardinality: " + getCardinality());
+    }
+
+    // binary search for the first container whose cumulative cardinality exceeds n
+    int low = 0;
+    int high = _containerCount - 1;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (_cumulativeCardinalities[mid] > n) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+
+    final int base = low == 0 ? 0 : _cumulativeCardinalities[low - 1];
+    return (_keys[low] << 16) | _containers[low].select(n - base);
+  }
+
+  /**
+   * <p>
+   * Returns the number of set values that are smaller than the given value. If the value is set, this is its index in
+   * the sequence of set values.
+   * </p>
+   *
+   * @param value
+   *          the value
+   * @return the number of set values that are smaller than the given value
+   */
+  public int rank(final int value) {
+    if (value <= 0) {
+      return 0;
+    }
+    final int index = indexOf((char) (value >>> 16));
+    final int containerIndex = index < 0 ? -index - 1 : index;
+    final int base = containerIndex == 0 ? 0 : getCumulativeCardinality(containerIndex - 1);
+    return index < 0 ? base : base + _containers[index].rank((char) value);
+  }
+
+  /**
+   * <p>
+   * Returns the first set value that is greater than or equal to the given value, or <code>-1</code> if there is no
+   * such value.
+   * </p>
+   *
+   * @param from
+   *          the value to start from
+   * @return the first set value that is greater than or equal to the given value or <code>-1</code>
+   */
+  public int nextSetBit(final int from) {
+    final int start = Math.max(0, from);
+    int index = indexOf((char) (start >>> 16));
+    if (index >= 0) {
+      final int next = _containers[index].nextSetBit(start & 0xFFFF);
+      if (next >= 0) {
+        return (_keys[index] << 16) | next;
+      }
+      index++;
+    } else {
+      index = -index - 1;
+    }
+    // containers are never empty
+    return index < _containerCount ? (_keys[index] << 16) | _containers[index].nextSetBit(0) : -1;
+  }
+
+  /**
+   * <p>
+   * Clears all values that are greater than or equal to the given value.
+   * </p>
+   *
+   * @param from
+   *          the first value to clear
+   */
+  public void truncate(final int from) {
+    if (from <= 0) {
+      clear();
+      return;
+    }
+
+    int index = indexOf((char) (from >>> 16));
+    if (index >= 0) {
+      ownContainer(index);
+      final Container container = _containers[index].truncate(from & 0xFFFF);
+      _containers[index] = container;
+      if (container.getCardinality() > 0) {
+        index++;
+      }
+    } else {
+      index = -index - 1;
+    }
+
+    for (int i = index; i < _containerCount; i++) {
+      _containers[i] = null;
+    }
+    _containerCount = Math.min(_containerCount, index);
+    _validCardinalities = Math.min(_validCardinalities, Math.max(0, index - 1));
+    _sharedContainers = Math.min(_sharedContainers, _containerCount);
+  }
+
+  /**
+   * <p>
+   * Clears all values that are smaller than the given value.
+   * </p>
+   *
+   * @param to
+   *          the first value to keep
+   */
+  public void removeBelow(final int to) {
+    if (to <= 0) {
+      return;
+    }
+
+    final int index = indexOf((char) (to >>> 16));
+    int first = index < 0 ? -index - 1 : index;
+    if ((index >= 0) && ((to & 0xFFFF) != 0)) {
+      final Container container = combine(_containers[index], new ArrayContainer().addRange(0, to & 0xFFFF), AND_NOT);
+      if (container.isEmpty()) {
+        first++;
+      } else {
+        _containers[index] = container;
+      }
+    }
+
+    // remove the leading containers
+    System.arraycopy(_keys, first, _keys, 0, _containerCount - first);
+    System.arraycopy(_containers, first, _containers, 0, _containerCount - first);
+    for (int i = _containerCount - first; i < _containerCount; i++) {
+      _containers[i] = null;
+    }
+    _containerCount -= first;
+    _validCardinalities = 0;
+    _sharedContainers = Math.max(0, _sharedContainers - first);
+  }
+
+  /**
+   * <p>
+   * Subtracts the given delta from all values. The delta must be a multiple of 2<sup>16</sup> and must not be greater
+   * than the smallest value, so only the keys of the containers are changed.
+   * </p>
+   *
+   * @param delta
+   *          the delta
+   */
+  public void shiftDown(final int delta) {
+    Assert.assertTrue((delta >= 0) && ((delta & 0xFFFF) == 0), "Parameter 'delta' must be a multiple of 65536");
+    Assert.assertTrue((_containerCount == 0) || (_keys[0] >= (delta >>> 16)), "Values must not become negative");
+
+    final char keyDelta = (char) (delta >>> 16);
+    for (int i = 0; i < _containerCount; i++) {
+      _keys[i] -= keyDelta;
+    }
+  }
+
+  /**
+   * <p>
+   * Clears all values.
+   * </p>
+   */
+  public void clear() {
+    for (int i = 0; i < _containerCount; i++) {
+      _containers[i] = null;
+    }
+    _containerCount = 0;
+    _validCardinalities = 0;
+    _sharedContainers = 0;
+  }
+
+  /**
+   * <p>
+   * Returns a new bitmap that contains the values that are set in this <b>and</b> in the other bitmap.
+   * </p>
+   *
+   * @param other
+   *          the other bitmap
+   * @return the intersection of both bitmaps
+   */
+  public CompressedBitmap and(final CompressedBitmap other) {
+    return combine(other, AND);
+  }
+
+  /**
+   * <p>
+   * Returns a new bitmap that contains the values that are set in this <b>or</b> in the other bitmap.
+   * </p>
+   *
+   * @param other
+   *          the other bitmap
+   * @return the union of both bitmaps
+   */
+  public CompressedBitmap or(final CompressedBitmap other) {
+    return combine(other, OR);
+  }
+
+  /**
+   * <p>
+   * Sets the values that are set in the other bitmap (in-place union). Containers of this bitmap are updated in place
+   * (after they have been copied if they are shared with a snapshot), so accumulating many bitmaps into one does not
+   * copy the accumulated values for every bitmap. Appending a bitmap whose values are all greater than the values of
+   * this bitmap only copies the containers of the other bitmap.
+   * </p>
+   *
+   * @param other
+   *          the other bitmap (not modified)
+   */
+  public void orInPlace(final CompressedBitmap other) {
+    Assert.notNull(other);
+
+    if ((other == this) || (other._containerCount == 0)) {
+      return;
+    }
+
+    // fast path: append
+    if ((_containerCount == 0) || (_keys[_containerCount - 1] < other._keys[0])) {
+      for (int j = 0; j < other._containerCount; j++) {
+        appendContainer(other._keys[j], other._containers[j].copy());
+      }
+      return;
+    }
+
+    // merge the keys
+    final int capacity = _containerCount + other._containerCount;
+    final char[] keys = new char[Math.max(4, capacity)];
+    final Container[] containers = new Container[keys.length];
+    int sharedContainers = 0;
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while ((i < _containerCount) || (j < other._containerCount)) {
+      final int key = i < _containerCount ? _keys[i] : Integer.MAX_VALUE;
+      final int otherKey = j < other._containerCount ? other._keys[j] : Integer.MAX_VALUE;
+
+      if (key == otherKey) {
+        final Container container = i < _sharedContainers ? _containers[i].copy() : _containers[i];
+        keys[count] = (char) key;
+        containers[count++] = container.or(other._containers[j]);
+        i++;
+        j++;
+      } else if (key < otherKey) {
+        keys[count] = (char) key;
+        containers[count++] = _containers[i];
+        if (i < _sharedContainers) {
+          sharedContainers = count;
+        }
+        i++;
+      } else {
+        keys[count] = (char) otherKey;
+        containers[count++] = other._containers[j].copy();
+        j++;
+      }
+    }
+
+    if (count == _containerCount) {
+      // no new keys
+      System.arraycopy(containers, 0, _containers, 0, count);
+    } else {
+      _keys = keys;
+      _containers = containers;
+      _cumulativeCardinalities = new int[keys.length];
+    }
+    _containerCount = count;
+    _sharedContainers = sharedContainers;
+    _validCardinalities = 0;
+  }
+
+  /**
+   * <p>
+   * Returns a new bitmap that contains the values that are set in this bitmap but <b>not</b> in the other bitmap.
+   * </p>
+   *
+   * @param other
+   *          the other bitmap
+   * @return the difference of both bitmaps
+   */
+  public CompressedBitmap andNot(final CompressedBitmap other) {
+    return combine(other, AND_NOT);
+  }
+
+  /**
+   * <p>
+   * Returns a copy of this bitmap.
+   * </p>
+   *
+   * @return a copy of this bitmap.
+   */
+  public CompressedBitmap copy() {
+    final CompressedBitmap result = new CompressedBitmap(_containerCount);
+    for (int i = 0; i < _containerCount; i++) {
+      result.appendContainer(_keys[i], _containers[i].copy());
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns a new bitmap that contains the values of this bitmap in the range <code>[from, to)</code>. Only the
+   * containers that overlap the range are visited, so restricting a large bitmap to a small range is cheap.
+   * </p>
+   *
+   * @param from
+   *          the first value (inclusive)
+   * @param to
+   *          the last value (exclusive)
+   * @return the values of this bitmap in the given range
+   */
+  public CompressedBitmap range(final int from, final int to) {
+    final CompressedBitmap result = new CompressedBitmap();
+    final int start = Math.max(0, from);
+    if (to <= start) {
+      return result;
+    }
+
+    int index = indexOf((char) (start >>> 16));
+    if (index < 0) {
+      index = -index - 1;
+    }
+    for (; (index < _containerCount) && (_keys[index] <= ((to - 1) >>> 16)); index++) {
+      final int key = _keys[index];
+      final int low = key == (start >>> 16) ? start & 0xFFFF : 0;
+      final int high = key == ((to - 1) >>> 16) ? ((to - 1) & 0xFFFF) + 1 : 0x10000;
+      final Container container = (low == 0) && (high == 0x10000) ? _containers[index].copy() : combine(
+          _containers[index], new ArrayContainer().addRange(low, high), AND);
+      if (!container.isEmpty()) {
+        result.appendContainer((char) key, container);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns an immutable snapshot of this bitmap. The snapshot shares the containers with this bitmap, this bitmap
+   * copies a shared container before it modifies it. The cumulative cardinalities of the snapshot are computed in
+   * advance, so reading the snapshot never modifies it.
+   * </p>
+   *
+   * @return an immutable snapshot of this bitmap.
+   */
+  public CompressedBitmap snapshot() {
+    // validate all cumulative cardinalities
+    getCardinality();
+
+    final CompressedBitmap result = new CompressedBitmap(_containerCount);
+    System.arraycopy(_keys, 0, result._keys, 0, _containerCount);
+    System.arraycopy(_containers, 0, result._containers, 0, _containerCount);
+    System.arraycopy(_cumulativeCardinalities, 0, result._cumulativeCardinalities, 0, _containerCount);
+    result._containerCount = _containerCount;
+    result._validCardinalities = _containerCount;
+    result._sharedContainers = _containerCount;
+    _sharedContainers = _containerCount;
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the (estimated) number of bytes used by this bitmap.
+   * </p>
+   *
+   * @return the (estimated) number of bytes used by this bitmap.
+   */
+  public long getSizeInBytes() {
+    long size = 32 + _keys.length * 2L + _containers.length * 4L + _cumulativeCardinalities.length * 4L;
+    for (int i = 0; i < _containerCount; i++) {
+      size += _containers[i].getSizeInBytes();
+    }
+    return size;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof CompressedBitmap)) {
+      return false;
+    }
+    final CompressedBitmap other = (CompressedBitmap) obj;
+    if ((_containerCount != other._containerCount) || (getCardinality() != other.getCardinality())) {
+      return false;
+    }
+    for (int i = 0; i < _containerCount; i++) {
+      if ((_keys[i] != other._keys[i]) || (_containers[i].getCardinality() != other._containers[i].getCardinality())
+          || !combine(_containers[i], other._containers[i], AND_NOT).isEmpty()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = getCardinality();
+    for (int i = 0; i < _containerCount; i++) {
+      result = 31 * result + _keys[i];
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "CompressedBitmap [cardinality=" + getCardinality() + ", containers=" + _containerCount + "]";
+  }
+
+  /**
+   * <p>
+   * Combines this bitmap with the other bitmap.
+   * </p>
+   */
+  private CompressedBitmap combine(final CompressedBitmap other, final int operation) {
+    final CompressedBitmap result = new CompressedBitmap(_containerCount + other._containerCount);
+
+    int i = 0;
+    int j = 0;
+    while ((i < _containerCount) || (j < other._containerCount)) {
+      final int key = i < _containerCount ? _keys[i] : Integer.MAX_VALUE;
+      final int otherKey = j < other._containerCount ? other._keys[j] : Integer.MAX_VALUE;
+
+      if (key == otherKey) {
+        final Container container = combine(_containers[i], other._containers[j], operation);
+        if (!container.isEmpty()) {
+          result.appendContainer((char) key, container);
+        }
+        i++;
+        j++;
+      } else if (key < otherKey) {
+        if (operation != AND) {
+          result.appendContainer((char) key, _containers[i].copy());
+        }
+        i++;
+      } else {
+        if (operation == OR) {
+          result.appendContainer((char) otherKey, other._containers[j].copy());
+        }
+        j++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Combines the two containers. The containers are not modified.
+   * </p>
+   */
+  private static Container combine(final Container a, final Container b, final int operation) {
+
+    // merge two sorted arrays
+    if ((a instanceof ArrayContainer) && (b instanceof ArrayContainer)) {
+      final ArrayContainer arrayA = (ArrayContainer) a;
+      final ArrayContainer arrayB = (ArrayContainer) b;
+      final char[] values = new char[operation == OR ? arrayA._cardinality + arrayB._cardinality
+          : arrayA._cardinality];
+      int count = 0;
+      int i = 0;
+      int j = 0;
+      while ((i < arrayA._cardinality) && (j < arrayB._cardinality)) {
+        final char valueA = arrayA._values[i];
+        final char valueB = arrayB._values[j];
+        if (valueA == valueB) {
+          if (operation != AND_NOT) {
+            values[count++] = valueA;
+          }
+          i++;
+          j++;
+        } else if (valueA < valueB) {
+          if (operation != AND) {
+            values[count++] = valueA;
+          }
+          i++;
+        } else {
+          if (operation == OR) {
+            values[count++] = valueB;
+          }
+          j++;
+        }
+      }
+      if (operation != AND) {
+        while (i < arrayA._cardinality) {
+          values[count++] = arrayA._values[i++];
+        }
+      }
+      if (operation == OR) {
+        while (j < arrayB._cardinality) {
+          values[count++] = arrayB._values[j++];
+        }
+      }
+      return count > ARRAY_LIMIT ? new ArrayContainer(values, count).toBitmapContainer() : new ArrayContainer(
+          values, count);
+    }
+
+    // combine the bitmap words
+    final long[] wordsA = a.toBitmapContainer()._words;
+    final long[] wordsB = b.toBitmapContainer()._words;
+    final long[] words = new long[BITMAP_WORDS];
+    for (int i = 0; i < BITMAP_WORDS; i++) {
+      switch (operation) {
+      case AND:
+        words[i] = wordsA[i] & wordsB[i];
+        break;
+      case OR:
+        words[i] = wordsA[i] | wordsB[i];
+        break;
+      default:
+        words[i] = wordsA[i] & ~wordsB[i];
+        break;
+      }
+    }
+    return new BitmapContainer(words).optimize();
+  }
+
+  /**
+   * <p>
+   * Returns the index of the container with the given key, or <code>(-(insertion point) - 1)</code>.
+   * </p>
+   */
+  private int indexOf(final char key) {
+    // fast path: the last container
+    if (_containerCount == 0) {
+      return -1;
+    }
+    final char lastKey = _keys[_containerCount - 1];
+    if (lastKey == key) {
+      return _containerCount - 1;
+    }
+    if (lastKey < key) {
+      return -_containerCount - 1;
+    }
+
+    int low = 0;
+    int high = _containerCount - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final char midKey = _keys[mid];
+      if (midKey < key) {
+        low = mid + 1;
+      } else if (midKey > key) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private void insertContainer(final int index, final char key, final Container container) {
+    if (_containerCount == _keys.length) {
+      final int capacity = _keys.length * 2;
+      final char[] keys = new char[capacity];
+      final Container[] containers = new Container[capacity];
+      final int[] cumulativeCardinalities = new int[capacity];
+      System.arraycopy(_keys, 0, keys, 0, _containerCount);
+      System.arraycopy(_containers, 0, containers, 0, _containerCount);
+      System.arraycopy(_cumulativeCardinalities, 0, cumulativeCardinalities, 0, _containerCount);
+      _keys = keys;
+      _containers = containers;
+      _cumulativeCardinalities = cumulativeCardinalities;
+    }
+    System.arraycopy(_keys, index, _keys, index + 1, _containerCount - index);
+    System.arraycopy(_containers, index, _containers, index + 1, _containerCount - index);
+    _keys[index] = key;
+    _containers[index] = container;
+    _containerCount++;
+    if (index < _sharedContainers) {
+      _sharedContainers++;
+    }
+    invalidate(index);
+  }
+
+  private void appendContainer(final char key, final Container container) {
+    insertContainer(_containerCount, key, container);
+  }
+
+  /**
+   * <p>
+   * Copies the container at the given index if it might be shared with a snapshot.
+   * </p>
+   */
+  private void ownContainer(final int index) {
+    if (index < _sharedContainers) {
+      _containers[index] = _containers[index].copy();
+      if (index == _sharedContainers - 1) {
+        _sharedContainers--;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Invalidates the cumulative cardinalities starting with the given container.
+   * </p>
+   */
+  private void invalidate(final int index) {
+    if (_validCardinalities > index) {
+      _validCardinalities = index;
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the number of set values in the containers [0..index].
+   * </p>
+   */
+  private int getCumulativeCardinality(final int index) {
+    while (_validCardinalities <= index) {
+      final int i = _validCardinalities;
+      _cumulativeCardinalities[i] = (i == 0 ? 0 : _cumulativeCardinalities[i - 1]) + _containers[i].getCardinality();
+      _validCardinalities++;
+    }
+    return _cumulativeCardinalities[index];
+  }
+
+  private static void checkValue(final int value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Value must not be negative: " + value);
+    }
+  }
+
+  /**
+   * <p>
+   * A container for the values of a block of 2<sup>16</sup> values.
+   * </p>
+   */
+  private static abstract class Container {
+
+    /** adds the value, returns the (possibly converted) container */
+    abstract Container add(char value);
+
+    /** adds the values [from, to), returns the (possibly converted) container */
+    abstract Container addRange(int from, int to);
+
+    abstract boolean contains(char value);
+
+    abstract int getCardinality();
+
+    /** returns the n-th value */
+    abstract char select(int n);
+
+    /** returns the number of values smaller than the given value */
+    abstract int rank(char value);
+
+    /** returns the first value greater than or equal to from or -1 */
+    abstract int nextSetBit(int from);
+
+    /** removes all values greater than or equal to from, returns the (possibly converted) container */
+    abstract Container truncate(int from);
+
+    /** adds the values of the other container (which is not modified), returns the (possibly converted) container */
+    abstract Container or(Container other);
+
+    abstract BitmapContainer toBitmapContainer();
+
+    abstract Container copy();
+
+    abstract int getSizeInBytes();
+
+    boolean isEmpty() {
+      return getCardinality() == 0;
+    }
+  }
+
+  /**
+   * <p>
+   * A container that stores the values in a sorted array.
+   * </p>
+   */
+  private static class ArrayContainer extends Container {
+
+    private char[] _values;
+
+    private int    _cardinality;
+
+    ArrayContainer() {
+      this(new char[4], 0);
+    }
+
+    ArrayContainer(final char[] values, final int cardinality) {
+      _values = values;
+      _cardinality = cardinality;
+    }
+
+    @Override
+    Container add(final char value) {
+      // fast path: append
+      int index;
+      if ((_cardinality == 0) || (_values[_cardinality - 1] < value)) {
+        index = _cardinality;
+      } else {
+        index = indexOf(value);
+        if (index >= 0) {
+          return this;
+        }
+        index = -index - 1;
+      }
+
+      if (_cardinality == ARRAY_LIMIT) {
+        return toBitmapContainer().add(value);
+      }
+      if (_cardinality == _values.length) {
+        final char[] values = new char[Math.min(ARRAY_LIMIT, _values.length * 2)];
+        System.arraycopy(_values, 0, values, 0, _cardinality);
+        _values = values;
+      }
+      System.arraycopy(_values, index, _values, index + 1, _cardinality - index);
+      _values[index] = value;
+      _cardinality++;
+      return this;
+    }
+
+    @Override
+    Container addRange(final int from, final int to) {
+      return toBitmapContainer().addRange(from, to).optimize();
+    }
+
+    @Override
+    boolean contains(final char value) {
+      return indexOf(value) >= 0;
+    }
+
+    @Override
+    int getCardinality() {
+      return _cardinality;
+    }
+
+    @Override
+    char select(final int n) {
+      return _values[n];
+    }
+
+    @Override
+    int rank(final char value) {
+      final int index = indexOf(value);
+      return index >= 0 ? index : -index - 1;
+    }
+
+    @Override
+    int nextSetBit(final int from) {
+      if (from > 0xFFFF) {
+        return -1;
+      }
+      int index = indexOf((char) from);
+      if (index < 0) {
+        index = -index - 1;
+      }
+      return index < _cardinality ? _values[index] : -1;
+    }
+
+    @Override
+    Container truncate(final int from) {
+      _cardinality = rank((char) from);
+      return this;
+    }
+
+    @Override
+    Container or(final Container other) {
+      if (other instanceof BitmapContainer) {
+        Container result = other.copy();
+        for (int i = 0; i < _cardinality; i++) {
+          result = result.add(_values[i]);
+        }
+        return result;
+      }
+      return combine(this, other, OR);
+    }
+
+    @Override
+    BitmapContainer toBitmapContainer() {
+      final long[] words = new long[BITMAP_WORDS];
+      for (int i = 0; i < _cardinality; i++) {
+        words[_values[i] >>> 6] |= 1L << _values[i];
+      }
+      return new BitmapContainer(words, _cardinality);
+    }
+
+    @Override
+    Container copy() {
+      final char[] values = new char[Math.max(4, _cardinality)];
+      System.arraycopy(_values, 0, values, 0, _cardinality);
+      return new ArrayContainer(values, _cardinality);
+    }
+
+    @Override
+    int getSizeInBytes() {
+      return 24 + _values.length * 2;
+    }
+
+    private int indexOf(final char value) {
+      int low = 0;
+      int high = _cardinality - 1;
+      while (low <= high) {
+        final int mid = (low + high) >>> 1;
+        final char midValue = _values[mid];
+        if (midValue < value) {
+          low = mid + 1;
+        } else if (midValue > value) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -(low + 1);
+    }
+  }
+
+  /**
+   * <p>
+   * A container that stores the values in a bitmap.
+   * </p>
+   */
+  private static class BitmapContainer extends Container {
+
+    private final long[] _words;
+
+    private int          _cardinality;
+
+    BitmapContainer(final long[] words) {
+      this(words, cardinality(words));
+    }
+
+    BitmapContainer(final long[] words, final int cardinality) {
+      _words = words;
+      _cardinality = cardinality;
+    }
+
+    @Override
+    Container add(final char value) {
+      final long word = _words[value >>> 6];
+      final long bit = 1L << value;
+      if ((word & bit) == 0) {
+        _words[value >>> 6] = word | bit;
+        _cardinality++;
+      }
+      return this;
+    }
+
+    @Override
+    BitmapContainer addRange(final int from, final int to) {
+      final int firstWord = from >>> 6;
+      final int lastWord = (to - 1) >>> 6;
+      for (int i = firstWord; i <= lastWord; i++) {
+        long mask = -1L;
+        if (i == firstWord) {
+          mask &= -1L << from;
+        }
+        if (i == lastWord) {
+          mask &= -1L >>> (63 - ((to - 1) & 63));
+        }
+        _words[i] |= mask;
+      }
+      _cardinality = cardinality(_words);
+      return this;
+    }
+
+    @Override
+    boolean contains(final char value) {
+      return (_words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    int getCardinality() {
+      return _cardinality;
+    }
+
+    @Override
+    char select(final int n) {
+      int remaining = n;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        final int bitCount = Long.bitCount(_words[i]);
+        if (remaining < bitCount) {
+          long word = _words[i];
+          for (int j = 0; j < remaining; j++) {
+            word &= word - 1;
+          }
+          return (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+        }
+        remaining -= bitCount;
+      }
+      throw new IndexOutOfBoundsException("Index: " + n + ", Cardinality: " + _cardinality);
+    }
+
+    @Override
+    int rank(final char value) {
+      final int wordIndex = value >>> 6;
+      int result = 0;
+      for (int i = 0; i < wordIndex; i++) {
+        result += Long.bitCount(_words[i]);
+      }
+      return result + Long.bitCount(_words[wordIndex] & ((1L << value) - 1));
+    }
+
+    @Override
+    int nextSetBit(final int from) {
+      if (from > 0xFFFF) {
+        return -1;
+      }
+      int wordIndex = from >>> 6;
+      long word = _words[wordIndex] & (-1L << from);
+      while (true) {
+        if (word != 0) {
+          return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+        }
+        if (++wordIndex == BITMAP_WORDS) {
+          return -1;
+        }
+        word = _words[wordIndex];
+      }
+    }
+
+    @Override
+    Container truncate(final int from) {
+      final int wordIndex = from >>> 6;
+      _words[wordIndex] &= (1L << from) - 1;
+      for (int i = wordIndex + 1; i < BITMAP_WORDS; i++) {
+        _words[i] = 0;
+      }
+      _cardinality = cardinality(_words);
+      return optimize();
+    }
+
+    @Override
+    Container or(final Container other) {
+      if (other instanceof ArrayContainer) {
+        final ArrayContainer array = (ArrayContainer) other;
+        for (int i = 0; i < array._cardinality; i++) {
+          add(array._values[i]);
+        }
+        return this;
+      }
+      final long[] words = ((BitmapContainer) other)._words;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        _words[i] |= words[i];
+      }
+      _cardinality = cardinality(_words);
+      return this;
+    }
+
+    @Override
+    BitmapContainer toBitmapContainer() {
+      return this;
+    }
+
+    @Override
+    Container copy() {
+      final long[] words = new long[BITMAP_WORDS];
+      System.arraycopy(_words, 0, words, 0, BITMAP_WORDS);
+      return new BitmapContainer(words, _cardinality);
+    }
+
+    @Override
+    int getSizeInBytes() {
+      return 24 + BITMAP_WORDS * 8;
+    }
+
+    /**
+     * <p>
+     * Returns an array container if this container is sparse enough.
+     * </p>
+     */
+    Container optimize() {
+      if (_cardinality > ARRAY_LIMIT) {
+        return this;
+      }
+      final char[] values = new char[Math.max(4, _cardinality)];
+      int count = 0;
+      for (int i = 0; i < BITMAP_WORDS; i++) {
+        long word = _words[i];
+        while (word != 0) {
+          values[count++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+      return new ArrayContainer(values, count);
+    }
+
+    private static int cardinality(final long[] words) {
+      int result = 0;
+      for (final long word : words) {
+        result += Long.bitCount(word);
+      }
+      return result;
+    }
+  }
+}
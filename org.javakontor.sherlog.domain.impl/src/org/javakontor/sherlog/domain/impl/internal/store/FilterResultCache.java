@@ -0,0 +1,360 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.javakontor.sherlog.domain.filter.LogEventFilter;
+import org.javakontor.sherlog.domain.filter.LogEventFilterMemento;
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * Caches the results of {@link LogEventFilter LogEventFilters} as {@link CompressedBitmap CompressedBitmaps} of the
+ * store positions of the matching log events.
+ * </p>
+ * <p>
+ * Each registered filter has a <i>current</i> result that belongs to its current configuration. If the configuration
+ * of a filter changes, the previous result is moved to a LRU list of <i>recent</i> results, keyed by the filter and
+ * its {@link LogEventFilterMemento} (filters without memento are not kept). Restoring a previous configuration reuses
+ * the recent result. Recent results are evicted as soon as the cache exceeds its maximum size.
+ * </p>
+ * <p>
+ * Each result is only valid for the store positions below {@link Result#getValidTo()}: if log events are merged into
+ * the store, all results are truncated at the first changed position and have to be completed before they are used.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class FilterResultCache {
+
+  /** the current results */
+  private final Map<LogEventFilter, Result>         _currentResults;
+
+  /** the recent results in LRU order */
+  private final LinkedHashMap<ResultKey, Result>    _recentResults;
+
+  /** the maximum size of the cache in bytes */
+  private long                                      _maxSizeInBytes;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link FilterResultCache}.
+   * </p>
+   *
+   * @param maxSizeInBytes
+   *          the maximum size of the cache in bytes
+   */
+  public FilterResultCache(final long maxSizeInBytes) {
+    _currentResults = new HashMap<LogEventFilter, Result>();
+    _recentResults = new LinkedHashMap<ResultKey, Result>(16, 0.75f, true);
+    _maxSizeInBytes = maxSizeInBytes;
+  }
+
+  /**
+   * <p>
+   * Sets the maximum size of the cache in bytes. The current results are never evicted, so the cache might exceed the
+   * maximum size.
+   * </p>
+   *
+   * @param maxSizeInBytes
+   *          the maximum size of the cache in bytes
+   */
+  public void setMaxSizeInBytes(final long maxSizeInBytes) {
+    _maxSizeInBytes = maxSizeInBytes;
+    evict();
+  }
+
+  /**
+   * <p>
+   * Returns the current result of the given filter or <code>null</code>.
+   * </p>
+   *
+   * @param filter
+   *          the filter
+   * @return the current result of the given filter or <code>null</code>.
+   */
+  public Result getCurrentResult(final LogEventFilter filter) {
+    return _currentResults.get(filter);
+  }
+
+  /**
+   * <p>
+   * Sets the current result of the given filter. The previous result is kept as a recent result if it has a memento.
+   * </p>
+   *
+   * @param filter
+   *          the filter
+   * @param result
+   *          the new current result
+   */
+  public void setCurrentResult(final LogEventFilter filter, final Result result) {
+    Assert.notNull(filter);
+    Assert.notNull(result);
+
+    final Result previousResult = _currentResults.put(filter, result);
+    if ((previousResult != null) && (previousResult != result)) {
+      keepRecentResult(filter, previousResult);
+    }
+    evict();
+  }
+
+  /**
+   * <p>
+   * Removes the current result of the given filter, e.g. if the filter has been removed. The result is kept as a
+   * recent result if it has a memento.
+   * </p>
+   *
+   * @param filter
+   *          the filter
+   */
+  public void removeCurrentResult(final LogEventFilter filter) {
+    final Result result = _currentResults.remove(filter);
+    if (result != null) {
+      keepRecentResult(filter, result);
+      evict();
+    }
+  }
+
+  /**
+   * <p>
+   * Removes and returns the recent result of the given filter for the given memento or returns <code>null</code>.
+   * </p>
+   *
+   * @param filter
+   *          the filter
+   * @param memento
+   *          the memento
+   * @return the recent result or <code>null</code>
+   */
+  public Result removeRecentResult(final LogEventFilter filter, final LogEventFilterMemento memento) {
+    return memento == null ? null : _recentResults.remove(new ResultKey(filter, memento));
+  }
+
+  /**
+   * <p>
+   * Truncates all results at the given store position.
+   * </p>
+   *
+   * @param position
+   *          the first store position that has changed
+   */
+  public void truncate(final int position) {
+    for (final Result result : _currentResults.values()) {
+      result.truncate(position);
+    }
+    for (final Result result : _recentResults.values()) {
+      result.truncate(position);
+    }
+  }
+
+  /**
+   * <p>
+   * Removes all positions below the given position from all results, e.g. if the oldest log events have been evicted.
+   * </p>
+   *
+   * @param position
+   *          the first remaining store position
+   */
+  public void removeBelow(final int position) {
+    for (final Result result : _currentResults.values()) {
+      result.removeBelow(position);
+    }
+    for (final Result result : _recentResults.values()) {
+      result.removeBelow(position);
+    }
+  }
+
+  /**
+   * <p>
+   * Subtracts the given delta from all positions of all results.
+   * </p>
+   *
+   * @see CompressedBitmap#shiftDown(int)
+   */
+  public void shiftDown(final int delta) {
+    for (final Result result : _currentResults.values()) {
+      result.shiftDown(delta);
+    }
+    for (final Result result : _recentResults.values()) {
+      result.shiftDown(delta);
+    }
+  }
+
+  /**
+   * <p>
+   * Removes all results.
+   * </p>
+   */
+  public void clear() {
+    _currentResults.clear();
+    _recentResults.clear();
+  }
+
+  /**
+   * <p>
+   * Returns the number of recent results.
+   * </p>
+   *
+   * @return the number of recent results.
+   */
+  public int getRecentResultCount() {
+    return _recentResults.size();
+  }
+
+  /**
+   * <p>
+   * Returns the (estimated) size of the cache in bytes.
+   * </p>
+   *
+   * @return the (estimated) size of the cache in bytes.
+   */
+  public long getSizeInBytes() {
+    return getSizeInBytes(_currentResults.values()) + getSizeInBytes(_recentResults.values());
+  }
+
+  private void keepRecentResult(final LogEventFilter filter, final Result result) {
+    if (result.getMemento() != null) {
+      _recentResults.put(new ResultKey(filter, result.getMemento()), result);
+    }
+  }
+
+  /**
+   * <p>
+   * Evicts the least recently used recent results until the cache fits into its maximum size.
+   * </p>
+   */
+  private void evict() {
+    long size = getSizeInBytes();
+    final Iterator<Result> iterator = _recentResults.values().iterator();
+    while ((size > _maxSizeInBytes) && iterator.hasNext()) {
+      size -= iterator.next().getPositions().getSizeInBytes();
+      iterator.remove();
+    }
+  }
+
+  private static long getSizeInBytes(final Collection<Result> results) {
+    long size = 0;
+    for (final Result result : results) {
+      size += result.getPositions().getSizeInBytes();
+    }
+    return size;
+  }
+
+  /**
+   * <p>
+   * The result of a filter for a specific configuration.
+   * </p>
+   */
+  public static class Result {
+
+    /** the memento of the filter configuration, might be <code>null</code> */
+    private final LogEventFilterMemento _memento;
+
+    /** the positions of the matching log events */
+    private final CompressedBitmap      _positions;
+
+    /** the positions below this position are valid */
+    private int                         _validTo;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link Result}.
+     * </p>
+     *
+     * @param memento
+     *          the memento of the filter configuration, might be <code>null</code>
+     * @param positions
+     *          the positions of the matching log events
+     * @param validTo
+     *          the positions below this position are valid
+     */
+    public Result(final LogEventFilterMemento memento, final CompressedBitmap positions, final int validTo) {
+      Assert.notNull(positions);
+
+      _memento = memento;
+      _positions = positions;
+      _validTo = validTo;
+    }
+
+    public LogEventFilterMemento getMemento() {
+      return _memento;
+    }
+
+    public CompressedBitmap getPositions() {
+      return _positions;
+    }
+
+    public int getValidTo() {
+      return _validTo;
+    }
+
+    /**
+     * <p>
+     * Appends the positions of the matching log events in <code>[getValidTo(), validTo)</code>.
+     * </p>
+     *
+     * @param positions
+     *          the positions of the matching log events in <code>[getValidTo(), validTo)</code>
+     * @param validTo
+     *          the new valid-to position
+     */
+    public void complete(final CompressedBitmap positions, final int validTo) {
+      _positions.orInPlace(positions);
+      _validTo = validTo;
+    }
+
+    void truncate(final int position) {
+      if (position < _validTo) {
+        _positions.truncate(position);
+        _validTo = position;
+      }
+    }
+
+    void removeBelow(final int position) {
+      _positions.removeBelow(position);
+      _validTo = Math.max(_validTo, position);
+    }
+
+    void shiftDown(final int delta) {
+      _positions.shiftDown(delta);
+      _validTo -= delta;
+    }
+  }
+
+  /**
+   * <p>
+   * The key of a recent result: the filter and its memento.
+   * </p>
+   */
+  private static class ResultKey {
+
+    private final LogEventFilter        _filter;
+
+    private final LogEventFilterMemento _memento;
+
+    ResultKey(final LogEventFilter filter, final LogEventFilterMemento memento) {
+      _filter = filter;
+      _memento = memento;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof ResultKey)) {
+        return false;
+      }
+      final ResultKey other = (ResultKey) obj;
+      return (_filter == other._filter) && _memento.equals(other._memento);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(_filter) + _memento.hashCode();
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * An unmodifiable view on the filtered {@link LogEvent LogEvents} of a store. The view does not copy the log events,
+ * it keeps a {@link CompressedBitmap} of the positions of the matching log events in the underlying list instead. The
+ * n-th element of the view is the log event at the position of the n-th set bit.
+ * </p>
+ * <p>
+ * If the oldest log events of the underlying list are evicted, the positions are not shifted: the position of the
+ * first log event of the underlying list is kept as <i>first position</i> instead.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class FilteredLogEventList extends AbstractList<LogEvent> {
+
+  /** the underlying list */
+  private final List<LogEvent>      _logEvents;
+
+  /** the positions of the filtered log events */
+  private volatile CompressedBitmap _positions;
+
+  /** the position of the first log event of the underlying list */
+  private volatile int              _firstPosition;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link FilteredLogEventList}.
+   * </p>
+   *
+   * @param logEvents
+   *          the underlying list
+   */
+  public FilteredLogEventList(final List<LogEvent> logEvents) {
+    this(logEvents, new CompressedBitmap(), 0);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link FilteredLogEventList}.
+   * </p>
+   *
+   * @param logEvents
+   *          the underlying list
+   * @param positions
+   *          the positions of the filtered log events
+   * @param firstPosition
+   *          the position of the first log event of the underlying list
+   */
+  public FilteredLogEventList(final List<LogEvent> logEvents, final CompressedBitmap positions,
+      final int firstPosition) {
+    Assert.notNull(logEvents);
+    Assert.notNull(positions);
+
+    _logEvents = logEvents;
+    _positions = positions;
+    _firstPosition = firstPosition;
+  }
+
+  /**
+   * <p>
+   * Returns the positions of the filtered log events. The bitmap must not be modified by the caller.
+   * </p>
+   *
+   * @return the positions of the filtered log events.
+   */
+  public CompressedBitmap getPositions() {
+    return _positions;
+  }
+
+  /**
+   * <p>
+   * Replaces the positions of the filtered log events.
+   * </p>
+   *
+   * @param positions
+   *          the positions of the filtered log events
+   */
+  public void setPositions(final CompressedBitmap positions) {
+    setPositions(positions, _firstPosition);
+  }
+
+  /**
+   * <p>
+   * Replaces the positions of the filtered log events and the position of the first log event of the underlying list.
+   * </p>
+   *
+   * @param positions
+   *          the positions of the filtered log events
+   * @param firstPosition
+   *          the position of the first log event of the underlying list
+   */
+  public void setPositions(final CompressedBitmap positions, final int firstPosition) {
+    Assert.notNull(positions);
+
+    _firstPosition = firstPosition;
+    _positions = positions;
+    modCount++;
+  }
+
+  /**
+   * @see java.util.AbstractList#get(int)
+   */
+  @Override
+  public LogEvent get(final int index) {
+    return _logEvents.get(_positions.select(index) - _firstPosition);
+  }
+
+  /**
+   * @see java.util.AbstractCollection#size()
+   */
+  @Override
+  public int size() {
+    return _positions.getCardinality();
+  }
+
+  /**
+   * <p>
+   * Iterates the set bits directly instead of selecting each element.
+   * </p>
+   *
+   * @see java.util.AbstractList#iterator()
+   */
+  @Override
+  public Iterator<LogEvent> iterator() {
+    final CompressedBitmap positions = _positions;
+    final int firstPosition = _firstPosition;
+
+    return new Iterator<LogEvent>() {
+
+      private int _next = positions.nextSetBit(0);
+
+      public boolean hasNext() {
+        return _next >= 0;
+      }
+
+      public LogEvent next() {
+        if (_next < 0) {
+          throw new NoSuchElementException();
+        }
+        final LogEvent logEvent = _logEvents.get(_next - firstPosition);
+        _next = positions.nextSetBit(_next + 1);
+        return logEvent;
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+}
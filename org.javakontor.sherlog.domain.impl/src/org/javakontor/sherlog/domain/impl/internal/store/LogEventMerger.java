@@ -0,0 +1,232 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.util.List;
+
+import org.javakontor.sherlog.domain.LogEvent;
+
+/**
+ * <p>
+ * Merges a sorted batch of {@link LogEvent LogEvents} into an already sorted list of {@link LogEvent LogEvents}.
+ * </p>
+ * <p>
+ * Log events usually arrive in (nearly) chronological order, so the common case is that a new batch simply belongs
+ * behind the existing events. This case is detected with a single comparison and handled by appending the batch.
+ * Otherwise only the tail of the target list that overlaps with the batch is merged. The merge uses galloping (as
+ * known from TimSort): as soon as one side wins several times in a row, the length of the winning run is determined by
+ * an exponential search and the run is copied as a whole.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class LogEventMerger {
+
+  /** the number of consecutive wins after which the merge switches to galloping mode */
+  private static final int MIN_GALLOP = 7;
+
+  /**
+   * <p>
+   * Merges the given sorted batch into the given sorted target list.
+   * </p>
+   *
+   * @param target
+   *          the sorted target list
+   * @param sortedEvents
+   *          the sorted events that should be merged into the target list
+   * @return the index of the first element of the target list that has been changed by the merge
+   */
+  public static int merge(final List<LogEvent> target, final List<LogEvent> sortedEvents) {
+    return merge(target, sortedEvents, null);
+  }
+
+  /**
+   * <p>
+   * Merges the given sorted batch into the given sorted target list and records the indices of the merged events.
+   * </p>
+   *
+   * @param target
+   *          the sorted target list
+   * @param sortedEvents
+   *          the sorted events that should be merged into the target list
+   * @param insertedIndices
+   *          receives the indices of the merged events in the target list (might be <code>null</code>)
+   * @return the index of the first element of the target list that has been changed by the merge
+   */
+  public static int merge(final List<LogEvent> target, final List<LogEvent> sortedEvents,
+      final CompressedBitmap insertedIndices) {
+
+    final int size = target.size();
+
+    // nothing to do
+    if (sortedEvents.isEmpty()) {
+      return size;
+    }
+
+    // fast path: the batch belongs behind all existing events
+    if ((size == 0) || (target.get(size - 1).compareTo(sortedEvents.get(0)) <= 0)) {
+      target.addAll(sortedEvents);
+      if (insertedIndices != null) {
+        insertedIndices.addRange(size, size + sortedEvents.size());
+      }
+      return size;
+    }
+
+    // determine the first existing event that is greater than the first new event. Search from the end of the list,
+    // since new events usually overlap with the most recent events only
+    final int start = gallopFromEnd(sortedEvents.get(0), target);
+
+    // merge the overlapping tail with the new events
+    final List<LogEvent> tailList = target.subList(start, size);
+    final LogEvent[] tail = tailList.toArray(new LogEvent[tailList.size()]);
+    final LogEvent[] events = sortedEvents.toArray(new LogEvent[sortedEvents.size()]);
+    final LogEvent[] merged = merge(tail, events, insertedIndices, start);
+
+    // replace the tail
+    tailList.clear();
+    for (final LogEvent logEvent : merged) {
+      target.add(logEvent);
+    }
+
+    return start;
+  }
+
+  /**
+   * <p>
+   * Merges the two sorted arrays. If two events are equal, the event from the first array is put first. The indices
+   * of the events from the second array (plus the given offset) are added to the given bitmap (if not
+   * <code>null</code>).
+   * </p>
+   */
+  private static LogEvent[] merge(final LogEvent[] a, final LogEvent[] b, final CompressedBitmap indicesOfB,
+      final int offset) {
+    final LogEvent[] result = new LogEvent[a.length + b.length];
+
+    int i = 0;
+    int j = 0;
+    int k = 0;
+
+    while ((i < a.length) && (j < b.length)) {
+
+      // one element at a time until one side wins MIN_GALLOP times in a row
+      int winsA = 0;
+      int winsB = 0;
+      do {
+        if (b[j].compareTo(a[i]) < 0) {
+          if (indicesOfB != null) {
+            indicesOfB.add(offset + k);
+          }
+          result[k++] = b[j++];
+          winsB++;
+          winsA = 0;
+        } else {
+          result[k++] = a[i++];
+          winsA++;
+          winsB = 0;
+        }
+      } while ((i < a.length) && (j < b.length) && (winsA < MIN_GALLOP) && (winsB < MIN_GALLOP));
+
+      if ((i >= a.length) || (j >= b.length)) {
+        break;
+      }
+
+      // galloping: copy the complete winning run
+      if (winsA >= MIN_GALLOP) {
+        final int end = gallop(b[j], a, i, true);
+        System.arraycopy(a, i, result, k, end - i);
+        k += end - i;
+        i = end;
+      } else {
+        final int end = gallop(a[i], b, j, false);
+        if (indicesOfB != null) {
+          indicesOfB.addRange(offset + k, offset + k + end - j);
+        }
+        System.arraycopy(b, j, result, k, end - j);
+        k += end - j;
+        j = end;
+      }
+    }
+
+    // copy remaining elements
+    System.arraycopy(a, i, result, k, a.length - i);
+    k += a.length - i;
+    if (indicesOfB != null) {
+      indicesOfB.addRange(offset + k, offset + k + b.length - j);
+    }
+    System.arraycopy(b, j, result, k, b.length - j);
+
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the index of the first element in <code>array[from..]</code> that is greater than the key (if
+   * <code>inclusive</code> is <code>true</code>) resp. greater or equal than the key (if <code>inclusive</code> is
+   * <code>false</code>).
+   * </p>
+   */
+  private static int gallop(final LogEvent key, final LogEvent[] array, final int from, final boolean inclusive) {
+
+    // exponential search
+    int lastOffset = 0;
+    int offset = 1;
+    while ((from + offset - 1 < array.length) && belongsBefore(array[from + offset - 1], key, inclusive)) {
+      lastOffset = offset;
+      offset = (offset << 1) + 1;
+      if (offset <= 0) {
+        offset = array.length;
+      }
+    }
+
+    // binary search in (from + lastOffset - 1, from + offset - 1]
+    int low = from + lastOffset;
+    int high = Math.min(from + offset - 1, array.length);
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (belongsBefore(array[mid], key, inclusive)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * <p>
+   * Returns the index of the first element in the list that is greater than the key. The search starts at the end of
+   * the list.
+   * </p>
+   */
+  private static int gallopFromEnd(final LogEvent key, final List<LogEvent> list) {
+
+    // exponential search backwards
+    int high = list.size();
+    int offset = 1;
+    int low = high - offset;
+    while ((low > 0) && (list.get(low).compareTo(key) > 0)) {
+      high = low;
+      offset <<= 1;
+      low = Math.max(0, high - offset);
+    }
+
+    // binary search in [low, high)
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (list.get(mid).compareTo(key) <= 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the element must be placed before the key.
+   * </p>
+   */
+  private static boolean belongsBefore(final LogEvent element, final LogEvent key, final boolean inclusive) {
+    final int result = element.compareTo(key);
+    return inclusive ? (result <= 0) : (result < 0);
+  }
+}
@@ -0,0 +1,325 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>
+ * A chunk of rows of a {@link ColumnarLogEventList} that has been written to a segment file and is read back from a
+ * memory-mapped region of that file.
+ * </p>
+ * <p>
+ * A segment consists of one fixed size record per row, followed by the UTF-8 encoded bytes of all messages and
+ * throwable informations of the segment. The records store the byte offset and the byte length of each string.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class LogEventSegment {
+
+  /** offset of the time stamp within a record */
+  private static final int       TIME_STAMP            = 0;
+
+  /** offset of the log level within a record */
+  private static final int       LOG_LEVEL             = 8;
+
+  /** offset of the category id within a record */
+  private static final int       CATEGORY              = 9;
+
+  /** offset of the thread name id within a record */
+  private static final int       THREAD_NAME           = 13;
+
+  /** offset of the log event source id within a record */
+  private static final int       LOG_EVENT_SOURCE      = 17;
+
+  /** offset of the message offset within a record */
+  private static final int       MESSAGE_OFFSET        = 21;
+
+  /** offset of the message length within a record */
+  private static final int       MESSAGE_LENGTH        = 25;
+
+  /** offset of the throwable information offset within a record */
+  private static final int       THROWABLE_INFO_OFFSET = 29;
+
+  /** offset of the throwable information length within a record */
+  private static final int       THROWABLE_INFO_LENGTH = 33;
+
+  /** the size of a record */
+  private static final int       RECORD_SIZE           = 37;
+
+  /** the encoding of the strings */
+  private static final String    UTF_8                 = "UTF-8";
+
+  /** the mapped region */
+  private final MappedByteBuffer _buffer;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link LogEventSegment}.
+   * </p>
+   *
+   * @param buffer
+   *          the mapped region
+   */
+  private LogEventSegment(final MappedByteBuffer buffer) {
+    _buffer = buffer;
+  }
+
+  /**
+   * <p>
+   * Writes the given columns to the given file channel and maps the written region.
+   * </p>
+   *
+   * @param channel
+   *          the channel of the segment file
+   * @param position
+   *          the position in the file where the segment should be written
+   * @param rows
+   *          the number of rows
+   * @param timeStamps
+   *          the time stamp column
+   * @param logLevels
+   *          the log level column
+   * @param categories
+   *          the category column
+   * @param threadNames
+   *          the thread name column
+   * @param logEventSources
+   *          the log event source column
+   * @param messages
+   *          the messages
+   * @param throwableInformation
+   *          the throwable information (<code>null</code> entries if a row has no throwable information)
+   * @return the new segment
+   * @throws IOException
+   */
+  public static LogEventSegment write(final FileChannel channel, final long position, final int rows,
+      final long[] timeStamps, final byte[] logLevels, final int[] categories, final int[] threadNames,
+      final int[] logEventSources, final String[] messages, final String[] throwableInformation) throws IOException {
+
+    final int size = write(channel, position, encode(rows, timeStamps, logLevels, categories, threadNames,
+        logEventSources, messages, throwableInformation));
+
+    // map the segment
+    return map(channel, position, size);
+  }
+
+  /**
+   * <p>
+   * Encodes the given columns and writes them to the given file channel without mapping the written region.
+   * </p>
+   *
+   * @param channel
+   *          the channel of the file
+   * @param position
+   *          the position in the file where the segment should be written
+   * @param rows
+   *          the number of rows
+   * @param timeStamps
+   *          the time stamp column
+   * @param logLevels
+   *          the log level column
+   * @param categories
+   *          the category column
+   * @param threadNames
+   *          the thread name column
+   * @param logEventSources
+   *          the log event source column
+   * @param messages
+   *          the messages
+   * @param throwableInformation
+   *          the throwable information (<code>null</code> entries if a row has no throwable information)
+   * @return the size of the written segment in bytes
+   * @throws IOException
+   */
+  public static int writeUnmapped(final FileChannel channel, final long position, final int rows,
+      final long[] timeStamps, final byte[] logLevels, final int[] categories, final int[] threadNames,
+      final int[] logEventSources, final String[] messages, final String[] throwableInformation) throws IOException {
+    return write(channel, position, encode(rows, timeStamps, logLevels, categories, threadNames, logEventSources,
+        messages, throwableInformation));
+  }
+
+  /**
+   * <p>
+   * Maps a segment that has been written before.
+   * </p>
+   *
+   * @param channel
+   *          the channel of the file
+   * @param position
+   *          the position of the segment in the file
+   * @param size
+   *          the size of the segment in bytes
+   * @return the segment
+   * @throws IOException
+   */
+  public static LogEventSegment map(final FileChannel channel, final long position, final int size)
+      throws IOException {
+    return new LogEventSegment(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+  }
+
+  /**
+   * <p>
+   * Returns the size of this segment in bytes.
+   * </p>
+   *
+   * @return the size of this segment in bytes.
+   */
+  public int getSize() {
+    return _buffer.capacity();
+  }
+
+  long getTimeStamp(final int index) {
+    return _buffer.getLong(index * RECORD_SIZE + TIME_STAMP);
+  }
+
+  byte getLogLevel(final int index) {
+    return _buffer.get(index * RECORD_SIZE + LOG_LEVEL);
+  }
+
+  int getCategory(final int index) {
+    return _buffer.getInt(index * RECORD_SIZE + CATEGORY);
+  }
+
+  int getThreadName(final int index) {
+    return _buffer.getInt(index * RECORD_SIZE + THREAD_NAME);
+  }
+
+  int getLogEventSource(final int index) {
+    return _buffer.getInt(index * RECORD_SIZE + LOG_EVENT_SOURCE);
+  }
+
+  String getMessage(final int index) {
+    return getString(index * RECORD_SIZE + MESSAGE_OFFSET, index * RECORD_SIZE + MESSAGE_LENGTH);
+  }
+
+  String getThrowableInformation(final int index) {
+    return getString(index * RECORD_SIZE + THROWABLE_INFO_OFFSET, index * RECORD_SIZE + THROWABLE_INFO_LENGTH);
+  }
+
+  /**
+   * <p>
+   * Encodes the given columns into a buffer that contains the records followed by the UTF-8 encoded strings.
+   * </p>
+   */
+  private static ByteBuffer encode(final int rows, final long[] timeStamps, final byte[] logLevels,
+      final int[] categories, final int[] threadNames, final int[] logEventSources, final String[] messages,
+      final String[] throwableInformation) throws IOException {
+
+    // encode the strings and compute the size of the segment
+    final byte[][] encodedMessages = new byte[rows][];
+    final byte[][] encodedThrowableInformation = new byte[rows][];
+    long size = (long) rows * RECORD_SIZE;
+    for (int row = 0; row < rows; row++) {
+      encodedMessages[row] = encode(messages[row]);
+      encodedThrowableInformation[row] = encode(throwableInformation[row]);
+      size += length(encodedMessages[row]) + length(encodedThrowableInformation[row]);
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("Segment too large: " + size + " bytes");
+    }
+
+    // encode the segment
+    final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+    int byteOffset = rows * RECORD_SIZE;
+    for (int row = 0; row < rows; row++) {
+      final int record = row * RECORD_SIZE;
+      buffer.putLong(record + TIME_STAMP, timeStamps[row]);
+      buffer.put(record + LOG_LEVEL, logLevels[row]);
+      buffer.putInt(record + CATEGORY, categories[row]);
+      buffer.putInt(record + THREAD_NAME, threadNames[row]);
+      buffer.putInt(record + LOG_EVENT_SOURCE, logEventSources[row]);
+      byteOffset = putString(buffer, record + MESSAGE_OFFSET, record + MESSAGE_LENGTH, byteOffset,
+          encodedMessages[row]);
+      byteOffset = putString(buffer, record + THROWABLE_INFO_OFFSET, record + THROWABLE_INFO_LENGTH, byteOffset,
+          encodedThrowableInformation[row]);
+    }
+    return buffer;
+  }
+
+  /**
+   * <p>
+   * Writes the given buffer at the given position.
+   * </p>
+   *
+   * @return the number of written bytes
+   */
+  private static int write(final FileChannel channel, final long position, final ByteBuffer buffer)
+      throws IOException {
+    long filePosition = position;
+    while (buffer.hasRemaining()) {
+      filePosition += channel.write(buffer, filePosition);
+    }
+    return buffer.capacity();
+  }
+
+  /**
+   * <p>
+   * Reads the string that is referenced by the given offset and length fields.
+   * </p>
+   */
+  private String getString(final int offsetField, final int lengthField) {
+    final int length = _buffer.getInt(lengthField);
+    if (length < 0) {
+      return null;
+    }
+    final int offset = _buffer.getInt(offsetField);
+
+    // the buffer is shared by several threads, so its position must not be changed
+    final byte[] bytes = new byte[length];
+    final ByteBuffer duplicate = _buffer.duplicate();
+    duplicate.position(offset);
+    duplicate.get(bytes);
+    try {
+      return new String(bytes, UTF_8);
+    } catch (final UnsupportedEncodingException e) {
+      // cannot happen, every JVM supports UTF-8
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+
+  /**
+   * <p>
+   * Writes the given encoded string at the given byte offset and stores offset and length in the given fields.
+   * </p>
+   *
+   * @return the byte offset behind the string
+   */
+  private static int putString(final ByteBuffer buffer, final int offsetField, final int lengthField,
+      final int byteOffset, final byte[] bytes) {
+    buffer.putInt(offsetField, byteOffset);
+    if (bytes == null) {
+      buffer.putInt(lengthField, -1);
+      return byteOffset;
+    }
+    buffer.putInt(lengthField, bytes.length);
+    buffer.position(byteOffset);
+    buffer.put(bytes);
+    buffer.position(0);
+    return byteOffset + bytes.length;
+  }
+
+  /**
+   * <p>
+   * Returns the UTF-8 encoded bytes of the given string, <code>null</code> if the string is <code>null</code>.
+   * </p>
+   */
+  static byte[] encode(final String string) {
+    if (string == null) {
+      return null;
+    }
+    try {
+      return string.getBytes(UTF_8);
+    } catch (final UnsupportedEncodingException e) {
+      // cannot happen, every JVM supports UTF-8
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+  }
+
+  private static int length(final byte[] bytes) {
+    return bytes == null ? 0 : bytes.length;
+  }
+}
@@ -0,0 +1,138 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.javakontor.sherlog.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Manages the append-only segment files that {@link LogEventSegment LogEventSegments} are written to. A new file is
+ * started as soon as the current file exceeds {@value #MAX_FILE_SIZE} bytes. All files are deleted on
+ * {@link #close()}.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class LogEventSegmentFiles {
+
+  /** the size after which a new segment file is started */
+  private static final long        MAX_FILE_SIZE = 1L << 30;
+
+  /** the logger */
+  private final Logger             _logger       = LoggerFactory.getLogger(getClass());
+
+  /** the directory that contains the segment files */
+  private final File               _directory;
+
+  /** all segment files */
+  private final List<File>         _files;
+
+  /** the current segment file */
+  private RandomAccessFile         _currentFile;
+
+  /** the number of bytes written to the current segment file */
+  private long                     _currentFileSize;
+
+  /** the total number of bytes written to all segment files */
+  private long                     _size;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link LogEventSegmentFiles}.
+   * </p>
+   *
+   * @param directory
+   *          the directory that should contain the segment files
+   */
+  public LogEventSegmentFiles(final File directory) {
+    Assert.notNull(directory);
+
+    _directory = directory;
+    _files = new LinkedList<File>();
+  }
+
+  /**
+   * <p>
+   * Appends the given columns as a new {@link LogEventSegment} to the current segment file.
+   * </p>
+   *
+   * @see LogEventSegment#write(FileChannel, long, int, long[], byte[], int[], int[], int[], String[], String[])
+   */
+  public LogEventSegment append(final int rows, final long[] timeStamps, final byte[] logLevels,
+      final int[] categories, final int[] threadNames, final int[] logEventSources, final String[] messages,
+      final String[] throwableInformation) throws IOException {
+
+    if ((_currentFile == null) || (_currentFileSize >= MAX_FILE_SIZE)) {
+      startNewFile();
+    }
+
+    final LogEventSegment segment = LogEventSegment.write(_currentFile.getChannel(), _currentFileSize, rows,
+        timeStamps, logLevels, categories, threadNames, logEventSources, messages, throwableInformation);
+    _currentFileSize += segment.getSize();
+    _size += segment.getSize();
+    return segment;
+  }
+
+  /**
+   * <p>
+   * Returns the total number of bytes written to the segment files.
+   * </p>
+   *
+   * @return the total number of bytes written to the segment files.
+   */
+  public long getSize() {
+    return _size;
+  }
+
+  /**
+   * <p>
+   * Closes and deletes all segment files. Segments that have been read from the files must not be used anymore.
+   * </p>
+   */
+  public void close() {
+    closeCurrentFile();
+    for (final File file : _files) {
+      if (!file.delete()) {
+        // mapped regions might prevent the deletion on some platforms
+        file.deleteOnExit();
+      }
+    }
+    _files.clear();
+    _size = 0;
+  }
+
+  /**
+   * <p>
+   * Closes the current segment file (the mapped regions stay valid) and starts a new one.
+   * </p>
+   */
+  private void startNewFile() throws IOException {
+    closeCurrentFile();
+
+    final File file = File.createTempFile("sherlog-", ".segment", _directory);
+    file.deleteOnExit();
+    _files.add(file);
+    _currentFile = new RandomAccessFile(file, "rw");
+    _currentFileSize = 0;
+
+    _logger.debug("Started segment file " + file);
+  }
+
+  private void closeCurrentFile() {
+    if (_currentFile != null) {
+      try {
+        _currentFile.close();
+      } catch (final IOException e) {
+        _logger.warn("Could not close segment file: " + e, e);
+      }
+      _currentFile = null;
+    }
+  }
+}
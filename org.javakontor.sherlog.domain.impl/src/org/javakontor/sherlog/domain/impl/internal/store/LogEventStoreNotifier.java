@@ -0,0 +1,263 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.swing.Timer;
+import javax.swing.event.EventListenerList;
+
+import org.javakontor.sherlog.domain.store.LogEventStore;
+import org.javakontor.sherlog.domain.store.LogEventStoreChangeType;
+import org.javakontor.sherlog.domain.store.LogEventStoreEvent;
+import org.javakontor.sherlog.domain.store.LogEventStoreListener;
+import org.javakontor.sherlog.domain.store.LogEventStoreSnapshot;
+import org.javakontor.sherlog.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Delivers the {@link LogEventStoreEvent LogEventStoreEvents} of a store to its {@link LogEventStoreListener
+ * LogEventStoreListeners}. The store {@link #add(LogEventStoreEvent) adds} its events in order (while holding its
+ * lock) and {@link #flush() flushes} the notifier after releasing the lock.
+ * </p>
+ * <p>
+ * With a rate of 0, the events are delivered one by one on the thread that flushes the notifier. Otherwise the
+ * events are coalesced and delivered on the Swing Event Dispatch Thread, at most <i>rate</i> times per second:
+ * evicted rows and appended rows are summed up into (at most) one <code>REMOVED</code> and one
+ * <code>APPENDED</code> event, all other changes (including out-of-order inserts) are coalesced into one
+ * <code>REFILTERED</code> event.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class LogEventStoreNotifier {
+
+  /** the logger */
+  private final Logger                   _logger = LoggerFactory.getLogger(getClass());
+
+  /** the store */
+  private final LogEventStore            _logEventStore;
+
+  /** the listeners */
+  private final EventListenerList        _eventListenerList;
+
+  /** the events that have not been delivered yet (synchronous delivery only) */
+  private final List<LogEventStoreEvent> _queue;
+
+  /** the maximum number of deliveries per second, 0 to deliver each event synchronously */
+  private int                            _rate;
+
+  /** the timer that delivers the coalesced events on the Event Dispatch Thread */
+  private Timer                          _timer;
+
+  /** the time of the last delivery of coalesced events */
+  private long                           _lastDelivery;
+
+  /** the number of filtered log events the listeners have been notified about */
+  private int                            _deliveredCount;
+
+  /** <code>true</code> if coalesced events are pending */
+  private boolean                        _pending;
+
+  /** <code>true</code> if the pending changes can only be described as a refilter */
+  private boolean                        _refiltered;
+
+  /** the number of pending removed rows (at the head of the delivered rows) */
+  private int                            _removedCount;
+
+  /** the number of pending appended rows */
+  private int                            _appendedCount;
+
+  /** the number of pending evicted log events */
+  private int                            _evictedCount;
+
+  /** the version of the store after the pending changes */
+  private LogEventStoreSnapshot          _snapshot;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link LogEventStoreNotifier}.
+   * </p>
+   *
+   * @param logEventStore
+   *          the store
+   * @param eventListenerList
+   *          the listeners of the store
+   */
+  public LogEventStoreNotifier(final LogEventStore logEventStore, final EventListenerList eventListenerList) {
+    Assert.notNull(logEventStore);
+    Assert.notNull(eventListenerList);
+
+    _logEventStore = logEventStore;
+    _eventListenerList = eventListenerList;
+    _queue = new LinkedList<LogEventStoreEvent>();
+  }
+
+  /**
+   * <p>
+   * Sets the maximum number of deliveries per second.
+   * </p>
+   *
+   * @param rate
+   *          the maximum number of deliveries per second, 0 to deliver each event synchronously
+   */
+  public void setRate(final int rate) {
+    Assert.assertTrue(rate >= 0, "Parameter 'rate' must not be negative");
+
+    flush();
+    synchronized (this) {
+      _rate = rate;
+      if (rate > 0) {
+        if (_timer == null) {
+          _timer = new Timer(0, new ActionListener() {
+            public void actionPerformed(final ActionEvent e) {
+              deliverCoalescedEvents();
+            }
+          });
+          _timer.setRepeats(false);
+        }
+      } else if (_timer != null) {
+        _timer.stop();
+        _timer = null;
+      }
+    }
+    if (rate == 0) {
+      deliverCoalescedEvents();
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the given event. Events must be added in the order of the changes of the store.
+   * </p>
+   *
+   * @param event
+   *          the event
+   */
+  public synchronized void add(final LogEventStoreEvent event) {
+    Assert.notNull(event);
+
+    if (_rate == 0) {
+      _queue.add(event);
+      _deliveredCount = event.getFilteredLogEventCount() >= 0 ? event.getFilteredLogEventCount() : _logEventStore
+          .getFilteredLogEventCount();
+      return;
+    }
+
+    if (!_pending) {
+      _pending = true;
+      _refiltered = false;
+      _removedCount = 0;
+      _appendedCount = 0;
+      _evictedCount = 0;
+    }
+
+    _evictedCount += event.getEvictedLogEventCount();
+    _snapshot = event.getSnapshot() != null ? event.getSnapshot() : _logEventStore.getSnapshot();
+
+    final int count = Math.max(0, event.getLastIndex() - event.getFirstIndex() + 1);
+    if (event.getChangeType() == LogEventStoreChangeType.APPENDED) {
+      _appendedCount += count;
+    } else if ((event.getChangeType() == LogEventStoreChangeType.REMOVED) && (event.getFirstIndex() == 0)) {
+      // the head of the rows: first the delivered rows, then the pending appended rows
+      final int remainingDelivered = _deliveredCount - _removedCount;
+      if (count <= remainingDelivered) {
+        _removedCount += count;
+      } else {
+        _removedCount = _deliveredCount;
+        _appendedCount -= count - remainingDelivered;
+      }
+    } else {
+      _refiltered = true;
+    }
+  }
+
+  /**
+   * <p>
+   * Delivers the added events (synchronous delivery) or schedules the delivery of the coalesced events.
+   * </p>
+   */
+  public void flush() {
+    synchronized (this) {
+      if (_rate > 0) {
+        if (_pending && !_timer.isRunning()) {
+          final long delay = Math.max(0, _lastDelivery + (1000 / _rate) - System.currentTimeMillis());
+          _timer.setInitialDelay((int) delay);
+          _timer.start();
+        }
+        return;
+      }
+    }
+
+    // deliver in order, one thread at a time
+    synchronized (_queue) {
+      LogEventStoreEvent event;
+      while ((event = poll()) != null) {
+        fireLogEventStoreChange(event);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Stops the delivery of coalesced events.
+   * </p>
+   */
+  public synchronized void dispose() {
+    if (_timer != null) {
+      _timer.stop();
+    }
+  }
+
+  private synchronized LogEventStoreEvent poll() {
+    return _queue.isEmpty() ? null : _queue.remove(0);
+  }
+
+  /**
+   * <p>
+   * Delivers the coalesced events (on the Event Dispatch Thread).
+   * </p>
+   */
+  private void deliverCoalescedEvents() {
+    final List<LogEventStoreEvent> events = new LinkedList<LogEventStoreEvent>();
+    synchronized (this) {
+      if (!_pending) {
+        return;
+      }
+      if (_refiltered) {
+        events.add(new LogEventStoreEvent(_logEventStore, _snapshot));
+      } else {
+        // the appended rows are the last rows of the snapshot
+        final int remaining = _deliveredCount - _removedCount;
+        if ((_removedCount > 0) || (_evictedCount > 0)) {
+          events.add(new LogEventStoreEvent(_logEventStore, LogEventStoreChangeType.REMOVED, 0, _removedCount - 1,
+              _evictedCount, LogStoreSnapshot.limit(_snapshot, remaining)));
+        }
+        events.add(new LogEventStoreEvent(_logEventStore, LogEventStoreChangeType.APPENDED, remaining, remaining
+            + _appendedCount - 1, 0, _snapshot));
+      }
+      _pending = false;
+      _deliveredCount = _snapshot.getFilteredLogEvents().size();
+      _snapshot = null;
+      _lastDelivery = System.currentTimeMillis();
+    }
+
+    for (final LogEventStoreEvent event : events) {
+      fireLogEventStoreChange(event);
+    }
+  }
+
+  private void fireLogEventStoreChange(final LogEventStoreEvent event) {
+    for (final LogEventStoreListener logEventStoreListener : _eventListenerList
+        .getListeners(LogEventStoreListener.class)) {
+      try {
+        logEventStoreListener.logEventStoreChanged(event);
+      } catch (final RuntimeException e) {
+        _logger.warn("Exception while notifying LogEventStoreListener '" + logEventStoreListener + "': " + e, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,229 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import org.javakontor.sherlog.domain.LogLevel;
+
+/**
+ * <p>
+ * The positions of the log events of a store per {@link LogLevel}. The number of log events per level is the
+ * cardinality of the positions, the number of filtered log events per level is maintained like the filtered counts
+ * of the {@link CategoryRegistry}: incrementally as long as filtered log events are only appended or evicted,
+ * recomputed on demand after any other change.
+ * </p>
+ * <p>
+ * Log events without a level are indexed as {@link LogLevel#UNDEF}.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class LogLevelIndex {
+
+  /** the positions per level, indexed by ordinal */
+  private final CompressedBitmap[] _positions;
+
+  /** the number of filtered log events per level, indexed by ordinal */
+  private final int[]              _filteredCounts;
+
+  /** <code>true</code> if the filtered counts are valid */
+  private boolean                  _filteredCountsValid;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link LogLevelIndex}.
+   * </p>
+   */
+  public LogLevelIndex() {
+    _positions = new CompressedBitmap[LogLevel.values().length];
+    for (int i = 0; i < _positions.length; i++) {
+      _positions[i] = new CompressedBitmap();
+    }
+    _filteredCounts = new int[_positions.length];
+    _filteredCountsValid = true;
+  }
+
+  /**
+   * <p>
+   * Adds the position of a log event of the given level. Positions must be added in ascending order.
+   * </p>
+   *
+   * @param logLevel
+   *          the level (might be <code>null</code>)
+   * @param position
+   *          the position
+   */
+  public void add(final LogLevel logLevel, final int position) {
+    _positions[ordinal(logLevel)].add(position);
+  }
+
+  /**
+   * <p>
+   * Removes all positions greater or equal to the given position.
+   * </p>
+   *
+   * @param position
+   *          the position
+   */
+  public void truncate(final int position) {
+    for (final CompressedBitmap positions : _positions) {
+      positions.truncate(position);
+    }
+  }
+
+  /**
+   * <p>
+   * Removes all positions less than the given position. The filtered counts of the removed log events must have been
+   * {@link #uncountFiltered(LogLevel) uncounted} before.
+   * </p>
+   *
+   * @param position
+   *          the position
+   */
+  public void removeBelow(final int position) {
+    for (final CompressedBitmap positions : _positions) {
+      positions.removeBelow(position);
+    }
+  }
+
+  /**
+   * <p>
+   * Subtracts the given delta from all positions.
+   * </p>
+   *
+   * @param delta
+   *          the delta
+   */
+  public void shiftDown(final int delta) {
+    for (final CompressedBitmap positions : _positions) {
+      positions.shiftDown(delta);
+    }
+  }
+
+  /**
+   * <p>
+   * Removes all positions.
+   * </p>
+   */
+  public void clear() {
+    for (final CompressedBitmap positions : _positions) {
+      positions.clear();
+    }
+    resetFilteredCounts();
+    _filteredCountsValid = true;
+  }
+
+  /**
+   * <p>
+   * Returns the number of log events of the given level.
+   * </p>
+   *
+   * @param logLevel
+   *          the level
+   * @return the number of log events of the given level.
+   */
+  public int getCount(final LogLevel logLevel) {
+    return _positions[ordinal(logLevel)].getCardinality();
+  }
+
+  /**
+   * <p>
+   * Returns the positions in the range <code>[from, to)</code> of the log events whose level is greater or equal to the
+   * given threshold.
+   * </p>
+   *
+   * @param threshold
+   *          the threshold
+   * @param from
+   *          the first position (inclusive)
+   * @param to
+   *          the last position (exclusive)
+   * @return the positions of the log events whose level is greater or equal to the given threshold.
+   */
+  public CompressedBitmap getPositions(final LogLevel threshold, final int from, final int to) {
+    final CompressedBitmap result = new CompressedBitmap();
+    for (int i = _positions.length - 1; i >= ordinal(threshold); i--) {
+      result.orInPlace(_positions[i].range(from, to));
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the number of filtered log events of the given level, recomputes the filtered counts if necessary.
+   * </p>
+   *
+   * @param logLevel
+   *          the level
+   * @param filteredPositions
+   *          the filtered positions
+   * @return the number of filtered log events of the given level.
+   */
+  public int getFilteredCount(final LogLevel logLevel, final CompressedBitmap filteredPositions) {
+    if (!_filteredCountsValid) {
+      for (int i = 0; i < _positions.length; i++) {
+        _filteredCounts[i] = _positions[i].and(filteredPositions).getCardinality();
+      }
+      _filteredCountsValid = true;
+    }
+    return _filteredCounts[ordinal(logLevel)];
+  }
+
+  /**
+   * <p>
+   * Counts a filtered log event of the given level (if the filtered counts are valid).
+   * </p>
+   *
+   * @param logLevel
+   *          the level (might be <code>null</code>)
+   */
+  public void countFiltered(final LogLevel logLevel) {
+    if (_filteredCountsValid) {
+      _filteredCounts[ordinal(logLevel)]++;
+    }
+  }
+
+  /**
+   * <p>
+   * Uncounts a removed filtered log event of the given level (if the filtered counts are valid).
+   * </p>
+   *
+   * @param logLevel
+   *          the level (might be <code>null</code>)
+   */
+  public void uncountFiltered(final LogLevel logLevel) {
+    if (_filteredCountsValid) {
+      _filteredCounts[ordinal(logLevel)]--;
+    }
+  }
+
+  /**
+   * <p>
+   * Invalidates the filtered counts, they are recomputed on demand.
+   * </p>
+   */
+  public void invalidateFilteredCounts() {
+    _filteredCountsValid = false;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the filtered counts are valid.
+   * </p>
+   *
+   * @return <code>true</code> if the filtered counts are valid.
+   */
+  public boolean isFilteredCountsValid() {
+    return _filteredCountsValid;
+  }
+
+  private void resetFilteredCounts() {
+    for (int i = 0; i < _filteredCounts.length; i++) {
+      _filteredCounts[i] = 0;
+    }
+  }
+
+  private static int ordinal(final LogLevel logLevel) {
+    return logLevel == null ? LogLevel.UNDEF.ordinal() : logLevel.ordinal();
+  }
+}
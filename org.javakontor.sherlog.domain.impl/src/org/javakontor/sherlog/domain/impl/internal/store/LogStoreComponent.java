@@ -1,61 +1,474 @@
 package org.javakontor.sherlog.domain.impl.internal.store;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.swing.event.EventListenerList;
 
 import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.domain.filter.CategoryLogEventFilter;
 import org.javakontor.sherlog.domain.filter.LogEventFilter;
 import org.javakontor.sherlog.domain.filter.LogEventFilterChangeEvent;
+import org.javakontor.sherlog.domain.filter.LogEventFilterChangeType;
 import org.javakontor.sherlog.domain.filter.LogEventFilterFactory;
+import org.javakontor.sherlog.domain.filter.LogEventFilterMemento;
+import org.javakontor.sherlog.domain.filter.LogLevelLogEventFilter;
+import org.javakontor.sherlog.domain.filter.MessageLogEventFilter;
+import org.javakontor.sherlog.domain.filter.MessagePatternLogEventFilter;
+import org.javakontor.sherlog.domain.filter.ThreadSafeLogEventFilter;
+import org.javakontor.sherlog.domain.filter.TimeRangeLogEventFilter;
 import org.javakontor.sherlog.domain.impl.filter.AbstractFilterable;
 import org.javakontor.sherlog.domain.impl.reader.AbstractLogEvent;
 import org.javakontor.sherlog.domain.impl.reader.LogEventChangeEvent;
 import org.javakontor.sherlog.domain.impl.reader.LogEventChangeListener;
+import org.javakontor.sherlog.domain.store.LogEventStoreChangeType;
 import org.javakontor.sherlog.domain.store.LogEventStoreEvent;
 import org.javakontor.sherlog.domain.store.LogEventStoreListener;
+import org.javakontor.sherlog.domain.store.LogEventStoreSnapshot;
 import org.javakontor.sherlog.domain.store.ModifiableLogEventStore;
 import org.javakontor.sherlog.util.Assert;
+import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * <p>
+ * The log store. All modifications are done by one writer at a time (guarded by the filter lock). After each
+ * modification the store publishes an immutable {@link LogStoreSnapshot}, so readers (e.g. the Event Dispatch Thread)
+ * never block and never see a partially applied modification.
  * </p>
  * 
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
 public class LogStoreComponent extends AbstractFilterable implements ModifiableLogEventStore, LogEventChangeListener {
 
-  private final Logger                                     _logger = LoggerFactory.getLogger(getClass());
+  /** the component property that enables the columnar storage of log events */
+  public static final String                               COLUMNAR_PROPERTY          = "logstore.columnar";
 
-  /** */
-  private final List<LogEvent>                             _logEvents;
+  /**
+   * the component property that defines the number of log events that are held on the heap before older log events
+   * are spilled to disk (columnar storage only, 0 disables spilling)
+   */
+  public static final String                               SPILL_THRESHOLD_PROPERTY   = "logstore.spill.threshold";
 
-  private final List<LogEvent>                             _filteredLogEvents;
+  /** the component property that defines the directory for spilled log events (defaults to java.io.tmpdir) */
+  public static final String                               SPILL_DIRECTORY_PROPERTY   = "logstore.spill.directory";
 
-  /** */
-  private final List<String>                               _categories;
+  /** the component property that defines the number of threads used for refiltering (0 = number of processors) */
+  public static final String                               PARALLELISM_PROPERTY       = "logstore.refilter.parallelism";
+
+  /**
+   * the component property that defines the number of log events per chunk when refiltering in parallel (smaller
+   * stores are refiltered sequentially)
+   */
+  public static final String                               CHUNK_SIZE_PROPERTY        = "logstore.refilter.chunksize";
+
+  /** the component property that defines the maximum size of the filter result cache in megabytes */
+  public static final String                               FILTER_CACHE_PROPERTY      = "logstore.filtercache.size";
+
+  /** the component property that defines the maximum number of log events (0 = unbounded) */
+  public static final String                               CAPACITY_PROPERTY          = "logstore.capacity";
+
+  /** the component property that defines the maximum (estimated) size of the log events in megabytes (0 = unbounded) */
+  public static final String                               CAPACITY_SIZE_PROPERTY     = "logstore.capacity.size";
+
+  /**
+   * the component property that defines the maximum number of change notifications per second (delivered on the Event
+   * Dispatch Thread, 0 = notify synchronously about every change)
+   */
+  public static final String                               NOTIFICATION_RATE_PROPERTY = "logstore.notification.rate";
+
+  /** the component property that enables the (background) full-text index of the messages */
+  public static final String                               MESSAGE_INDEX_PROPERTY     = "logstore.messageindex";
+
+  /** the component property that enables the (background) trigram index of the messages and throwables */
+  public static final String                               TRIGRAM_INDEX_PROPERTY     = "logstore.trigramindex";
+
+  /** the default chunk size */
+  private static final int                                 DEFAULT_CHUNK_SIZE         = 50000;
+
+  /** the default maximum size of the filter result cache in megabytes */
+  private static final int                                 DEFAULT_FILTER_CACHE       = 64;
+
+  /** the estimated fixed size of a log event in bytes */
+  private static final int                                 LOG_EVENT_SIZE             = 128;
+
+  /** the number of log events an indexer tokenizes at once */
+  private static final int                                 INDEX_BATCH_SIZE           = 4096;
+
+  private final Logger                                     _logger                    = LoggerFactory
+                                                                                          .getLogger(getClass());
+
+  /** the number of threads used for refiltering, 1 if the log events are refiltered sequentially */
+  private int                                              _parallelism;
+
+  /** the number of log events per chunk when refiltering in parallel */
+  private int                                              _chunkSize;
+
+  /** the executor service used for refiltering, created lazily */
+  private ExecutorService                                  _executorService;
+
+  /** the lock that guards the filter results and the filtered positions */
+  private final Object                                     _filterLock                = new Object();
+
+  /** the cached results of the registered filters */
+  private final FilterResultCache                          _filterResultCache;
+
+  /** the log events (the rows of {@link #_columnarLogEvents} if the columnar storage is enabled) */
+  private final ChunkedLogEventList                        _logEvents;
+
+  /** the maximum number of log events, 0 if unbounded */
+  private int                                              _capacity;
+
+  /** the maximum (estimated) size of the log events in bytes, 0 if unbounded */
+  private long                                             _maxSizeInBytes;
+
+  /** the estimated size of the log events in bytes (only maintained if the size of the store is bounded) */
+  private long                                             _sizeInBytes;
+
+  /**
+   * the position of the first log event. Positions are not shifted if the oldest log events are evicted, they are
+   * only rebased in steps of 2<sup>16</sup>
+   */
+  private int                                              _firstPosition;
+
+  /** the columnar log event list, <code>null</code> if the columnar storage is not enabled */
+  private ColumnarLogEventList                             _columnarLogEvents;
+
+  /** the filtered log events, a view on {@link #_logEvents} */
+  private final FilteredLogEventList                       _filteredLogEvents;
+
+  /** the categories of the log events */
+  private final CategoryRegistry                           _categoryRegistry;
+
+  /** the published (immutable) copy of the categories */
+  private List<String>                                     _publishedCategories;
+
+  /** the modification count of the category registry when the categories have been published */
+  private int                                              _publishedCategoriesModificationCount;
+
+  /** the current version of the store */
+  private volatile LogStoreSnapshot                        _snapshot;
+
+  /** the version number of the current snapshot */
+  private long                                             _version;
+
+  /** the index of the categories of the log events */
+  private final CategoryTrie                               _categoryTrie;
+
+  /** the positions and the (filtered) counts of the log events per level */
+  private final LogLevelIndex                              _logLevelIndex;
+
+  /** the full-text index of the messages, <code>null</code> if the messages are not indexed */
+  private MessageIndex                                     _messageIndex;
+
+  /** the trigram index of the messages and throwables, <code>null</code> if the trigrams are not indexed */
+  private TrigramIndex                                     _trigramIndex;
 
   /** */
   private final EventListenerList                          _eventListenerList;
 
+  /** delivers the change events to the listeners */
+  private final LogEventStoreNotifier                      _notifier;
+
   private final Map<LogEventFilterFactory, LogEventFilter> _registeredLogEventFilters;
 
   /**
    *
    */
   public LogStoreComponent() {
-    _logEvents = new ArrayList<LogEvent>();
-    _categories = new ArrayList<String>();
-    _filteredLogEvents = new ArrayList<LogEvent>();
+    _logEvents = new ChunkedLogEventList();
+    _categoryRegistry = new CategoryRegistry();
+    _publishedCategoriesModificationCount = -1;
+    _categoryTrie = new CategoryTrie();
+    _logLevelIndex = new LogLevelIndex();
+    _filteredLogEvents = new FilteredLogEventList(_logEvents);
     _eventListenerList = new EventListenerList();
+    _notifier = new LogEventStoreNotifier(this, _eventListenerList);
     _registeredLogEventFilters = new Hashtable<LogEventFilterFactory, LogEventFilter>();
+    _parallelism = 1;
+    _chunkSize = DEFAULT_CHUNK_SIZE;
+    _filterResultCache = new FilterResultCache(DEFAULT_FILTER_CACHE * 1024L * 1024L);
+    publishSnapshot();
+  }
+
+  /**
+   * <p>
+   * Activates this component. If the component property {@value #COLUMNAR_PROPERTY} is set to <code>true</code>, the
+   * log events are stored in a {@link ColumnarLogEventList}. If additionally {@value #SPILL_THRESHOLD_PROPERTY} is
+   * set to a positive number, older log events are spilled to segment files in {@value #SPILL_DIRECTORY_PROPERTY}.
+   * </p>
+   * <p>
+   * The properties {@value #PARALLELISM_PROPERTY} and {@value #CHUNK_SIZE_PROPERTY} configure the parallel refiltering,
+   * {@value #FILTER_CACHE_PROPERTY} limits the memory used for cached filter results.
+   * </p>
+   * <p>
+   * If {@value #CAPACITY_PROPERTY} or {@value #CAPACITY_SIZE_PROPERTY} is set to a positive number, the store is
+   * bounded and evicts the oldest log events (object based storage only). If {@value #MESSAGE_INDEX_PROPERTY} is set
+   * to <code>true</code>, the messages are indexed in the background.
+   * </p>
+   *
+   * @param context
+   *          the component context
+   */
+  protected void activate(final ComponentContext context) {
+    final Object columnar = context.getProperties().get(COLUMNAR_PROPERTY);
+    if ((columnar != null) && Boolean.valueOf(columnar.toString()).booleanValue()) {
+      setColumnar(true);
+    }
+
+    final Object spillThreshold = context.getProperties().get(SPILL_THRESHOLD_PROPERTY);
+    final int threshold = spillThreshold == null ? 0 : Integer.parseInt(spillThreshold.toString().trim());
+    if (threshold > 0) {
+      if (!isColumnar()) {
+        _logger.warn("Spilling log events to disk requires the columnar storage, set '" + COLUMNAR_PROPERTY
+            + "' to true");
+      } else {
+        final Object spillDirectory = context.getProperties().get(SPILL_DIRECTORY_PROPERTY);
+        final File directory = new File((spillDirectory == null) || (spillDirectory.toString().trim().length() == 0)
+            ? System.getProperty("java.io.tmpdir") : spillDirectory.toString().trim());
+        directory.mkdirs();
+        _logger.debug("Spilling log events to " + directory + " after " + threshold + " log events");
+        _columnarLogEvents.setSpilling(directory, threshold);
+      }
+    }
+
+    final Object capacity = context.getProperties().get(CAPACITY_PROPERTY);
+    final Object capacitySize = context.getProperties().get(CAPACITY_SIZE_PROPERTY);
+    final int maxLogEvents = capacity == null ? 0 : Integer.parseInt(capacity.toString().trim());
+    final int maxSize = capacitySize == null ? 0 : Integer.parseInt(capacitySize.toString().trim());
+    if ((maxLogEvents > 0) || (maxSize > 0)) {
+      if (isColumnar()) {
+        _logger.warn("A bounded log store requires the object based storage, set '" + COLUMNAR_PROPERTY + "' to false");
+      } else {
+        setCapacity(maxLogEvents, maxSize * 1024L * 1024L);
+      }
+    }
+
+    final Object notificationRate = context.getProperties().get(NOTIFICATION_RATE_PROPERTY);
+    if (notificationRate != null) {
+      setNotificationRate(Integer.parseInt(notificationRate.toString().trim()));
+    }
+
+    final Object parallelism = context.getProperties().get(PARALLELISM_PROPERTY);
+    final Object chunkSize = context.getProperties().get(CHUNK_SIZE_PROPERTY);
+    setParallelism(parallelism == null ? 0 : Integer.parseInt(parallelism.toString().trim()),
+        chunkSize == null ? DEFAULT_CHUNK_SIZE : Integer.parseInt(chunkSize.toString().trim()));
+
+    final Object messageIndex = context.getProperties().get(MESSAGE_INDEX_PROPERTY);
+    if ((messageIndex != null) && Boolean.valueOf(messageIndex.toString()).booleanValue()) {
+      setMessageIndex(true);
+    }
+
+    final Object trigramIndex = context.getProperties().get(TRIGRAM_INDEX_PROPERTY);
+    if ((trigramIndex != null) && Boolean.valueOf(trigramIndex.toString()).booleanValue()) {
+      setTrigramIndex(true);
+    }
+
+    final Object filterCacheSize = context.getProperties().get(FILTER_CACHE_PROPERTY);
+    if (filterCacheSize != null) {
+      synchronized (_filterLock) {
+        _filterResultCache.setMaxSizeInBytes(Integer.parseInt(filterCacheSize.toString().trim()) * 1024L * 1024L);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Deactivates this component.
+   * </p>
+   *
+   * @param context
+   *          the component context
+   */
+  protected void deactivate(final ComponentContext context) {
+    setParallelism(1, _chunkSize);
+    setMessageIndex(false);
+    setTrigramIndex(false);
+    _notifier.dispose();
+  }
+
+  /**
+   * <p>
+   * Sets the maximum number of change notifications per second. If the rate is positive, the changes are coalesced
+   * and the {@link LogEventStoreListener LogEventStoreListeners} are notified on the Event Dispatch Thread.
+   * </p>
+   *
+   * @param rate
+   *          the maximum number of notifications per second, 0 to notify synchronously about every change
+   */
+  public void setNotificationRate(final int rate) {
+    _logger.debug("Notification rate set to " + rate);
+    _notifier.setRate(rate);
+  }
+
+  /**
+   * <p>
+   * Configures the parallel refiltering. Refiltering is only done in parallel if all registered filters are
+   * {@link org.javakontor.sherlog.domain.filter.ThreadSafeLogEventFilter ThreadSafeLogEventFilters} and the number of
+   * log events to filter exceeds the chunk size.
+   * </p>
+   *
+   * @param parallelism
+   *          the number of threads, 0 for the number of available processors, 1 to refilter sequentially
+   * @param chunkSize
+   *          the number of log events per chunk
+   */
+  public synchronized void setParallelism(final int parallelism, final int chunkSize) {
+    Assert.assertTrue(parallelism >= 0, "Parameter 'parallelism' must not be negative");
+    Assert.assertTrue(chunkSize > 0, "Parameter 'chunkSize' must be greater than 0");
+
+    if (_executorService != null) {
+      _executorService.shutdown();
+      _executorService = null;
+    }
+    _parallelism = parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+    _chunkSize = chunkSize;
+    _logger.debug("Refiltering with " + _parallelism + " thread(s), chunk size " + _chunkSize);
+  }
+
+  /**
+   * <p>
+   * Switches between the columnar and the object based storage of log events. The storage can only be switched while
+   * the store is empty. The columnar storage keeps the values of the log events in a {@link ColumnarLogEventList},
+   * the store only keeps the row numbers and hands out lightweight views on the rows on demand.
+   * </p>
+   *
+   * @param columnar
+   *          <code>true</code> if the log events should be stored in a {@link ColumnarLogEventList}
+   */
+  public void setColumnar(final boolean columnar) {
+    if (columnar == isColumnar()) {
+      return;
+    }
+    if (!_logEvents.isEmpty()) {
+      throw new IllegalStateException("The storage of a non-empty log store cannot be changed");
+    }
+    if (columnar && isBounded()) {
+      throw new IllegalStateException("A bounded log store cannot use the columnar storage");
+    }
+
+    _logger.debug("Columnar storage " + (columnar ? "enabled" : "disabled"));
+    _columnarLogEvents = columnar ? new ColumnarLogEventList(this) : null;
+    _logEvents.setColumnarLogEvents(_columnarLogEvents);
+  }
+
+  /**
+   * <p>
+   * Bounds the store: as soon as the store exceeds the given number of log events or the given (estimated) size, the
+   * oldest log events are evicted. Evicting is O(1) per log event (see {@link ChunkedLogEventList#removeFirst(int)}).
+   * The capacity can only be changed while the store is empty.
+   * </p>
+   *
+   * @param capacity
+   *          the maximum number of log events, 0 for no limit
+   * @param maxSizeInBytes
+   *          the maximum (estimated) size of the log events in bytes, 0 for no limit
+   */
+  public void setCapacity(final int capacity, final long maxSizeInBytes) {
+    Assert.assertTrue(capacity >= 0, "Parameter 'capacity' must not be negative");
+    Assert.assertTrue(maxSizeInBytes >= 0, "Parameter 'maxSizeInBytes' must not be negative");
+    if (!_logEvents.isEmpty()) {
+      throw new IllegalStateException("The capacity of a non-empty log store cannot be changed");
+    }
+    if (isColumnar()) {
+      throw new IllegalStateException("A log store that uses the columnar storage cannot be bounded");
+    }
+
+    _logger.debug("Capacity set to " + capacity + " log events, " + maxSizeInBytes + " bytes");
+    _capacity = capacity;
+    _maxSizeInBytes = maxSizeInBytes;
+    _sizeInBytes = 0;
+  }
+
+  /**
+   * <p>
+   * Enables or disables the full-text index of the messages. The index is built by a background thread that follows
+   * the added log events; until a log event has been indexed, message filters evaluate it without the index.
+   * </p>
+   *
+   * @param enabled
+   *          <code>true</code> to index the messages
+   */
+  public void setMessageIndex(final boolean enabled) {
+    synchronized (_filterLock) {
+      if (enabled == (_messageIndex != null)) {
+        return;
+      }
+      _logger.debug("Message index " + (enabled ? "enabled" : "disabled"));
+      if (enabled) {
+        _messageIndex = new MessageIndex(_firstPosition);
+        startIndexer(_messageIndex, "LogStore-MessageIndexer");
+      } else {
+        // the indexer stops as soon as it notices that its index has been removed
+        _messageIndex = null;
+        _filterLock.notifyAll();
+      }
+      publishStatistics();
+    }
+  }
+
+  /**
+   * <p>
+   * Enables or disables the trigram index of the messages and the throwable information. The index selects the
+   * candidates for message substring and message pattern filters; like the message index it is built by a background
+   * thread.
+   * </p>
+   *
+   * @param enabled
+   *          <code>true</code> to index the trigrams
+   */
+  public void setTrigramIndex(final boolean enabled) {
+    synchronized (_filterLock) {
+      if (enabled == (_trigramIndex != null)) {
+        return;
+      }
+      _logger.debug("Trigram index " + (enabled ? "enabled" : "disabled"));
+      if (enabled) {
+        _trigramIndex = new TrigramIndex(_firstPosition);
+        startIndexer(_trigramIndex, "LogStore-TrigramIndexer");
+      } else {
+        _trigramIndex = null;
+        _filterLock.notifyAll();
+      }
+      publishStatistics();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the store is bounded and evicts the oldest log events.
+   * </p>
+   *
+   * @return <code>true</code> if the store is bounded and evicts the oldest log events.
+   */
+  public boolean isBounded() {
+    return (_capacity > 0) || (_maxSizeInBytes > 0);
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the log events are stored in a {@link ColumnarLogEventList}.
+   * </p>
+   *
+   * @return <code>true</code> if the log events are stored in a {@link ColumnarLogEventList}.
+   */
+  public boolean isColumnar() {
+    return _columnarLogEvents != null;
   }
 
   public void addLogStoreListener(final LogEventStoreListener listener) {
@@ -66,48 +479,522 @@ public class LogStoreComponent extends AbstractFilterable implements ModifiableL
     _eventListenerList.remove(LogEventStoreListener.class, listener);
   }
 
+  public LogEventStoreSnapshot getSnapshot() {
+    return _snapshot;
+  }
+
   public List<LogEvent> getLogEvents() {
-    return Collections.unmodifiableList(_logEvents);
+    return _snapshot.getLogEvents();
   }
 
   public List<String> getCategories() {
-    return Collections.unmodifiableList(_categories);
+    return _snapshot.getCategories();
+  }
+
+  public int getCategoryCount(final String category) {
+    synchronized (_filterLock) {
+      return _categoryRegistry.getCount(category);
+    }
+  }
+
+  public int getFilteredCategoryCount(final String category) {
+    synchronized (_filterLock) {
+      if (!_categoryRegistry.isFilteredCountsValid()) {
+        _categoryRegistry.resetFilteredCounts();
+        for (final LogEvent logEvent : _filteredLogEvents) {
+          _categoryRegistry.countFiltered(logEvent.getCategory());
+        }
+      }
+      return _categoryRegistry.getFilteredCount(category);
+    }
+  }
+
+  public int getLogLevelCount(final LogLevel logLevel) {
+    Assert.notNull("Parameter 'logLevel' must not be null", logLevel);
+
+    return _snapshot.getStatistics().getLogLevelCount(logLevel);
+  }
+
+  public int getFilteredLogLevelCount(final LogLevel logLevel) {
+    Assert.notNull("Parameter 'logLevel' must not be null", logLevel);
+
+    return _snapshot.getStatistics().getFilteredLogLevelCount(logLevel);
+  }
+
+  public List<String> getSubCategories(final String category) {
+    synchronized (_filterLock) {
+      return _categoryTrie.getSubCategories(category);
+    }
+  }
+
+  public int getCategorySubtreeCount(final String category) {
+    synchronized (_filterLock) {
+      return _categoryTrie.getSubtreeCount(category);
+    }
   }
 
   public int getLogEventCount() {
-    return _logEvents.size();
+    return _snapshot.getLogEvents().size();
+  }
+
+  public List<LogEvent> findLogEvents(final String query) {
+    Assert.notNull("Parameter 'query' must not be null", query);
+
+    final List<List<String>> terms = MessageIndex.parseQuery(query);
+    synchronized (_filterLock) {
+      final int end = getEndPosition();
+      final CompressedBitmap positions;
+      int from = _firstPosition;
+      if (_messageIndex != null) {
+        // the index already contains the positions behind 'indexedTo' as candidates
+        from = Math.max(from, _messageIndex.getIndexedTo());
+        positions = _messageIndex.getPositions(terms, _firstPosition, from);
+      } else {
+        positions = new CompressedBitmap();
+      }
+      for (int position = from; position < end; position++) {
+        if (MessageIndex.matches(getLogEvent(position).getMessage(), terms)) {
+          positions.add(position);
+        }
+      }
+      return Collections.unmodifiableList(new FilteredLogEventList(_snapshot.getLogEvents(), positions.snapshot(),
+          _firstPosition));
+    }
+  }
+
+  public int getIndexedLogEventCount() {
+    return _snapshot.getStatistics().getIndexedLogEventCount();
+  }
+
+  public long getMessageIndexSizeInBytes() {
+    return _snapshot.getStatistics().getMessageIndexSizeInBytes();
   }
 
   public int getFilteredLogEventCount() {
-    return _filteredLogEvents.size();
+    return _snapshot.getFilteredLogEvents().size();
+  }
+
+  /**
+   * <p>
+   * Returns the (estimated) number of bytes used by the cached filter results.
+   * </p>
+   */
+  public long getFilterCacheSizeInBytes() {
+    return _snapshot.getStatistics().getFilterCacheSizeInBytes();
   }
 
   @Override
   protected void logEventFilterAdded(final LogEventFilter logEventFilter) {
-    refilter();
+    synchronized (_filterLock) {
+      updateFilterResult(logEventFilter, LogEventFilterChangeType.CHANGED);
+      updateFilteredPositions();
+      addRefilteredEvent();
+    }
+
+    _notifier.flush();
   }
 
   @Override
   protected void logEventFilterRemoved(final LogEventFilter logEventFilter) {
-    refilter();
+    synchronized (_filterLock) {
+      _filterResultCache.removeCurrentResult(logEventFilter);
+      updateFilteredPositions();
+      addRefilteredEvent();
+    }
+
+    _notifier.flush();
   }
 
+  /**
+   * <p>
+   * Only the changed filter is evaluated again (depending on the change type only on the log events it matched
+   * before or on the log events it rejected before). The result is intersected with the cached results of the other
+   * filters.
+   * </p>
+   */
   @Override
   public void filterChanged(final LogEventFilterChangeEvent event) {
-    refilter();
+    if (event.getChangeType() == LogEventFilterChangeType.UNCHANGED) {
+      return;
+    }
+    if (!getLogEventFilters().contains(event.getSource())) {
+      refilter();
+      return;
+    }
+
+    synchronized (_filterLock) {
+      updateFilterResult((LogEventFilter) event.getSource(), event.getChangeType());
+      updateFilteredPositions();
+      addRefilteredEvent();
+    }
+
+    _notifier.flush();
   }
 
+  /**
+   * <p>
+   * Discards all cached filter results and evaluates all filters again.
+   * </p>
+   */
   protected void refilter() {
-    _filteredLogEvents.clear();
+    synchronized (_filterLock) {
+      _filterResultCache.clear();
+      updateFilteredPositions();
+      addRefilteredEvent();
+    }
 
-    for (final LogEvent logEvent : _logEvents) {
-      if (isFiltered(logEvent)) {
-        _filteredLogEvents.add(logEvent);
+    _notifier.flush();
+  }
+
+  /**
+   * <p>
+   * Computes the current result of the given filter after its configuration has changed. A recent result for the
+   * same configuration is reused if available, otherwise the previous result is used to narrow or widen incrementally.
+   * </p>
+   */
+  private void updateFilterResult(final LogEventFilter logEventFilter, final LogEventFilterChangeType changeType) {
+    final int end = getEndPosition();
+    final LogEventFilterMemento memento = logEventFilter.saveToMemento();
+
+    // toggled back to a recent configuration?
+    FilterResultCache.Result result = _filterResultCache.removeRecentResult(logEventFilter, memento);
+    if (result != null) {
+      completeFilterResult(logEventFilter, result);
+      _filterResultCache.setCurrentResult(logEventFilter, result);
+      return;
+    }
+
+    final FilterResultCache.Result previousResult = _filterResultCache.getCurrentResult(logEventFilter);
+    final boolean incremental = (previousResult != null) && (previousResult.getValidTo() == end);
+
+    CompressedBitmap positions;
+    if (incremental && (changeType == LogEventFilterChangeType.NARROWED)) {
+      // only check the log events that matched before
+      positions = filter(logEventFilter, _firstPosition, end, previousResult.getPositions());
+    } else if (incremental && (changeType == LogEventFilterChangeType.WIDENED)) {
+      // only check the log events that were rejected before
+      final CompressedBitmap allPositions = new CompressedBitmap();
+      allPositions.addRange(_firstPosition, end);
+      final CompressedBitmap candidates = allPositions.andNot(previousResult.getPositions());
+      positions = previousResult.getPositions().or(filter(logEventFilter, _firstPosition, end, candidates));
+    } else {
+      positions = filter(logEventFilter, _firstPosition, end, null);
+    }
+
+    _filterResultCache.setCurrentResult(logEventFilter, new FilterResultCache.Result(memento, positions, end));
+  }
+
+  /**
+   * <p>
+   * Returns the current result of the given filter. The result is completed up to the current size of the store.
+   * </p>
+   */
+  private FilterResultCache.Result getFilterResult(final LogEventFilter logEventFilter) {
+    FilterResultCache.Result result = _filterResultCache.getCurrentResult(logEventFilter);
+    if (result == null) {
+      final LogEventFilterMemento memento = logEventFilter.saveToMemento();
+      result = _filterResultCache.removeRecentResult(logEventFilter, memento);
+      if (result == null) {
+        result = new FilterResultCache.Result(memento, new CompressedBitmap(), _firstPosition);
+      }
+      _filterResultCache.setCurrentResult(logEventFilter, result);
+    }
+    completeFilterResult(logEventFilter, result);
+    return result;
+  }
+
+  /**
+   * <p>
+   * Evaluates the given filter for the positions the given result is not valid for.
+   * </p>
+   */
+  private void completeFilterResult(final LogEventFilter logEventFilter, final FilterResultCache.Result result) {
+    final int end = getEndPosition();
+    if (result.getValidTo() < end) {
+      result.complete(filter(logEventFilter, result.getValidTo(), end, null), end);
+    }
+  }
+
+  /**
+   * <p>
+   * Sets the filtered positions to the intersection of the current results of all filters.
+   * </p>
+   */
+  private void updateFilteredPositions() {
+    CompressedBitmap positions = null;
+    for (final LogEventFilter logEventFilter : getLogEventFilters()) {
+      final CompressedBitmap filterPositions = getFilterResult(logEventFilter).getPositions();
+      positions = positions == null ? filterPositions.copy() : positions.and(filterPositions);
+    }
+
+    if (positions == null) {
+      positions = new CompressedBitmap();
+      positions.addRange(_firstPosition, getEndPosition());
+    }
+    _filteredLogEvents.setPositions(positions, _firstPosition);
+    _categoryRegistry.invalidateFilteredCounts();
+    _logLevelIndex.invalidateFilteredCounts();
+  }
+
+  /**
+   * <p>
+   * Returns the positions in the range <code>[from, to)</code> whose log events are matched by the given filter. The
+   * candidates are narrowed with the postings of the indexes within the range, so extending a result by a few appended
+   * log events does not touch the postings of the whole store. Large ranges are split into chunks that are filtered in
+   * parallel, the results are joined in order.
+   * </p>
+   *
+   * @param logEventFilter
+   *          the filter
+   * @param from
+   *          the first position (inclusive)
+   * @param to
+   *          the last position (exclusive)
+   * @param candidates
+   *          the positions that should be checked or <code>null</code> if all positions should be checked
+   * @return the positions of the matching log events
+   */
+  private CompressedBitmap filter(final LogEventFilter logEventFilter, final int from, final int to,
+      CompressedBitmap candidates) {
+
+    // the log events are sorted by time stamp, so a time range is a contiguous range of positions
+    if (logEventFilter instanceof TimeRangeLogEventFilter) {
+      return filterTimeRange((TimeRangeLogEventFilter) logEventFilter, from, to, candidates);
+    }
+
+    // only check the log events of the categories the filter accepts
+    if ((logEventFilter instanceof CategoryLogEventFilter)
+        && ((CategoryLogEventFilter) logEventFilter).isCategoryRestricted()) {
+      candidates = and(candidates, _categoryTrie.getPostings((CategoryLogEventFilter) logEventFilter, from, to));
+    }
+
+    // only check the log events of the levels the filter accepts
+    if ((logEventFilter instanceof LogLevelLogEventFilter)
+        && ((LogLevelLogEventFilter) logEventFilter).isLogLevelRestricted()) {
+      candidates = and(candidates, _logLevelIndex.getPositions(((LogLevelLogEventFilter) logEventFilter)
+          .getLogLevelThreshold(), from, to));
+    }
+
+    // only check the log events whose messages contain the terms and the trigrams of the substring
+    if ((logEventFilter instanceof MessageLogEventFilter)
+        && ((MessageLogEventFilter) logEventFilter).isMessageRestricted()) {
+      final String substring = ((MessageLogEventFilter) logEventFilter).getMessageSubstring();
+      if (_messageIndex != null) {
+        candidates = and(candidates, _messageIndex.getCandidates(substring, from, to));
+      }
+      if (_trigramIndex != null) {
+        candidates = and(candidates, _trigramIndex.getCandidates(substring, from, to));
+      }
+    }
+
+    // only check the log events that contain the trigrams of the literals every match of the pattern contains
+    if ((_trigramIndex != null) && (logEventFilter instanceof MessagePatternLogEventFilter)
+        && ((MessagePatternLogEventFilter) logEventFilter).isMessagePatternRestricted()) {
+      candidates = and(candidates, _trigramIndex.getCandidates(((MessagePatternLogEventFilter) logEventFilter)
+          .getMessagePattern(), from, to));
+    }
+
+    final CompressedBitmap filterCandidates = candidates;
+    final ExecutorService executorService = getExecutorService();
+    if ((executorService == null) || (to - from <= _chunkSize)
+        || !(logEventFilter instanceof ThreadSafeLogEventFilter)) {
+      return filterChunk(logEventFilter, from, to, candidates);
+    }
+
+    // filter the chunks in parallel
+    final List<Future<CompressedBitmap>> futures = new ArrayList<Future<CompressedBitmap>>();
+    for (int chunkFrom = from; chunkFrom < to; chunkFrom += _chunkSize) {
+      final int chunkStart = chunkFrom;
+      final int chunkEnd = Math.min(to, chunkFrom + _chunkSize);
+      futures.add(executorService.submit(new Callable<CompressedBitmap>() {
+        public CompressedBitmap call() {
+          return filterChunk(logEventFilter, chunkStart, chunkEnd, filterCandidates);
+        }
+      }));
+    }
+
+    // join the results in order (the chunks are disjoint and ascending, so their containers are mostly appended)
+    final CompressedBitmap result = new CompressedBitmap();
+    try {
+      for (final Future<CompressedBitmap> future : futures) {
+        result.orInPlace(future.get());
+      }
+    } catch (final InterruptedException e) {
+      for (final Future<CompressedBitmap> future : futures) {
+        future.cancel(true);
       }
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while refiltering", e);
+    } catch (final ExecutionException e) {
+      throw new RuntimeException("Could not refilter: " + e.getCause(), e.getCause());
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns the intersection of the given candidates, each might be <code>null</code> (all positions).
+   * </p>
+   */
+  private static CompressedBitmap and(final CompressedBitmap candidates, final CompressedBitmap postings) {
+    if (postings == null) {
+      return candidates;
+    }
+    return candidates == null ? postings : candidates.and(postings);
+  }
+
+  /**
+   * <p>
+   * Returns the positions in the range <code>[from, to)</code> whose log events are within the time range of the given
+   * filter. Resolves the time range with a binary search, the filter itself is not evaluated.
+   * </p>
+   */
+  private CompressedBitmap filterTimeRange(final TimeRangeLogEventFilter logEventFilter, final int from, final int to,
+      final CompressedBitmap candidates) {
+    final long toTimeStamp = logEventFilter.getToTimeStamp();
+    final int rangeFrom = Math.max(from, _firstPosition
+        + LogStoreSnapshot.indexOf(_logEvents, logEventFilter.getFromTimeStamp()));
+    final int rangeTo = toTimeStamp == Long.MAX_VALUE ? to : Math.min(to, _firstPosition
+        + LogStoreSnapshot.indexOf(_logEvents, toTimeStamp + 1));
+
+    final CompressedBitmap result = new CompressedBitmap();
+    if (rangeFrom < rangeTo) {
+      result.addRange(rangeFrom, rangeTo);
     }
+    return candidates == null ? result : result.and(candidates);
+  }
 
-    fireLogEventStoreChange();
+  /**
+   * <p>
+   * Returns the positions in the range <code>[from, to)</code> whose log events are matched by the given filter. Only
+   * reads the candidates, so it can be invoked concurrently.
+   * </p>
+   */
+  private CompressedBitmap filterChunk(final LogEventFilter logEventFilter, final int from, final int to,
+      final CompressedBitmap candidates) {
+    final CompressedBitmap result = new CompressedBitmap();
+    if (candidates == null) {
+      for (int position = from; position < to; position++) {
+        if (logEventFilter.matches(getLogEvent(position))) {
+          result.add(position);
+        }
+      }
+    } else {
+      for (int position = candidates.nextSetBit(from); (position >= 0) && (position < to); position = candidates
+          .nextSetBit(position + 1)) {
+        if (logEventFilter.matches(getLogEvent(position))) {
+          result.add(position);
+        }
+      }
+    }
+    return result;
+  }
 
+  /**
+   * <p>
+   * Starts a daemon thread that builds the given index in the background. The thread stops as soon as the index is no
+   * longer used by the store.
+   * </p>
+   */
+  private void startIndexer(final PostingIndex index, final String name) {
+    final Thread indexer = new Thread(new Runnable() {
+      public void run() {
+        indexLogEvents(index);
+      }
+    }, name);
+    indexer.setDaemon(true);
+    indexer.start();
+  }
+
+  /**
+   * <p>
+   * Returns the indexes that are currently maintained. Must be invoked while holding the filter lock.
+   * </p>
+   */
+  private List<PostingIndex> getIndexes() {
+    final List<PostingIndex> indexes = new ArrayList<PostingIndex>(2);
+    if (_messageIndex != null) {
+      indexes.add(_messageIndex);
+    }
+    if (_trigramIndex != null) {
+      indexes.add(_trigramIndex);
+    }
+    return indexes;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given index is currently maintained. Must be invoked while holding the filter
+   * lock.
+   * </p>
+   */
+  private boolean isMaintained(final PostingIndex index) {
+    return (index == _messageIndex) || (index == _trigramIndex);
+  }
+
+  /**
+   * <p>
+   * Builds the given index in the background: copies the next log events while holding the filter lock, tokenizes
+   * them without holding the lock and appends the keys to the index, unless indexed positions have been changed in
+   * the meantime.
+   * </p>
+   */
+  private void indexLogEvents(final PostingIndex index) {
+    try {
+      while (true) {
+        LogEvent[] logEvents;
+        int from;
+        int modificationCount;
+        synchronized (_filterLock) {
+          while (isMaintained(index) && (index.getIndexedTo() >= getEndPosition())) {
+            _filterLock.wait();
+          }
+          if (!isMaintained(index)) {
+            return;
+          }
+          from = index.getIndexedTo();
+          modificationCount = index.getModificationCount();
+          logEvents = new LogEvent[Math.min(INDEX_BATCH_SIZE, getEndPosition() - from)];
+          for (int i = 0; i < logEvents.length; i++) {
+            logEvents[i] = getLogEvent(from + i);
+          }
+        }
+
+        final PostingIndex.Batch batch = index.tokenize(from, logEvents);
+
+        synchronized (_filterLock) {
+          if ((index.getModificationCount() == modificationCount) && (index.getIndexedTo() == from)) {
+            index.append(batch);
+            publishStatistics();
+          }
+        }
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (final RuntimeException e) {
+      _logger.warn("Could not index the log events: " + e, e);
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the executor service used for refiltering or <code>null</code> if the log events are refiltered
+   * sequentially.
+   * </p>
+   */
+  private synchronized ExecutorService getExecutorService() {
+    if ((_executorService == null) && (_parallelism > 1)) {
+      _executorService = Executors.newFixedThreadPool(_parallelism, new ThreadFactory() {
+        private int _count;
+
+        public Thread newThread(final Runnable runnable) {
+          final Thread thread = new Thread(runnable, "LogStore-Refilter-" + (++_count));
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return _executorService;
   }
 
   /** ModifiableLoggingEventStore */
@@ -125,33 +1012,332 @@ public class LogStoreComponent extends AbstractFilterable implements ModifiableL
       return;
     }
 
-    for (final LogEvent event : events) {
-      // add to logEvents list
-      _logEvents.add(event);
-      if (event instanceof AbstractLogEvent) {
-        final AbstractLogEvent abstractLogEvent = (AbstractLogEvent) event;
-        abstractLogEvent.addLogEventChangeListener(this);
+    synchronized (_filterLock) {
+      // the new events
+      final List<LogEvent> newLogEvents = new ArrayList<LogEvent>(events.size());
+
+      for (final LogEvent logEvent : events) {
+        // add to new events
+        final LogEvent event = importLogEvent(logEvent);
+        newLogEvents.add(event);
+
+        // count the category
+        _categoryRegistry.register(event.getCategory());
+
+        if (_maxSizeInBytes > 0) {
+          _sizeInBytes += getEstimatedSize(event);
+        }
+      }
+
+      // only sort the new events and merge them into the (already sorted) list
+      Collections.sort(newLogEvents);
+      final CompressedBitmap insertedIndices = new CompressedBitmap();
+      final int start = _firstPosition + LogEventMerger.merge(_logEvents, newLogEvents, insertedIndices);
+
+      // the positions behind 'start' have changed (usually these are just the appended events)
+      final boolean appended = start + newLogEvents.size() == getEndPosition();
+      indexCategories(start, appended);
+      final List<PostingIndex> indexes = getIndexes();
+      if (!indexes.isEmpty()) {
+        if (!appended) {
+          for (final PostingIndex index : indexes) {
+            index.truncate(start);
+          }
+        }
+        _filterLock.notifyAll();
+      }
+      _filterResultCache.truncate(start);
+      appendFilteredPositions(start, appended);
+
+      // evict the oldest log events (if bounded), publish the new version and describe the changed rows
+      final CompressedBitmap addedPositions = getAddedPositions(start, appended, insertedIndices);
+      final int rowCount = _filteredLogEvents.size() - addedPositions.getCardinality();
+      final int evictedCount = evictLogEvents(addedPositions);
+      publishSnapshot();
+      if (evictedCount > 0) {
+        _notifier.add(createRemovedEvent(rowCount, evictedCount, addedPositions, appended));
+      }
+      _notifier.add(createAddedEvent(addedPositions, appended));
+    }
+
+    _notifier.flush();
+  }
+
+  /**
+   * <p>
+   * Adds the positions starting with the given position to the category index and the level index.
+   * </p>
+   */
+  private void indexCategories(final int start, final boolean appended) {
+    if (!appended) {
+      _categoryTrie.truncate(start);
+      _logLevelIndex.truncate(start);
+    }
+    final int end = getEndPosition();
+    for (int position = start; position < end; position++) {
+      final LogEvent logEvent = getLogEvent(position);
+      _categoryTrie.add(logEvent.getCategory(), position);
+      _logLevelIndex.add(logEvent.getLogLevel(), position);
+    }
+  }
+
+  /**
+   * <p>
+   * Completes the current filter results and updates the filtered positions starting with the given position. If
+   * the log events have been appended, the filtered category counts are updated incrementally.
+   * </p>
+   */
+  private void appendFilteredPositions(final int start, final boolean appended) {
+    final int end = getEndPosition();
+    final CompressedBitmap positions = _filteredLogEvents.getPositions();
+    positions.truncate(start);
+    if (!appended) {
+      _categoryRegistry.invalidateFilteredCounts();
+      _logLevelIndex.invalidateFilteredCounts();
+    }
+
+    final List<LogEventFilter> logEventFilters = getLogEventFilters();
+    if (logEventFilters.isEmpty()) {
+      positions.addRange(start, end);
+    } else {
+      // a position is filtered if it is contained in the results of all filters
+      final CompressedBitmap[] filterPositions = new CompressedBitmap[logEventFilters.size()];
+      for (int i = 0; i < filterPositions.length; i++) {
+        filterPositions[i] = getFilterResult(logEventFilters.get(i)).getPositions();
+      }
+      for (int position = filterPositions[0].nextSetBit(start); position >= 0; position = filterPositions[0]
+          .nextSetBit(position + 1)) {
+        boolean matches = true;
+        for (int i = 1; matches && (i < filterPositions.length); i++) {
+          matches = filterPositions[i].contains(position);
+        }
+        if (matches) {
+          positions.add(position);
+        }
+      }
+    }
+    _filteredLogEvents.setPositions(positions, _firstPosition);
+
+    if (_categoryRegistry.isFilteredCountsValid() || _logLevelIndex.isFilteredCountsValid()) {
+      for (int position = positions.nextSetBit(start); position >= 0; position = positions.nextSetBit(position + 1)) {
+        final LogEvent logEvent = getLogEvent(position);
+        _categoryRegistry.countFiltered(logEvent.getCategory());
+        _logLevelIndex.countFiltered(logEvent.getLogLevel());
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the filtered positions of the added log events.
+   * </p>
+   *
+   * @param start
+   *          the first changed position
+   * @param appended
+   *          <code>true</code> if the log events have been appended behind the start position
+   * @param insertedIndices
+   *          the indices of the added log events in the store
+   */
+  private CompressedBitmap getAddedPositions(final int start, final boolean appended,
+      final CompressedBitmap insertedIndices) {
+    final CompressedBitmap positions = _filteredLogEvents.getPositions();
+    final CompressedBitmap addedPositions = new CompressedBitmap();
+    if (appended) {
+      for (int position = positions.nextSetBit(start); position >= 0; position = positions.nextSetBit(position + 1)) {
+        addedPositions.add(position);
+      }
+    } else {
+      for (int index = insertedIndices.nextSetBit(0); index >= 0; index = insertedIndices.nextSetBit(index + 1)) {
+        if (positions.contains(_firstPosition + index)) {
+          addedPositions.add(_firstPosition + index);
+        }
+      }
+    }
+    return addedPositions;
+  }
+
+  /**
+   * <p>
+   * Returns the event that describes the rows of the given added filtered positions.
+   * </p>
+   */
+  private LogEventStoreEvent createAddedEvent(final CompressedBitmap addedPositions, final boolean appended) {
+    final CompressedBitmap positions = _filteredLogEvents.getPositions();
+    if (appended) {
+      return new LogEventStoreEvent(this, LogEventStoreChangeType.APPENDED, positions.getCardinality()
+          - addedPositions.getCardinality(), positions.getCardinality() - 1, 0, _snapshot);
+    }
+
+    final int[] indices = new int[addedPositions.getCardinality()];
+    int i = 0;
+    for (int position = addedPositions.nextSetBit(0); position >= 0; position = addedPositions
+        .nextSetBit(position + 1)) {
+      indices[i++] = positions.rank(position);
+    }
+    return new LogEventStoreEvent(this, indices, _snapshot);
+  }
+
+  /**
+   * <p>
+   * Returns the event that describes the rows that have been removed by evicting the oldest log events. The snapshot
+   * of the event describes the state between the eviction and the addition of the new log events.
+   * </p>
+   *
+   * @param rowCount
+   *          the number of rows before the eviction (rows of added log events are not counted)
+   * @param evictedCount
+   *          the number of evicted log events
+   * @param addedPositions
+   *          the filtered positions of the added log events
+   * @param appended
+   *          <code>true</code> if the log events have been appended
+   */
+  private LogEventStoreEvent createRemovedEvent(final int rowCount, final int evictedCount,
+      final CompressedBitmap addedPositions, final boolean appended) {
+    final int remainingCount = _filteredLogEvents.size() - addedPositions.getCardinality();
+
+    LogEventStoreSnapshot snapshot;
+    if (appended) {
+      // the rows of the added log events are the last rows
+      snapshot = LogStoreSnapshot.limit(_snapshot, remainingCount);
+    } else {
+      final CompressedBitmap positions = _filteredLogEvents.getPositions().andNot(addedPositions).snapshot();
+      snapshot = new LogStoreSnapshot(_snapshot.getVersion(), _snapshot.getLogEvents(), new FilteredLogEventList(
+          _snapshot.getLogEvents(), positions, _firstPosition), _snapshot.getCategories(), _snapshot
+          .getStatistics());
+    }
+
+    return new LogEventStoreEvent(this, LogEventStoreChangeType.REMOVED, 0, rowCount - remainingCount - 1,
+        evictedCount, snapshot);
+  }
+
+  /**
+   * <p>
+   * Evicts the oldest log events if the store is bounded and exceeds its capacity. The filter results, the filtered
+   * positions and the category counts are updated incrementally.
+   * </p>
+   *
+   * @param addedPositions
+   *          the filtered positions of the log events added with this change, evicted positions are removed
+   * @return the number of evicted log events
+   */
+  private int evictLogEvents(final CompressedBitmap addedPositions) {
+    if (!isBounded()) {
+      return 0;
+    }
+
+    int count = _capacity > 0 ? Math.max(0, _logEvents.size() - _capacity) : 0;
+    if (_maxSizeInBytes > 0) {
+      for (int i = 0; i < count; i++) {
+        _sizeInBytes -= getEstimatedSize(_logEvents.get(i));
+      }
+      while ((_sizeInBytes > _maxSizeInBytes) && (count < _logEvents.size())) {
+        _sizeInBytes -= getEstimatedSize(_logEvents.get(count));
+        count++;
       }
+    }
+    if (count == 0) {
+      return 0;
+    }
 
-      // add new categories and save for event handling later on
-      final String category = event.getCategory();
-      if (!_categories.contains(category)) {
-        _categories.add(category);
+    final CompressedBitmap positions = _filteredLogEvents.getPositions();
+    for (int i = 0; i < count; i++) {
+      final LogEvent logEvent = _logEvents.get(i);
+      final boolean filtered = positions.contains(_firstPosition + i);
+      _categoryRegistry.unregister(logEvent.getCategory(), filtered);
+      if (filtered) {
+        _logLevelIndex.uncountFiltered(logEvent.getLogLevel());
       }
+      if (logEvent instanceof AbstractLogEvent) {
+        ((AbstractLogEvent) logEvent).removeLogEventChangeListener(this);
+      }
+    }
+    _logEvents.removeFirst(count);
+
+    int firstPosition = _firstPosition + count;
+    positions.removeBelow(firstPosition);
+    addedPositions.removeBelow(firstPosition);
+    _categoryTrie.removeBelow(firstPosition);
+    _logLevelIndex.removeBelow(firstPosition);
+    _filterResultCache.removeBelow(firstPosition);
+    for (final PostingIndex index : getIndexes()) {
+      index.removeBelow(firstPosition);
+    }
 
-      // check if it's a filtered event
-      if (isFiltered(event)) {
-        _filteredLogEvents.add(event);
+    // rebase the positions, so that they never overflow
+    final int delta = firstPosition & ~0xFFFF;
+    if (delta > 0) {
+      positions.shiftDown(delta);
+      addedPositions.shiftDown(delta);
+      _categoryTrie.shiftDown(delta);
+      _logLevelIndex.shiftDown(delta);
+      _filterResultCache.shiftDown(delta);
+      for (final PostingIndex index : getIndexes()) {
+        index.shiftDown(delta);
       }
+      firstPosition -= delta;
     }
 
-    Collections.sort(_logEvents);
-    Collections.sort(_filteredLogEvents);
+    _firstPosition = firstPosition;
+    _filteredLogEvents.setPositions(positions, firstPosition);
+    return count;
+  }
+
+  /**
+   * <p>
+   * Returns the log event at the given position.
+   * </p>
+   */
+  private LogEvent getLogEvent(final int position) {
+    return _logEvents.get(position - _firstPosition);
+  }
 
-    fireLogEventStoreChange();
+  /**
+   * <p>
+   * Returns the position behind the last log event.
+   * </p>
+   */
+  private int getEndPosition() {
+    return _firstPosition + _logEvents.size();
+  }
+
+  /**
+   * <p>
+   * Prepares the given log event for being stored. If the columnar storage is enabled, the log event is copied to a new
+   * row and the view on that row is returned.
+   * </p>
+   *
+   * @param event
+   *          the log event
+   * @return the log event that should be stored
+   */
+  private LogEvent importLogEvent(final LogEvent event) {
+    if (isColumnar()) {
+      // the log events of an opened session already are rows of the columnar list
+      return _columnarLogEvents.isRowOfThisList(event) ? event : _columnarLogEvents.importLogEvent(event);
+    }
+    if (event instanceof AbstractLogEvent) {
+      final AbstractLogEvent abstractLogEvent = (AbstractLogEvent) event;
+      abstractLogEvent.addLogEventChangeListener(this);
+    }
+    return event;
   }
 
   public void reset() {
+    synchronized (_filterLock) {
+      clearLogEvents();
+    }
+
+    _notifier.flush();
+  }
+
+  /**
+   * <p>
+   * Removes all log events from the store. Must be invoked while holding the filter lock.
+   * </p>
+   */
+  private void clearLogEvents() {
     for (final LogEvent logEvent : _logEvents) {
       if (logEvent instanceof AbstractLogEvent) {
         final AbstractLogEvent abstractLogEvent = (AbstractLogEvent) logEvent;
@@ -160,16 +1346,92 @@ public class LogStoreComponent extends AbstractFilterable implements ModifiableL
     }
 
     _logEvents.clear();
-    _filteredLogEvents.clear();
-    _categories.clear();
+    if (isColumnar()) {
+      _columnarLogEvents.clear();
+    }
+    _sizeInBytes = 0;
+    _firstPosition = 0;
+    _filterResultCache.clear();
+    _filteredLogEvents.setPositions(new CompressedBitmap(), 0);
+    _categoryRegistry.clear();
+    _categoryTrie.clear();
+    _logLevelIndex.clear();
+    for (final PostingIndex index : getIndexes()) {
+      index.clear(0);
+    }
+    addRefilteredEvent();
+  }
+
+  /**
+   * <p>
+   * Writes the current snapshot to the given session file (see {@link LogStoreSession}). The snapshot is immutable, so
+   * the file is written without holding the filter lock and log events can be added in the meantime.
+   * </p>
+   */
+  public void saveSession(final File file) throws IOException {
+    Assert.notNull(file);
+
+    final List<LogEvent> logEvents;
+    final Map<String, LogEventFilterMemento> filterMementos = new HashMap<String, LogEventFilterMemento>();
+    synchronized (_filterLock) {
+      logEvents = _snapshot.getLogEvents();
+      for (final Map.Entry<LogEventFilterFactory, LogEventFilter> entry : _registeredLogEventFilters.entrySet()) {
+        final LogEventFilterMemento memento = entry.getValue().saveToMemento();
+        if (memento != null) {
+          filterMementos.put(entry.getKey().getDescription(), memento);
+        }
+      }
+    }
 
-    fireLogEventStoreChange();
+    _logger.debug("Saving " + logEvents.size() + " log events to session " + file);
+    LogStoreSession.write(file, logEvents, filterMementos);
+  }
+
+  /**
+   * <p>
+   * Resets the store and loads the given session file. The rows of the session are memory-mapped, so only the fixed
+   * size columns (time stamps, levels, categories) are read while the log events are added; messages and throwable
+   * informations are read on demand. If the columnar storage is not enabled, the rows are mapped into a separate
+   * {@link ColumnarLogEventList} that is only referenced by the views on its rows. Afterwards the filters of the registered
+   * factories are restored from the saved mementos.
+   * </p>
+   */
+  public void openSession(final File file) throws IOException {
+    Assert.notNull(file);
+
+    final LogStoreSession session;
+    try {
+      synchronized (_filterLock) {
+        // reset while holding the lock, so that no heap rows can be added before the segments are mapped
+        clearLogEvents();
+        final ColumnarLogEventList logEvents = isColumnar() ? _columnarLogEvents : new ColumnarLogEventList(this);
+        try {
+          session = LogStoreSession.read(file, logEvents);
+        } catch (final IOException e) {
+          logEvents.clear();
+          throw e;
+        }
+      }
+    } finally {
+      _notifier.flush();
+    }
+
+    _logger.debug("Opening session " + file + " with " + session.getLogEvents().size() + " log events");
+    addLogEvents(session.getLogEvents());
+
+    for (final Map.Entry<LogEventFilterFactory, LogEventFilter> entry : _registeredLogEventFilters.entrySet()) {
+      final LogEventFilterMemento memento = session.getFilterMemento(entry.getKey().getDescription(), entry.getKey()
+          .getClass().getClassLoader());
+      if (memento != null) {
+        entry.getValue().restoreFromMemento(memento);
+      }
+    }
   }
 
   /** Filterable */
 
   public List<LogEvent> getFilteredLogEvents() {
-    return _filteredLogEvents;
+    return _snapshot.getFilteredLogEvents();
   }
 
   public void addLogEventFilterFactory(final LogEventFilterFactory logEventFilterFactory) {
@@ -187,12 +1449,91 @@ public class LogStoreComponent extends AbstractFilterable implements ModifiableL
     }
   }
 
-  protected void fireLogEventStoreChange() {
-    final LogEventStoreEvent event = new LogEventStoreEvent(this);
-    for (final LogEventStoreListener logEventStoreListener : _eventListenerList
-        .getListeners(LogEventStoreListener.class)) {
-      logEventStoreListener.logEventStoreChanged(event);
+  /**
+   * <p>
+   * Publishes the new version of the store. Must be invoked while holding the filter lock.
+   * </p>
+   */
+  private void publishSnapshot() {
+    if (_publishedCategoriesModificationCount != _categoryRegistry.getModificationCount()) {
+      _publishedCategories = Collections.unmodifiableList(new ArrayList<String>(_categoryRegistry.getCategories()));
+      _publishedCategoriesModificationCount = _categoryRegistry.getModificationCount();
+    }
+
+    final List<LogEvent> logEvents = _logEvents.publish();
+    final FilteredLogEventList filteredLogEvents = new FilteredLogEventList(logEvents, _filteredLogEvents
+        .getPositions().snapshot(), _firstPosition);
+    _snapshot = new LogStoreSnapshot(++_version, logEvents, filteredLogEvents, _publishedCategories,
+        createStatistics());
+  }
+
+  /**
+   * <p>
+   * Replaces the statistics of the current version, e.g. after an index has been extended. Must be invoked while
+   * holding the filter lock.
+   * </p>
+   */
+  private void publishStatistics() {
+    _snapshot = _snapshot.withStatistics(createStatistics());
+  }
+
+  /**
+   * <p>
+   * Computes the statistics that are published with the snapshots, so that they can be read without locking. Must be
+   * invoked while holding the filter lock.
+   * </p>
+   */
+  private LogStoreSnapshot.Statistics createStatistics() {
+    final LogLevel[] logLevels = LogLevel.values();
+    final int[] logLevelCounts = new int[logLevels.length];
+    final int[] filteredLogLevelCounts = new int[logLevels.length];
+    final CompressedBitmap positions = _filteredLogEvents.getPositions();
+    for (int i = 0; i < logLevels.length; i++) {
+      logLevelCounts[i] = _logLevelIndex.getCount(logLevels[i]);
+      filteredLogLevelCounts[i] = _logLevelIndex.getFilteredCount(logLevels[i], positions);
+    }
+
+    int indexedTo = -1;
+    long messageIndexSizeInBytes = 0;
+    for (final PostingIndex index : getIndexes()) {
+      indexedTo = indexedTo < 0 ? index.getIndexedTo() : Math.min(indexedTo, index.getIndexedTo());
+      messageIndexSizeInBytes += index.getSizeInBytes();
+    }
+
+    return new LogStoreSnapshot.Statistics(logLevelCounts, filteredLogLevelCounts, indexedTo < 0 ? -1 : indexedTo
+        - _firstPosition, messageIndexSizeInBytes, _filterResultCache.getSizeInBytes());
+  }
+
+  /**
+   * <p>
+   * Publishes the new version of the store and adds an event that describes an arbitrary change of the filtered log
+   * events. Must be invoked while holding the filter lock, the notifier has to be flushed after releasing the lock.
+   * </p>
+   */
+  private void addRefilteredEvent() {
+    publishSnapshot();
+    _notifier.add(new LogEventStoreEvent(this, _snapshot));
+  }
+
+  /**
+   * <p>
+   * Returns the estimated heap size of the given log event: a fixed overhead plus the characters of the message and
+   * the throwable information.
+   * </p>
+   */
+  private static int getEstimatedSize(final LogEvent logEvent) {
+    int size = LOG_EVENT_SIZE;
+    final String message = logEvent.getMessage();
+    if (message != null) {
+      size += message.length() * 2;
+    }
+    if (logEvent.hasThrowableInformation()) {
+      final String throwableInformation = logEvent.getThrowableInformationAsString();
+      if (throwableInformation != null) {
+        size += throwableInformation.length() * 2;
+      }
     }
+    return size;
   }
 
   public void logEventChange(final LogEventChangeEvent event) {
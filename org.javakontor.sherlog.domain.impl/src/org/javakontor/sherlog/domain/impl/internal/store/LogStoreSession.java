@@ -0,0 +1,564 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogEventSource;
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.domain.filter.LogEventFilterMemento;
+import org.javakontor.sherlog.domain.impl.internal.reader.LogEventSourceImpl;
+import org.javakontor.sherlog.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Writes and reads session files: a compact, versioned binary snapshot of the log events of a store, the user defined
+ * fields of the log events (e.g. color marks) and the mementos of the registered filters.
+ * </p>
+ * <p>
+ * The log events are written in chunks of {@value ColumnarLogEventList#ROWS_PER_CHUNK} rows, each chunk in the
+ * {@link LogEventSegment segment format} of the {@link ColumnarLogEventList}. Reading a session maps the chunks into a
+ * {@link ColumnarLogEventList} without decoding them, so the messages and throwable informations are only read when
+ * they are accessed. The file layout is:
+ * </p>
+ *
+ * <pre>
+ * header:   int magic, int version
+ * segments: one segment per chunk
+ * footer:   int logEventCount
+ *           int segmentCount, (long position, int size, int rows) per segment
+ *           strings categories, strings threadNames, strings logEventSources
+ *           int count, (int row, bytes nestedDiagnosticContext) per log event that has one
+ *           int count, (int row, string fieldName, bytes value) per user defined field
+ *           int count, (string description, bytes memento) per filter
+ * trailer:  long footerPosition, int magic
+ * </pre>
+ * <p>
+ * Strings are written as the length of their UTF-8 encoded form (-1 for <code>null</code>) followed by the bytes,
+ * values as the length of their serialized form followed by the bytes. Values that are not serializable are skipped
+ * (nested diagnostic contexts are written as strings instead).
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class LogStoreSession {
+
+  /** the magic number at the start and the end of a session file */
+  private static final int                  MAGIC        = 0x53484C53;
+
+  /** the current version of the file format */
+  public static final int                   VERSION      = 2;
+
+  /** the size of the header */
+  private static final int                  HEADER_SIZE  = 8;
+
+  /** the size of the trailer */
+  private static final int                  TRAILER_SIZE = 12;
+
+  /** the logger */
+  private static final Logger               LOGGER       = LoggerFactory.getLogger(LogStoreSession.class);
+
+  /** the log events of the session (views on the rows of the list they have been loaded into) */
+  private final List<LogEvent>              _logEvents;
+
+  /** the serialized filter mementos, keyed by the description of the filter factory */
+  private final Map<String, byte[]>         _filterMementos;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link LogStoreSession}.
+   * </p>
+   *
+   * @param logEvents
+   *          the log events of the session
+   * @param filterMementos
+   *          the serialized filter mementos
+   */
+  private LogStoreSession(final List<LogEvent> logEvents, final Map<String, byte[]> filterMementos) {
+    _logEvents = logEvents;
+    _filterMementos = filterMementos;
+  }
+
+  /**
+   * <p>
+   * Returns the log events of the session in the order they have been written.
+   * </p>
+   *
+   * @return the log events of the session.
+   */
+  public List<LogEvent> getLogEvents() {
+    return _logEvents;
+  }
+
+  /**
+   * <p>
+   * Returns the descriptions of the filter factories whose filter mementos have been saved.
+   * </p>
+   *
+   * @return the descriptions of the filter factories whose filter mementos have been saved.
+   */
+  public List<String> getFilterDescriptions() {
+    return new ArrayList<String>(_filterMementos.keySet());
+  }
+
+  /**
+   * <p>
+   * Returns the saved filter memento of the filter factory with the given description.
+   * </p>
+   *
+   * @param description
+   *          the description of the filter factory
+   * @param classLoader
+   *          the class loader used to resolve the class of the memento (usually the class loader of the factory)
+   * @return the saved filter memento, <code>null</code> if no memento has been saved or it cannot be read.
+   */
+  public LogEventFilterMemento getFilterMemento(final String description, final ClassLoader classLoader) {
+    final byte[] memento = _filterMementos.get(description);
+    if (memento == null) {
+      return null;
+    }
+    final Object result = deserialize(memento, classLoader);
+    return result instanceof LogEventFilterMemento ? (LogEventFilterMemento) result : null;
+  }
+
+  /**
+   * <p>
+   * Writes the given log events and filter mementos to the given session file. An existing file is overwritten.
+   * </p>
+   *
+   * @param file
+   *          the session file
+   * @param logEvents
+   *          the log events
+   * @param filterMementos
+   *          the filter mementos, keyed by the description of the filter factory (mementos that are not serializable
+   *          are skipped)
+   * @throws IOException
+   */
+  public static void write(final File file, final List<LogEvent> logEvents,
+      final Map<String, LogEventFilterMemento> filterMementos) throws IOException {
+    Assert.notNull(file);
+    Assert.notNull(logEvents);
+    Assert.notNull(filterMementos);
+
+    final ValueDictionary<String> categories = new ValueDictionary<String>();
+    final ValueDictionary<String> threadNames = new ValueDictionary<String>();
+    final ValueDictionary<String> logEventSources = new ValueDictionary<String>();
+
+    final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    try {
+      randomAccessFile.setLength(0);
+      final FileChannel channel = randomAccessFile.getChannel();
+      writeFully(channel, 0, ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION));
+
+      final ByteArrayOutputStream footerBytes = new ByteArrayOutputStream();
+      final DataOutputStream footer = new DataOutputStream(footerBytes);
+      final ByteArrayOutputStream extraBytes = new ByteArrayOutputStream();
+      final DataOutputStream extras = new DataOutputStream(extraBytes);
+      int nestedDiagnosticContextCount = 0;
+      final ByteArrayOutputStream fieldBytes = new ByteArrayOutputStream();
+      final DataOutputStream fields = new DataOutputStream(fieldBytes);
+      int fieldCount = 0;
+
+      // the segments
+      final int chunkSize = ColumnarLogEventList.ROWS_PER_CHUNK;
+      final long[] timeStamps = new long[chunkSize];
+      final byte[] logLevels = new byte[chunkSize];
+      final int[] categoryIds = new int[chunkSize];
+      final int[] threadNameIds = new int[chunkSize];
+      final int[] logEventSourceIds = new int[chunkSize];
+      final String[] messages = new String[chunkSize];
+      final String[] throwableInformation = new String[chunkSize];
+
+      footer.writeInt(logEvents.size());
+      footer.writeInt((logEvents.size() + chunkSize - 1) / chunkSize);
+      long position = HEADER_SIZE;
+      int row = 0;
+      for (final LogEvent logEvent : logEvents) {
+        final int index = row % chunkSize;
+        timeStamps[index] = logEvent.getTimeStamp();
+        final LogLevel logLevel = logEvent.getLogLevel();
+        logLevels[index] = (byte) (logLevel == null ? -1 : logLevel.ordinal());
+        categoryIds[index] = categories.getId(logEvent.getCategory());
+        threadNameIds[index] = threadNames.getId(logEvent.getThreadName());
+        final LogEventSource logEventSource = logEvent.getLogEventSource();
+        logEventSourceIds[index] = logEventSources.getId(logEventSource == null ? null : logEventSource.getSource());
+        messages[index] = logEvent.getMessage();
+        throwableInformation[index] = logEvent.hasThrowableInformation() ? logEvent
+            .getThrowableInformationAsString() : null;
+
+        if (logEvent.hasNestedDiagnosticContext()) {
+          final Object nestedDiagnosticContext = logEvent.getNestedDiagnosticContext();
+          byte[] value = serialize(nestedDiagnosticContext);
+          if (value == null) {
+            value = serialize(String.valueOf(nestedDiagnosticContext));
+          }
+          extras.writeInt(row);
+          writeBytes(extras, value);
+          nestedDiagnosticContextCount++;
+        }
+        for (final String fieldName : logEvent.getUserDefinedFieldNames()) {
+          final byte[] value = serialize(logEvent.getUserDefinedField(fieldName));
+          if (value != null) {
+            fields.writeInt(row);
+            writeString(fields, fieldName);
+            writeBytes(fields, value);
+            fieldCount++;
+          }
+        }
+
+        row++;
+        if ((index == chunkSize - 1) || (row == logEvents.size())) {
+          final int rows = index + 1;
+          final int size = LogEventSegment.writeUnmapped(channel, position, rows, timeStamps, logLevels,
+              categoryIds, threadNameIds, logEventSourceIds, messages, throwableInformation);
+          footer.writeLong(position);
+          footer.writeInt(size);
+          footer.writeInt(rows);
+          position += size;
+        }
+      }
+      if (row != logEvents.size()) {
+        throw new IOException("The log events have been modified while writing the session");
+      }
+
+      // the dictionaries and the rare values
+      writeStrings(footer, categories);
+      writeStrings(footer, threadNames);
+      writeStrings(footer, logEventSources);
+      footer.writeInt(nestedDiagnosticContextCount);
+      extras.flush();
+      extraBytes.writeTo(footer);
+      footer.writeInt(fieldCount);
+      fields.flush();
+      fieldBytes.writeTo(footer);
+
+      // the filter mementos
+      final Map<String, byte[]> serializedMementos = new HashMap<String, byte[]>();
+      for (final Map.Entry<String, LogEventFilterMemento> entry : filterMementos.entrySet()) {
+        final byte[] memento = serialize(entry.getValue());
+        if (memento != null) {
+          serializedMementos.put(entry.getKey(), memento);
+        }
+      }
+      footer.writeInt(serializedMementos.size());
+      for (final Map.Entry<String, byte[]> entry : serializedMementos.entrySet()) {
+        writeString(footer, entry.getKey());
+        writeBytes(footer, entry.getValue());
+      }
+      footer.flush();
+
+      // the footer and the trailer
+      final long footerPosition = position;
+      position += writeFully(channel, position, ByteBuffer.wrap(footerBytes.toByteArray()));
+      writeFully(channel, position, ByteBuffer.allocate(TRAILER_SIZE).putLong(footerPosition).putInt(MAGIC));
+    } finally {
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * <p>
+   * Reads the given session file: the chunks of the log events are mapped into the given list (which must not contain
+   * any heap rows, see {@link ColumnarLogEventList#addSegment(LogEventSegment, int)}), the dictionaries, the nested
+   * diagnostic contexts and the user defined fields are restored. User defined fields that cannot be deserialized are
+   * skipped.
+   * </p>
+   *
+   * @param file
+   *          the session file
+   * @param logEvents
+   *          the list the log events are loaded into
+   * @return the session
+   * @throws IOException
+   */
+  public static LogStoreSession read(final File file, final ColumnarLogEventList logEvents) throws IOException {
+    Assert.notNull(file);
+    Assert.notNull(logEvents);
+
+    final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      final FileChannel channel = randomAccessFile.getChannel();
+      final long length = channel.size();
+      if (length < HEADER_SIZE + TRAILER_SIZE) {
+        throw new IOException("Not a session file: " + file);
+      }
+
+      // header and trailer
+      final ByteBuffer header = readFully(channel, 0, HEADER_SIZE);
+      final ByteBuffer trailer = readFully(channel, length - TRAILER_SIZE, TRAILER_SIZE);
+      if ((header.getInt(0) != MAGIC) || (trailer.getInt(8) != MAGIC)) {
+        throw new IOException("Not a session file: " + file);
+      }
+      final int version = header.getInt(4);
+      if (version != VERSION) {
+        throw new IOException("Unsupported session file version " + version + " (expected " + VERSION + "): " + file);
+      }
+      final long footerPosition = trailer.getLong(0);
+      final long footerSize = length - TRAILER_SIZE - footerPosition;
+      if ((footerPosition < HEADER_SIZE) || (footerSize > Integer.MAX_VALUE)) {
+        throw new IOException("Corrupt session file: " + file);
+      }
+      final ByteBuffer footerBuffer = readFully(channel, footerPosition, (int) footerSize);
+      final DataInputStream footer = new DataInputStream(new ByteArrayInputStream(footerBuffer.array()));
+
+      // the segments
+      final int logEventCount = footer.readInt();
+      final int segmentCount = footer.readInt();
+      final long[] segmentPositions = new long[segmentCount];
+      final int[] segmentSizes = new int[segmentCount];
+      final int[] segmentRows = new int[segmentCount];
+      for (int segment = 0; segment < segmentCount; segment++) {
+        segmentPositions[segment] = footer.readLong();
+        segmentSizes[segment] = footer.readInt();
+        segmentRows[segment] = footer.readInt();
+        if (segmentPositions[segment] + segmentSizes[segment] > footerPosition) {
+          throw new IOException("Corrupt session file: " + file);
+        }
+      }
+
+      // the dictionaries (must be restored before the rows are accessed)
+      final List<String> categories = readStrings(footer);
+      final List<String> threadNames = readStrings(footer);
+      final List<LogEventSource> logEventSources = new ArrayList<LogEventSource>();
+      for (final String source : readStrings(footer)) {
+        logEventSources.add(new LogEventSourceImpl(source));
+      }
+      logEvents.restoreDictionaries(categories, threadNames, logEventSources);
+
+      // map the segments
+      final List<LogEvent> views = new ArrayList<LogEvent>(logEventCount);
+      final int[] firstRows = new int[segmentCount];
+      for (int segment = 0; segment < segmentCount; segment++) {
+        firstRows[segment] = logEvents.addSegment(LogEventSegment.map(channel, segmentPositions[segment],
+            segmentSizes[segment]), segmentRows[segment]);
+        for (int index = 0; index < segmentRows[segment]; index++) {
+          views.add(logEvents.getLogEventOfRow(firstRows[segment] + index));
+        }
+      }
+      if (views.size() != logEventCount) {
+        throw new IOException("Corrupt session file: " + file);
+      }
+
+      // the rare values
+      final ClassLoader classLoader = LogStoreSession.class.getClassLoader();
+      final int nestedDiagnosticContextCount = footer.readInt();
+      for (int i = 0; i < nestedDiagnosticContextCount; i++) {
+        final int row = footer.readInt();
+        final Object nestedDiagnosticContext = deserialize(readBytes(footer), classLoader);
+        if (nestedDiagnosticContext != null) {
+          logEvents.restoreNestedDiagnosticContext(getRow(firstRows, row), nestedDiagnosticContext);
+        }
+      }
+      final int fieldCount = footer.readInt();
+      for (int i = 0; i < fieldCount; i++) {
+        final int row = footer.readInt();
+        final String fieldName = readString(footer);
+        final Object value = deserialize(readBytes(footer), classLoader);
+        if (value != null) {
+          logEvents.restoreUserDefinedField(getRow(firstRows, row), fieldName, value);
+        }
+      }
+
+      // the filter mementos
+      final Map<String, byte[]> filterMementos = new HashMap<String, byte[]>();
+      final int filterCount = footer.readInt();
+      for (int i = 0; i < filterCount; i++) {
+        filterMementos.put(readString(footer), readBytes(footer));
+      }
+
+      return new LogStoreSession(views, filterMementos);
+    } finally {
+      // the mapped segments stay valid after the file has been closed
+      randomAccessFile.close();
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the row of the list that the given row of the session has been loaded into.
+   * </p>
+   */
+  private static int getRow(final int[] firstRows, final int row) throws IOException {
+    final int segment = row / ColumnarLogEventList.ROWS_PER_CHUNK;
+    if ((row < 0) || (segment >= firstRows.length)) {
+      throw new IOException("Invalid row in session file: " + row);
+    }
+    return firstRows[segment] + (row % ColumnarLogEventList.ROWS_PER_CHUNK);
+  }
+
+  /**
+   * <p>
+   * Serializes the given value.
+   * </p>
+   *
+   * @return the serialized value, <code>null</code> if the value is not serializable.
+   */
+  private static byte[] serialize(final Object value) {
+    if (!(value instanceof Serializable)) {
+      return null;
+    }
+    try {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final ObjectOutputStream outputStream = new ObjectOutputStream(bytes);
+      outputStream.writeObject(value);
+      outputStream.close();
+      return bytes.toByteArray();
+    } catch (final IOException e) {
+      LOGGER.debug("Could not serialize " + value.getClass().getName() + ": " + e);
+      return null;
+    }
+  }
+
+  /**
+   * <p>
+   * Deserializes the given bytes, the classes are resolved with the given class loader first.
+   * </p>
+   *
+   * @return the value, <code>null</code> if the value cannot be deserialized.
+   */
+  private static Object deserialize(final byte[] bytes, final ClassLoader classLoader) {
+    try {
+      final ObjectInputStream inputStream = new ClassLoaderObjectInputStream(new ByteArrayInputStream(bytes),
+          classLoader);
+      try {
+        return inputStream.readObject();
+      } finally {
+        inputStream.close();
+      }
+    } catch (final IOException e) {
+      LOGGER.warn("Could not deserialize a value of the session: " + e);
+    } catch (final ClassNotFoundException e) {
+      LOGGER.warn("Could not deserialize a value of the session: " + e);
+    }
+    return null;
+  }
+
+  private static void writeStrings(final DataOutputStream out, final ValueDictionary<String> strings)
+      throws IOException {
+    out.writeInt(strings.size());
+    for (int id = 0; id < strings.size(); id++) {
+      writeString(out, strings.getValue(id));
+    }
+  }
+
+  private static List<String> readStrings(final DataInputStream in) throws IOException {
+    final int count = in.readInt();
+    final List<String> strings = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      strings.add(readString(in));
+    }
+    return strings;
+  }
+
+  private static void writeString(final DataOutputStream out, final String string) throws IOException {
+    if (string == null) {
+      out.writeInt(-1);
+      return;
+    }
+    writeBytes(out, LogEventSegment.encode(string));
+  }
+
+  private static String readString(final DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, "UTF-8");
+  }
+
+  private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(final DataInputStream in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  /**
+   * <p>
+   * Writes the given (flipped or not yet flipped) buffer at the given position.
+   * </p>
+   *
+   * @return the number of written bytes
+   */
+  private static int writeFully(final FileChannel channel, final long position, final ByteBuffer buffer)
+      throws IOException {
+    if (buffer.position() > 0) {
+      buffer.flip();
+    }
+    final int size = buffer.remaining();
+    long filePosition = position;
+    while (buffer.hasRemaining()) {
+      filePosition += channel.write(buffer, filePosition);
+    }
+    return size;
+  }
+
+  private static ByteBuffer readFully(final FileChannel channel, final long position, final int size)
+      throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(size);
+    long filePosition = position;
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, filePosition);
+      if (read < 0) {
+        throw new IOException("Unexpected end of session file");
+      }
+      filePosition += read;
+    }
+    return buffer;
+  }
+
+  /**
+   * <p>
+   * An {@link ObjectInputStream} that resolves classes with a given class loader first (the classes of the values
+   * might only be visible to the bundle that created them).
+   * </p>
+   */
+  private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+    /** the class loader */
+    private final ClassLoader _classLoader;
+
+    public ClassLoaderObjectInputStream(final InputStream inputStream, final ClassLoader classLoader)
+        throws IOException {
+      super(inputStream);
+      _classLoader = classLoader;
+    }
+
+    @Override
+    protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      if (_classLoader != null) {
+        try {
+          return Class.forName(desc.getName(), false, _classLoader);
+        } catch (final ClassNotFoundException e) {
+          // fall through
+        }
+      }
+      return super.resolveClass(desc);
+    }
+  }
+}
@@ -0,0 +1,272 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.domain.store.LogEventStoreSnapshot;
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * An immutable version of a {@link LogStoreComponent}. The lists are published versions of the lists of the store
+ * (see {@link ChunkedLogEventList#publish()} and {@link CompressedBitmap#snapshot()}), so creating a snapshot does not
+ * copy any log events.
+ * </p>
+ * <p>
+ * The snapshot also carries the {@link Statistics} of its version (level counts, index and cache sizes), so that
+ * readers like the status bar never have to take the lock of the store.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class LogStoreSnapshot implements LogEventStoreSnapshot {
+
+  /** the version number */
+  private final long           _version;
+
+  /** the log events */
+  private final List<LogEvent> _logEvents;
+
+  /** the filtered log events */
+  private final List<LogEvent> _filteredLogEvents;
+
+  /** the categories */
+  private final List<String>   _categories;
+
+  /** the statistics */
+  private final Statistics     _statistics;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link LogStoreSnapshot}.
+   * </p>
+   *
+   * @param version
+   *          the version number
+   * @param logEvents
+   *          the (immutable) log events
+   * @param filteredLogEvents
+   *          the (immutable) filtered log events
+   * @param categories
+   *          the (immutable) categories
+   * @param statistics
+   *          the statistics
+   */
+  public LogStoreSnapshot(final long version, final List<LogEvent> logEvents, final List<LogEvent> filteredLogEvents,
+      final List<String> categories, final Statistics statistics) {
+    Assert.notNull(logEvents);
+    Assert.notNull(filteredLogEvents);
+    Assert.notNull(categories);
+    Assert.notNull(statistics);
+
+    _version = version;
+    _logEvents = Collections.unmodifiableList(logEvents);
+    _filteredLogEvents = Collections.unmodifiableList(filteredLogEvents);
+    _categories = categories;
+    _statistics = statistics;
+  }
+
+  private LogStoreSnapshot(final LogStoreSnapshot snapshot, final Statistics statistics) {
+    _version = snapshot._version;
+    _logEvents = snapshot._logEvents;
+    _filteredLogEvents = snapshot._filteredLogEvents;
+    _categories = snapshot._categories;
+    _statistics = statistics;
+  }
+
+  public long getVersion() {
+    return _version;
+  }
+
+  public List<LogEvent> getLogEvents() {
+    return _logEvents;
+  }
+
+  public List<LogEvent> getFilteredLogEvents() {
+    return _filteredLogEvents;
+  }
+
+  public List<String> getCategories() {
+    return _categories;
+  }
+
+  /**
+   * <p>
+   * Returns the statistics of this version.
+   * </p>
+   *
+   * @return the statistics of this version.
+   */
+  public Statistics getStatistics() {
+    return _statistics;
+  }
+
+  /**
+   * <p>
+   * Returns a snapshot of the same version with the given statistics, e.g. after a background thread has extended an
+   * index.
+   * </p>
+   *
+   * @param statistics
+   *          the statistics
+   * @return a snapshot of the same version with the given statistics.
+   */
+  public LogStoreSnapshot withStatistics(final Statistics statistics) {
+    Assert.notNull(statistics);
+
+    return new LogStoreSnapshot(this, statistics);
+  }
+
+  public int getLogEventIndex(final long timeStamp) {
+    return indexOf(_logEvents, timeStamp);
+  }
+
+  public int getFilteredLogEventIndex(final long timeStamp) {
+    return indexOf(_filteredLogEvents, timeStamp);
+  }
+
+  public List<LogEvent> getLogEvents(final long fromTimeStamp, final long toTimeStamp) {
+    return subList(_logEvents, fromTimeStamp, toTimeStamp);
+  }
+
+  public List<LogEvent> getFilteredLogEvents(final long fromTimeStamp, final long toTimeStamp) {
+    return subList(_filteredLogEvents, fromTimeStamp, toTimeStamp);
+  }
+
+  /**
+   * <p>
+   * Returns the index of the first log event of the given list (sorted by time stamp) whose time stamp is at or after
+   * the given time stamp, the size of the list if there is none.
+   * </p>
+   *
+   * @param logEvents
+   *          the log events, sorted by time stamp
+   * @param timeStamp
+   *          the time stamp
+   * @return the index of the first log event at or after the given time stamp.
+   */
+  public static int indexOf(final List<LogEvent> logEvents, final long timeStamp) {
+    int low = 0;
+    int high = logEvents.size();
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (logEvents.get(middle).getTimeStamp() < timeStamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private static List<LogEvent> subList(final List<LogEvent> logEvents, final long fromTimeStamp,
+      final long toTimeStamp) {
+    final int fromIndex = indexOf(logEvents, fromTimeStamp);
+    final int toIndex = toTimeStamp <= fromTimeStamp ? fromIndex : indexOf(logEvents, toTimeStamp);
+    return logEvents.subList(fromIndex, toIndex);
+  }
+
+  /**
+   * <p>
+   * Returns a snapshot of the same version that only contains the first filtered log events of the given snapshot,
+   * e.g. to describe the state of the store before log events have been appended.
+   * </p>
+   *
+   * @param snapshot
+   *          the snapshot
+   * @param filteredLogEventCount
+   *          the number of filtered log events
+   * @return a snapshot that only contains the first filtered log events of the given snapshot.
+   */
+  public static LogStoreSnapshot limit(final LogEventStoreSnapshot snapshot, final int filteredLogEventCount) {
+    Assert.notNull(snapshot);
+
+    final Statistics statistics = snapshot instanceof LogStoreSnapshot ? ((LogStoreSnapshot) snapshot)
+        .getStatistics() : Statistics.EMPTY;
+    return new LogStoreSnapshot(snapshot.getVersion(), snapshot.getLogEvents(), snapshot.getFilteredLogEvents()
+        .subList(0, filteredLogEventCount), snapshot.getCategories(), statistics);
+  }
+
+  @Override
+  public String toString() {
+    return "LogStoreSnapshot [version=" + _version + ", logEvents=" + _logEvents.size() + ", filteredLogEvents="
+        + _filteredLogEvents.size() + "]";
+  }
+
+  /**
+   * <p>
+   * The counts and sizes of a version of the store that are computed by the writer when the version is published.
+   * </p>
+   */
+  public static class Statistics {
+
+    /** the statistics of an empty store */
+    public static final Statistics EMPTY = new Statistics(new int[LogLevel.values().length], new int[LogLevel
+                                             .values().length], -1, 0, 0);
+
+    /** the number of log events per level, indexed by ordinal */
+    private final int[]            _logLevelCounts;
+
+    /** the number of filtered log events per level, indexed by ordinal */
+    private final int[]            _filteredLogLevelCounts;
+
+    /** the number of indexed log events, -1 if the messages are not indexed */
+    private final int              _indexedLogEventCount;
+
+    /** the size of the message indexes in bytes */
+    private final long             _messageIndexSizeInBytes;
+
+    /** the size of the cached filter results in bytes */
+    private final long             _filterCacheSizeInBytes;
+
+    /**
+     * <p>
+     * Creates a new instance of type {@link Statistics}.
+     * </p>
+     *
+     * @param logLevelCounts
+     *          the number of log events per level, indexed by ordinal (not copied)
+     * @param filteredLogLevelCounts
+     *          the number of filtered log events per level, indexed by ordinal (not copied)
+     * @param indexedLogEventCount
+     *          the number of indexed log events, -1 if the messages are not indexed
+     * @param messageIndexSizeInBytes
+     *          the size of the message indexes in bytes
+     * @param filterCacheSizeInBytes
+     *          the size of the cached filter results in bytes
+     */
+    public Statistics(final int[] logLevelCounts, final int[] filteredLogLevelCounts, final int indexedLogEventCount,
+        final long messageIndexSizeInBytes, final long filterCacheSizeInBytes) {
+      Assert.notNull(logLevelCounts);
+      Assert.notNull(filteredLogLevelCounts);
+
+      _logLevelCounts = logLevelCounts;
+      _filteredLogLevelCounts = filteredLogLevelCounts;
+      _indexedLogEventCount = indexedLogEventCount;
+      _messageIndexSizeInBytes = messageIndexSizeInBytes;
+      _filterCacheSizeInBytes = filterCacheSizeInBytes;
+    }
+
+    public int getLogLevelCount(final LogLevel logLevel) {
+      return _logLevelCounts[logLevel.ordinal()];
+    }
+
+    public int getFilteredLogLevelCount(final LogLevel logLevel) {
+      return _filteredLogLevelCounts[logLevel.ordinal()];
+    }
+
+    public int getIndexedLogEventCount() {
+      return _indexedLogEventCount;
+    }
+
+    public long getMessageIndexSizeInBytes() {
+      return _messageIndexSizeInBytes;
+    }
+
+    public long getFilterCacheSizeInBytes() {
+      return _filterCacheSizeInBytes;
+    }
+  }
+}
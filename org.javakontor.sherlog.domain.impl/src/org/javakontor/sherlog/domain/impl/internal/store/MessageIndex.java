@@ -0,0 +1,174 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.javakontor.sherlog.domain.LogEvent;
+
+/**
+ * <p>
+ * An inverted index of the messages of a store: for each term (a maximal run of letters and digits, lower case) the
+ * {@link PostingList} of the store positions of the log events whose messages contain the term.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class MessageIndex extends PostingIndex {
+
+  /** longer terms are not indexed */
+  public static final int MAX_TERM_LENGTH = 64;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link MessageIndex}.
+   * </p>
+   *
+   * @param firstPosition
+   *          the position of the first log event of the store
+   */
+  public MessageIndex(final int firstPosition) {
+    super(firstPosition);
+  }
+
+  /**
+   * <p>
+   * Returns the candidate positions for a message filter that requires the given substring: the positions of the log
+   * events whose messages contain all terms that are enclosed by non-term characters within the substring (the first
+   * and the last term of the substring might only be a part of a term of the message), and all positions that have not
+   * been indexed yet.
+   * </p>
+   *
+   * @param substring
+   *          the substring
+   * @param from
+   *          the first position (inclusive)
+   * @param end
+   *          the last position (exclusive)
+   * @return the candidate positions, <code>null</code> if the substring does not contain an enclosed term.
+   */
+  public CompressedBitmap getCandidates(final String substring, final int from, final int end) {
+    final List<String> terms = new ArrayList<String>();
+    addTerms(substring, terms, true);
+    if (terms.isEmpty()) {
+      return null;
+    }
+
+    final List<List<String>> query = new ArrayList<List<String>>();
+    query.add(terms);
+    return getPositions(query, from, end);
+  }
+
+  /**
+   * <p>
+   * Adds the terms of the message of the given log event.
+   * </p>
+   */
+  @Override
+  protected void addKeys(final LogEvent logEvent, final int position, final Batch batch) {
+    final String message = logEvent.getMessage();
+    if (message == null) {
+      return;
+    }
+    final int length = message.length();
+    int start = -1;
+    for (int i = 0; i <= length; i++) {
+      final boolean termCharacter = (i < length) && isTermCharacter(message.charAt(i));
+      if (termCharacter && (start < 0)) {
+        start = i;
+      } else if (!termCharacter && (start >= 0)) {
+        if (i - start <= MAX_TERM_LENGTH) {
+          batch.add(message.substring(start, i).toLowerCase(), position);
+        }
+        start = -1;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Parses the given query: terms separated by white space must all be contained (AND), alternatives are separated by
+   * <code>OR</code>. Terms are matched case-insensitively, non-term characters separate terms as well.
+   * </p>
+   *
+   * @param query
+   *          the query, e.g. <code>order 4711 OR payment failed</code>
+   * @return the alternatives, each a list of terms.
+   */
+  public static List<List<String>> parseQuery(final String query) {
+    final List<List<String>> result = new ArrayList<List<String>>();
+    List<String> terms = new ArrayList<String>();
+    for (final String word : query.trim().split("\\s+")) {
+      if ("OR".equals(word)) {
+        if (!terms.isEmpty()) {
+          result.add(terms);
+          terms = new ArrayList<String>();
+        }
+        continue;
+      }
+      addTerms(word, terms, false);
+    }
+    if (!terms.isEmpty()) {
+      result.add(terms);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given message contains all terms of at least one of the alternatives of the given
+   * query.
+   * </p>
+   *
+   * @param message
+   *          the message, might be <code>null</code>
+   * @param query
+   *          the query (see {@link #parseQuery(String)})
+   * @return <code>true</code> if the given message matches the query.
+   */
+  public static boolean matches(final String message, final List<List<String>> query) {
+    if (message == null) {
+      return false;
+    }
+    final Set<String> messageTerms = new HashSet<String>();
+    addTerms(message, messageTerms, false);
+    for (final List<String> terms : query) {
+      if (messageTerms.containsAll(terms)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * <p>
+   * Adds the (lower case) terms of the given text to the given collection. If <code>enclosedOnly</code> is
+   * <code>true</code>, the terms at the beginning and at the end of the text are skipped unless they are enclosed by
+   * non-term characters.
+   * </p>
+   */
+  private static void addTerms(final String text, final Collection<String> terms, final boolean enclosedOnly) {
+    final int length = text.length();
+    int start = -1;
+    for (int i = 0; i <= length; i++) {
+      final boolean termCharacter = (i < length) && isTermCharacter(text.charAt(i));
+      if (termCharacter && (start < 0)) {
+        start = i;
+      } else if (!termCharacter && (start >= 0)) {
+        if ((!enclosedOnly || ((start > 0) && (i < length))) && (i - start <= MAX_TERM_LENGTH)) {
+          terms.add(text.substring(start, i).toLowerCase());
+        }
+        start = -1;
+      }
+    }
+  }
+
+  private static boolean isTermCharacter(final char c) {
+    return Character.isLetterOrDigit(c);
+  }
+}
@@ -0,0 +1,391 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.javakontor.sherlog.domain.LogEvent;
+
+/**
+ * <p>
+ * Base class for the inverted indexes of a store: for each key the {@link PostingList} of the store positions of the
+ * log events that contain the key. Subclasses define the keys of a log event (see {@link #addKeys(LogEvent, int,
+ * Batch)}).
+ * </p>
+ * <p>
+ * The index is built in the background: the log events are {@link #tokenize(int, LogEvent[]) tokenized} without
+ * holding any lock and the resulting {@link Batch} is {@link #append(Batch) appended} afterwards. The index is only
+ * valid for the positions below {@link #getIndexedTo()}, queries treat all positions behind as candidates. If log
+ * events are merged into the store, the index has to be {@link #truncate(int) truncated} at the first changed
+ * position.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public abstract class PostingIndex {
+
+  /** the number of positions the key sets of the recent batches are kept for (to truncate quickly) */
+  private static final int               RECENT_POSITIONS = 1 << 16;
+
+  /** the posting lists, keyed by key */
+  private final Map<String, PostingList> _postings;
+
+  /** the recently appended batches, the oldest first */
+  private final LinkedList<Batch>        _recentBatches;
+
+  /** the position of the first log event of the store */
+  private int                            _firstPosition;
+
+  /** the positions below have been indexed */
+  private int                            _indexedTo;
+
+  /** the (estimated) number of bytes used by the posting lists */
+  private long                           _sizeInBytes;
+
+  /** incremented whenever indexed positions are removed or shifted */
+  private int                            _modificationCount;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PostingIndex}.
+   * </p>
+   *
+   * @param firstPosition
+   *          the position of the first log event of the store
+   */
+  protected PostingIndex(final int firstPosition) {
+    _postings = new HashMap<String, PostingList>();
+    _recentBatches = new LinkedList<Batch>();
+    _firstPosition = firstPosition;
+    _indexedTo = firstPosition;
+  }
+
+  /**
+   * <p>
+   * Returns the position up to which (exclusive) the log events have been indexed.
+   * </p>
+   *
+   * @return the position up to which the log events have been indexed.
+   */
+  public int getIndexedTo() {
+    return _indexedTo;
+  }
+
+  /**
+   * <p>
+   * Returns a number that changes whenever indexed positions are removed or shifted, so that a batch that has been
+   * tokenized in the meantime can be discarded.
+   * </p>
+   *
+   * @return the modification count.
+   */
+  public int getModificationCount() {
+    return _modificationCount;
+  }
+
+  /**
+   * <p>
+   * Returns the (estimated) number of bytes used by this index.
+   * </p>
+   *
+   * @return the (estimated) number of bytes used by this index.
+   */
+  public long getSizeInBytes() {
+    return _sizeInBytes;
+  }
+
+  /**
+   * <p>
+   * Returns the number of keys.
+   * </p>
+   *
+   * @return the number of keys.
+   */
+  public int getKeyCount() {
+    return _postings.size();
+  }
+
+  /**
+   * <p>
+   * Appends the given batch. The batch must start at {@link #getIndexedTo()}.
+   * </p>
+   *
+   * @param batch
+   *          the batch
+   */
+  public void append(final Batch batch) {
+    if (batch._from != _indexedTo) {
+      throw new IllegalStateException("Batch starts at " + batch._from + ", expected " + _indexedTo);
+    }
+
+    for (final Map.Entry<String, int[]> entry : batch._keys.entrySet()) {
+      PostingList postingList = _postings.get(entry.getKey());
+      if (postingList == null) {
+        postingList = new PostingList();
+        _postings.put(entry.getKey(), postingList);
+      } else {
+        _sizeInBytes -= postingList.getSizeInBytes();
+      }
+      final int[] positions = entry.getValue();
+      for (int i = 1; i <= positions[0]; i++) {
+        postingList.add(positions[i]);
+      }
+      _sizeInBytes += postingList.getSizeInBytes();
+    }
+    _indexedTo = batch._to;
+
+    _recentBatches.add(batch);
+    while ((_recentBatches.size() > 1) && (_recentBatches.get(1)._from <= _indexedTo - RECENT_POSITIONS)) {
+      _recentBatches.removeFirst();
+    }
+  }
+
+  /**
+   * <p>
+   * Removes all positions greater or equal to the given position. Must be invoked whenever the log events at or behind
+   * the given position have changed, even if they have not been indexed yet.
+   * </p>
+   *
+   * @param position
+   *          the position
+   */
+  public void truncate(final int position) {
+    // a batch that is tokenized in the meantime might contain the changed positions
+    _modificationCount++;
+    if (position >= _indexedTo) {
+      return;
+    }
+
+    // only the keys of the recent batches can contain the positions (unless the truncated range is older)
+    final Iterable<String> keys;
+    if (!_recentBatches.isEmpty() && (_recentBatches.getFirst()._from <= position)) {
+      final Set<String> recentKeys = new HashSet<String>();
+      for (final ListIterator<Batch> iterator = _recentBatches.listIterator(_recentBatches.size()); iterator
+          .hasPrevious();) {
+        final Batch batch = iterator.previous();
+        if (batch._to <= position) {
+          break;
+        }
+        recentKeys.addAll(batch._keys.keySet());
+        if (batch._from >= position) {
+          iterator.remove();
+        } else {
+          batch._to = position;
+        }
+      }
+      keys = recentKeys;
+    } else {
+      _recentBatches.clear();
+      keys = new ArrayList<String>(_postings.keySet());
+    }
+
+    for (final String key : keys) {
+      final PostingList postingList = _postings.get(key);
+      if ((postingList != null) && (postingList.getLast() >= position)) {
+        _sizeInBytes -= postingList.getSizeInBytes();
+        postingList.truncate(position);
+        if (postingList.isEmpty()) {
+          _postings.remove(key);
+        } else {
+          _sizeInBytes += postingList.getSizeInBytes();
+        }
+      }
+    }
+
+    _indexedTo = position;
+  }
+
+  /**
+   * <p>
+   * Removes all positions less than the given position (the position of the first log event after an eviction). The
+   * positions are skipped immediately, the memory is released when the positions are {@link #shiftDown(int) shifted}.
+   * </p>
+   *
+   * @param position
+   *          the position
+   */
+  public void removeBelow(final int position) {
+    _firstPosition = position;
+    if (_indexedTo < position) {
+      _indexedTo = position;
+      _recentBatches.clear();
+      _modificationCount++;
+    }
+  }
+
+  /**
+   * <p>
+   * Subtracts the given delta from all positions and releases the positions below the first position.
+   * </p>
+   *
+   * @param delta
+   *          the delta
+   */
+  public void shiftDown(final int delta) {
+    _sizeInBytes = 0;
+    for (final Iterator<PostingList> iterator = _postings.values().iterator(); iterator.hasNext();) {
+      final PostingList postingList = iterator.next();
+      postingList.removeBelow(_firstPosition);
+      if (postingList.isEmpty()) {
+        iterator.remove();
+      } else {
+        postingList.shiftDown(delta);
+        _sizeInBytes += postingList.getSizeInBytes();
+      }
+    }
+    _firstPosition -= delta;
+    _indexedTo -= delta;
+    _recentBatches.clear();
+    _modificationCount++;
+  }
+
+  /**
+   * <p>
+   * Removes all positions, the next log event added to the store will have the given position.
+   * </p>
+   *
+   * @param firstPosition
+   *          the position of the first log event of the store
+   */
+  public void clear(final int firstPosition) {
+    _postings.clear();
+    _recentBatches.clear();
+    _firstPosition = firstPosition;
+    _indexedTo = firstPosition;
+    _sizeInBytes = 0;
+    _modificationCount++;
+  }
+
+  /**
+   * <p>
+   * Returns the positions in the range <code>[from, end)</code> of the log events that contain all keys of at least
+   * one of the alternatives of the given query, and all positions in the range that have not been indexed yet. Only
+   * the postings within the range are decoded.
+   * </p>
+   *
+   * @param query
+   *          the query, a list of alternatives, each a list of keys
+   * @param from
+   *          the first position (inclusive)
+   * @param end
+   *          the last position (exclusive)
+   * @return the positions of the matching log events and all positions that have not been indexed yet.
+   */
+  public CompressedBitmap getPositions(final List<? extends Iterable<String>> query, final int from, final int end) {
+    final int start = Math.max(from, _firstPosition);
+    CompressedBitmap result = new CompressedBitmap();
+    for (final Iterable<String> keys : query) {
+      CompressedBitmap positions = null;
+      for (final String key : keys) {
+        final PostingList postingList = _postings.get(key);
+        if (postingList == null) {
+          positions = new CompressedBitmap();
+          break;
+        }
+        final CompressedBitmap postings = postingList.toBitmap(start, end);
+        positions = positions == null ? postings : positions.and(postings);
+      }
+      if (positions != null) {
+        result = result.or(positions);
+      }
+    }
+    if (Math.max(start, _indexedTo) < end) {
+      result.addRange(Math.max(start, _indexedTo), end);
+    }
+    return result;
+  }
+
+  /**
+   * <p>
+   * Tokenizes the given log events. Does not access the index, so it can be invoked without holding the lock of the
+   * store.
+   * </p>
+   *
+   * @param from
+   *          the position of the first log event
+   * @param logEvents
+   *          the log events
+   * @return the batch
+   */
+  public final Batch tokenize(final int from, final LogEvent[] logEvents) {
+    final Batch batch = new Batch(from, from + logEvents.length);
+    for (int i = 0; i < logEvents.length; i++) {
+      addKeys(logEvents[i], from + i, batch);
+    }
+    return batch;
+  }
+
+  /**
+   * <p>
+   * Adds the keys of the given log event to the given batch. Must not access the state of the index.
+   * </p>
+   *
+   * @param logEvent
+   *          the log event
+   * @param position
+   *          the position of the log event
+   * @param batch
+   *          the batch
+   */
+  protected abstract void addKeys(LogEvent logEvent, int position, Batch batch);
+
+  /**
+   * <p>
+   * The keys of a range of tokenized log events.
+   * </p>
+   */
+  public static class Batch {
+
+    /** the position of the first log event */
+    private final int                _from;
+
+    /** the position behind the last log event */
+    private int                      _to;
+
+    /** the positions per key, the first element of each array is the number of positions */
+    private final Map<String, int[]> _keys;
+
+    Batch(final int from, final int to) {
+      _from = from;
+      _to = to;
+      _keys = new HashMap<String, int[]>();
+    }
+
+    /**
+     * <p>
+     * Adds the given key of the log event at the given position. The positions must be added in ascending order,
+     * adding a key of a log event twice is ignored.
+     * </p>
+     *
+     * @param key
+     *          the key
+     * @param position
+     *          the position of the log event
+     */
+    void add(final String key, final int position) {
+      int[] positions = _keys.get(key);
+      if (positions == null) {
+        positions = new int[4];
+        _keys.put(key, positions);
+      } else if (positions[positions[0]] == position) {
+        return;
+      }
+      if (positions[0] + 1 == positions.length) {
+        final int[] grown = new int[positions.length * 2];
+        System.arraycopy(positions, 0, grown, 0, positions.length);
+        positions = grown;
+        _keys.put(key, positions);
+      }
+      positions[++positions[0]] = position;
+    }
+  }
+}
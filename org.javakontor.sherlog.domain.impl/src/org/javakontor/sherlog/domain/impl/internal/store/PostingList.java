@@ -0,0 +1,358 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+/**
+ * <p>
+ * An append-only list of ascending store positions, compressed as variable-length encoded deltas (7 bits per byte).
+ * Dense postings (e.g. of frequent terms) need one byte per position.
+ * </p>
+ * <p>
+ * The list is divided into blocks of {@value #BLOCK_SIZE} positions. For each block the offset of its first delta and
+ * the position the first delta refers to are kept, so that the tail of the list can be {@link #truncate(int)
+ * truncated} and the positions can be {@link #shiftDown(int) shifted} without decoding the whole list. Positions
+ * below the {@link #removeBelow(int) floor} are skipped while decoding, whole blocks below the floor are released
+ * from time to time.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class PostingList {
+
+  /** the number of positions per block */
+  private static final int BLOCK_SIZE = 64;
+
+  /** the encoded deltas */
+  private byte[]           _data;
+
+  /** the number of used bytes */
+  private int              _length;
+
+  /** the offsets of the first delta of each block */
+  private int[]            _blockOffsets;
+
+  /** the positions the first delta of each block refers to (the last position of the previous block) */
+  private int[]            _blockBases;
+
+  /** the number of blocks */
+  private int              _blockCount;
+
+  /** the number of positions (including the positions below the floor) */
+  private int              _size;
+
+  /** the last position, -1 if the list is empty */
+  private int              _last;
+
+  /** the positions below the floor have been removed */
+  private int              _floor;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PostingList}.
+   * </p>
+   */
+  public PostingList() {
+    _data = new byte[8];
+    _blockOffsets = new int[1];
+    _blockBases = new int[1];
+    _last = -1;
+  }
+
+  /**
+   * <p>
+   * Appends the given position. Positions must be added in ascending order, adding the last position again is
+   * ignored.
+   * </p>
+   *
+   * @param position
+   *          the position
+   */
+  public void add(final int position) {
+    if (position <= _last) {
+      if (position == _last) {
+        return;
+      }
+      throw new IllegalStateException("Position " + position + " is less than the last position " + _last);
+    }
+
+    if ((_size % BLOCK_SIZE) == 0) {
+      if (_blockCount == _blockOffsets.length) {
+        _blockOffsets = grow(_blockOffsets, _blockCount * 2);
+        _blockBases = grow(_blockBases, _blockCount * 2);
+      }
+      _blockOffsets[_blockCount] = _length;
+      _blockBases[_blockCount] = _last;
+      _blockCount++;
+    }
+
+    // write the delta (at least 1), 7 bits per byte, the high bit marks a following byte
+    int delta = position - _last;
+    if (_length + 5 > _data.length) {
+      final byte[] data = new byte[Math.max(_length + 5, _data.length * 2)];
+      System.arraycopy(_data, 0, data, 0, _length);
+      _data = data;
+    }
+    while ((delta & ~0x7F) != 0) {
+      _data[_length++] = (byte) ((delta & 0x7F) | 0x80);
+      delta >>>= 7;
+    }
+    _data[_length++] = (byte) delta;
+
+    _last = position;
+    _size++;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the list does not contain a position at or above the floor.
+   * </p>
+   *
+   * @return <code>true</code> if the list does not contain a position at or above the floor.
+   */
+  public boolean isEmpty() {
+    return _last < _floor;
+  }
+
+  /**
+   * <p>
+   * Returns the (approximate) number of positions, positions below the floor might still be counted.
+   * </p>
+   *
+   * @return the (approximate) number of positions.
+   */
+  public int size() {
+    return _size;
+  }
+
+  /**
+   * <p>
+   * Returns the last position, -1 if the list is empty.
+   * </p>
+   *
+   * @return the last position.
+   */
+  public int getLast() {
+    return _last;
+  }
+
+  /**
+   * <p>
+   * Removes all positions greater or equal to the given position.
+   * </p>
+   *
+   * @param position
+   *          the position
+   */
+  public void truncate(final int position) {
+    if (position > _last) {
+      return;
+    }
+
+    // find the block that contains the first removed position (usually the last block)
+    int block = _blockCount - 1;
+    while ((block > 0) && (firstPosition(block) >= position)) {
+      block--;
+    }
+
+    // find the first removed position within the block
+    int offset = _blockOffsets[block];
+    int current = _blockBases[block];
+    int index = block * BLOCK_SIZE;
+    final int end = block + 1 < _blockCount ? _blockOffsets[block + 1] : _length;
+    while (offset < end) {
+      int delta = 0;
+      int shift = 0;
+      int next = offset;
+      byte b;
+      do {
+        b = _data[next++];
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      if (current + delta >= position) {
+        break;
+      }
+      current += delta;
+      offset = next;
+      index++;
+    }
+
+    _length = offset;
+    _size = index;
+    _blockCount = (index % BLOCK_SIZE) == 0 ? index / BLOCK_SIZE : (index / BLOCK_SIZE) + 1;
+    _last = index == 0 ? -1 : current;
+  }
+
+  /**
+   * <p>
+   * Removes all positions less than the given position. The positions are skipped immediately, the memory of whole
+   * blocks is released as soon as they make up at least half of the list.
+   * </p>
+   *
+   * @param position
+   *          the position
+   */
+  public void removeBelow(final int position) {
+    if (position <= _floor) {
+      return;
+    }
+    _floor = position;
+
+    // all positions of a block are below the floor if the first position of the next block is
+    int blocks = 0;
+    while ((blocks + 1 < _blockCount) && (firstPosition(blocks + 1) <= position)) {
+      blocks++;
+    }
+    if (isEmpty()) {
+      blocks = _blockCount;
+    }
+    if ((blocks == 0) || ((blocks < _blockCount) && (_blockOffsets[blocks] * 2 < _length))) {
+      return;
+    }
+
+    if (blocks == _blockCount) {
+      _length = 0;
+      _size = 0;
+      _blockCount = 0;
+      _last = -1;
+      _data = new byte[8];
+      _blockOffsets = new int[1];
+      _blockBases = new int[1];
+      return;
+    }
+
+    final int offset = _blockOffsets[blocks];
+    final byte[] data = new byte[Math.max(8, _length - offset)];
+    System.arraycopy(_data, offset, data, 0, _length - offset);
+    _data = data;
+    _length -= offset;
+    _blockCount -= blocks;
+    _size -= blocks * BLOCK_SIZE;
+    final int[] blockOffsets = new int[Math.max(1, _blockCount)];
+    final int[] blockBases = new int[Math.max(1, _blockCount)];
+    for (int i = 0; i < _blockCount; i++) {
+      blockOffsets[i] = _blockOffsets[blocks + i] - offset;
+      blockBases[i] = _blockBases[blocks + i];
+    }
+    _blockOffsets = blockOffsets;
+    _blockBases = blockBases;
+  }
+
+  /**
+   * <p>
+   * Subtracts the given delta from all positions. Only the block bases are changed, the encoded deltas stay valid.
+   * </p>
+   *
+   * @param delta
+   *          the delta
+   */
+  public void shiftDown(final int delta) {
+    for (int i = 0; i < _blockCount; i++) {
+      _blockBases[i] -= delta;
+    }
+    if (_last >= 0) {
+      _last -= delta;
+    }
+    _floor = Math.max(0, _floor - delta);
+  }
+
+  /**
+   * <p>
+   * Returns the positions (at or above the floor) as a bitmap.
+   * </p>
+   *
+   * @return the positions as a bitmap.
+   */
+  public CompressedBitmap toBitmap() {
+    return toBitmap(_floor, Integer.MAX_VALUE);
+  }
+
+  /**
+   * <p>
+   * Returns the positions (at or above the floor) in the range <code>[from, to)</code> as a bitmap. Decoding starts at
+   * the block that contains the first position of the range and stops behind the range.
+   * </p>
+   *
+   * @param from
+   *          the first position (inclusive)
+   * @param to
+   *          the last position (exclusive)
+   * @return the positions in the given range as a bitmap.
+   */
+  public CompressedBitmap toBitmap(final int from, final int to) {
+    final CompressedBitmap bitmap = new CompressedBitmap();
+    final int start = Math.max(from, _floor);
+    if ((_last < start) || (to <= start)) {
+      return bitmap;
+    }
+
+    // the last block whose base is below the start, all positions of the previous blocks are below the start
+    int low = 0;
+    int high = _blockCount - 1;
+    while (low < high) {
+      final int mid = (low + high + 1) >>> 1;
+      if (_blockBases[mid] < start) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+
+    int current = _blockBases[low];
+    int offset = _blockOffsets[low];
+    while (offset < _length) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = _data[offset++];
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      current += delta;
+      if (current >= to) {
+        break;
+      }
+      if (current >= start) {
+        bitmap.add(current);
+      }
+    }
+    return bitmap;
+  }
+
+  /**
+   * <p>
+   * Returns the (estimated) number of bytes used by this list.
+   * </p>
+   *
+   * @return the (estimated) number of bytes used by this list.
+   */
+  public long getSizeInBytes() {
+    return 64 + _data.length + (_blockOffsets.length * 8L);
+  }
+
+  /**
+   * <p>
+   * Decodes the first position of the given block.
+   * </p>
+   */
+  private int firstPosition(final int block) {
+    int offset = _blockOffsets[block];
+    int delta = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = _data[offset++];
+      delta |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return _blockBases[block] + delta;
+  }
+
+  private static int[] grow(final int[] array, final int length) {
+    final int[] result = new int[length];
+    System.arraycopy(array, 0, result, 0, array.length);
+    return result;
+  }
+}
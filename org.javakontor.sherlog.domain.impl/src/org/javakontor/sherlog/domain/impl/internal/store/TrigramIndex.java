@@ -0,0 +1,293 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.javakontor.sherlog.domain.LogEvent;
+
+/**
+ * <p>
+ * An inverted index of the trigrams (all substrings of three characters, lower case) of the messages and the throwable
+ * information of a store. Every text that contains a substring contains all trigrams of the substring, so the
+ * positions of the log events that contain all trigrams are the candidates for an arbitrary substring - or for a
+ * regular expression, whose matches must contain certain {@link #getRequiredLiterals(Pattern) literals}. The
+ * candidates still have to be verified with the actual match.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class TrigramIndex extends PostingIndex {
+
+  /** the length of a trigram */
+  private static final int    GRAM_LENGTH       = 3;
+
+  /** the escaped letters of the predefined character classes and boundary matchers */
+  private static final String ESCAPED_CLASSES   = "dDsSwWbBAGZz";
+
+  /** the flags of a pattern whose literals cannot be determined */
+  private static final int    UNSUPPORTED_FLAGS = Pattern.COMMENTS | Pattern.UNICODE_CASE | Pattern.CANON_EQ;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link TrigramIndex}.
+   * </p>
+   *
+   * @param firstPosition
+   *          the position of the first log event of the store
+   */
+  public TrigramIndex(final int firstPosition) {
+    super(firstPosition);
+  }
+
+  /**
+   * <p>
+   * Returns the candidate positions for a filter that requires the message to contain the given substring: the
+   * positions of the log events that contain all trigrams of the substring, and all positions that have not been
+   * indexed yet.
+   * </p>
+   *
+   * @param substring
+   *          the substring
+   * @param from
+   *          the first position (inclusive)
+   * @param end
+   *          the last position (exclusive)
+   * @return the candidate positions, <code>null</code> if the substring is shorter than three characters.
+   */
+  public CompressedBitmap getCandidates(final String substring, final int from, final int end) {
+    return getCandidates(Collections.singletonList(substring), from, end);
+  }
+
+  /**
+   * <p>
+   * Returns the candidate positions for a filter that requires the message to contain a match of the given pattern:
+   * the positions of the log events that contain all trigrams of the {@link #getRequiredLiterals(Pattern) required
+   * literals} of the pattern, and all positions that have not been indexed yet.
+   * </p>
+   *
+   * @param pattern
+   *          the pattern
+   * @param from
+   *          the first position (inclusive)
+   * @param end
+   *          the last position (exclusive)
+   * @return the candidate positions, <code>null</code> if no required literal of at least three characters is known.
+   */
+  public CompressedBitmap getCandidates(final Pattern pattern, final int from, final int end) {
+    final List<String> literals = getRequiredLiterals(pattern);
+    return literals == null ? null : getCandidates(literals, from, end);
+  }
+
+  /**
+   * <p>
+   * Adds the trigrams of the message and the throwable information of the given log event.
+   * </p>
+   */
+  @Override
+  protected void addKeys(final LogEvent logEvent, final int position, final Batch batch) {
+    addTrigrams(logEvent.getMessage(), position, batch);
+    addTrigrams(logEvent.getThrowableInformationAsString(), position, batch);
+  }
+
+  /**
+   * <p>
+   * Returns literals that every match of the given pattern contains. Only the literals outside of groups are taken into
+   * account, and only if the pattern does not contain an alternation outside of groups. Characters made optional by a
+   * quantifier are dropped, so the result is conservative.
+   * </p>
+   *
+   * @param pattern
+   *          the pattern
+   * @return the required literals, <code>null</code> if they cannot be determined.
+   */
+  public static List<String> getRequiredLiterals(final Pattern pattern) {
+    if ((pattern.flags() & Pattern.LITERAL) != 0) {
+      return Collections.singletonList(pattern.pattern());
+    }
+    if ((pattern.flags() & UNSUPPORTED_FLAGS) != 0) {
+      return null;
+    }
+
+    final String regex = pattern.pattern();
+    final List<String> literals = new ArrayList<String>();
+    final StringBuilder literal = new StringBuilder();
+    int depth = 0;
+    int i = 0;
+    while (i < regex.length()) {
+      final char c = regex.charAt(i++);
+      if (c == '\\') {
+        if (i == regex.length()) {
+          return null;
+        }
+        final char escaped = regex.charAt(i++);
+        if (!Character.isLetterOrDigit(escaped)) {
+          if (depth == 0) {
+            literal.append(escaped);
+          }
+        } else if (ESCAPED_CLASSES.indexOf(escaped) >= 0) {
+          addLiteral(literals, literal);
+        } else {
+          // quotations, back references, octal, hex and unicode escapes, properties...
+          return null;
+        }
+      } else if (c == '[') {
+        addLiteral(literals, literal);
+        i = skipCharacterClass(regex, i);
+        if (i < 0) {
+          return null;
+        }
+      } else if (c == '(') {
+        addLiteral(literals, literal);
+        if ((i < regex.length()) && (regex.charAt(i) == '?') && hasInlineFlags(regex, i + 1)) {
+          return null;
+        }
+        depth++;
+      } else if (c == ')') {
+        addLiteral(literals, literal);
+        depth--;
+      } else if (c == '|') {
+        if (depth == 0) {
+          return null;
+        }
+      } else if ((c == '*') || (c == '?') || (c == '{')) {
+        // the previous character is optional
+        if (literal.length() > 0) {
+          literal.setLength(literal.length() - 1);
+        }
+        addLiteral(literals, literal);
+        if (c == '{') {
+          i = regex.indexOf('}', i);
+          if (i < 0) {
+            return null;
+          }
+          i++;
+        }
+      } else if ((c == '+') || (c == '.') || (c == '^') || (c == '$')) {
+        addLiteral(literals, literal);
+      } else if (depth == 0) {
+        literal.append(c);
+      }
+    }
+    addLiteral(literals, literal);
+
+    return literals.isEmpty() ? null : literals;
+  }
+
+  /**
+   * <p>
+   * Returns the positions of the log events that contain all trigrams of all given literals.
+   * </p>
+   */
+  private CompressedBitmap getCandidates(final List<String> literals, final int from, final int end) {
+    final Set<String> trigrams = new HashSet<String>();
+    for (final String literal : literals) {
+      final char[] characters = toLowerCase(literal);
+      for (int i = 0; i + GRAM_LENGTH <= characters.length; i++) {
+        trigrams.add(new String(characters, i, GRAM_LENGTH));
+      }
+    }
+    if (trigrams.isEmpty()) {
+      return null;
+    }
+    return getPositions(Collections.singletonList(trigrams), from, end);
+  }
+
+  /**
+   * <p>
+   * Adds the trigrams of the given text to the given batch.
+   * </p>
+   */
+  private static void addTrigrams(final String text, final int position, final Batch batch) {
+    if ((text == null) || (text.length() < GRAM_LENGTH)) {
+      return;
+    }
+    final char[] characters = toLowerCase(text);
+    for (int i = 0; i + GRAM_LENGTH <= characters.length; i++) {
+      // copies the three characters, so the key does not share the array of the text
+      batch.add(new String(characters, i, GRAM_LENGTH), position);
+    }
+  }
+
+  /**
+   * <p>
+   * Lower-cases every character on its own, so that the text and the substring are converted alike (
+   * {@link String#toLowerCase()} is locale-dependent and might change the length).
+   * </p>
+   */
+  private static char[] toLowerCase(final String text) {
+    final char[] characters = text.toCharArray();
+    for (int i = 0; i < characters.length; i++) {
+      characters[i] = Character.toLowerCase(characters[i]);
+    }
+    return characters;
+  }
+
+  /**
+   * <p>
+   * Adds the given literal to the list if it contains at least one trigram and clears it.
+   * </p>
+   */
+  private static void addLiteral(final List<String> literals, final StringBuilder literal) {
+    if (literal.length() >= GRAM_LENGTH) {
+      literals.add(literal.toString());
+    }
+    literal.setLength(0);
+  }
+
+  /**
+   * <p>
+   * Returns the index behind the character class that starts before the given index, -1 if the class cannot be
+   * skipped safely.
+   * </p>
+   */
+  private static int skipCharacterClass(final String regex, int i) {
+    int depth = 1;
+    if ((i < regex.length()) && (regex.charAt(i) == '^')) {
+      i++;
+    }
+    // a leading ']' is a literal
+    if ((i < regex.length()) && (regex.charAt(i) == ']')) {
+      i++;
+    }
+    while (i < regex.length()) {
+      final char c = regex.charAt(i++);
+      if (c == '\\') {
+        if ((i == regex.length()) || (regex.charAt(i) == 'Q')) {
+          return -1;
+        }
+        i++;
+      } else if (c == '[') {
+        depth++;
+      } else if ((c == ']') && (--depth == 0)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the group that starts before the given index sets flags (e.g. <code>(?x)</code> or
+   * <code>(?u:...)</code>) that change the meaning of literals.
+   * </p>
+   */
+  private static boolean hasInlineFlags(final String regex, int i) {
+    while (i < regex.length()) {
+      final char c = regex.charAt(i++);
+      if ((c == 'x') || (c == 'u')) {
+        return true;
+      }
+      if ((c != 'i') && (c != 'd') && (c != 'm') && (c != 's') && (c != '-')) {
+        return false;
+      }
+    }
+    return false;
+  }
+}
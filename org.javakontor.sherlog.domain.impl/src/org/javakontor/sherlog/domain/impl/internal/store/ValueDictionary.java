@@ -0,0 +1,92 @@
+package org.javakontor.sherlog.domain.impl.internal.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Maps values to dense integer ids, so that frequently repeated values (like categories or thread names) are stored
+ * only once. The id <code>-1</code> represents <code>null</code>.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class ValueDictionary<T> {
+
+  /** the id that represents null */
+  public static final int       NULL_ID = -1;
+
+  /** value to id */
+  private final Map<T, Integer> _ids;
+
+  /** id to value */
+  private final List<T>         _values;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link ValueDictionary}.
+   * </p>
+   */
+  public ValueDictionary() {
+    _ids = new HashMap<T, Integer>();
+    _values = new ArrayList<T>();
+  }
+
+  /**
+   * <p>
+   * Returns the id of the given value. If the value is not contained in this dictionary yet, it will be added.
+   * </p>
+   *
+   * @param value
+   *          the value (might be <code>null</code>)
+   * @return the id of the given value
+   */
+  public int getId(final T value) {
+    if (value == null) {
+      return NULL_ID;
+    }
+    Integer id = _ids.get(value);
+    if (id == null) {
+      id = Integer.valueOf(_values.size());
+      _ids.put(value, id);
+      _values.add(value);
+    }
+    return id.intValue();
+  }
+
+  /**
+   * <p>
+   * Returns the value with the given id.
+   * </p>
+   *
+   * @param id
+   *          the id
+   * @return the value with the given id (might be <code>null</code>)
+   */
+  public T getValue(final int id) {
+    return (id == NULL_ID) ? null : _values.get(id);
+  }
+
+  /**
+   * <p>
+   * Returns the number of values in this dictionary.
+   * </p>
+   *
+   * @return the number of values in this dictionary.
+   */
+  public int size() {
+    return _values.size();
+  }
+
+  /**
+   * <p>
+   * Removes all values from this dictionary.
+   * </p>
+   */
+  public void clear() {
+    _ids.clear();
+    _values.clear();
+  }
+}
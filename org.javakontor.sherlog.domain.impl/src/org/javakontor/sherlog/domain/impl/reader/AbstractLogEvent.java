@@ -3,6 +3,7 @@ package org.javakontor.sherlog.domain.impl.reader;
 import java.util.Hashtable;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.javakontor.sherlog.domain.LogEvent;
 import org.javakontor.sherlog.domain.LogEventSource;
@@ -18,7 +19,7 @@ public abstract class AbstractLogEvent implements LogEvent {
   /**
    * A simple counter used to generate VM-wide unique identifiers for Log Events
    */
-  private static int                                        _instanceCounter   = 0;
+  private static final AtomicInteger                        _instanceCounter   = new AtomicInteger();
 
   /**
    * The id of this Log Event.
@@ -27,7 +28,7 @@ public abstract class AbstractLogEvent implements LogEvent {
    * Each Log Event that is instantiated must get a unique id.
    */
 
-  private final int                                         _logId;
+  private int                                               _logId;
 
   /**
    * The source of this Log Event (e.g. the file it was read from)
@@ -43,7 +44,7 @@ public abstract class AbstractLogEvent implements LogEvent {
   private final CopyOnWriteArraySet<LogEventChangeListener> _logEventChangeListeners;
 
   public AbstractLogEvent() {
-    _logId = _instanceCounter++;
+    _logId = _instanceCounter.getAndIncrement();
     _logEventChangeListeners = new CopyOnWriteArraySet<LogEventChangeListener>();
   }
 
@@ -59,6 +60,24 @@ public abstract class AbstractLogEvent implements LogEvent {
     return _logId;
   }
 
+  /**
+   * Assigns a new unique id to this Log Event.
+   * 
+   * <p>
+   * Log Events that are created concurrently get their ids in an arbitrary order. Since Log Events with equal
+   * timestamps are ordered by their ids, a reader that creates Log Events on several threads renews the ids in the
+   * order in which the Log Events have been read.
+   * </p>
+   * 
+   * <p>
+   * <b>Note!</b> This method is not part of the public API and should not be invoked by clients other then the
+   * LogEventReaders. It must be invoked before the Log Event is passed to a LogEventHandler.
+   * </p>
+   */
+  public void renewIdentifier() {
+    _logId = _instanceCounter.getAndIncrement();
+  }
+
   public Object getUserDefinedField(final String fieldName) {
     Assert.notNull("Parameter 'fieldName' must not be null", fieldName);
 
@@ -133,13 +152,21 @@ public abstract class AbstractLogEvent implements LogEvent {
       return 0;
     }
     final LogEvent secondEvent = o;
-    int ret = (int) (getTimeStamp() - secondEvent.getTimeStamp());
+    int ret = compare(getTimeStamp(), secondEvent.getTimeStamp());
     if (ret == 0) {
-      ret = (int) (getIdentifier() - secondEvent.getIdentifier());
+      ret = compare(getIdentifier(), secondEvent.getIdentifier());
     }
     return ret;
   }
 
+  /**
+   * Compares the two long values without subtracting them, so that values that are far apart (e.g. timestamps that
+   * differ by more than {@link Integer#MAX_VALUE} milliseconds) are not truncated to a wrong sign.
+   */
+  private static int compare(final long value1, final long value2) {
+    return (value1 < value2) ? -1 : ((value1 == value2) ? 0 : 1);
+  }
+
   protected void fireLogEventChange() {
     final LogEventChangeEvent logChangeEvent = new LogEventChangeEvent(this);
     for (final LogEventChangeListener logEventChangeListener : _logEventChangeListeners) {
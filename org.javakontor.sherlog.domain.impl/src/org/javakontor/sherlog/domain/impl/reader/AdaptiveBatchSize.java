@@ -0,0 +1,87 @@
+package org.javakontor.sherlog.domain.impl.reader;
+
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * Adapts the number of log events that are added to a store at once to the measured time the store needs to apply
+ * them. Larger batches amortize the sorting and the notification of the listeners, but the store is locked while a
+ * batch is applied. The batch size grows (up to a maximum) as long as batches are applied well within the target
+ * time and shrinks proportionally as soon as a batch takes longer.
+ * </p>
+ * <p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+class AdaptiveBatchSize {
+
+  /** the default target time to apply a batch in milliseconds */
+  public static final long DEFAULT_TARGET_APPLY_TIME = 50;
+
+  /** the minimum batch size */
+  private static final int MIN_BATCH_SIZE            = 256;
+
+  /** the smallest batch size */
+  private final int        _minSize;
+
+  /** the largest batch size */
+  private final int        _maxSize;
+
+  /** the target time to apply a batch in nanoseconds */
+  private final long       _targetApplyTime;
+
+  /** the current batch size */
+  private int              _size;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link AdaptiveBatchSize}.
+   * </p>
+   *
+   * @param maxSize
+   *          the largest batch size
+   * @param targetApplyTime
+   *          the target time to apply a batch in milliseconds
+   */
+  AdaptiveBatchSize(final int maxSize, final long targetApplyTime) {
+    Assert.assertTrue(maxSize > 0, "Parameter 'maxSize' must be greater than 0");
+    Assert.assertTrue(targetApplyTime > 0, "Parameter 'targetApplyTime' must be greater than 0");
+
+    _maxSize = maxSize;
+    _minSize = Math.min(MIN_BATCH_SIZE, maxSize);
+    _targetApplyTime = targetApplyTime * 1000000L;
+    _size = _minSize;
+  }
+
+  /**
+   * <p>
+   * Returns the current batch size.
+   * </p>
+   *
+   * @return the current batch size.
+   */
+  int get() {
+    return _size;
+  }
+
+  /**
+   * <p>
+   * Adapts the batch size to the time needed to apply a batch.
+   * </p>
+   *
+   * @param batchSize
+   *          the number of log events of the applied batch
+   * @param applyTime
+   *          the time needed to apply the batch in nanoseconds
+   */
+  void update(final int batchSize, final long applyTime) {
+    if (applyTime > _targetApplyTime) {
+      _size = (int) Math.max(_minSize, Math.min(_size, (batchSize * _targetApplyTime) / applyTime));
+    } else if ((batchSize >= _size) && (applyTime < (_targetApplyTime / 2))) {
+      // only grow if the batch was full, otherwise the measurement says nothing about larger batches
+      _size = Math.min(_maxSize, _size * 2);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package org.javakontor.sherlog.domain.impl.reader;
+
+/**
+ * <p>
+ * The raw bytes of a log event as a {@link CharSequence}: every byte is one character. The indices of the characters
+ * are the indices of the bytes, so ASCII literals can be located on the bytes without decoding them (see
+ * {@link RawTextDecoder}).
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class AsciiCharSequence implements CharSequence {
+
+  /** the bytes */
+  private final byte[] _bytes;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link AsciiCharSequence}.
+   * </p>
+   *
+   * @param bytes
+   *          the bytes
+   */
+  public AsciiCharSequence(final byte[] bytes) {
+    _bytes = bytes;
+  }
+
+  public int length() {
+    return _bytes.length;
+  }
+
+  public char charAt(final int index) {
+    return (char) (_bytes[index] & 0xFF);
+  }
+
+  public CharSequence subSequence(final int start, final int end) {
+    final StringBuilder builder = new StringBuilder(end - start);
+    for (int i = start; i < end; i++) {
+      builder.append(charAt(i));
+    }
+    return builder.toString();
+  }
+
+  @Override
+  public String toString() {
+    return subSequence(0, _bytes.length).toString();
+  }
+}
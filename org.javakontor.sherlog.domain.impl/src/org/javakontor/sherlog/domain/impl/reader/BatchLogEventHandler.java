@@ -2,45 +2,159 @@ package org.javakontor.sherlog.domain.impl.reader;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
 
 import org.javakontor.sherlog.domain.LogEvent;
 import org.javakontor.sherlog.domain.reader.DefaultLogEventHandler;
 import org.javakontor.sherlog.domain.store.ModifiableLogEventStore;
 import org.javakontor.sherlog.util.Assert;
 
+/**
+ * <p>
+ * A {@link DefaultLogEventHandler} that adds the log events to a {@link ModifiableLogEventStore} in batches. A batch is
+ * flushed as soon as one of the following limits is reached:
+ * <ul>
+ * <li>the batch size, which adapts to the measured time the store needs to apply a batch (see
+ * {@link AdaptiveBatchSize}),</li>
+ * <li>the (estimated) number of bytes of the batch,</li>
+ * <li>the maximum latency, i.e. the time since the first log event of the batch has been handled (the batch is
+ * flushed by a timer if the reader does not deliver further log events).</li>
+ * </ul>
+ * The remaining log events are flushed on {@link #dispose()}.
+ * </p>
+ */
 public class BatchLogEventHandler extends DefaultLogEventHandler {
 
+  /** the default maximum batch size */
+  public static final int               DEFAULT_MAX_BATCH_SIZE  = 5000;
+
+  /** the default maximum (estimated) size of a batch in bytes */
+  public static final int               DEFAULT_MAX_BATCH_BYTES = 8 * 1024 * 1024;
+
+  /** the default maximum latency in milliseconds */
+  public static final long              DEFAULT_MAX_LATENCY     = 250;
+
+  /** the estimated fixed size of a log event in bytes */
+  private static final int              LOG_EVENT_SIZE          = 200;
+
+  /** the timer that flushes the batches that have reached the maximum latency (shared by all handlers) */
+  private static final Timer            FLUSH_TIMER             = new Timer("BatchLogEventHandler-Flush", true);
+
   private final ModifiableLogEventStore _logEventStore;
 
+  /** the maximum (estimated) size of a batch in bytes */
+  private final int                     _maxBatchBytes;
+
+  /** the maximum latency in milliseconds */
+  private final long                    _maxLatency;
+
+  /** the adaptive batch size */
+  private final AdaptiveBatchSize       _batchSize;
+
+  /** the current batch */
   private List<LogEvent>                _list;
 
-  private final int                     _batchSize;
+  /** the (estimated) size of the current batch in bytes */
+  private int                           _batchBytes;
 
   public BatchLogEventHandler(final ModifiableLogEventStore logEventStore) {
-    this(logEventStore, 5000);
+    this(logEventStore, DEFAULT_MAX_BATCH_SIZE);
   }
 
   public BatchLogEventHandler(final ModifiableLogEventStore logEventStore, final int batchSize) {
+    this(logEventStore, batchSize, DEFAULT_MAX_BATCH_BYTES, DEFAULT_MAX_LATENCY);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link BatchLogEventHandler}.
+   * </p>
+   *
+   * @param logEventStore
+   *          the store
+   * @param maxBatchSize
+   *          the maximum number of log events per batch
+   * @param maxBatchBytes
+   *          the maximum (estimated) size of a batch in bytes
+   * @param maxLatency
+   *          the maximum time in milliseconds a log event is kept in a batch
+   */
+  public BatchLogEventHandler(final ModifiableLogEventStore logEventStore, final int maxBatchSize,
+      final int maxBatchBytes, final long maxLatency) {
     Assert.notNull(logEventStore);
+    Assert.assertTrue(maxBatchBytes > 0, "Parameter 'maxBatchBytes' must be greater than 0");
+    Assert.assertTrue(maxLatency > 0, "Parameter 'maxLatency' must be greater than 0");
+
     _logEventStore = logEventStore;
-    _batchSize = batchSize;
-    _list = new ArrayList<LogEvent>(_batchSize);
+    _maxBatchBytes = maxBatchBytes;
+    _maxLatency = maxLatency;
+    _batchSize = new AdaptiveBatchSize(maxBatchSize, AdaptiveBatchSize.DEFAULT_TARGET_APPLY_TIME);
+    _list = new ArrayList<LogEvent>();
   }
 
   @Override
-  public void handle(final LogEvent event) {
+  public synchronized void handle(final LogEvent event) {
+    if (_list.isEmpty()) {
+      scheduleFlush(_list);
+    }
     _list.add(event);
+    _batchBytes += getEstimatedSize(event);
 
-    if (_list.size() >= _batchSize) {
-      _logEventStore.addLogEvents(_list);
-      _list = new ArrayList<LogEvent>(_batchSize);
+    if ((_list.size() >= _batchSize.get()) || (_batchBytes >= _maxBatchBytes)) {
+      flush();
     }
-    // _list.add(event);
   }
 
   @Override
-  public void dispose() {
-    _logEventStore.addLogEvents(_list);
+  public synchronized void dispose() {
+    flush();
+  }
+
+  /**
+   * <p>
+   * Adds the current batch to the store and adapts the batch size to the time the store needed.
+   * </p>
+   */
+  private void flush() {
+    if (_list.isEmpty()) {
+      return;
+    }
+
+    final List<LogEvent> list = _list;
+    _list = new ArrayList<LogEvent>(Math.min(list.size(), _batchSize.get()));
+    _batchBytes = 0;
+
+    final long start = System.nanoTime();
+    _logEventStore.addLogEvents(list);
+    _batchSize.update(list.size(), System.nanoTime() - start);
   }
 
+  /**
+   * <p>
+   * Flushes the given batch after the maximum latency unless it has been flushed before.
+   * </p>
+   */
+  private void scheduleFlush(final List<LogEvent> batch) {
+    FLUSH_TIMER.schedule(new TimerTask() {
+      @Override
+      public void run() {
+        synchronized (BatchLogEventHandler.this) {
+          if (_list == batch) {
+            try {
+              flush();
+            } catch (final RuntimeException e) {
+              // keep the shared timer alive
+              handleException(e);
+            }
+          }
+        }
+      }
+    }, _maxLatency);
+  }
+
+  private static int getEstimatedSize(final LogEvent logEvent) {
+    final String message = logEvent.getMessage();
+    return message != null ? LOG_EVENT_SIZE + (message.length() * 2) : LOG_EVENT_SIZE;
+  }
 }
@@ -0,0 +1,47 @@
+package org.javakontor.sherlog.domain.impl.reader;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.reader.DefaultLogEventHandler;
+import org.javakontor.sherlog.domain.reader.LogEventHandler;
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * A {@link LogEventHandler} that publishes all log events into a {@link LogEventIngestionBuffer}. Any number of
+ * readers can share one buffer; a reader blocks while the buffer is full.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class IngestionLogEventHandler extends DefaultLogEventHandler {
+
+  /** the buffer */
+  private final LogEventIngestionBuffer _ingestionBuffer;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link IngestionLogEventHandler}.
+   * </p>
+   *
+   * @param ingestionBuffer
+   *          the buffer
+   */
+  public IngestionLogEventHandler(final LogEventIngestionBuffer ingestionBuffer) {
+    Assert.notNull(ingestionBuffer);
+
+    _ingestionBuffer = ingestionBuffer;
+  }
+
+  /**
+   * @see org.javakontor.sherlog.domain.reader.DefaultLogEventHandler#handle(org.javakontor.sherlog.domain.LogEvent)
+   */
+  @Override
+  public void handle(final LogEvent event) {
+    try {
+      _ingestionBuffer.publish(event);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while publishing log event", e);
+    }
+  }
+}
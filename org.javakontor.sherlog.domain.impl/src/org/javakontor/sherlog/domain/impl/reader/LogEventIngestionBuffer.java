@@ -0,0 +1,380 @@
+package org.javakontor.sherlog.domain.impl.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.store.ModifiableLogEventStore;
+import org.javakontor.sherlog.util.Assert;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * The ingestion stage of a {@link ModifiableLogEventStore}: a bounded multi-producer ring buffer that any number of
+ * reader threads {@link #publish(LogEvent) publish} their log events into, drained by a single writer thread that
+ * adds the log events to the store in batches.
+ * </p>
+ * <p>
+ * Producers claim a slot of the ring buffer with a compare-and-set, so they never block each other. If the ring
+ * buffer is full, the producers wait until the writer has drained it (backpressure). The writer takes all log events
+ * that are available (up to the {@link AdaptiveBatchSize adaptive batch size}), so the batches grow with the load
+ * while a single log event is still added without delay.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class LogEventIngestionBuffer {
+
+  /** the default capacity of the ring buffer */
+  public static final int                      DEFAULT_CAPACITY       = 1 << 16;
+
+  /** the default maximum number of log events that are added to the store at once */
+  public static final int                      DEFAULT_MAX_BATCH_SIZE = 5000;
+
+  /** the maximum time a waiting thread sleeps before it checks its condition again */
+  private static final long                    WAIT_TIMEOUT           = 100;
+
+  /** the logger */
+  private final Logger                         _logger                = LoggerFactory.getLogger(getClass());
+
+  /** the store */
+  private final ModifiableLogEventStore        _logEventStore;
+
+  /** the slots of the ring buffer, <code>null</code> if free or claimed but not yet published */
+  private final AtomicReferenceArray<LogEvent> _slots;
+
+  /** the capacity of the ring buffer (a power of two) */
+  private final int                            _capacity;
+
+  /** the number of log events that are added to the store at once */
+  private final AdaptiveBatchSize              _batchSize;
+
+  /** the next sequence to claim */
+  private final AtomicLong                     _claimed;
+
+  /** the next sequence to drain, all slots of smaller sequences are free */
+  private volatile long                        _drained;
+
+  /** the number of producers that wait for a free slot */
+  private final AtomicInteger                  _waitingProducers;
+
+  /** the number of producers that are publishing a log event */
+  private final AtomicInteger                  _activeProducers;
+
+  /** <code>true</code> if the writer waits for log events */
+  private volatile boolean                     _writerWaiting;
+
+  /** the monitor the producers wait on */
+  private final Object                         _spaceMonitor;
+
+  /** the monitor the writer waits on */
+  private final Object                         _logEventMonitor;
+
+  /** <code>true</code> while the writer is running */
+  private volatile boolean                     _running;
+
+  /** the writer thread, <code>null</code> if there is no writer thread that has to be joined */
+  private Thread                               _writer;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link LogEventIngestionBuffer} with the default capacity and batch size.
+   * </p>
+   *
+   * @param logEventStore
+   *          the store
+   */
+  public LogEventIngestionBuffer(final ModifiableLogEventStore logEventStore) {
+    this(logEventStore, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link LogEventIngestionBuffer}.
+   * </p>
+   *
+   * @param logEventStore
+   *          the store
+   * @param capacity
+   *          the capacity of the ring buffer, rounded up to a power of two
+   * @param maxBatchSize
+   *          the maximum number of log events that are added to the store at once
+   */
+  public LogEventIngestionBuffer(final ModifiableLogEventStore logEventStore, final int capacity,
+      final int maxBatchSize) {
+    Assert.notNull(logEventStore);
+    Assert.assertTrue((capacity > 0) && (capacity <= (1 << 30)), "Parameter 'capacity' must be in [1, 2^30]");
+
+    int powerOfTwo = 1;
+    while (powerOfTwo < capacity) {
+      powerOfTwo <<= 1;
+    }
+
+    _logEventStore = logEventStore;
+    _capacity = powerOfTwo;
+    _batchSize = new AdaptiveBatchSize(maxBatchSize, AdaptiveBatchSize.DEFAULT_TARGET_APPLY_TIME);
+    _slots = new AtomicReferenceArray<LogEvent>(_capacity);
+    _claimed = new AtomicLong();
+    _waitingProducers = new AtomicInteger();
+    _activeProducers = new AtomicInteger();
+    _spaceMonitor = new Object();
+    _logEventMonitor = new Object();
+  }
+
+  /**
+   * <p>
+   * Starts the writer thread.
+   * </p>
+   *
+   * @param name
+   *          the name of the writer thread
+   */
+  public void start(final String name) {
+    synchronized (this) {
+      if (_running) {
+        return;
+      }
+    }
+
+    // a writer thread that has been interrupted may still drain the ring buffer
+    stop();
+
+    synchronized (this) {
+      if (_running || (_writer != null)) {
+        return;
+      }
+
+      _running = true;
+      _writer = new Thread(new Runnable() {
+        public void run() {
+          drainLoop();
+        }
+      }, name);
+      _writer.setDaemon(true);
+      _writer.start();
+    }
+  }
+
+  /**
+   * <p>
+   * Stops the writer thread after all published log events have been added to the store. Log events that are
+   * published after the buffer has been stopped are added to the store directly.
+   * </p>
+   */
+  public void stop() {
+    Thread writer;
+    synchronized (this) {
+      writer = _writer;
+      if (writer == null) {
+        return;
+      }
+      _running = false;
+      _writer = null;
+    }
+
+    wakeUp(_logEventMonitor);
+    wakeUp(_spaceMonitor);
+    if (writer != Thread.currentThread()) {
+      try {
+        writer.join();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the writer thread is running.
+   * </p>
+   *
+   * @return <code>true</code> if the writer thread is running.
+   */
+  public boolean isRunning() {
+    return _running;
+  }
+
+  /**
+   * <p>
+   * Returns the capacity of the ring buffer.
+   * </p>
+   *
+   * @return the capacity of the ring buffer.
+   */
+  public int getCapacity() {
+    return _capacity;
+  }
+
+  /**
+   * <p>
+   * Returns the number of log events that have been published but not yet added to the store.
+   * </p>
+   *
+   * @return the number of log events that have been published but not yet added to the store.
+   */
+  public int getSize() {
+    return (int) (_claimed.get() - _drained);
+  }
+
+  /**
+   * <p>
+   * Publishes the given log event. Waits while the ring buffer is full.
+   * </p>
+   *
+   * @param logEvent
+   *          the log event
+   * @throws InterruptedException
+   *           if the thread has been interrupted while waiting for a free slot
+   */
+  public void publish(final LogEvent logEvent) throws InterruptedException {
+    Assert.notNull(logEvent);
+
+    // the writer does not exit while a producer may still claim a slot
+    _activeProducers.incrementAndGet();
+    try {
+      // claim a slot
+      long sequence;
+      while (true) {
+        if (!_running) {
+          _logEventStore.addLogEvent(logEvent);
+          return;
+        }
+        sequence = _claimed.get();
+        if (sequence - _drained >= _capacity) {
+          awaitSpace(sequence);
+        } else if (_claimed.compareAndSet(sequence, sequence + 1)) {
+          break;
+        }
+      }
+
+      // publish the log event
+      _slots.set((int) sequence & (_capacity - 1), logEvent);
+      if (_writerWaiting) {
+        wakeUp(_logEventMonitor);
+      }
+    } finally {
+      if ((_activeProducers.decrementAndGet() == 0) && !_running) {
+        wakeUp(_logEventMonitor);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Adds the published log events to the store until the buffer is stopped and drained. The buffer is only drained
+   * when no producer is publishing anymore: a producer that has seen the buffer running may still claim a slot.
+   * </p>
+   */
+  private void drainLoop() {
+    final List<LogEvent> batch = new ArrayList<LogEvent>();
+    boolean interrupted = false;
+    while (_running || (_activeProducers.get() > 0) || (_claimed.get() != _drained)) {
+      drain(batch);
+      if (batch.isEmpty()) {
+        interrupted |= awaitLogEvents();
+        continue;
+      }
+
+      try {
+        final long start = System.nanoTime();
+        _logEventStore.addLogEvents(batch);
+        _batchSize.update(batch.size(), System.nanoTime() - start);
+      } catch (final RuntimeException e) {
+        _logger.warn("Could not add " + batch.size() + " log events to the store: " + e, e);
+      }
+      batch.clear();
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * <p>
+   * Moves the published log events (in the order of their sequences, up to the current batch size) to the given
+   * batch and frees their slots.
+   * </p>
+   */
+  private void drain(final List<LogEvent> batch) {
+    long sequence = _drained;
+    final int mask = _capacity - 1;
+    final int batchSize = _batchSize.get();
+    while (batch.size() < batchSize) {
+      final int index = (int) sequence & mask;
+      final LogEvent logEvent = _slots.get(index);
+      if (logEvent == null) {
+        // not published yet
+        break;
+      }
+      _slots.set(index, null);
+      batch.add(logEvent);
+      sequence++;
+    }
+
+    if (sequence != _drained) {
+      _drained = sequence;
+      if (_waitingProducers.get() > 0) {
+        wakeUp(_spaceMonitor);
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Waits until the slot of the given sequence is free.
+   * </p>
+   */
+  private void awaitSpace(final long sequence) throws InterruptedException {
+    synchronized (_spaceMonitor) {
+      _waitingProducers.incrementAndGet();
+      try {
+        while (_running && (sequence - _drained >= _capacity)) {
+          _spaceMonitor.wait(WAIT_TIMEOUT);
+        }
+      } finally {
+        _waitingProducers.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Waits until the next log event has been published (or the buffer has been stopped and no producer is publishing
+   * anymore). If the writer thread is interrupted, the buffer is stopped; it is still drained and {@link #stop()}
+   * joins the writer thread.
+   * </p>
+   *
+   * @return <code>true</code> if the writer thread has been interrupted
+   */
+  private boolean awaitLogEvents() {
+    synchronized (_logEventMonitor) {
+      _writerWaiting = true;
+      try {
+        if ((_running || (_activeProducers.get() > 0)) && (_slots.get((int) _drained & (_capacity - 1)) == null)) {
+          _logEventMonitor.wait(WAIT_TIMEOUT);
+        }
+        return false;
+      } catch (final InterruptedException e) {
+        _running = false;
+        wakeUp(_spaceMonitor);
+        return true;
+      } finally {
+        _writerWaiting = false;
+      }
+    }
+  }
+
+  private static void wakeUp(final Object monitor) {
+    synchronized (monitor) {
+      monitor.notifyAll();
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package org.javakontor.sherlog.domain.impl.reader;
+
+/**
+ * <p>
+ * Recognizes the first line of a log event in a text log file. A {@link TextLogEventProvider} that also implements
+ * this interface defines where its log events start; the log events of any other {@link TextLogEventProvider} start
+ * with a line that starts with the start tag <code>'|'</code>. All following lines up to the next first line belong
+ * to the log event (e.g. the lines of a stack trace).
+ * </p>
+ * <p>
+ * Implementations must be thread-safe and must decide within the first {@link #MAX_START_LENGTH} characters of a
+ * line, so that a file can be split at any log event start.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public interface LogEventStartRecognizer {
+
+  /** the maximum number of characters a recognizer may inspect */
+  public static final int MAX_START_LENGTH = 256;
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given line is the first line of a log event. The line does not contain a line
+   * terminator. If the line is read from raw bytes, every byte is passed as one character, so only ASCII characters
+   * can be compared reliably.
+   * </p>
+   *
+   * @param line
+   *          the line (or its first {@link #MAX_START_LENGTH} characters)
+   * @return <code>true</code> if the given line is the first line of a log event.
+   */
+  public boolean isLogEventStart(CharSequence line);
+}
@@ -0,0 +1,177 @@
+package org.javakontor.sherlog.domain.impl.reader;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * Decodes ranges of the raw bytes of a text log file. Line terminators (CR LF, LF or CR) are replaced by the line
+ * separator, so that a decoded log event equals the lines of the log event joined by the line separator.
+ * </p>
+ * <p>
+ * Instances are immutable and thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class RawTextDecoder {
+
+  /** the charset of the file */
+  private final Charset _charset;
+
+  /** the line separator */
+  private final String  _lineSeparator;
+
+  /** <code>true</code> if the line separator is a single line feed */
+  private final boolean _lineFeedSeparator;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link RawTextDecoder}.
+   * </p>
+   *
+   * @param charset
+   *          the charset of the file
+   * @param lineSeparator
+   *          the line separator that replaces the line terminators
+   */
+  public RawTextDecoder(final Charset charset, final String lineSeparator) {
+    Assert.notNull(charset);
+    Assert.notNull(lineSeparator);
+
+    _charset = charset;
+    _lineSeparator = lineSeparator;
+    _lineFeedSeparator = "\n".equals(lineSeparator);
+  }
+
+  /**
+   * <p>
+   * Returns the charset of the file.
+   * </p>
+   *
+   * @return the charset of the file.
+   */
+  public Charset getCharset() {
+    return _charset;
+  }
+
+  /**
+   * <p>
+   * Returns the line separator that replaces the line terminators.
+   * </p>
+   *
+   * @return the line separator.
+   */
+  public String getLineSeparator() {
+    return _lineSeparator;
+  }
+
+  /**
+   * <p>
+   * Decodes the given range of bytes.
+   * </p>
+   *
+   * @param bytes
+   *          the bytes
+   * @param from
+   *          the index of the first byte
+   * @param to
+   *          the index behind the last byte
+   * @return the decoded string with normalized line terminators
+   */
+  public String decode(final byte[] bytes, final int from, final int to) {
+    final String text;
+    try {
+      text = new String(bytes, from, to - from, _charset.name());
+    } catch (final UnsupportedEncodingException e) {
+      // cannot happen, the charset exists
+      throw new IllegalStateException(e.getMessage(), e);
+    }
+
+    // most log events consist of one line
+    boolean normalize = false;
+    for (int i = from; i < to; i++) {
+      if ((bytes[i] == '\r') || ((bytes[i] == '\n') && !_lineFeedSeparator)) {
+        normalize = true;
+        break;
+      }
+    }
+    return normalize ? normalize(text) : text;
+  }
+
+  /**
+   * <p>
+   * Returns the index of the first occurrence of the given byte in the given range.
+   * </p>
+   *
+   * @param bytes
+   *          the bytes
+   * @param from
+   *          the index of the first byte
+   * @param to
+   *          the index behind the last byte
+   * @param value
+   *          the byte to search
+   * @return the index of the first occurrence, -1 if the range does not contain the byte
+   */
+  public static int indexOf(final byte[] bytes, final int from, final int to, final byte value) {
+    for (int i = from; i < to; i++) {
+      if (bytes[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given range of bytes equals the given ASCII string.
+   * </p>
+   *
+   * @param bytes
+   *          the bytes
+   * @param from
+   *          the index of the first byte
+   * @param to
+   *          the index behind the last byte
+   * @param ascii
+   *          the ASCII string
+   * @return <code>true</code> if the given range of bytes equals the given ASCII string.
+   */
+  public static boolean equalsAscii(final byte[] bytes, final int from, final int to, final String ascii) {
+    if (to - from != ascii.length()) {
+      return false;
+    }
+    for (int i = from; i < to; i++) {
+      if (bytes[i] != ascii.charAt(i - from)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * Replaces all line terminators of the given text by the line separator.
+   * </p>
+   */
+  private String normalize(final String text) {
+    final StringBuilder builder = new StringBuilder(text.length() + 16);
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c == '\r') {
+        if ((i + 1 < text.length()) && (text.charAt(i + 1) == '\n')) {
+          i++;
+        }
+        builder.append(_lineSeparator);
+      } else if (c == '\n') {
+        builder.append(_lineSeparator);
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.toString();
+  }
+}
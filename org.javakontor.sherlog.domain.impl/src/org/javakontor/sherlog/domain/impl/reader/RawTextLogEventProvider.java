@@ -0,0 +1,33 @@
+package org.javakontor.sherlog.domain.impl.reader;
+
+/**
+ * <p>
+ * A {@link TextLogEventProvider} that creates log events directly from the raw bytes of a local text log file, so that
+ * only the fields a log event actually needs are decoded. Like every {@link TextLogEventProvider}, implementations
+ * must be thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public interface RawTextLogEventProvider extends TextLogEventProvider {
+
+  /**
+   * <p>
+   * Creates a log event from the given range of bytes. The range starts with the start tag and ends before the line
+   * terminator of the last line of the log event; the lines of the log event are still separated by their original
+   * line terminators (see {@link RawTextDecoder#decode(byte[], int, int)}). The array is reused for the next log event,
+   * so the log event must copy the bytes it keeps.
+   * </p>
+   *
+   * @param bytes
+   *          the bytes
+   * @param from
+   *          the index of the first byte of the log event
+   * @param to
+   *          the index behind the last byte of the log event
+   * @param decoder
+   *          the decoder for the charset of the file
+   * @return the log event
+   */
+  public AbstractLogEvent wrapLogEvent(byte[] bytes, int from, int to, RawTextDecoder decoder);
+}
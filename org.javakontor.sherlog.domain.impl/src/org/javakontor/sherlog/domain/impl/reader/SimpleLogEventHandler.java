@@ -25,7 +25,6 @@ public class SimpleLogEventHandler extends DefaultLogEventHandler {
 
   @Override
   public void handle(final LogEvent event) {
-    System.out.println("Handle: " + event.getMessage());
     _logEventStore.addLogEvent(event);
   }
 
@@ -1,5 +1,12 @@
 package org.javakontor.sherlog.domain.impl.reader;
 
+/**
+ * <p>
+ * Creates log events from their text representation. Large local files are
+ * parsed by several threads in parallel, so implementations must be
+ * thread-safe.
+ * </p>
+ */
 public interface TextLogEventProvider {
 
 	public AbstractLogEvent wrapLogEvent(Object object);
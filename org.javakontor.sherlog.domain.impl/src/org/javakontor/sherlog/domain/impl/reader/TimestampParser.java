@@ -0,0 +1,365 @@
+package org.javakontor.sherlog.domain.impl.reader;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * Parses timestamps in a {@link SimpleDateFormat} pattern, by default <code>yyyy-MM-dd HH:mm:ss,SSS</code> (the log4j
+ * <code>ISO8601</code> date format). Patterns that consist of fixed-width numeric fields (<code>yyyy</code>,
+ * <code>MM</code>, <code>dd</code>, <code>HH</code>, <code>mm</code>, <code>ss</code>, <code>SSS</code>) and literals
+ * are parsed by reading the digits in place, so parsing does not allocate. The epoch value of the last parsed second
+ * is cached, a timestamp within the same second only adds its milliseconds. Other patterns, and text that does not
+ * match the fixed-width layout exactly, are parsed with a {@link SimpleDateFormat}, so the result is always the same
+ * as the result of <code>new SimpleDateFormat(pattern).parse(text)</code>.
+ * </p>
+ * <p>
+ * Instances are thread-safe and are meant to be shared.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class TimestampParser {
+
+  /** the default pattern */
+  public static final String                  PATTERN = "yyyy-MM-dd HH:mm:ss,SSS";
+
+  /** the pattern */
+  private final String                        _pattern;
+
+  /** the time zone, <code>null</code> for the default time zone */
+  private final TimeZone                      _timeZone;
+
+  /** the fixed-width layout: the field letter for every digit, the character itself for every literal */
+  private final char[]                        _template;
+
+  /** <code>true</code> for every position of the template that holds a digit */
+  private final boolean[]                     _digits;
+
+  /** <code>true</code> if the template contains the year (missing fields default to 1970-01-01) */
+  private final boolean                       _year;
+
+  /** <code>true</code> if the template contains the month */
+  private final boolean                       _month;
+
+  /** <code>true</code> if the template contains the day */
+  private final boolean                       _day;
+
+  /** the date formats for the timestamps that are not parsed in place */
+  private final ThreadLocal<SimpleDateFormat> _dateFormat;
+
+  /** the last parsed second */
+  private volatile Second                     _lastSecond;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link TimestampParser} for the default pattern in the default time zone.
+   * </p>
+   */
+  public TimestampParser() {
+    this(PATTERN, null);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link TimestampParser}.
+   * </p>
+   *
+   * @param pattern
+   *          the {@link SimpleDateFormat} pattern
+   * @param timeZone
+   *          the time zone, <code>null</code> for the default time zone
+   */
+  public TimestampParser(final String pattern, final TimeZone timeZone) {
+    Assert.notNull(pattern);
+
+    // fail early on invalid patterns
+    new SimpleDateFormat(pattern);
+
+    _pattern = pattern;
+    _timeZone = timeZone;
+    final StringBuilder template = new StringBuilder();
+    final StringBuilder digits = new StringBuilder();
+    if (compile(pattern, template, digits)) {
+      _template = template.toString().toCharArray();
+      _digits = new boolean[_template.length];
+      for (int i = 0; i < _digits.length; i++) {
+        _digits[i] = digits.charAt(i) != ' ';
+      }
+    } else {
+      _template = null;
+      _digits = null;
+    }
+    _year = (_template != null) && (digits.indexOf("y") >= 0);
+    _month = (_template != null) && (digits.indexOf("M") >= 0);
+    _day = (_template != null) && (digits.indexOf("d") >= 0);
+    _dateFormat = new ThreadLocal<SimpleDateFormat>() {
+      @Override
+      protected SimpleDateFormat initialValue() {
+        final SimpleDateFormat dateFormat = new SimpleDateFormat(_pattern);
+        if (_timeZone != null) {
+          dateFormat.setTimeZone(_timeZone);
+        }
+        return dateFormat;
+      }
+    };
+  }
+
+  /**
+   * <p>
+   * Returns the pattern.
+   * </p>
+   *
+   * @return the pattern.
+   */
+  public String getPattern() {
+    return _pattern;
+  }
+
+  /**
+   * <p>
+   * Returns the length of the timestamps if the pattern has a fixed-width layout, -1 otherwise.
+   * </p>
+   *
+   * @return the length of the timestamps if the pattern has a fixed-width layout, -1 otherwise.
+   */
+  public int getLength() {
+    return _template == null ? -1 : _template.length;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given range of characters starts with a timestamp in the fixed-width layout of the
+   * pattern. Always returns <code>false</code> if the pattern has no fixed-width layout.
+   * </p>
+   *
+   * @param text
+   *          the text
+   * @param from
+   *          the index of the first character
+   * @param to
+   *          the index behind the last character
+   * @return <code>true</code> if the given range of characters starts with a timestamp in the fixed-width layout.
+   */
+  public boolean matches(final CharSequence text, final int from, final int to) {
+    if ((_template == null) || (to - from < _template.length)) {
+      return false;
+    }
+    for (int i = 0; i < _template.length; i++) {
+      final char c = text.charAt(from + i);
+      if (_digits[i] ? ((c < '0') || (c > '9')) : (c != _template[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * Parses the timestamp at the beginning of the given range of characters. Characters behind the timestamp are
+   * ignored.
+   * </p>
+   *
+   * @param text
+   *          the text
+   * @param from
+   *          the index of the first character
+   * @param to
+   *          the index behind the last character
+   * @return the timestamp in milliseconds since the epoch
+   * @throws ParseException
+   *           if the range does not start with a timestamp
+   */
+  public long parse(final CharSequence text, final int from, final int to) throws ParseException {
+    if ((_template != null) && (to - from >= _template.length)) {
+      final long timestamp = parseInPlace(text, null, from);
+      if (timestamp != Long.MIN_VALUE) {
+        return timestamp;
+      }
+    }
+    return _dateFormat.get().parse(text.subSequence(from, to).toString()).getTime();
+  }
+
+  /**
+   * <p>
+   * Parses the timestamp at the beginning of the given range of bytes. Bytes behind the timestamp are ignored. The
+   * digits and separators must be encoded like ASCII (see {@link RawTextDecoder}).
+   * </p>
+   *
+   * @param bytes
+   *          the bytes
+   * @param from
+   *          the index of the first byte
+   * @param to
+   *          the index behind the last byte
+   * @param decoder
+   *          the decoder that is used if the range does not match the fixed-width layout
+   * @return the timestamp in milliseconds since the epoch
+   * @throws ParseException
+   *           if the range does not start with a timestamp
+   */
+  public long parse(final byte[] bytes, final int from, final int to, final RawTextDecoder decoder)
+      throws ParseException {
+    if ((_template != null) && (to - from >= _template.length)) {
+      final long timestamp = parseInPlace(null, bytes, from);
+      if (timestamp != Long.MIN_VALUE) {
+        return timestamp;
+      }
+    }
+    return _dateFormat.get().parse(decoder.decode(bytes, from, to)).getTime();
+  }
+
+  /**
+   * <p>
+   * Parses the timestamp in the fixed-width layout from the given text or bytes. Returns {@link Long#MIN_VALUE} if the
+   * text does not match the layout.
+   * </p>
+   */
+  private long parseInPlace(final CharSequence text, final byte[] bytes, final int from) {
+    int year = 0;
+    int month = 0;
+    int day = 0;
+    int hour = 0;
+    int minute = 0;
+    int second = 0;
+    int millis = 0;
+    for (int i = 0; i < _template.length; i++) {
+      final int c = text != null ? text.charAt(from + i) : bytes[from + i];
+      if (!_digits[i]) {
+        if (c != _template[i]) {
+          return Long.MIN_VALUE;
+        }
+        continue;
+      }
+      if ((c < '0') || (c > '9')) {
+        return Long.MIN_VALUE;
+      }
+      final int digit = c - '0';
+      switch (_template[i]) {
+      case 'y':
+        year = year * 10 + digit;
+        break;
+      case 'M':
+        month = month * 10 + digit;
+        break;
+      case 'd':
+        day = day * 10 + digit;
+        break;
+      case 'H':
+        hour = hour * 10 + digit;
+        break;
+      case 'm':
+        minute = minute * 10 + digit;
+        break;
+      case 's':
+        second = second * 10 + digit;
+        break;
+      default:
+        millis = millis * 10 + digit;
+      }
+    }
+    if (!_year) {
+      year = 1970;
+    }
+    if (!_month) {
+      month = 1;
+    }
+    if (!_day) {
+      day = 1;
+    }
+    final long key = ((((year * 100L + month) * 100L + day) * 100L + hour) * 100L + minute) * 100L + second;
+    return getSecond(key) + millis;
+  }
+
+  /**
+   * <p>
+   * Returns the epoch value of the given second (the digits <code>yyyyMMddHHmmss</code>).
+   * </p>
+   */
+  private long getSecond(final long key) {
+    final Second lastSecond = _lastSecond;
+    if ((lastSecond != null) && (lastSecond._key == key)) {
+      return lastSecond._epoch;
+    }
+
+    // a calendar is lenient like the SimpleDateFormat
+    final Calendar calendar = _timeZone == null ? new GregorianCalendar() : new GregorianCalendar(_timeZone);
+    calendar.clear();
+    calendar.set((int) (key / 10000000000L), (int) (key / 100000000L % 100) - 1, (int) (key / 1000000L % 100),
+        (int) (key / 10000L % 100), (int) (key / 100L % 100), (int) (key % 100));
+    final Second second = new Second(key, calendar.getTimeInMillis());
+    _lastSecond = second;
+    return second._epoch;
+  }
+
+  /**
+   * <p>
+   * Compiles the given pattern into a fixed-width template: every position of a numeric field holds the field letter,
+   * every position of a literal holds the literal. The digits mask holds the field letter for every digit and a space
+   * for every literal. Returns <code>false</code> if the pattern has no fixed-width layout.
+   * </p>
+   */
+  private static boolean compile(final String pattern, final StringBuilder template, final StringBuilder digits) {
+    int i = 0;
+    while (i < pattern.length()) {
+      final char c = pattern.charAt(i);
+      if (c == '\'') {
+        // quoted literal, '' is a single quote
+        final int end = pattern.indexOf('\'', i + 1);
+        if (end < 0) {
+          return false;
+        }
+        final String literal = end == i + 1 ? "'" : pattern.substring(i + 1, end);
+        template.append(literal);
+        for (int j = 0; j < literal.length(); j++) {
+          digits.append(' ');
+        }
+        i = end + 1;
+      } else if (((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z'))) {
+        int end = i;
+        while ((end < pattern.length()) && (pattern.charAt(end) == c)) {
+          end++;
+        }
+        final int count = end - i;
+        final int width = "yMdHmsS".indexOf(c) < 0 ? -1 : (c == 'y' ? 4 : (c == 'S' ? 3 : 2));
+        if ((width != count) || (digits.indexOf(String.valueOf(c)) >= 0)) {
+          return false;
+        }
+        for (int j = 0; j < count; j++) {
+          template.append(c);
+          digits.append(c);
+        }
+        i = end;
+      } else {
+        template.append(c);
+        digits.append(' ');
+        i++;
+      }
+    }
+    return template.length() > 0;
+  }
+
+  /**
+   * <p>
+   * An immutable pair of a second and its epoch value.
+   * </p>
+   */
+  private static class Second {
+
+    /** the digits of the second */
+    private final long _key;
+
+    /** the epoch value of the second */
+    private final long _epoch;
+
+    public Second(final long key, final long epoch) {
+      _key = key;
+      _epoch = epoch;
+    }
+  }
+}
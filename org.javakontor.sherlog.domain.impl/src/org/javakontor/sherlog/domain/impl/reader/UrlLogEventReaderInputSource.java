@@ -1,7 +1,9 @@
 package org.javakontor.sherlog.domain.impl.reader;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
 
 import org.javakontor.sherlog.domain.reader.LogEventReaderInputSource;
@@ -23,6 +25,30 @@ public class UrlLogEventReaderInputSource implements LogEventReaderInputSource {
 		return _url.toExternalForm();
 	}
 
+	/**
+	 * <p>
+	 * Returns the local file the URL of this input source denotes.
+	 * </p>
+	 * 
+	 * @return the local file, <code>null</code> if the URL does not denote an
+	 *         existing local file.
+	 */
+	public File getFile() {
+		if (!"file".equalsIgnoreCase(_url.getProtocol())) {
+			return null;
+		}
+		File file;
+		try {
+			file = new File(_url.toURI());
+		} catch (final URISyntaxException e) {
+			// File.toURL() does not escape e.g. spaces
+			file = new File(_url.getPath());
+		} catch (final IllegalArgumentException e) {
+			file = new File(_url.getPath());
+		}
+		return file.isFile() ? file : null;
+	}
+
 	@Override
 	public String toString() {
 		return "UrlLogEventReaderInputSource [_url=" + _url + "]";
@@ -0,0 +1,93 @@
+package org.javakontor.sherlog.domain.logeventflavour.patternlayout;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.Properties;
+
+import org.javakontor.sherlog.domain.impl.reader.TextLogEventProvider;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Registers a {@link TextLogEventProvider} for every configured pattern layout. The pattern layouts are read from the
+ * file {@value #PATTERN_LAYOUTS_ENTRY} of this bundle and from the file that is given by the framework property
+ * {@value #PATTERN_LAYOUTS_FILE_PROPERTY}. Every entry maps the description of the log event flavour to a log4j or
+ * logback conversion pattern.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class Activator implements BundleActivator {
+
+  /** the bundle entry that contains the default pattern layouts */
+  public static final String  PATTERN_LAYOUTS_ENTRY         = "patternlayouts.properties";
+
+  /** the framework property that defines a file with additional pattern layouts */
+  public static final String  PATTERN_LAYOUTS_FILE_PROPERTY = "org.javakontor.sherlog.patternlayout.file";
+
+  /** the logger */
+  private final Logger        _logger                       = LoggerFactory.getLogger(getClass());
+
+  public void start(BundleContext bundleContext) throws Exception {
+
+    final Properties patternLayouts = new Properties();
+
+    final URL entry = bundleContext.getBundle().getEntry(PATTERN_LAYOUTS_ENTRY);
+    if (entry != null) {
+      load(patternLayouts, entry.openStream(), entry.toString());
+    }
+    final String file = bundleContext.getProperty(PATTERN_LAYOUTS_FILE_PROPERTY);
+    if (file != null) {
+      // a missing or unreadable file must not prevent the default pattern layouts
+      try {
+        load(patternLayouts, new FileInputStream(file), file);
+      } catch (final IOException e) {
+        _logger.error("Could not read the pattern layouts from " + file + ": " + e, e);
+      }
+    }
+
+    for (final Object flavour : patternLayouts.keySet()) {
+      final String conversionPattern = patternLayouts.getProperty((String) flavour);
+      final PatternLayout patternLayout;
+      try {
+        patternLayout = new PatternLayout(conversionPattern);
+      } catch (final IllegalArgumentException e) {
+        _logger.error("Invalid pattern layout '" + flavour + "': " + e.getMessage(), e);
+        continue;
+      }
+
+      Dictionary<String, String> dictionary = new Hashtable<String, String>();
+
+      dictionary.put("logevent.flavour", (String) flavour);
+
+      bundleContext.registerService(TextLogEventProvider.class.getName(), new PatternLayoutLogEventProvider(
+          patternLayout), dictionary);
+    }
+  }
+
+  public void stop(BundleContext bundleContext) throws Exception {
+    //
+  }
+
+  /**
+   * <p>
+   * Loads the pattern layouts from the given stream and closes the stream.
+   * </p>
+   */
+  private void load(final Properties patternLayouts, final InputStream inputStream, final String location)
+      throws IOException {
+    try {
+      patternLayouts.load(inputStream);
+      _logger.debug("Loaded pattern layouts from " + location);
+    } finally {
+      inputStream.close();
+    }
+  }
+}
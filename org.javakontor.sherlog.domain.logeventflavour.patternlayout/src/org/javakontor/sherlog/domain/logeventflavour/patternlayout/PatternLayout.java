@@ -0,0 +1,508 @@
+package org.javakontor.sherlog.domain.logeventflavour.patternlayout;
+
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.domain.impl.reader.TimestampParser;
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * A log4j or logback conversion pattern (e.g. <code>%d{ISO8601} %-5p [%t] %c - %m%n</code>) compiled into a sequence
+ * of literals and fields. The fields of a log event are located in a single pass over its first line without regular
+ * expressions and without backtracking:
+ * <ul>
+ * <li>a timestamp with a fixed-width date pattern and a field with a fixed width (<code>%5.5p</code>) end behind their
+ * width,</li>
+ * <li>any other field ends at the first occurrence of the following literal (behind its minimum width), at the next
+ * space if a field follows directly, or at the end of the line,</li>
+ * <li>the message ends at the end of the log event if it is the last field, so that it contains all following lines
+ * (e.g. a stack trace).</li>
+ * </ul>
+ * Everything behind the first <code>%n</code> is ignored. The padding of all fields but the message is trimmed.
+ * </p>
+ * <p>
+ * Instances are immutable and thread-safe.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class PatternLayout {
+
+  /** the timestamp field (<code>%d</code>) */
+  static final int                            TIMESTAMP       = 0;
+
+  /** the level field (<code>%p</code>) */
+  static final int                            LEVEL           = 1;
+
+  /** the thread field (<code>%t</code>) */
+  static final int                            THREAD          = 2;
+
+  /** the category field (<code>%c</code>) */
+  static final int                            CATEGORY        = 3;
+
+  /** the message field (<code>%m</code>) */
+  static final int                            MESSAGE         = 4;
+
+  /** the nested diagnostic context field (<code>%x</code>) */
+  static final int                            NDC             = 5;
+
+  /** the number of fields that are mapped to a log event */
+  static final int                            FIELD_COUNT     = 6;
+
+  /** a field that is skipped */
+  private static final int                    OTHER           = 6;
+
+  /** a literal */
+  private static final int                    LITERAL         = 7;
+
+  /** the end of the first line (<code>%n</code>) */
+  private static final int                    LINE_SEPARATOR  = 8;
+
+  /** the date pattern of <code>%d</code> and <code>%d{ISO8601}</code> */
+  private static final String                 ISO8601_PATTERN = "yyyy-MM-dd HH:mm:ss,SSS";
+
+  /** the conversion words and their fields */
+  private static final Map<String, Integer>   CONVERSIONS     = new HashMap<String, Integer>();
+
+  /** the named date patterns */
+  private static final Map<String, String>    DATE_PATTERNS   = new HashMap<String, String>();
+
+  static {
+    putConversions(TIMESTAMP, "d", "date");
+    putConversions(LEVEL, "p", "le", "level");
+    putConversions(THREAD, "t", "thread");
+    putConversions(CATEGORY, "c", "lo", "logger");
+    putConversions(MESSAGE, "m", "msg", "message");
+    putConversions(NDC, "x");
+    putConversions(LINE_SEPARATOR, "n");
+    putConversions(OTHER, "C", "class", "M", "method", "L", "line", "F", "file", "l", "caller", "r", "relative", "X",
+        "mdc", "marker", "cn", "contextName", "property", "ex", "exception", "throwable", "xEx", "xException",
+        "xThrowable", "rEx", "rootException", "nopex", "nopexception", "u", "sn");
+
+    DATE_PATTERNS.put("ISO8601", ISO8601_PATTERN);
+    DATE_PATTERNS.put("ABSOLUTE", "HH:mm:ss,SSS");
+    DATE_PATTERNS.put("DATE", "dd MMM yyyy HH:mm:ss,SSS");
+    DATE_PATTERNS.put("COMPACT", "yyyyMMdd HHmmssSSS");
+  }
+
+  /** the conversion pattern */
+  private final String                        _conversionPattern;
+
+  /** the elements of the first line */
+  private final Element[]                     _elements;
+
+  /** the parser for the timestamps, <code>null</code> if the pattern has no timestamp */
+  private final TimestampParser               _timestampParser;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PatternLayout}.
+   * </p>
+   *
+   * @param conversionPattern
+   *          the log4j or logback conversion pattern
+   * @throws IllegalArgumentException
+   *           if the conversion pattern is invalid
+   */
+  public PatternLayout(final String conversionPattern) {
+    Assert.notNull(conversionPattern);
+
+    _conversionPattern = conversionPattern;
+
+    final List<Element> elements = new LinkedList<Element>();
+    final StringBuilder literal = new StringBuilder();
+    TimestampParser timestampParser = null;
+    int i = 0;
+    while (i < conversionPattern.length()) {
+      final char c = conversionPattern.charAt(i++);
+      if (c != '%') {
+        literal.append(c);
+        continue;
+      }
+      if (i == conversionPattern.length()) {
+        throw new IllegalArgumentException("Conversion pattern '" + conversionPattern + "' ends with '%'");
+      }
+      if (conversionPattern.charAt(i) == '%') {
+        literal.append('%');
+        i++;
+        continue;
+      }
+
+      // format modifiers: [-][minWidth][.[-]maxWidth]
+      if (conversionPattern.charAt(i) == '-') {
+        i++;
+      }
+      int minWidth = 0;
+      while ((i < conversionPattern.length()) && Character.isDigit(conversionPattern.charAt(i))) {
+        minWidth = minWidth * 10 + (conversionPattern.charAt(i++) - '0');
+      }
+      int maxWidth = -1;
+      if ((i < conversionPattern.length()) && (conversionPattern.charAt(i) == '.')) {
+        i++;
+        if ((i < conversionPattern.length()) && (conversionPattern.charAt(i) == '-')) {
+          i++;
+        }
+        maxWidth = 0;
+        while ((i < conversionPattern.length()) && Character.isDigit(conversionPattern.charAt(i))) {
+          maxWidth = maxWidth * 10 + (conversionPattern.charAt(i++) - '0');
+        }
+      }
+
+      // conversion word: logback uses words, log4j single characters
+      final int wordStart = i;
+      while ((i < conversionPattern.length()) && Character.isLetter(conversionPattern.charAt(i))) {
+        i++;
+      }
+      if (i == wordStart) {
+        throw new IllegalArgumentException("Missing conversion character at position " + wordStart
+            + " of conversion pattern '" + conversionPattern + "'");
+      }
+      Integer kind = CONVERSIONS.get(conversionPattern.substring(wordStart, i));
+      if ((kind == null) && CONVERSIONS.containsKey(conversionPattern.substring(wordStart, wordStart + 1))) {
+        // a log4j conversion character followed by a literal
+        i = wordStart + 1;
+        kind = CONVERSIONS.get(conversionPattern.substring(wordStart, i));
+      }
+      if (kind == null) {
+        kind = Integer.valueOf(OTHER);
+      }
+
+      // option
+      String option = null;
+      if ((i < conversionPattern.length()) && (conversionPattern.charAt(i) == '{')) {
+        final int end = conversionPattern.indexOf('}', i);
+        if (end < 0) {
+          throw new IllegalArgumentException("Unterminated option at position " + i + " of conversion pattern '"
+              + conversionPattern + "'");
+        }
+        option = conversionPattern.substring(i + 1, end);
+        i = end + 1;
+      }
+
+      // everything behind the first line separator belongs to the message
+      if (kind.intValue() == LINE_SEPARATOR) {
+        break;
+      }
+
+      if (literal.length() > 0) {
+        elements.add(new Element(LITERAL, literal.toString(), 0, -1, null));
+        literal.setLength(0);
+      }
+      TimestampParser elementTimestampParser = null;
+      if (kind.intValue() == TIMESTAMP) {
+        elementTimestampParser = createTimestampParser(option);
+        if (timestampParser == null) {
+          timestampParser = elementTimestampParser;
+        }
+      }
+      elements.add(new Element(kind.intValue(), null, minWidth, maxWidth, elementTimestampParser));
+    }
+    if (literal.length() > 0) {
+      elements.add(new Element(LITERAL, literal.toString(), 0, -1, null));
+    }
+
+    _elements = elements.toArray(new Element[elements.size()]);
+    _timestampParser = timestampParser;
+  }
+
+  /**
+   * <p>
+   * Returns the conversion pattern.
+   * </p>
+   *
+   * @return the conversion pattern.
+   */
+  public String getConversionPattern() {
+    return _conversionPattern;
+  }
+
+  /**
+   * <p>
+   * Returns the parser for the timestamps.
+   * </p>
+   *
+   * @return the parser for the timestamps, <code>null</code> if the pattern has no timestamp.
+   */
+  public TimestampParser getTimestampParser() {
+    return _timestampParser;
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given line is the first line of a log event: the literals, the timestamp and the
+   * level in front of the message match the line.
+   * </p>
+   *
+   * @param line
+   *          the line
+   * @return <code>true</code> if the given line is the first line of a log event.
+   */
+  public boolean isLogEventStart(final CharSequence line) {
+    return locate(line, null);
+  }
+
+  /**
+   * <p>
+   * Locates the fields of the given log event. The start and end index of every field is stored in the given array
+   * (at <code>2 * field</code> and <code>2 * field + 1</code>), -1 if the field is missing. If the log event does not
+   * match the pattern, the fields behind the mismatch are missing.
+   * </p>
+   *
+   * @param text
+   *          the text of the log event
+   * @param bounds
+   *          the array that receives the bounds of the fields (with a length of <code>2 * FIELD_COUNT</code>)
+   * @return <code>true</code> if the log event matches the pattern.
+   */
+  boolean locate(final CharSequence text, final int[] bounds) {
+    final boolean logEventStart = bounds == null;
+    if (!logEventStart) {
+      Arrays.fill(bounds, -1);
+    }
+
+    final int lineEnd = getLineEnd(text);
+    int position = 0;
+    for (int i = 0; i < _elements.length; i++) {
+      final Element element = _elements[i];
+      if (element._kind == LITERAL) {
+        if (!regionMatches(text, position, lineEnd, element._literal)) {
+          return false;
+        }
+        position += element._literal.length();
+        continue;
+      }
+      if (logEventStart && (element._kind == MESSAGE)) {
+        return true;
+      }
+
+      final int end = getEnd(text, i, position, lineEnd);
+      if (end < 0) {
+        return false;
+      }
+
+      // trim the padding
+      int fieldStart = position;
+      int fieldEnd = end;
+      if (element._kind != MESSAGE) {
+        while ((fieldStart < fieldEnd) && (text.charAt(fieldStart) == ' ')) {
+          fieldStart++;
+        }
+        while ((fieldEnd > fieldStart) && (text.charAt(fieldEnd - 1) == ' ')) {
+          fieldEnd--;
+        }
+      }
+
+      if (logEventStart) {
+        if ((element._kind == LEVEL) && (toLogLevel(text, fieldStart, fieldEnd) == null)) {
+          return false;
+        }
+        if ((element._kind == TIMESTAMP) && (element._timestampParser.getLength() < 0)) {
+          try {
+            element._timestampParser.parse(text, fieldStart, fieldEnd);
+          } catch (final ParseException e) {
+            return false;
+          }
+        }
+      } else if ((element._kind < FIELD_COUNT) && (bounds[2 * element._kind] < 0)) {
+        bounds[2 * element._kind] = fieldStart;
+        bounds[2 * element._kind + 1] = fieldEnd;
+      }
+      position = end;
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * Returns the level of the given range of characters, <code>null</code> if the range does not contain a level.
+   * </p>
+   *
+   * @param text
+   *          the text
+   * @param from
+   *          the index of the first character
+   * @param to
+   *          the index behind the last character
+   * @return the level of the given range of characters, <code>null</code> if the range does not contain a level.
+   */
+  static LogLevel toLogLevel(final CharSequence text, final int from, final int to) {
+    for (final LogLevel logLevel : LogLevel.values()) {
+      if ((to - from == logLevel.name().length()) && regionMatches(text, from, to, logLevel.name())) {
+        return logLevel;
+      }
+    }
+    return (to - from == 7) && regionMatches(text, from, to, "WARNING") ? LogLevel.WARN : null;
+  }
+
+  /**
+   * <p>
+   * Returns the end of the element with the given index that starts at the given position, -1 if the element does not
+   * match.
+   * </p>
+   */
+  private int getEnd(final CharSequence text, final int index, final int position, final int lineEnd) {
+    final Element element = _elements[index];
+
+    // fixed widths
+    if ((element._kind == TIMESTAMP) && (element._timestampParser.getLength() >= 0)) {
+      return element._timestampParser.matches(text, position, lineEnd) ? position
+          + element._timestampParser.getLength() : -1;
+    }
+    if ((element._minWidth > 0) && (element._minWidth == element._maxWidth)) {
+      return position + element._minWidth <= lineEnd ? position + element._minWidth : -1;
+    }
+
+    // the field contains at least its minimum width and the spaces of a variable-width timestamp
+    int from = Math.min(position + element._minWidth, lineEnd);
+    int spaces = element._spaces;
+    while ((spaces > 0) && (from < lineEnd)) {
+      if (text.charAt(from++) == ' ') {
+        spaces--;
+      }
+    }
+
+    if (index + 1 == _elements.length) {
+      return element._kind == MESSAGE ? text.length() : lineEnd;
+    }
+    final Element next = _elements[index + 1];
+    if (next._kind == LITERAL) {
+      return indexOf(text, next._literal, from, lineEnd);
+    }
+    // adjacent fields are separated at the next space
+    final int space = indexOf(text, " ", from, lineEnd);
+    return space < 0 ? lineEnd : space;
+  }
+
+  /**
+   * <p>
+   * Creates the parser for the timestamps of a <code>%d</code> conversion with the given option (a named date format
+   * or a {@link java.text.SimpleDateFormat} pattern, optionally followed by a comma and a time zone id).
+   * </p>
+   */
+  private TimestampParser createTimestampParser(final String option) {
+    if (option == null) {
+      return new TimestampParser(ISO8601_PATTERN, null);
+    }
+    String pattern = option;
+    TimeZone timeZone = null;
+    final int comma = option.lastIndexOf(',');
+    if (comma >= 0) {
+      final String id = option.substring(comma + 1).trim();
+      if (TimeZone.getTimeZone(id).getID().equals(id)) {
+        pattern = option.substring(0, comma).trim();
+        timeZone = TimeZone.getTimeZone(id);
+      }
+    }
+    if (DATE_PATTERNS.containsKey(pattern)) {
+      pattern = DATE_PATTERNS.get(pattern);
+    }
+    return new TimestampParser(pattern, timeZone);
+  }
+
+  /**
+   * <p>
+   * Returns the index of the first line terminator of the given text, the length of the text if it has only one line.
+   * </p>
+   */
+  private static int getLineEnd(final CharSequence text) {
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if ((c == '\n') || (c == '\r')) {
+        return i;
+      }
+    }
+    return text.length();
+  }
+
+  /**
+   * <p>
+   * Returns <code>true</code> if the given text contains the given literal at the given position.
+   * </p>
+   */
+  private static boolean regionMatches(final CharSequence text, final int position, final int limit,
+      final String literal) {
+    if (position + literal.length() > limit) {
+      return false;
+    }
+    for (int i = 0; i < literal.length(); i++) {
+      if (text.charAt(position + i) != literal.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * <p>
+   * Returns the index of the first occurrence of the given literal in the given range of the text, -1 if the range
+   * does not contain the literal.
+   * </p>
+   */
+  private static int indexOf(final CharSequence text, final String literal, final int from, final int to) {
+    for (int i = from; i + literal.length() <= to; i++) {
+      if (regionMatches(text, i, to, literal)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static void putConversions(final int kind, final String... words) {
+    for (final String word : words) {
+      CONVERSIONS.put(word, Integer.valueOf(kind));
+    }
+  }
+
+  /**
+   * <p>
+   * A literal or a field of the pattern.
+   * </p>
+   */
+  private static class Element {
+
+    /** the kind of the element */
+    private final int             _kind;
+
+    /** the literal */
+    private final String          _literal;
+
+    /** the minimum width of the field */
+    private final int             _minWidth;
+
+    /** the maximum width of the field, -1 if unlimited */
+    private final int             _maxWidth;
+
+    /** the parser of a timestamp field */
+    private final TimestampParser _timestampParser;
+
+    /** the number of spaces in a timestamp of variable width */
+    private final int             _spaces;
+
+    public Element(final int kind, final String literal, final int minWidth, final int maxWidth,
+        final TimestampParser timestampParser) {
+      _kind = kind;
+      _literal = literal;
+      _minWidth = minWidth;
+      _maxWidth = maxWidth;
+      _timestampParser = timestampParser;
+
+      int spaces = 0;
+      if ((timestampParser != null) && (timestampParser.getLength() < 0)) {
+        final String pattern = timestampParser.getPattern();
+        for (int i = 0; i < pattern.length(); i++) {
+          if (pattern.charAt(i) == ' ') {
+            spaces++;
+          }
+        }
+      }
+      _spaces = spaces;
+    }
+  }
+}
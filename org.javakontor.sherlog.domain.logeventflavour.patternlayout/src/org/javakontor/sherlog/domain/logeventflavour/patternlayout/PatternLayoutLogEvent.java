@@ -0,0 +1,262 @@
+package org.javakontor.sherlog.domain.logeventflavour.patternlayout;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.text.ParseException;
+import java.util.Arrays;
+
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.domain.impl.reader.AbstractLogEvent;
+import org.javakontor.sherlog.domain.impl.reader.AsciiCharSequence;
+import org.javakontor.sherlog.domain.impl.reader.RawTextDecoder;
+import org.javakontor.sherlog.domain.impl.reader.TimestampParser;
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * A log event in the text representation of a {@link PatternLayout}. The fields are located when the log event is
+ * created, but only the timestamp and the level are parsed right away (both without allocations). The other fields are
+ * decoded on first access, so log events that are rejected by a filter on the timestamp or the level never decode
+ * their message.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class PatternLayoutLogEvent extends AbstractLogEvent {
+
+  private static final long        serialVersionUID         = 1L;
+
+  /** the bounds of the fields in the text or the raw bytes (see {@link PatternLayout#locate(CharSequence, int[])}) */
+  private final int[]              _fieldBounds;
+
+  /** the text of the log event, decoded lazily if the log event has been created from raw bytes */
+  private String                   _logEventAsString;
+
+  /** the raw bytes of the log event, <code>null</code> if the log event has been created from a string */
+  private final byte[]             _logEventAsBytes;
+
+  /** the decoder for the raw bytes */
+  private transient RawTextDecoder _decoder;
+
+  private long                     _timestamp;
+
+  /** the category, decoded lazily */
+  private String                   _category;
+
+  /** the thread name, decoded lazily */
+  private String                   _threadName;
+
+  private LogLevel                 _logLevel                = LogLevel.UNDEF;
+
+  /** the message, decoded lazily */
+  private String                   _renderedMessage;
+
+  /** the nested diagnostic context, decoded lazily */
+  private String                   _nestedDiagnosticContext;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PatternLayoutLogEvent}.
+   * </p>
+   *
+   * @param patternLayout
+   *          the pattern layout
+   * @param logEventAsString
+   *          the text of the log event
+   */
+  public PatternLayoutLogEvent(final PatternLayout patternLayout, final String logEventAsString) {
+    Assert.notNull(patternLayout);
+    Assert.notNull(logEventAsString);
+
+    _logEventAsString = logEventAsString;
+    _logEventAsBytes = null;
+    _fieldBounds = new int[2 * PatternLayout.FIELD_COUNT];
+    parse(patternLayout, logEventAsString);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PatternLayoutLogEvent} from the raw bytes of its text representation. The
+   * fields are located on the bytes, only the fields themselves are decoded on first access.
+   * </p>
+   *
+   * @param patternLayout
+   *          the pattern layout
+   * @param bytes
+   *          the bytes
+   * @param from
+   *          the index of the first byte of the log event
+   * @param to
+   *          the index behind the last byte of the log event
+   * @param decoder
+   *          the decoder for the charset of the file
+   */
+  public PatternLayoutLogEvent(final PatternLayout patternLayout, final byte[] bytes, final int from, final int to,
+      final RawTextDecoder decoder) {
+    Assert.notNull(patternLayout);
+    Assert.notNull(bytes);
+    Assert.notNull(decoder);
+
+    _logEventAsBytes = new byte[to - from];
+    System.arraycopy(bytes, from, _logEventAsBytes, 0, _logEventAsBytes.length);
+    _decoder = decoder;
+    _fieldBounds = new int[2 * PatternLayout.FIELD_COUNT];
+    parse(patternLayout, new AsciiCharSequence(_logEventAsBytes));
+  }
+
+  /**
+   * <p>
+   * Locates the fields of the given text (the string or the raw bytes of this log event) and parses the timestamp and
+   * the level.
+   * </p>
+   */
+  private void parse(final PatternLayout patternLayout, final CharSequence text) {
+    final int[] bounds = _fieldBounds;
+    patternLayout.locate(text, bounds);
+
+    final int timestampStart = bounds[2 * PatternLayout.TIMESTAMP];
+    if (timestampStart >= 0) {
+      final TimestampParser timestampParser = patternLayout.getTimestampParser();
+      final int timestampEnd = bounds[2 * PatternLayout.TIMESTAMP + 1];
+      try {
+        _timestamp = _logEventAsBytes != null ? timestampParser.parse(_logEventAsBytes, timestampStart, timestampEnd,
+            _decoder) : timestampParser.parse(text, timestampStart, timestampEnd);
+      } catch (final ParseException e) {
+        // the timestamp stays 0
+      }
+    }
+
+    final int levelStart = bounds[2 * PatternLayout.LEVEL];
+    if (levelStart >= 0) {
+      final LogLevel logLevel = PatternLayout.toLogLevel(text, levelStart, bounds[2 * PatternLayout.LEVEL + 1]);
+      if (logLevel != null) {
+        _logLevel = logLevel;
+      }
+    }
+  }
+
+  /**
+   * <p>
+   * Returns the value of the given field, the default value if the field is missing.
+   * </p>
+   */
+  private String getField(final int field, final String defaultValue) {
+    final int start = _fieldBounds[2 * field];
+    if (start < 0) {
+      return defaultValue;
+    }
+    final int end = _fieldBounds[2 * field + 1];
+    return _logEventAsBytes != null ? _decoder.decode(_logEventAsBytes, start, end) : _logEventAsString.substring(
+        start, end);
+  }
+
+  public Object getNestedDiagnosticContext() {
+    if (_nestedDiagnosticContext == null) {
+      _nestedDiagnosticContext = getField(PatternLayout.NDC, "");
+    }
+    return _nestedDiagnosticContext;
+  }
+
+  public boolean hasNestedDiagnosticContext() {
+    return (_nestedDiagnosticContext != null) ? (_nestedDiagnosticContext.length() > 0)
+        : (_fieldBounds[2 * PatternLayout.NDC] < _fieldBounds[2 * PatternLayout.NDC + 1]);
+  }
+
+  public long getTimeStamp() {
+    return _timestamp;
+  }
+
+  public String getCategory() {
+    if (_category == null) {
+      _category = getField(PatternLayout.CATEGORY, "");
+    }
+    return _category;
+  }
+
+  public LogLevel getLogLevel() {
+    return _logLevel;
+  }
+
+  public String getThreadName() {
+    if (_threadName == null) {
+      _threadName = getField(PatternLayout.THREAD, "");
+    }
+    return _threadName;
+  }
+
+  public String getMessage() {
+    if (_renderedMessage == null) {
+      // a log event that does not match the pattern is kept as message
+      final String message = getField(PatternLayout.MESSAGE, null);
+      _renderedMessage = message != null ? message : getLogEventAsString();
+    }
+    return _renderedMessage;
+  }
+
+  public Object getThrowableInformation() {
+    return null;
+  }
+
+  public String getThrowableInformationAsString() {
+    return "";
+  }
+
+  public boolean hasThrowableInformation() {
+    return false;
+  }
+
+  public Object getInternalRepraesentation() {
+    return getLogEventAsString();
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if ((obj == null) || (getClass() != obj.getClass())) {
+      return false;
+    }
+    final PatternLayoutLogEvent other = (PatternLayoutLogEvent) obj;
+    if ((_logEventAsBytes != null) && (other._logEventAsBytes != null)) {
+      return Arrays.equals(_logEventAsBytes, other._logEventAsBytes);
+    }
+    return getLogEventAsString().equals(other.getLogEventAsString());
+  }
+
+  @Override
+  public int hashCode() {
+    return getLogEventAsString().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return getLogEventAsString();
+  }
+
+  /**
+   * <p>
+   * Returns the text of this log event, decodes the raw bytes on first access.
+   * </p>
+   */
+  private String getLogEventAsString() {
+    if (_logEventAsString == null) {
+      _logEventAsString = _decoder.decode(_logEventAsBytes, 0, _logEventAsBytes.length);
+    }
+    return _logEventAsString;
+  }
+
+  /**
+   * <p>
+   * The decoder is not serializable, so the text and all fields are decoded before the log event is written.
+   * </p>
+   */
+  private void writeObject(final ObjectOutputStream out) throws IOException {
+    getLogEventAsString();
+    getCategory();
+    getThreadName();
+    getMessage();
+    getNestedDiagnosticContext();
+    out.defaultWriteObject();
+  }
+}
@@ -0,0 +1,48 @@
+package org.javakontor.sherlog.domain.logeventflavour.patternlayout;
+
+import org.javakontor.sherlog.domain.impl.reader.AbstractLogEvent;
+import org.javakontor.sherlog.domain.impl.reader.LogEventStartRecognizer;
+import org.javakontor.sherlog.domain.impl.reader.RawTextDecoder;
+import org.javakontor.sherlog.domain.impl.reader.RawTextLogEventProvider;
+import org.javakontor.sherlog.util.Assert;
+
+/**
+ * <p>
+ * Creates the log events of a {@link PatternLayout}. A log event starts with a line that matches the pattern.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class PatternLayoutLogEventProvider implements RawTextLogEventProvider, LogEventStartRecognizer {
+
+  /** the pattern layout */
+  private final PatternLayout _patternLayout;
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link PatternLayoutLogEventProvider}.
+   * </p>
+   *
+   * @param patternLayout
+   *          the pattern layout
+   */
+  public PatternLayoutLogEventProvider(final PatternLayout patternLayout) {
+    Assert.notNull(patternLayout);
+
+    _patternLayout = patternLayout;
+  }
+
+  public AbstractLogEvent wrapLogEvent(final Object object) {
+    Assert.instanceOf("object", object, String.class);
+
+    return new PatternLayoutLogEvent(_patternLayout, (String) object);
+  }
+
+  public AbstractLogEvent wrapLogEvent(final byte[] bytes, final int from, final int to, final RawTextDecoder decoder) {
+    return new PatternLayoutLogEvent(_patternLayout, bytes, from, to, decoder);
+  }
+
+  public boolean isLogEventStart(final CharSequence line) {
+    return _patternLayout.isLogEventStart(line);
+  }
+}
@@ -2,73 +2,122 @@ package org.javakontor.sherlog.domain.logeventflavour.textexample;
 
 import static java.lang.String.format;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.javakontor.sherlog.domain.LogLevel;
 import org.javakontor.sherlog.domain.impl.reader.AbstractLogEvent;
+import org.javakontor.sherlog.domain.impl.reader.AsciiCharSequence;
+import org.javakontor.sherlog.domain.impl.reader.RawTextDecoder;
+import org.javakontor.sherlog.domain.impl.reader.TimestampParser;
 import org.javakontor.sherlog.util.Assert;
 
 public class TextExampleLogEvent extends AbstractLogEvent {
 
-  static final long          serialVersionUID = 1L;
+  static final long                serialVersionUID = 1L;
 
   /**
    * {@link Pattern} used to parse a text-logevent
    */
-  static Pattern             pattern          = Pattern.compile("\\|(.*) \\[(.*)\\] \\<(.*)\\> ([^\\s]*) ((.*))",
-                                                  Pattern.DOTALL);
+  static Pattern                   pattern          = Pattern.compile("\\|(.*) \\[(.*)\\] \\<(.*)\\> ([^\\s]*) ((.*))",
+                                                      Pattern.DOTALL);
 
-  transient SimpleDateFormat timeformat       = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss,SSS");
+  /** the (thread-safe) parser for the timestamps of all log events */
+  static final TimestampParser     timestampParser  = new TimestampParser();
 
-  private final String       _logEventAsString;
+  /** the index of the thread name bounds */
+  private static final int         THREAD_NAME      = 0;
 
-  private Long               _timestamp;
+  /** the index of the category bounds */
+  private static final int         CATEGORY         = 2;
 
-  private String             _category;
+  /** the index of the message bounds */
+  private static final int         MESSAGE          = 4;
 
-  private String             _threadName;
+  /** the text of the log event, decoded lazily if the log event has been created from raw bytes */
+  private String                   _logEventAsString;
 
-  private LogLevel           _logLevel;
+  /** the raw bytes of the log event, <code>null</code> if the log event has been created from a string */
+  private final byte[]             _logEventAsBytes;
 
-  private String             _renderedMessage;
+  /** the decoder for the raw bytes */
+  private transient RawTextDecoder _decoder;
+
+  /** the start and end indices of the thread name, the category and the message in the text or the raw bytes */
+  private final int[]              _fieldBounds     = new int[6];
+
+  private long                     _timestamp;
+
+  /** the category, decoded lazily */
+  private String                   _category;
+
+  /** the thread name, decoded lazily */
+  private String                   _threadName;
+
+  private LogLevel                 _logLevel;
+
+  /** the message, decoded lazily */
+  private String                   _renderedMessage;
 
   public TextExampleLogEvent(final Object loggingEventString) {
     Assert.instanceOf("loggingEventString", loggingEventString, String.class);
     this._logEventAsString = (String) loggingEventString;
-    parseString();
+    this._logEventAsBytes = null;
+    parse(this._logEventAsString);
   }
 
+  /**
+   * Creates a log event from the raw bytes of its text representation. The fields are located on the bytes, the
+   * fields and the text of the log event are only decoded if they are requested.
+   */
+  public TextExampleLogEvent(final byte[] bytes, final int from, final int to, final RawTextDecoder decoder) {
+    Assert.notNull(bytes);
+    Assert.notNull(decoder);
+    this._logEventAsBytes = new byte[to - from];
+    System.arraycopy(bytes, from, this._logEventAsBytes, 0, this._logEventAsBytes.length);
+    this._decoder = decoder;
+    parse(new AsciiCharSequence(this._logEventAsBytes));
+  }
+
+  /**
+   * Locates the fields on the text of a log event (the string or the raw bytes).
+   */
   class Parser {
-    private int _currentPos = 1;
-
-    public String getSubstring(char lastChar) {
-      StringBuilder buffer = new StringBuilder();
-      while (_currentPos < _logEventAsString.length() - 1) {
-        char c = _logEventAsString.charAt(_currentPos++);
-        if (c == lastChar) {
-          break;
-        }
-        buffer.append(c);
+    private final CharSequence _text;
 
+    private int                _currentPos = 1;
+
+    public Parser(CharSequence text) {
+      _text = text;
+    }
+
+    public int getPosition() {
+      return Math.min(_currentPos, _text.length());
+    }
+
+    public int skipField(char lastChar) {
+      while (_currentPos < _text.length() - 1) {
+        if (_text.charAt(_currentPos++) == lastChar) {
+          return _currentPos - 1;
+        }
       }
-      return buffer.toString();
+      return getPosition();
     }
 
     public void skip(int count) {
       _currentPos += count;
     }
 
-    public String getRest() {
-      return _logEventAsString.substring(_currentPos);
-    }
-
   }
 
-  private void parseString() {
+  /**
+   * Parses the timestamp and the level and locates the other fields, which are decoded on first access.
+   */
+  private void parse(final CharSequence text) {
     try {
 
       // if (false) {
@@ -81,18 +130,19 @@ public class TextExampleLogEvent extends AbstractLogEvent {
       // return;
       // }
       //
-      Parser parser = new Parser();
+      Parser parser = new Parser(text);
 
-      String timestampString = parser.getSubstring('[');
-      final Date ts = this.timeformat.parse(timestampString);
-      this._timestamp = new Long(ts.getTime());
+      final int timestampEnd = parser.skipField('[');
+      this._timestamp = this._logEventAsBytes != null ? timestampParser.parse(this._logEventAsBytes, 1,
+          timestampEnd, this._decoder) : timestampParser.parse(text, 1, timestampEnd);
 
-      this._threadName = parser.getSubstring(']');
+      setFieldBounds(THREAD_NAME, parser.getPosition(), parser.skipField(']'));
       parser.skip(2);
-      this._logLevel = LogLevel.valueOf(parser.getSubstring('>'));
+      final int logLevelStart = parser.getPosition();
+      this._logLevel = getLogLevel(text, logLevelStart, parser.skipField('>'));
       parser.skip(1);
-      this._category = parser.getSubstring(' ');
-      this._renderedMessage = parser.getRest();
+      setFieldBounds(CATEGORY, parser.getPosition(), parser.skipField(' '));
+      setFieldBounds(MESSAGE, parser.getPosition(), text.length());
 
       // Matcher matcher = pattern.matcher(_logEventAsString);
       // if (!matcher.find()) {
@@ -114,6 +164,40 @@ public class TextExampleLogEvent extends AbstractLogEvent {
     }
   }
 
+  private void setFieldBounds(int field, int start, int end) {
+    this._fieldBounds[field] = start;
+    this._fieldBounds[field + 1] = end;
+  }
+
+  /**
+   * Returns the log level with the name in the given range, compares the characters without creating a string.
+   */
+  private static LogLevel getLogLevel(CharSequence text, int from, int to) {
+    for (final LogLevel logLevel : LogLevel.values()) {
+      final String name = logLevel.name();
+      if (to - from == name.length()) {
+        int i = 0;
+        while ((i < name.length()) && (text.charAt(from + i) == name.charAt(i))) {
+          i++;
+        }
+        if (i == name.length()) {
+          return logLevel;
+        }
+      }
+    }
+    return LogLevel.valueOf(text.subSequence(from, to).toString());
+  }
+
+  /**
+   * Returns the value of the given field, decodes the raw bytes if the log event has been created from raw bytes.
+   */
+  private String getField(int field) {
+    final int start = this._fieldBounds[field];
+    final int end = this._fieldBounds[field + 1];
+    return this._logEventAsBytes != null ? this._decoder.decode(this._logEventAsBytes, start, end)
+        : this._logEventAsString.substring(start, end);
+  }
+
   public Object getNestedDiagnosticContext() {
     return null;
   }
@@ -123,10 +207,13 @@ public class TextExampleLogEvent extends AbstractLogEvent {
   }
 
   public long getTimeStamp() {
-    return this._timestamp.longValue();
+    return this._timestamp;
   }
 
   public String getCategory() {
+    if (this._category == null) {
+      this._category = getField(CATEGORY);
+    }
     return this._category;
   }
 
@@ -135,10 +222,16 @@ public class TextExampleLogEvent extends AbstractLogEvent {
   }
 
   public String getThreadName() {
+    if (this._threadName == null) {
+      this._threadName = getField(THREAD_NAME);
+    }
     return this._threadName;
   }
 
   public String getMessage() {
+    if (this._renderedMessage == null) {
+      this._renderedMessage = getField(MESSAGE);
+    }
     return _renderedMessage;
   }
 
@@ -163,10 +256,15 @@ public class TextExampleLogEvent extends AbstractLogEvent {
     if (getClass() != obj.getClass())
       return false;
     TextExampleLogEvent other = (TextExampleLogEvent) obj;
-    if (_logEventAsString == null) {
-      if (other._logEventAsString != null)
+    if ((_logEventAsBytes != null) && (other._logEventAsBytes != null)) {
+      return Arrays.equals(_logEventAsBytes, other._logEventAsBytes);
+    }
+    String logEventAsString = getLogEventAsString();
+    String otherLogEventAsString = other.getLogEventAsString();
+    if (logEventAsString == null) {
+      if (otherLogEventAsString != null)
         return false;
-    } else if (!_logEventAsString.equals(other._logEventAsString))
+    } else if (!logEventAsString.equals(otherLogEventAsString))
       return false;
     return true;
   }
@@ -175,19 +273,41 @@ public class TextExampleLogEvent extends AbstractLogEvent {
   public int hashCode() {
     final int prime = 31;
     int result = 1;
-    result = prime * result + ((_logEventAsString == null) ? 0 : _logEventAsString.hashCode());
+    String logEventAsString = getLogEventAsString();
+    result = prime * result + ((logEventAsString == null) ? 0 : logEventAsString.hashCode());
     return result;
   }
 
   public Object getInternalRepraesentation() {
-    return this._logEventAsString;
+    return getLogEventAsString();
   }
 
   @Override
   public String toString() {
+    return getLogEventAsString();
+  }
+
+  /**
+   * Returns the text of this log event, decodes the raw bytes on first access.
+   */
+  private String getLogEventAsString() {
+    if ((_logEventAsString == null) && (_logEventAsBytes != null)) {
+      _logEventAsString = _decoder.decode(_logEventAsBytes, 0, _logEventAsBytes.length);
+    }
     return _logEventAsString;
   }
 
+  /**
+   * The decoder is not serializable, so the text and the fields are decoded before the log event is written.
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    getLogEventAsString();
+    getCategory();
+    getThreadName();
+    getMessage();
+    out.defaultWriteObject();
+  }
+
   public static void main(String[] args) {
     try {
       // |timestamp [Thread] <LOGLEVEL> category message
@@ -1,11 +1,16 @@
 package org.javakontor.sherlog.domain.logeventflavour.textexample;
 
 import org.javakontor.sherlog.domain.impl.reader.AbstractLogEvent;
-import org.javakontor.sherlog.domain.impl.reader.TextLogEventProvider;
+import org.javakontor.sherlog.domain.impl.reader.RawTextDecoder;
+import org.javakontor.sherlog.domain.impl.reader.RawTextLogEventProvider;
 
-public class TextExampleLogEventProvider implements TextLogEventProvider {
+public class TextExampleLogEventProvider implements RawTextLogEventProvider {
 
   public AbstractLogEvent wrapLogEvent(Object object) {
     return new TextExampleLogEvent(object);
   }
+
+  public AbstractLogEvent wrapLogEvent(byte[] bytes, int from, int to, RawTextDecoder decoder) {
+    return new TextExampleLogEvent(bytes, from, to, decoder);
+  }
 }
@@ -0,0 +1,38 @@
+package org.javakontor.sherlog.domain.filter;
+
+/**
+ * <p>
+ * A {@link LogEventFilter} that (among other criteria) restricts the categories of the log events. Filterables that
+ * index the categories of their log events can use {@link #matchesCategory(String)} to evaluate
+ * {@link LogEventFilter#matches(org.javakontor.sherlog.domain.LogEvent) matches()} only for the log events of
+ * accepted categories.
+ * </p>
+ * <p>
+ * The category restriction must be hierarchical: if a category is accepted, all of its sub categories (separated by
+ * '.') must be accepted as well.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public interface CategoryLogEventFilter extends LogEventFilter {
+
+  /**
+   * <p>
+   * Returns <code>true</code> if this filter currently restricts the categories of the log events.
+   * </p>
+   *
+   * @return <code>true</code> if this filter currently restricts the categories of the log events.
+   */
+  public boolean isCategoryRestricted();
+
+  /**
+   * <p>
+   * Returns <code>false</code> if this filter rejects all log events of the given category.
+   * </p>
+   *
+   * @param category
+   *          the category, might be <code>null</code>
+   * @return <code>false</code> if this filter rejects all log events of the given category.
+   */
+  public boolean matchesCategory(String category);
+}
@@ -13,17 +13,48 @@ import java.util.EventObject;
 public class LogEventFilterChangeEvent extends EventObject {
 
   /** the serialVersionUID */
-  private static final long serialVersionUID = 1L;
+  private static final long              serialVersionUID = 1L;
+
+  /** the change type */
+  private final LogEventFilterChangeType _changeType;
 
   /**
    * <p>
-   * Creates a new instance of type {@link LogEventFilterChangeEvent}.
+   * Creates a new instance of type {@link LogEventFilterChangeEvent} with the change type
+   * {@link LogEventFilterChangeType#CHANGED}.
    * </p>
    *
    * @param source
    *          the source
    */
   public LogEventFilterChangeEvent(Object source) {
+    this(source, LogEventFilterChangeType.CHANGED);
+  }
+
+  /**
+   * <p>
+   * Creates a new instance of type {@link LogEventFilterChangeEvent}.
+   * </p>
+   *
+   * @param source
+   *          the source
+   * @param changeType
+   *          the change type
+   */
+  public LogEventFilterChangeEvent(Object source, LogEventFilterChangeType changeType) {
     super(source);
+
+    _changeType = changeType == null ? LogEventFilterChangeType.CHANGED : changeType;
+  }
+
+  /**
+   * <p>
+   * Returns how the set of matching log events has changed.
+   * </p>
+   *
+   * @return how the set of matching log events has changed.
+   */
+  public LogEventFilterChangeType getChangeType() {
+    return _changeType;
   }
 }
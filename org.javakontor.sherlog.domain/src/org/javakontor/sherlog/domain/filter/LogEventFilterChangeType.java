@@ -0,0 +1,40 @@
+package org.javakontor.sherlog.domain.filter;
+
+/**
+ * <p>
+ * Describes how the set of {@link org.javakontor.sherlog.domain.LogEvent LogEvents} that match a
+ * {@link LogEventFilter} has changed. Filterables can use this information to refilter incrementally.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public enum LogEventFilterChangeType {
+
+  /** the filter matches the same log events as before */
+  UNCHANGED,
+
+  /** the filter matches a subset of the log events it matched before */
+  NARROWED,
+
+  /** the filter matches a superset of the log events it matched before */
+  WIDENED,
+
+  /** the filter has changed in an arbitrary way */
+  CHANGED;
+
+  /**
+   * <p>
+   * Combines this change type with the given change type, e.g. if two criteria of a filter have changed.
+   * </p>
+   *
+   * @param other
+   *          the other change type
+   * @return the combined change type
+   */
+  public LogEventFilterChangeType combine(final LogEventFilterChangeType other) {
+    if ((this == other) || (other == UNCHANGED)) {
+      return this;
+    }
+    return this == UNCHANGED ? other : CHANGED;
+  }
+}
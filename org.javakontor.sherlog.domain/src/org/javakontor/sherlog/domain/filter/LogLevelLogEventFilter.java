@@ -0,0 +1,34 @@
+package org.javakontor.sherlog.domain.filter;
+
+import org.javakontor.sherlog.domain.LogLevel;
+
+/**
+ * <p>
+ * A {@link LogEventFilter} that (among other criteria) requires the level of a log event to be greater or equal to a
+ * threshold. Filterables that index the levels of their log events can evaluate
+ * {@link LogEventFilter#matches(org.javakontor.sherlog.domain.LogEvent) matches()} only for the log events of the
+ * accepted levels.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public interface LogLevelLogEventFilter extends LogEventFilter {
+
+  /**
+   * <p>
+   * Returns <code>true</code> if this filter currently requires a minimum level.
+   * </p>
+   *
+   * @return <code>true</code> if this filter currently requires a minimum level.
+   */
+  public boolean isLogLevelRestricted();
+
+  /**
+   * <p>
+   * Returns the level every matching log event has at least.
+   * </p>
+   *
+   * @return the level every matching log event has at least.
+   */
+  public LogLevel getLogLevelThreshold();
+}
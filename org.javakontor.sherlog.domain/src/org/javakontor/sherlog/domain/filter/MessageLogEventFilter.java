@@ -0,0 +1,32 @@
+package org.javakontor.sherlog.domain.filter;
+
+/**
+ * <p>
+ * A {@link LogEventFilter} that (among other criteria) requires the message of a log event to contain a substring.
+ * Filterables that index the messages of their log events can use the substring to evaluate
+ * {@link LogEventFilter#matches(org.javakontor.sherlog.domain.LogEvent) matches()} only for the candidates found in
+ * the index.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public interface MessageLogEventFilter extends LogEventFilter {
+
+  /**
+   * <p>
+   * Returns <code>true</code> if this filter currently requires the message to contain a substring.
+   * </p>
+   *
+   * @return <code>true</code> if this filter currently requires the message to contain a substring.
+   */
+  public boolean isMessageRestricted();
+
+  /**
+   * <p>
+   * Returns the substring the message of every matching log event contains.
+   * </p>
+   *
+   * @return the substring the message of every matching log event contains.
+   */
+  public String getMessageSubstring();
+}
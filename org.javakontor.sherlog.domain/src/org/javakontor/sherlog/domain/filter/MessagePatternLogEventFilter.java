@@ -0,0 +1,34 @@
+package org.javakontor.sherlog.domain.filter;
+
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ * A {@link LogEventFilter} that (among other criteria) requires the message of a log event to contain a match of a
+ * regular expression (see {@link java.util.regex.Matcher#find()}). Filterables that index the messages of their log
+ * events can use the pattern to evaluate {@link LogEventFilter#matches(org.javakontor.sherlog.domain.LogEvent)
+ * matches()} only for the candidates found in the index.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public interface MessagePatternLogEventFilter extends LogEventFilter {
+
+  /**
+   * <p>
+   * Returns <code>true</code> if this filter currently requires the message to contain a match of a pattern.
+   * </p>
+   *
+   * @return <code>true</code> if this filter currently requires the message to contain a match of a pattern.
+   */
+  public boolean isMessagePatternRestricted();
+
+  /**
+   * <p>
+   * Returns the pattern the message of every matching log event contains a match of.
+   * </p>
+   *
+   * @return the pattern the message of every matching log event contains a match of.
+   */
+  public Pattern getMessagePattern();
+}
@@ -0,0 +1,13 @@
+package org.javakontor.sherlog.domain.filter;
+
+/**
+ * <p>
+ * Tag interface for {@link LogEventFilter LogEventFilters} whose {@link LogEventFilter#matches(org.javakontor.sherlog.domain.LogEvent)
+ * matches()} method can be invoked concurrently from several threads. Filterables may only evaluate filters that
+ * implement this interface in parallel.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public interface ThreadSafeLogEventFilter extends LogEventFilter {
+}
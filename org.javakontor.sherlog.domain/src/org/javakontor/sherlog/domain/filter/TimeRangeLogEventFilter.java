@@ -0,0 +1,31 @@
+package org.javakontor.sherlog.domain.filter;
+
+/**
+ * <p>
+ * A {@link LogEventFilter} that matches exactly the log events whose time stamps are within a range. Filterables that
+ * keep their log events sorted by time stamp can resolve the range with a binary search instead of evaluating
+ * {@link LogEventFilter#matches(org.javakontor.sherlog.domain.LogEvent) matches()} for each log event.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public interface TimeRangeLogEventFilter extends LogEventFilter {
+
+  /**
+   * <p>
+   * Returns the smallest time stamp this filter matches (inclusive).
+   * </p>
+   *
+   * @return the smallest time stamp this filter matches.
+   */
+  public long getFromTimeStamp();
+
+  /**
+   * <p>
+   * Returns the greatest time stamp this filter matches (inclusive).
+   * </p>
+   *
+   * @return the greatest time stamp this filter matches.
+   */
+  public long getToTimeStamp();
+}
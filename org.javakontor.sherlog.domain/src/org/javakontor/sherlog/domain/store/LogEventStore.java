@@ -3,17 +3,36 @@ package org.javakontor.sherlog.domain.store;
 import java.util.List;
 
 import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogLevel;
 import org.javakontor.sherlog.domain.filter.Filterable;
 
 /**
  * <p>
  * A {@link LogEventStore} contains several {@link LogEvent LogEvents}.
  * </p>
+ * <p>
+ * The lists returned by a {@link LogEventStore} are immutable versions: they can be read from any thread without
+ * locking, but they do not reflect subsequent changes of the store. Use {@link #getSnapshot()} to read several lists
+ * of the same version or to look up time ranges.
+ * </p>
+ * <p>
+ * The log events are kept sorted by time stamp. Filters that implement
+ * {@link org.javakontor.sherlog.domain.filter.TimeRangeLogEventFilter} are resolved with a binary search.
+ * </p>
  *
  * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
  */
 public interface LogEventStore extends Filterable {
 
+  /**
+   * <p>
+   * Returns the current version of this store. Never blocks.
+   * </p>
+   *
+   * @return the current version of this store.
+   */
+  public LogEventStoreSnapshot getSnapshot();
+
   /**
    * <p>
    * Returns a {@link List} of all {@link LogEvent LogEvents}. The returned list is <b>not</b> filtered through the list
@@ -52,6 +71,50 @@ public interface LogEventStore extends Filterable {
    */
   public int getFilteredLogEventCount();
 
+  /**
+   * <p>
+   * Returns the (estimated) number of bytes the store uses to cache the results of its filters.
+   * </p>
+   *
+   * @return the (estimated) number of bytes the store uses to cache the results of its filters.
+   */
+  public long getFilterCacheSizeInBytes();
+
+  /**
+   * <p>
+   * Returns the {@link LogEvent LogEvents} whose messages contain all terms of at least one of the alternatives of the
+   * given query. Terms are separated by white space (or any other character that is neither a letter nor a digit),
+   * alternatives are separated by <code>OR</code>, e.g. <code>order 4711 OR payment failed</code>. Terms are matched
+   * as whole words and case-insensitively. The returned list is <b>not</b> filtered through the list of registered
+   * Filters.
+   * </p>
+   *
+   * @param query
+   *          the query
+   * @return the {@link LogEvent LogEvents} whose messages match the given query.
+   */
+  public List<LogEvent> findLogEvents(String query);
+
+  /**
+   * <p>
+   * Returns the number of {@link LogEvent LogEvents} whose messages have been indexed (the indexes are built in the
+   * background, if there are several the one that lags behind counts), -1 if the messages are not indexed.
+   * </p>
+   *
+   * @return the number of {@link LogEvent LogEvents} whose messages have been indexed, -1 if the messages are not
+   *         indexed.
+   */
+  public int getIndexedLogEventCount();
+
+  /**
+   * <p>
+   * Returns the (estimated) number of bytes the store uses to index the messages (all indexes).
+   * </p>
+   *
+   * @return the (estimated) number of bytes the store uses to index the messages.
+   */
+  public long getMessageIndexSizeInBytes();
+
   /**
    * <p>
    * Returns a {@link List} of all categories.
@@ -61,6 +124,74 @@ public interface LogEventStore extends Filterable {
    */
   public List<String> getCategories();
 
+  /**
+   * <p>
+   * Returns the number of {@link LogEvent LogEvents} of the given category.
+   * </p>
+   *
+   * @param category
+   *          the category
+   * @return the number of {@link LogEvent LogEvents} of the given category.
+   */
+  public int getCategoryCount(String category);
+
+  /**
+   * <p>
+   * Returns the number of filtered {@link LogEvent LogEvents} of the given category.
+   * </p>
+   *
+   * @param category
+   *          the category
+   * @return the number of filtered {@link LogEvent LogEvents} of the given category.
+   */
+  public int getFilteredCategoryCount(String category);
+
+  /**
+   * <p>
+   * Returns the number of {@link LogEvent LogEvents} of the given level. The counts are maintained by the store, so
+   * this method does not iterate over the log events.
+   * </p>
+   *
+   * @param logLevel
+   *          the level
+   * @return the number of {@link LogEvent LogEvents} of the given level.
+   */
+  public int getLogLevelCount(LogLevel logLevel);
+
+  /**
+   * <p>
+   * Returns the number of filtered {@link LogEvent LogEvents} of the given level.
+   * </p>
+   *
+   * @param logLevel
+   *          the level
+   * @return the number of filtered {@link LogEvent LogEvents} of the given level.
+   */
+  public int getFilteredLogLevelCount(LogLevel logLevel);
+
+  /**
+   * <p>
+   * Returns the direct sub categories of the given (dot-separated) category, e.g. <code>org.acme.payment</code> for
+   * <code>org.acme</code>.
+   * </p>
+   *
+   * @param category
+   *          the category or <code>null</code> for the top level categories
+   * @return the direct sub categories of the given category.
+   */
+  public List<String> getSubCategories(String category);
+
+  /**
+   * <p>
+   * Returns the number of {@link LogEvent LogEvents} of the given category and all of its sub categories.
+   * </p>
+   *
+   * @param category
+   *          the category or <code>null</code> for all categories
+   * @return the number of {@link LogEvent LogEvents} of the given category and all of its sub categories.
+   */
+  public int getCategorySubtreeCount(String category);
+
   /**
    * <p>
    * Adds the given {@link LogEventStoreListener} to the {@link LogEventStore} .
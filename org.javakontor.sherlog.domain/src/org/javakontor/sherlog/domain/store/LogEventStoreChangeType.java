@@ -0,0 +1,24 @@
+package org.javakontor.sherlog.domain.store;
+
+/**
+ * <p>
+ * Describes how the filtered {@link org.javakontor.sherlog.domain.LogEvent LogEvents} of a {@link LogEventStore} have
+ * changed. Views can use this information to update only the affected rows.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public enum LogEventStoreChangeType {
+
+  /** filtered log events have been appended */
+  APPENDED,
+
+  /** filtered log events have been inserted at arbitrary indices */
+  INSERTED,
+
+  /** a range of filtered log events has been removed */
+  REMOVED,
+
+  /** the filtered log events have changed in an arbitrary way, e.g. after a filter change */
+  REFILTERED;
+}
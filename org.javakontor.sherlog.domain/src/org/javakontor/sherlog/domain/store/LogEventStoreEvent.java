@@ -14,14 +14,97 @@ public class LogEventStoreEvent extends EventObject {
   /**
    * 
    */
-  private static final long    serialVersionUID = 1L;
+  private static final long             serialVersionUID = 1L;
 
   /**
-   * Creates a new @link LogEventStoreChangeEvent
+   * the type of the change
+   */
+  private final LogEventStoreChangeType _changeType;
+
+  /**
+   * the first changed index of the filtered log events
+   */
+  private final int                     _firstIndex;
+
+  /**
+   * the last changed index of the filtered log events (inclusive)
+   */
+  private final int                     _lastIndex;
+
+  /**
+   * the indices of the inserted filtered log events (INSERTED only)
+   */
+  private final int[]                   _indices;
+
+  /**
+   * the number of log events that have been evicted from a bounded store
+   */
+  private final int                     _evictedLogEventCount;
+
+  /**
+   * the version of the store after the change, might be <code>null</code>
+   */
+  private final LogEventStoreSnapshot   _snapshot;
+
+  /**
+   * Creates a new @link LogEventStoreChangeEvent that describes an arbitrary
+   * change of the filtered log events
    * @param source the {@link LogEventStore} that caused this event
    */
   public LogEventStoreEvent(LogEventStore source) {
+    this(source, (LogEventStoreSnapshot) null);
+  }
+
+  /**
+   * Creates a new @link LogEventStoreChangeEvent that describes an arbitrary
+   * change of the filtered log events
+   * @param source the {@link LogEventStore} that caused this event
+   * @param snapshot the version of the store after the change, might be
+   *          <code>null</code>
+   */
+  public LogEventStoreEvent(LogEventStore source, LogEventStoreSnapshot snapshot) {
+    this(source, LogEventStoreChangeType.REFILTERED, 0, -1, null, 0, snapshot);
+  }
+
+  /**
+   * Creates a new @link LogEventStoreChangeEvent that describes an appended
+   * or removed range of filtered log events
+   * @param source the {@link LogEventStore} that caused this event
+   * @param changeType either APPENDED or REMOVED
+   * @param firstIndex the first index of the range
+   * @param lastIndex the last index of the range (inclusive), the range is
+   *          empty if it is smaller than the first index
+   * @param evictedLogEventCount the number of (oldest) log events that have
+   *          been evicted from a bounded store
+   * @param snapshot the version of the store after the change
+   */
+  public LogEventStoreEvent(LogEventStore source, LogEventStoreChangeType changeType, int firstIndex, int lastIndex,
+      int evictedLogEventCount, LogEventStoreSnapshot snapshot) {
+    this(source, changeType, firstIndex, lastIndex, null, evictedLogEventCount, snapshot);
+  }
+
+  /**
+   * Creates a new @link LogEventStoreChangeEvent that describes inserted
+   * filtered log events
+   * @param source the {@link LogEventStore} that caused this event
+   * @param indices the (ascending) indices of the inserted log events after
+   *          the insertion
+   * @param snapshot the version of the store after the change
+   */
+  public LogEventStoreEvent(LogEventStore source, int[] indices, LogEventStoreSnapshot snapshot) {
+    this(source, LogEventStoreChangeType.INSERTED, indices.length == 0 ? 0 : indices[0],
+        indices.length == 0 ? -1 : indices[indices.length - 1], indices, 0, snapshot);
+  }
+
+  private LogEventStoreEvent(LogEventStore source, LogEventStoreChangeType changeType, int firstIndex,
+      int lastIndex, int[] indices, int evictedLogEventCount, LogEventStoreSnapshot snapshot) {
     super(source);
+    _changeType = changeType;
+    _firstIndex = firstIndex;
+    _lastIndex = lastIndex;
+    _indices = indices;
+    _evictedLogEventCount = evictedLogEventCount;
+    _snapshot = snapshot;
   }
 
   /**
@@ -32,6 +115,68 @@ public class LogEventStoreEvent extends EventObject {
   public LogEventStore getLogEventStore() {
     return (LogEventStore) source;
   }
+
+  /**
+   * Returns the type of the change
+   * @return the type of the change
+   */
+  public LogEventStoreChangeType getChangeType() {
+    return _changeType;
+  }
+
+  /**
+   * Returns the first changed index of the filtered log events
+   * @return the first changed index
+   */
+  public int getFirstIndex() {
+    return _firstIndex;
+  }
+
+  /**
+   * Returns the last changed index of the filtered log events (inclusive).
+   * The change is empty if the last index is smaller than the first index
+   * @return the last changed index
+   */
+  public int getLastIndex() {
+    return _lastIndex;
+  }
+
+  /**
+   * Returns the (ascending) indices of the inserted filtered log events, only
+   * set if the change type is INSERTED
+   * @return the indices of the inserted log events or <code>null</code>
+   */
+  public int[] getIndices() {
+    return _indices;
+  }
+
+  /**
+   * Returns the number of (oldest) log events that have been evicted from a
+   * bounded store with this change
+   * @return the number of evicted log events
+   */
+  public int getEvictedLogEventCount() {
+    return _evictedLogEventCount;
+  }
+
+  /**
+   * Returns the version of the store after this change. Listeners should read
+   * the (filtered) log events from this snapshot: when the change is delivered,
+   * the store might already contain more changes
+   * @return the version of the store after this change or <code>null</code>
+   */
+  public LogEventStoreSnapshot getSnapshot() {
+    return _snapshot;
+  }
+
+  /**
+   * Returns the number of filtered log events after this change (when the
+   * change is delivered, the store might already contain more changes)
+   * @return the number of filtered log events or -1 if unknown
+   */
+  public int getFilteredLogEventCount() {
+    return _snapshot == null ? -1 : _snapshot.getFilteredLogEvents().size();
+  }
   
   @Override
   public boolean equals(Object object) {
@@ -0,0 +1,110 @@
+package org.javakontor.sherlog.domain.store;
+
+import java.util.List;
+
+import org.javakontor.sherlog.domain.LogEvent;
+
+/**
+ * <p>
+ * An immutable version of a {@link LogEventStore}. A {@link LogEventStoreSnapshot} never changes, so it can be read by
+ * any thread (e.g. the Event Dispatch Thread or a background analysis) without locking while the store is modified.
+ * </p>
+ * <p>
+ * The log events are sorted by time stamp, so time ranges can be looked up with a binary search, e.g. to jump to a
+ * point in time or to slice a time range.
+ * </p>
+ *
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public interface LogEventStoreSnapshot {
+
+  /**
+   * <p>
+   * Returns the version number of this snapshot. Later versions of the same store have greater version numbers.
+   * </p>
+   *
+   * @return the version number of this snapshot.
+   */
+  public long getVersion();
+
+  /**
+   * <p>
+   * Returns an immutable {@link List} of all {@link LogEvent LogEvents} of this version.
+   * </p>
+   *
+   * @return an immutable {@link List} of all {@link LogEvent LogEvents} of this version.
+   */
+  public List<LogEvent> getLogEvents();
+
+  /**
+   * <p>
+   * Returns an immutable {@link List} of the filtered {@link LogEvent LogEvents} of this version.
+   * </p>
+   *
+   * @return an immutable {@link List} of the filtered {@link LogEvent LogEvents} of this version.
+   */
+  public List<LogEvent> getFilteredLogEvents();
+
+  /**
+   * <p>
+   * Returns the index of the first {@link LogEvent} (in {@link #getLogEvents()}) whose time stamp is at or after the
+   * given time stamp. Runs in O(log n).
+   * </p>
+   *
+   * @param timeStamp
+   *          the time stamp
+   * @return the index of the first log event at or after the given time stamp, the number of log events if there is
+   *         none.
+   */
+  public int getLogEventIndex(long timeStamp);
+
+  /**
+   * <p>
+   * Returns the index of the first filtered {@link LogEvent} (in {@link #getFilteredLogEvents()}) whose time stamp is
+   * at or after the given time stamp.
+   * </p>
+   *
+   * @param timeStamp
+   *          the time stamp
+   * @return the index of the first filtered log event at or after the given time stamp, the number of filtered log
+   *         events if there is none.
+   */
+  public int getFilteredLogEventIndex(long timeStamp);
+
+  /**
+   * <p>
+   * Returns the {@link LogEvent LogEvents} whose time stamps are in the range <code>[fromTimeStamp, toTimeStamp)</code>
+   * as a sub list of {@link #getLogEvents()}.
+   * </p>
+   *
+   * @param fromTimeStamp
+   *          the first time stamp (inclusive)
+   * @param toTimeStamp
+   *          the last time stamp (exclusive)
+   * @return the log events whose time stamps are in the given range.
+   */
+  public List<LogEvent> getLogEvents(long fromTimeStamp, long toTimeStamp);
+
+  /**
+   * <p>
+   * Returns the filtered {@link LogEvent LogEvents} whose time stamps are in the range
+   * <code>[fromTimeStamp, toTimeStamp)</code> as a sub list of {@link #getFilteredLogEvents()}.
+   * </p>
+   *
+   * @param fromTimeStamp
+   *          the first time stamp (inclusive)
+   * @param toTimeStamp
+   *          the last time stamp (exclusive)
+   * @return the filtered log events whose time stamps are in the given range.
+   */
+  public List<LogEvent> getFilteredLogEvents(long fromTimeStamp, long toTimeStamp);
+
+  /**
+   * <p>
+   * Returns an immutable {@link List} of the categories of this version.
+   * </p>
+   *
+   * @return an immutable {@link List} of the categories of this version.
+   */
+  public List<String> getCategories();
+}
@@ -1,5 +1,7 @@
 package org.javakontor.sherlog.domain.store;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 
 import org.javakontor.sherlog.domain.LogEvent;
@@ -40,4 +42,30 @@ public interface ModifiableLogEventStore extends LogEventStore {
    * </p>
    */
   public void reset();
+
+  /**
+   * <p>
+   * Saves the {@link LogEvent LogEvents} of the {@link LogEventStore}, their user defined fields and the configuration
+   * of the registered filters to the specified session file. An existing file is overwritten.
+   * </p>
+   *
+   * @param file
+   *          the session file
+   * @throws IOException
+   *           if the session file cannot be written
+   */
+  public void saveSession(final File file) throws IOException;
+
+  /**
+   * <p>
+   * Replaces the content of the {@link LogEventStore} with the specified session file that has been written by
+   * {@link #saveSession(File)}. The configuration of the registered filters is restored as well.
+   * </p>
+   *
+   * @param file
+   *          the session file
+   * @throws IOException
+   *           if the session file cannot be read
+   */
+  public void openSession(final File file) throws IOException;
 }
@@ -7,7 +7,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArraySet;
 
-import org.javakontor.sherlog.domain.impl.reader.SimpleLogEventHandler;
+import org.javakontor.sherlog.domain.impl.reader.IngestionLogEventHandler;
+import org.javakontor.sherlog.domain.impl.reader.LogEventIngestionBuffer;
 import org.javakontor.sherlog.domain.reader.LogEventFlavour;
 import org.javakontor.sherlog.domain.reader.LogEventReader;
 import org.javakontor.sherlog.domain.reader.LogEventReaderFactory;
@@ -33,6 +34,9 @@ public class SocketListener extends Thread {
 
   private LogEventReaderFactory                                        _logEventReaderFactory;
 
+  /** all connections publish into this buffer, a single writer adds the log events to the store */
+  private final LogEventIngestionBuffer                                _ingestionBuffer;
+
   private final List<LogEventReader>                                   _activeLogEventReader = new LinkedList<LogEventReader>();
 
   private final CopyOnWriteArraySet<SocketListenerStateChangeListener> _stateChangeListener  = new CopyOnWriteArraySet<SocketListenerStateChangeListener>();
@@ -44,6 +48,7 @@ public class SocketListener extends Thread {
     _logEventFlavour = logEventFlavour;
     _logEventStore = logEventStore;
     _logEventReaderFactory = logEventReaderFactory;
+    _ingestionBuffer = new LogEventIngestionBuffer(logEventStore);
   }
 
   public void setLogEventReaderFactory(LogEventReaderFactory logEventReaderFactory) {
@@ -52,6 +57,7 @@ public class SocketListener extends Thread {
 
   public void run() {
     try {
+      _ingestionBuffer.start(getName() + "-Writer");
       doRun();
     } finally {
       dispose();
@@ -73,9 +79,8 @@ public class SocketListener extends Thread {
           SocketLogEventReaderInputSource inputSource = new SocketLogEventReaderInputSource(clientSocket);
           LogEventReader logEventReader = _logEventReaderFactory.getLogEventReader(inputSource, _logEventFlavour);
           if (logEventReader != null) {
-            SocketListenerLogEventHandler batchLogEventHandler = new SocketListenerLogEventHandler(_logEventStore,
-                logEventReader);
-            logEventReader.addLogEventHandler(batchLogEventHandler);
+            SocketListenerLogEventHandler logEventHandler = new SocketListenerLogEventHandler(logEventReader);
+            logEventReader.addLogEventHandler(logEventHandler);
             synchronized (_activeLogEventReader) {
               _activeLogEventReader.add(logEventReader);
             }
@@ -97,6 +102,7 @@ public class SocketListener extends Thread {
   private synchronized void dispose() {
     closeServerSocket();
     stopAllLogEventReader();
+    _ingestionBuffer.stop();
     removeAllListener();
   }
 
@@ -131,11 +137,11 @@ public class SocketListener extends Thread {
     fireStateChange();
   }
 
-  class SocketListenerLogEventHandler extends SimpleLogEventHandler {
+  class SocketListenerLogEventHandler extends IngestionLogEventHandler {
     private final LogEventReader _logEventReader;
 
-    public SocketListenerLogEventHandler(ModifiableLogEventStore logEventStore, LogEventReader logEventReader) {
-      super(logEventStore);
+    public SocketListenerLogEventHandler(LogEventReader logEventReader) {
+      super(_ingestionBuffer);
       _logEventReader = logEventReader;
     }
 
@@ -0,0 +1,183 @@
+package org.javakontor.sherlog.test.pde;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.domain.filter.LogEventFilterChangeType;
+import org.javakontor.sherlog.domain.filter.LogEventFilterMemento;
+import org.javakontor.sherlog.domain.filter.ThreadSafeLogEventFilter;
+import org.javakontor.sherlog.domain.impl.filter.AbstractLogEventFilter;
+import org.javakontor.sherlog.domain.impl.internal.store.LogStoreComponent;
+import org.javakontor.sherlog.domain.store.LogEventStoreEvent;
+import org.javakontor.sherlog.domain.store.LogEventStoreListener;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Fills a bounded {@link LogStoreComponent} and checks that the oldest log
+ * events are evicted, and that the filtered log events stay correct while the
+ * positions of the store are rebased.
+ * </p>
+ * 
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class BoundedLogStoreTest {
+
+	/** the maximum number of log events in the store */
+	private static final int CAPACITY = 1000;
+
+	private LogStoreComponent _logStore;
+
+	private int _evictedLogEventCount;
+
+	@Before
+	public void createLogStore() {
+		_logStore = new LogStoreComponent();
+		_logStore.setCapacity(CAPACITY, 0);
+		_logStore.addLogStoreListener(new LogEventStoreListener() {
+			public void logEventStoreChanged(LogEventStoreEvent event) {
+				_evictedLogEventCount += event.getEvictedLogEventCount();
+			}
+		});
+	}
+
+	@Test
+	public void evictOldestLogEvents() {
+		List<LogEvent> logEvents = new ArrayList<LogEvent>();
+		for (int batch = 0; batch < 5; batch++) {
+			List<LogEvent> events = createLogEvents(batch * 500, 500);
+			_logStore.addLogEvents(events);
+			logEvents.addAll(events);
+		}
+
+		Assert.assertEquals(CAPACITY, _logStore.getLogEventCount());
+		Assert.assertEquals(logEvents.subList(1500, 2500), _logStore
+				.getLogEvents());
+		Assert.assertEquals(1500, _evictedLogEventCount);
+		Assert.assertEquals(CAPACITY, _logStore
+				.getLogLevelCount(LogLevel.INFO));
+		Assert.assertEquals(CAPACITY, _logStore
+				.getCategoryCount("org.javakontor.sherlog.test"));
+	}
+
+	@Test
+	public void rebasePositions() {
+		ModuloFilter filter = new ModuloFilter(3);
+		_logStore.addLogEventFilter(filter);
+
+		// the positions are rebased whenever the first position passes 65536
+		int count = 0;
+		for (int batch = 0; batch < 200; batch++) {
+			_logStore.addLogEvents(createLogEvents(count, 700));
+			count += 700;
+			if (batch == 120) {
+				filter.setDivisor(5);
+			}
+			if (batch % 20 == 0) {
+				assertFilteredLogEvents(filter);
+			}
+		}
+
+		Assert.assertEquals(CAPACITY, _logStore.getLogEventCount());
+		Assert.assertEquals(count - CAPACITY, _evictedLogEventCount);
+		Assert.assertEquals(count - CAPACITY, _logStore.getLogEvents().get(0)
+				.getTimeStamp());
+		assertFilteredLogEvents(filter);
+
+		// toggle back to the previous configuration
+		filter.setDivisor(3);
+		assertFilteredLogEvents(filter);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void changeCapacityOfNonEmptyStore() {
+		_logStore.addLogEvents(createLogEvents(0, 10));
+		_logStore.setCapacity(10, 0);
+	}
+
+	private void assertFilteredLogEvents(ModuloFilter filter) {
+		List<LogEvent> expected = new ArrayList<LogEvent>();
+		for (LogEvent logEvent : _logStore.getLogEvents()) {
+			if (filter.matches(logEvent)) {
+				expected.add(logEvent);
+			}
+		}
+		Assert.assertEquals(expected, new ArrayList<LogEvent>(_logStore
+				.getFilteredLogEvents()));
+		Assert.assertEquals(expected.size(), _logStore
+				.getFilteredLogEventCount());
+		Assert.assertEquals(expected.size(), _logStore
+				.getFilteredLogLevelCount(LogLevel.INFO));
+	}
+
+	private static List<LogEvent> createLogEvents(int first, int count) {
+		List<LogEvent> result = new ArrayList<LogEvent>();
+		for (int i = first; i < first + count; i++) {
+			result.add(new TestLogEvent(i, "message " + i));
+		}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Accepts the log events whose time stamp is a multiple of the divisor.
+	 * </p>
+	 */
+	private static class ModuloFilter extends AbstractLogEventFilter implements
+			ThreadSafeLogEventFilter {
+
+		private int _divisor;
+
+		public ModuloFilter(int divisor) {
+			_divisor = divisor;
+		}
+
+		public void setDivisor(int divisor) {
+			restoreFromMemento(new ModuloMemento(divisor));
+		}
+
+		public boolean matches(LogEvent event) {
+			return event.getTimeStamp() % _divisor == 0;
+		}
+
+		public LogEventFilterMemento saveToMemento() {
+			return new ModuloMemento(_divisor);
+		}
+
+		@Override
+		protected void onRestoreFromMemento(LogEventFilterMemento memento) {
+			_divisor = ((ModuloMemento) memento)._divisor;
+		}
+
+		@Override
+		protected LogEventFilterChangeType getChangeType(
+				LogEventFilterMemento oldMemento, LogEventFilterMemento newMemento) {
+			return oldMemento.equals(newMemento) ? LogEventFilterChangeType.UNCHANGED
+					: LogEventFilterChangeType.CHANGED;
+		}
+	}
+
+	private static class ModuloMemento implements LogEventFilterMemento {
+
+		private final int _divisor;
+
+		public ModuloMemento(int divisor) {
+			_divisor = divisor;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof ModuloMemento)
+					&& (((ModuloMemento) obj)._divisor == _divisor);
+		}
+
+		@Override
+		public int hashCode() {
+			return _divisor;
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package org.javakontor.sherlog.test.pde;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.javakontor.sherlog.domain.impl.internal.store.CompressedBitmap;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Checks the {@link CompressedBitmap} against a {@link BitSet}, in
+ * particular when containers change between the array and the bitmap
+ * representation.
+ * </p>
+ * 
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class CompressedBitmapTest {
+
+	/** the size of a bitmap container in bytes */
+	private static final int BITMAP_CONTAINER_SIZE = 8 * 1024;
+
+	@Test
+	public void convertArrayToBitmapContainer() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		BitSet expected = new BitSet();
+		for (int i = 0; i < 1000; i++) {
+			bitmap.add(2 * i + 1);
+			expected.set(2 * i + 1);
+		}
+		Assert.assertTrue(bitmap.getSizeInBytes() < BITMAP_CONTAINER_SIZE / 2);
+		assertEquals(expected, bitmap);
+
+		// an array container holds at most 4096 values
+		for (int i = 1000; i < 8192; i++) {
+			bitmap.add(2 * i + 1);
+			expected.set(2 * i + 1);
+			if (i == 4096) {
+				assertEquals(expected, bitmap);
+			}
+		}
+		Assert.assertTrue(bitmap.getSizeInBytes() < 2 * 8192);
+		assertEquals(expected, bitmap);
+	}
+
+	@Test
+	public void convertBitmapToArrayContainer() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		bitmap.addRange(10, 10010);
+		Assert.assertTrue(bitmap.getSizeInBytes() > BITMAP_CONTAINER_SIZE);
+
+		// truncating a dense container leaves a sparse one
+		bitmap.truncate(110);
+		Assert.assertTrue(bitmap.getSizeInBytes() < BITMAP_CONTAINER_SIZE);
+		BitSet expected = new BitSet();
+		expected.set(10, 110);
+		assertEquals(expected, bitmap);
+
+		// the intersection of two dense containers can be sparse
+		CompressedBitmap a = new CompressedBitmap();
+		a.addRange(0, 10000);
+		CompressedBitmap b = new CompressedBitmap();
+		b.addRange(9990, 20000);
+		CompressedBitmap and = a.and(b);
+		Assert.assertTrue(and.getSizeInBytes() < BITMAP_CONTAINER_SIZE);
+		expected = new BitSet();
+		expected.set(9990, 10000);
+		assertEquals(expected, and);
+
+		// a small range stays sparse
+		CompressedBitmap range = new CompressedBitmap();
+		range.addRange(100, 200);
+		Assert.assertTrue(range.getSizeInBytes() < BITMAP_CONTAINER_SIZE);
+	}
+
+	@Test
+	public void rankAndSelect() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		BitSet expected = new BitSet();
+		// a sparse, a dense and again a sparse container
+		for (int value : new int[] { 3, 70000, 65535 }) {
+			bitmap.add(value);
+			expected.set(value);
+		}
+		bitmap.addRange(131072, 131072 + 5000);
+		expected.set(131072, 131072 + 5000);
+		bitmap.add(300000);
+		expected.set(300000);
+
+		assertEquals(expected, bitmap);
+		Assert.assertEquals(0, bitmap.rank(0));
+		Assert.assertEquals(1, bitmap.rank(4));
+		Assert.assertEquals(2, bitmap.rank(65536));
+		Assert.assertEquals(3, bitmap.rank(131072));
+		Assert.assertEquals(5003, bitmap.rank(200000));
+		Assert.assertEquals(5004, bitmap.rank(Integer.MAX_VALUE));
+		Assert.assertEquals(300000, bitmap.select(5003));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void selectBehindLastValue() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		bitmap.add(1);
+		bitmap.select(1);
+	}
+
+	@Test
+	public void truncate() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		bitmap.addRange(0, 200000);
+
+		bitmap.truncate(131072);
+		BitSet expected = new BitSet();
+		expected.set(0, 131072);
+		assertEquals(expected, bitmap);
+
+		bitmap.truncate(65537);
+		expected.clear(65537, 131072);
+		assertEquals(expected, bitmap);
+
+		bitmap.truncate(0);
+		Assert.assertTrue(bitmap.isEmpty());
+		Assert.assertEquals(0, bitmap.getCardinality());
+	}
+
+	@Test
+	public void snapshotIsNotModified() {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		bitmap.addRange(0, 70000);
+		CompressedBitmap snapshot = bitmap.snapshot();
+
+		bitmap.add(100000);
+		bitmap.truncate(10);
+		CompressedBitmap other = new CompressedBitmap();
+		other.addRange(5, 20);
+		bitmap.orInPlace(other);
+
+		BitSet expected = new BitSet();
+		expected.set(0, 70000);
+		assertEquals(expected, snapshot);
+		expected = new BitSet();
+		expected.set(0, 20);
+		assertEquals(expected, bitmap);
+	}
+
+	@Test
+	public void range() {
+		Random random = new Random(7);
+		for (int run = 0; run < 50; run++) {
+			CompressedBitmap bitmap = randomBitmap(random);
+			BitSet bits = toBitSet(bitmap);
+			int from = random.nextInt(300000);
+			int to = run % 5 == 0 ? from + random.nextInt(10) : from
+					+ random.nextInt(200000);
+
+			BitSet expected = new BitSet();
+			for (int value = bits.nextSetBit(from); (value >= 0)
+					&& (value < to); value = bits.nextSetBit(value + 1)) {
+				expected.set(value);
+			}
+			assertEquals(expected, bitmap.range(from, to));
+			assertEquals(bits, bitmap);
+		}
+
+		// whole containers and their boundaries
+		CompressedBitmap bitmap = new CompressedBitmap();
+		bitmap.addRange(0, 3 * 65536);
+		BitSet expected = new BitSet();
+		expected.set(65536, 131072);
+		assertEquals(expected, bitmap.range(65536, 131072));
+		expected = new BitSet();
+		expected.set(65535, 65537);
+		assertEquals(expected, bitmap.range(65535, 65537));
+		Assert.assertTrue(bitmap.range(10, 10).isEmpty());
+	}
+
+	@Test
+	public void randomOperations() {
+		Random random = new Random(42);
+		for (int run = 0; run < 10; run++) {
+			CompressedBitmap bitmap = new CompressedBitmap();
+			BitSet expected = new BitSet();
+			for (int operation = 0; operation < 10; operation++) {
+				CompressedBitmap other = randomBitmap(random);
+				BitSet otherExpected = toBitSet(other);
+				switch (random.nextInt(5)) {
+				case 0:
+					bitmap = bitmap.and(other);
+					expected.and(otherExpected);
+					break;
+				case 1:
+					bitmap = bitmap.or(other);
+					expected.or(otherExpected);
+					break;
+				case 2:
+					bitmap = bitmap.andNot(other);
+					expected.andNot(otherExpected);
+					break;
+				case 3:
+					bitmap.orInPlace(other);
+					expected.or(otherExpected);
+					break;
+				default:
+					int from = random.nextInt(300000);
+					bitmap.truncate(from);
+					expected.clear(from, Math.max(from, expected.length()));
+				}
+				assertEquals(expected, bitmap);
+				assertEquals(otherExpected, other);
+			}
+		}
+	}
+
+	private static CompressedBitmap randomBitmap(Random random) {
+		CompressedBitmap bitmap = new CompressedBitmap();
+		int base = random.nextInt(4) * 65536;
+		switch (random.nextInt(3)) {
+		case 0:
+			for (int i = random.nextInt(100); i > 0; i--) {
+				bitmap.add(base + random.nextInt(200000));
+			}
+			break;
+		case 1:
+			for (int i = 0; i < 5000; i++) {
+				bitmap.add(base + random.nextInt(65536));
+			}
+			break;
+		default:
+			int from = base + random.nextInt(70000);
+			bitmap.addRange(from, from + random.nextInt(100000));
+		}
+		return bitmap;
+	}
+
+	private static BitSet toBitSet(CompressedBitmap bitmap) {
+		BitSet result = new BitSet();
+		for (int value = bitmap.nextSetBit(0); value >= 0; value = bitmap
+				.nextSetBit(value + 1)) {
+			result.set(value);
+		}
+		return result;
+	}
+
+	private static void assertEquals(BitSet expected, CompressedBitmap bitmap) {
+		Assert.assertEquals(expected, toBitSet(bitmap));
+		Assert.assertEquals(expected.cardinality(), bitmap.getCardinality());
+		Assert.assertEquals(expected.isEmpty(), bitmap.isEmpty());
+
+		// rank and select are inverse
+		int n = 0;
+		for (int value = expected.nextSetBit(0); value >= 0; value = expected
+				.nextSetBit(value + 1)) {
+			if ((n % 97 == 0) || (n == expected.cardinality() - 1)) {
+				Assert.assertEquals(value, bitmap.select(n));
+				Assert.assertEquals(n, bitmap.rank(value));
+				Assert.assertTrue(bitmap.contains(value));
+				Assert.assertFalse(bitmap.contains(value + 1) != expected
+						.get(value + 1));
+			}
+			n++;
+		}
+	}
+}
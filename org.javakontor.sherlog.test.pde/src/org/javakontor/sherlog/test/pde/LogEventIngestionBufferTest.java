@@ -0,0 +1,142 @@
+package org.javakontor.sherlog.test.pde;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.impl.internal.store.LogStoreComponent;
+import org.javakontor.sherlog.domain.impl.reader.LogEventIngestionBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Publishes log events into a {@link LogEventIngestionBuffer} and checks that
+ * producers wait while the ring buffer is full, and that no log event is lost
+ * when the buffer is stopped while producers are still publishing.
+ * </p>
+ * 
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class LogEventIngestionBufferTest {
+
+	/** the capacity of the ring buffer */
+	private static final int CAPACITY = 16;
+
+	@Test
+	public void waitWhileFull() throws Exception {
+		final CountDownLatch writerBlocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		LogStoreComponent logStore = new LogStoreComponent() {
+			@Override
+			public void addLogEvents(List<LogEvent> events) {
+				writerBlocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.addLogEvents(events);
+			}
+		};
+		LogEventIngestionBuffer buffer = new LogEventIngestionBuffer(
+				logStore, CAPACITY, 4);
+		buffer.start("writer");
+
+		List<LogEvent> logEvents = createLogEvents(100);
+		Thread producer = startProducer(buffer, logEvents);
+
+		// the writer blocks in the store, the producer fills the ring buffer
+		Assert.assertTrue(writerBlocked.await(10, TimeUnit.SECONDS));
+		long timeout = System.currentTimeMillis() + 10000;
+		while ((buffer.getSize() < CAPACITY)
+				&& (System.currentTimeMillis() < timeout)) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		Assert.assertEquals(CAPACITY, buffer.getSize());
+		Assert.assertTrue(producer.isAlive());
+
+		// the producer continues as soon as the writer drains the ring buffer
+		release.countDown();
+		producer.join(10000);
+		Assert.assertFalse(producer.isAlive());
+		buffer.stop();
+
+		Assert.assertEquals(0, buffer.getSize());
+		Assert.assertEquals(logEvents, logStore.getLogEvents());
+	}
+
+	@Test
+	public void stopWhilePublishing() throws Exception {
+		for (int round = 0; round < 20; round++) {
+			LogStoreComponent logStore = new LogStoreComponent();
+			LogEventIngestionBuffer buffer = new LogEventIngestionBuffer(
+					logStore, CAPACITY, 4);
+			buffer.start("writer");
+
+			List<Thread> producers = new ArrayList<Thread>();
+			for (int i = 0; i < 8; i++) {
+				producers.add(startProducer(buffer, createLogEvents(300)));
+			}
+			Thread.sleep(round % 5);
+			buffer.stop();
+			Assert.assertFalse(buffer.isRunning());
+			for (Thread producer : producers) {
+				producer.join(10000);
+			}
+
+			// log events published after the stop are added directly
+			Assert.assertEquals(8 * 300, logStore.getLogEventCount());
+		}
+	}
+
+	@Test
+	public void restart() throws Exception {
+		LogStoreComponent logStore = new LogStoreComponent();
+		LogEventIngestionBuffer buffer = new LogEventIngestionBuffer(logStore,
+				CAPACITY, 4);
+		for (LogEvent logEvent : createLogEvents(10)) {
+			buffer.publish(logEvent);
+		}
+		buffer.start("writer");
+		for (LogEvent logEvent : createLogEvents(10)) {
+			buffer.publish(logEvent);
+		}
+		buffer.stop();
+		buffer.start("writer");
+		for (LogEvent logEvent : createLogEvents(10)) {
+			buffer.publish(logEvent);
+		}
+		buffer.stop();
+
+		Assert.assertEquals(30, logStore.getLogEventCount());
+	}
+
+	private static Thread startProducer(final LogEventIngestionBuffer buffer,
+			final List<LogEvent> logEvents) {
+		Thread producer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					for (LogEvent logEvent : logEvents) {
+						buffer.publish(logEvent);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "producer");
+		producer.start();
+		return producer;
+	}
+
+	private static List<LogEvent> createLogEvents(int count) {
+		List<LogEvent> result = new ArrayList<LogEvent>();
+		for (int i = 0; i < count; i++) {
+			result.add(new TestLogEvent(i, "message " + i));
+		}
+		return result;
+	}
+}
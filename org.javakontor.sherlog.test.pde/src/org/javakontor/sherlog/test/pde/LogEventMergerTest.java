@@ -0,0 +1,134 @@
+package org.javakontor.sherlog.test.pde;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.impl.internal.store.CompressedBitmap;
+import org.javakontor.sherlog.domain.impl.internal.store.LogEventMerger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Merges sorted batches with the {@link LogEventMerger} and compares the
+ * result with a sorted reference list, in particular for batches that overlap
+ * the target in long runs (galloping) and in single events.
+ * </p>
+ * 
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class LogEventMergerTest {
+
+	@Test
+	public void appendBatchBehindTarget() {
+		List<LogEvent> target = createLogEvents(0, 10, 1);
+		List<LogEvent> batch = createLogEvents(10, 5, 1);
+		CompressedBitmap insertedIndices = new CompressedBitmap();
+
+		Assert.assertEquals(10, LogEventMerger.merge(target, batch,
+				insertedIndices));
+		Assert.assertEquals(15, target.size());
+		Assert.assertEquals(batch, target.subList(10, 15));
+		Assert.assertEquals(5, insertedIndices.getCardinality());
+		Assert.assertEquals(10, insertedIndices.nextSetBit(0));
+	}
+
+	@Test
+	public void mergeEmptyBatch() {
+		List<LogEvent> target = createLogEvents(0, 10, 1);
+		Assert.assertEquals(10, LogEventMerger.merge(target,
+				new ArrayList<LogEvent>()));
+		Assert.assertEquals(10, target.size());
+	}
+
+	@Test
+	public void mergeOverlappingBatch() {
+		// the batch interleaves with the last five events of the target
+		List<LogEvent> target = createLogEvents(0, 20, 2);
+		List<LogEvent> batch = createLogEvents(31, 10, 2);
+
+		assertMerge(target, batch);
+	}
+
+	@Test
+	public void mergeLongRuns() {
+		// alternating runs of 100 events, so the merge switches to galloping
+		List<LogEvent> target = new ArrayList<LogEvent>();
+		List<LogEvent> batch = new ArrayList<LogEvent>();
+		for (int run = 0; run < 20; run++) {
+			target.addAll(createLogEvents(run * 200, 100, 1));
+			batch.addAll(createLogEvents(run * 200 + 100, 100, 1));
+		}
+
+		assertMerge(target, batch);
+	}
+
+	@Test
+	public void mergeEqualTimeStamps() {
+		// events with equal time stamps are ordered by their identifier
+		List<LogEvent> target = createLogEvents(0, 50, 0);
+		List<LogEvent> batch = createLogEvents(0, 50, 0);
+
+		assertMerge(target, batch);
+		Assert.assertEquals(batch, target.subList(50, 100));
+	}
+
+	@Test
+	public void mergeRandomBatches() {
+		Random random = new Random(42);
+		List<LogEvent> target = new ArrayList<LogEvent>();
+		for (int i = 0; i < 200; i++) {
+			List<LogEvent> batch = new ArrayList<LogEvent>();
+			long timeStamp = random.nextInt(10000);
+			for (int j = random.nextInt(300); j > 0; j--) {
+				timeStamp += random.nextInt(random.nextBoolean() ? 3 : 50);
+				batch.add(new TestLogEvent(timeStamp, "batch " + i));
+			}
+			assertMerge(target, batch);
+		}
+	}
+
+	/**
+	 * Merges the batch into the target and checks the target, the returned
+	 * index and the indices of the inserted events against a sorted reference.
+	 */
+	private static void assertMerge(List<LogEvent> target, List<LogEvent> batch) {
+		List<LogEvent> expected = new ArrayList<LogEvent>(target);
+		expected.addAll(batch);
+		Collections.sort(expected);
+
+		int firstChanged = 0;
+		while ((firstChanged < target.size())
+				&& (target.get(firstChanged) == expected.get(firstChanged))) {
+			firstChanged++;
+		}
+
+		CompressedBitmap insertedIndices = new CompressedBitmap();
+		int start = LogEventMerger.merge(target, batch, insertedIndices);
+
+		Assert.assertEquals(expected, target);
+		Assert.assertTrue(start <= firstChanged);
+		Assert.assertEquals(batch.size(), insertedIndices.getCardinality());
+		int n = 0;
+		for (int index = insertedIndices.nextSetBit(0); index >= 0; index = insertedIndices
+				.nextSetBit(index + 1)) {
+			Assert.assertSame(batch.get(n++), target.get(index));
+		}
+	}
+
+	/**
+	 * Creates log events with ascending time stamps.
+	 */
+	private static List<LogEvent> createLogEvents(long firstTimeStamp,
+			int count, long step) {
+		List<LogEvent> result = new ArrayList<LogEvent>();
+		for (int i = 0; i < count; i++) {
+			result.add(new TestLogEvent(firstTimeStamp + i * step, "message "
+					+ i));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,203 @@
+package org.javakontor.sherlog.test.pde;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.domain.filter.LogEventFilter;
+import org.javakontor.sherlog.domain.filter.LogEventFilterFactory;
+import org.javakontor.sherlog.domain.filter.LogEventFilterMemento;
+import org.javakontor.sherlog.domain.impl.filter.AbstractLogEventFilter;
+import org.javakontor.sherlog.domain.impl.internal.store.LogStoreComponent;
+import org.javakontor.sherlog.domain.impl.internal.store.LogStoreSession;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Saves the log events, the user defined fields and the filter settings of a
+ * {@link LogStoreComponent} to a session file and checks that opening the
+ * session restores them, into a store with and without the columnar storage.
+ * </p>
+ * 
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class LogStoreSessionTest {
+
+	/** the number of log events in the session */
+	private static final int LOG_EVENT_COUNT = 10000;
+
+	private File _file;
+
+	private LogStoreComponent _logStore;
+
+	private LevelFilterFactory _filterFactory;
+
+	@Before
+	public void saveSession() throws IOException {
+		_logStore = new LogStoreComponent();
+		_filterFactory = new LevelFilterFactory();
+		_logStore.addLogEventFilterFactory(_filterFactory);
+
+		List<LogEvent> logEvents = new ArrayList<LogEvent>();
+		LogLevel[] logLevels = LogLevel.values();
+		for (int i = 0; i < LOG_EVENT_COUNT; i++) {
+			String message = i % 13 == 0 ? "" : "message " + i
+					+ (i % 7 == 0 ? " \u00fc\u20ac\ud83d\ude00" : "");
+			logEvents.add(new TestLogEvent(i, logLevels[i % logLevels.length],
+					message));
+		}
+		_logStore.addLogEvents(logEvents);
+		for (int i = 0; i < LOG_EVENT_COUNT; i += 777) {
+			_logStore.getLogEvents().get(i).setUserDefinedField("MARK",
+					"mark " + i);
+		}
+		_filterFactory._filter.restoreFromMemento(new LevelMemento(
+				LogLevel.WARN));
+
+		_file = File.createTempFile("sherlog", ".session");
+		_logStore.saveSession(_file);
+	}
+
+	@After
+	public void deleteFile() {
+		_file.delete();
+	}
+
+	@Test
+	public void openSession() throws IOException {
+		assertSession(false);
+	}
+
+	@Test
+	public void openSessionIntoColumnarStore() throws IOException {
+		assertSession(true);
+	}
+
+	@Test(expected = IOException.class)
+	public void openSessionOfOtherVersion() throws IOException {
+		RandomAccessFile file = new RandomAccessFile(_file, "rw");
+		try {
+			file.seek(4);
+			file.writeInt(LogStoreSession.VERSION + 1);
+		} finally {
+			file.close();
+		}
+		new LogStoreComponent().openSession(_file);
+	}
+
+	@Test(expected = IOException.class)
+	public void openTruncatedSession() throws IOException {
+		RandomAccessFile file = new RandomAccessFile(_file, "rw");
+		try {
+			file.setLength(file.length() / 2);
+		} finally {
+			file.close();
+		}
+		new LogStoreComponent().openSession(_file);
+	}
+
+	private void assertSession(boolean columnar) throws IOException {
+		LogStoreComponent logStore = new LogStoreComponent();
+		logStore.setColumnar(columnar);
+		LevelFilterFactory filterFactory = new LevelFilterFactory();
+		logStore.addLogEventFilterFactory(filterFactory);
+
+		// the store is reset before the session is opened
+		logStore.addLogEvent(new TestLogEvent(5, "replaced"));
+		logStore.openSession(_file);
+
+		List<LogEvent> expected = _logStore.getLogEvents();
+		List<LogEvent> logEvents = logStore.getLogEvents();
+		Assert.assertEquals(expected.size(), logEvents.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(toString(expected.get(i)), toString(logEvents
+					.get(i)));
+		}
+
+		Assert.assertEquals(LogLevel.WARN, filterFactory._filter._threshold);
+		Assert.assertEquals(_logStore.getFilteredLogEventCount(), logStore
+				.getFilteredLogEventCount());
+		Assert.assertEquals(_logStore.getLogLevelCount(LogLevel.WARN), logStore
+				.getLogLevelCount(LogLevel.WARN));
+
+		// log events can be added to an opened session
+		logStore.addLogEvent(new TestLogEvent(LOG_EVENT_COUNT, LogLevel.ERROR,
+				"added"));
+		Assert.assertEquals(LOG_EVENT_COUNT + 1, logStore.getLogEventCount());
+		Assert.assertEquals("added", logStore.getLogEvents().get(
+				LOG_EVENT_COUNT).getMessage());
+	}
+
+	private static String toString(LogEvent logEvent) {
+		return logEvent.getTimeStamp() + "|" + logEvent.getLogLevel() + "|"
+				+ logEvent.getCategory() + "|" + logEvent.getThreadName() + "|"
+				+ logEvent.getMessage() + "|"
+				+ logEvent.getUserDefinedField("MARK");
+	}
+
+	/**
+	 * <p>
+	 * Creates a single {@link LevelFilter}.
+	 * </p>
+	 */
+	private static class LevelFilterFactory implements LogEventFilterFactory {
+
+		private final LevelFilter _filter = new LevelFilter();
+
+		public String getDescription() {
+			return "Level filter";
+		}
+
+		public LogEventFilter createLogEventFilter() {
+			return _filter;
+		}
+
+		public LogEventFilter createLogEventFilter(LogEventFilterMemento memento) {
+			_filter.restoreFromMemento(memento);
+			return _filter;
+		}
+	}
+
+	/**
+	 * <p>
+	 * Accepts the log events whose level is greater or equal to a threshold.
+	 * </p>
+	 */
+	private static class LevelFilter extends AbstractLogEventFilter {
+
+		private LogLevel _threshold = LogLevel.getFinestLogLevel();
+
+		public boolean matches(LogEvent event) {
+			return event.getLogLevel().isGreaterOrEqual(_threshold);
+		}
+
+		public LogEventFilterMemento saveToMemento() {
+			return new LevelMemento(_threshold);
+		}
+
+		@Override
+		protected void onRestoreFromMemento(LogEventFilterMemento memento) {
+			_threshold = ((LevelMemento) memento)._threshold;
+		}
+	}
+
+	private static class LevelMemento implements LogEventFilterMemento,
+			Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final LogLevel _threshold;
+
+		public LevelMemento(LogLevel threshold) {
+			_threshold = threshold;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package org.javakontor.sherlog.test.pde;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.impl.internal.reader.ParallelTextFileReader;
+import org.javakontor.sherlog.domain.impl.reader.AbstractLogEvent;
+import org.javakontor.sherlog.domain.impl.reader.TextLogEventProvider;
+import org.javakontor.sherlog.domain.impl.reader.UrlLogEventReaderInputSource;
+import org.javakontor.sherlog.domain.reader.DefaultLogEventHandler;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Reads a text log file with the {@link ParallelTextFileReader} and checks that the log events are read completely
+ * and in file order, whatever the size of the byte ranges is.
+ * </p>
+ * 
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class ParallelTextFileReaderTest {
+
+	/** the number of log events in the file */
+	private static final int LOG_EVENT_COUNT = 2000;
+
+	/** the number of consecutive log events with the same time stamp */
+	private static final int RUN_LENGTH = 25;
+
+	private File _file;
+
+	private List<String> _messages;
+
+	@Before
+	public void createFile() throws IOException {
+		_file = File.createTempFile("sherlog", ".log");
+		_messages = new ArrayList<String>();
+
+		// log events start with '|', some have continuation lines
+		Random random = new Random(42);
+		String lineSeparator = System.getProperty("line.separator");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(_file));
+		try {
+			for (int i = 0; i < LOG_EVENT_COUNT; i++) {
+				StringBuilder message = new StringBuilder("message " + i);
+				for (int j = random.nextInt(4); j > 0; j--) {
+					message.append(lineSeparator).append("\tat line ").append(j);
+				}
+				_messages.add(message.toString());
+				writer.write("|" + (1000 + i / RUN_LENGTH) + " " + message + lineSeparator);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	@After
+	public void deleteFile() {
+		_file.delete();
+	}
+
+	@Test
+	public void readAllLogEventsInFileOrder() throws IOException {
+		for (int rangeSize : new int[] { 1, 13, 100, 4096, ParallelTextFileReader.DEFAULT_RANGE_SIZE }) {
+			for (int parallelism : new int[] { 1, 4 }) {
+				List<LogEvent> logEvents = read(parallelism, rangeSize);
+				Assert.assertEquals(_messages, getMessages(logEvents));
+			}
+		}
+	}
+
+	@Test
+	public void keepFileOrderOfEqualTimeStampsAcrossRanges() throws IOException {
+		// the runs of equal time stamps span several ranges
+		List<LogEvent> logEvents = read(4, 100);
+		for (int i = 1; i < logEvents.size(); i++) {
+			Assert.assertTrue(logEvents.get(i - 1).getIdentifier() < logEvents.get(i).getIdentifier());
+		}
+
+		// the store sorts by time stamp and id
+		List<LogEvent> sorted = new ArrayList<LogEvent>(logEvents);
+		Collections.sort(sorted);
+		Assert.assertEquals(_messages, getMessages(sorted));
+	}
+
+	private List<LogEvent> read(int parallelism, int rangeSize) throws IOException {
+		final List<LogEvent> result = new ArrayList<LogEvent>();
+		ParallelTextFileReader reader = new ParallelTextFileReader(new UrlLogEventReaderInputSource(_file.toURI()
+				.toURL()), _file, new TestLogEventProvider(), parallelism, rangeSize);
+		reader.addLogEventHandler(new DefaultLogEventHandler() {
+			@Override
+			public void handle(LogEvent logEvent) {
+				result.add(logEvent);
+			}
+		});
+		reader.readLogFiles();
+		return result;
+	}
+
+	private static List<String> getMessages(List<LogEvent> logEvents) {
+		List<String> result = new ArrayList<String>();
+		for (LogEvent logEvent : logEvents) {
+			result.add(logEvent.getMessage());
+		}
+		return result;
+	}
+
+	/**
+	 * <p>
+	 * Creates {@link TestLogEvent TestLogEvents} from text of the form
+	 * <code>|timestamp message</code>.
+	 * </p>
+	 */
+	private static class TestLogEventProvider implements TextLogEventProvider {
+
+		public AbstractLogEvent wrapLogEvent(Object object) {
+			String text = (String) object;
+			int separator = text.indexOf(' ');
+			return new TestLogEvent(Long.parseLong(text.substring(1, separator)), text.substring(separator + 1));
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package org.javakontor.sherlog.test.pde;
+
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.domain.impl.reader.RawTextDecoder;
+import org.javakontor.sherlog.domain.logeventflavour.patternlayout.PatternLayout;
+import org.javakontor.sherlog.domain.logeventflavour.patternlayout.PatternLayoutLogEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Checks that a {@link PatternLayout} locates the fields of log events in the
+ * layouts of log4j and logback.
+ * </p>
+ * 
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class PatternLayoutTest {
+
+	@Test
+	public void locateIso8601Layout() throws Exception {
+		PatternLayout layout = new PatternLayout(
+				"%d{ISO8601} %-5p [%t] %c - %m%n");
+
+		assertLogEvent(layout,
+				"2009-03-01 18:28:05,123 INFO  [main] org.acme.Foo - hello",
+				"yyyy-MM-dd HH:mm:ss,SSS", "2009-03-01 18:28:05,123",
+				LogLevel.INFO, "main", "org.acme.Foo", "hello", "");
+
+		// the level fills the padding, the thread contains spaces, the
+		// message contains the separator and the following lines
+		assertLogEvent(layout, "2009-03-01 18:28:05,124 DEBUG [pool-1 thread-2] org.acme.Foo - a - b\n\tat org.acme.Foo.bar(Foo.java:42)",
+				"yyyy-MM-dd HH:mm:ss,SSS", "2009-03-01 18:28:05,124",
+				LogLevel.DEBUG, "pool-1 thread-2", "org.acme.Foo",
+				"a - b\n\tat org.acme.Foo.bar(Foo.java:42)", "");
+	}
+
+	@Test
+	public void locateTtccLayout() throws Exception {
+		PatternLayout layout = new PatternLayout(
+				"%d{ISO8601} [%t] %-5p %c %x - %m%n");
+
+		assertLogEvent(layout,
+				"2009-03-01 18:28:05,123 [main] WARN  org.acme.Foo user=42 - hello",
+				"yyyy-MM-dd HH:mm:ss,SSS", "2009-03-01 18:28:05,123",
+				LogLevel.WARN, "main", "org.acme.Foo", "hello", "user=42");
+	}
+
+	@Test
+	public void locateLogbackLayout() throws Exception {
+		PatternLayout layout = new PatternLayout(
+				"%d{yyyy-MM-dd HH:mm:ss.SSS} [%thread] %-5level %logger{36} - %msg%n");
+
+		assertLogEvent(layout,
+				"2009-03-01 18:28:05.123 [main] ERROR o.a.Foo - failed",
+				"yyyy-MM-dd HH:mm:ss.SSS", "2009-03-01 18:28:05.123",
+				LogLevel.ERROR, "main", "o.a.Foo", "failed", "");
+	}
+
+	@Test
+	public void locateVariableWidthDate() throws Exception {
+		PatternLayout layout = new PatternLayout("%d{DATE} %5p %c{1}:%L - %m%n");
+		String timestamp = new SimpleDateFormat("dd MMM yyyy HH:mm:ss,SSS")
+				.format(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss,SSS")
+						.parse("2009-03-01 18:28:05,123"));
+
+		assertLogEvent(layout, timestamp + "  INFO Foo:42 - hello",
+				"dd MMM yyyy HH:mm:ss,SSS", timestamp, LogLevel.INFO, "",
+				"Foo", "hello", "");
+	}
+
+	@Test
+	public void recognizeLogEventStart() {
+		PatternLayout layout = new PatternLayout(
+				"%d{ISO8601} %-5p [%t] %c - %m%n");
+
+		Assert.assertTrue(layout
+				.isLogEventStart("2009-03-01 18:28:05,123 INFO  [main] org.acme.Foo - hello"));
+		Assert.assertFalse(layout
+				.isLogEventStart("\tat org.acme.Foo.bar(Foo.java:42)"));
+		Assert.assertFalse(layout
+				.isLogEventStart("2009-03-01 18:28:05,123 HELLO [main] org.acme.Foo - hello"));
+		Assert.assertFalse(layout.isLogEventStart(""));
+	}
+
+	@Test
+	public void keepLogEventThatDoesNotMatch() {
+		PatternLayout layout = new PatternLayout(
+				"%d{ISO8601} %-5p [%t] %c - %m%n");
+
+		LogEvent logEvent = new PatternLayoutLogEvent(layout, "garbage");
+		Assert.assertEquals(0, logEvent.getTimeStamp());
+		Assert.assertEquals(LogLevel.UNDEF, logEvent.getLogLevel());
+		Assert.assertEquals("garbage", logEvent.getMessage());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectInvalidPattern() {
+		new PatternLayout("%d %");
+	}
+
+	private static void assertLogEvent(PatternLayout layout, String text,
+			String datePattern, String timestamp, LogLevel logLevel,
+			String threadName, String category, String message,
+			String nestedDiagnosticContext) throws Exception {
+		long expectedTimestamp = new SimpleDateFormat(datePattern).parse(
+				timestamp).getTime();
+
+		Assert.assertTrue(text, layout.isLogEventStart(text));
+
+		// the log event from a string and from the raw bytes
+		byte[] bytes = ("|" + text + "\n").getBytes("ISO-8859-1");
+		LogEvent[] logEvents = new LogEvent[] {
+				new PatternLayoutLogEvent(layout, text),
+				new PatternLayoutLogEvent(layout, bytes, 1, bytes.length - 1,
+						new RawTextDecoder(Charset.forName("ISO-8859-1"), "\n")) };
+		for (LogEvent logEvent : logEvents) {
+			Assert.assertEquals(text, expectedTimestamp, logEvent.getTimeStamp());
+			Assert.assertEquals(text, logLevel, logEvent.getLogLevel());
+			Assert.assertEquals(text, threadName, logEvent.getThreadName());
+			Assert.assertEquals(text, category, logEvent.getCategory());
+			Assert.assertEquals(text, message, logEvent.getMessage());
+			Assert.assertEquals(text, nestedDiagnosticContext,
+					logEvent.getNestedDiagnosticContext());
+		}
+	}
+}
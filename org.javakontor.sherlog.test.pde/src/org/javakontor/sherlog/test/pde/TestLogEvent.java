@@ -0,0 +1,77 @@
+package org.javakontor.sherlog.test.pde;
+
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.domain.impl.reader.AbstractLogEvent;
+
+/**
+ * <p>
+ * A simple log event with a time stamp, a log level and a message.
+ * </p>
+ * 
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class TestLogEvent extends AbstractLogEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long _timeStamp;
+
+	private final LogLevel _logLevel;
+
+	private final String _message;
+
+	public TestLogEvent(long timeStamp, String message) {
+		this(timeStamp, LogLevel.INFO, message);
+	}
+
+	public TestLogEvent(long timeStamp, LogLevel logLevel, String message) {
+		_timeStamp = timeStamp;
+		_logLevel = logLevel;
+		_message = message;
+	}
+
+	public long getTimeStamp() {
+		return _timeStamp;
+	}
+
+	public LogLevel getLogLevel() {
+		return _logLevel;
+	}
+
+	public String getMessage() {
+		return _message;
+	}
+
+	public String getCategory() {
+		return "org.javakontor.sherlog.test";
+	}
+
+	public String getThreadName() {
+		return "main";
+	}
+
+	public boolean hasNestedDiagnosticContext() {
+		return false;
+	}
+
+	public Object getNestedDiagnosticContext() {
+		return null;
+	}
+
+	public boolean hasThrowableInformation() {
+		return false;
+	}
+
+	public Object getThrowableInformation() {
+		return null;
+	}
+
+	public String getThrowableInformationAsString() {
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return _timeStamp + " " + _message;
+	}
+}
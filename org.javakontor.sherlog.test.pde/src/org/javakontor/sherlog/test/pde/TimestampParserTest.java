@@ -0,0 +1,116 @@
+package org.javakontor.sherlog.test.pde;
+
+import java.nio.charset.Charset;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.javakontor.sherlog.domain.impl.reader.RawTextDecoder;
+import org.javakontor.sherlog.domain.impl.reader.TimestampParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Checks that the {@link TimestampParser} returns the same results as
+ * <code>new SimpleDateFormat(pattern).parse(text)</code>.
+ * </p>
+ * 
+ * @author Gerd W&uuml;therich (gerd@gerd-wuetherich.de)
+ */
+public class TimestampParserTest {
+
+	private static final TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+
+	@Test
+	public void parseDefaultPattern() throws Exception {
+		TimestampParser parser = new TimestampParser(TimestampParser.PATTERN, BERLIN);
+
+		Assert.assertEquals(TimestampParser.PATTERN.length(), parser.getLength());
+		assertParse(parser, "2009-03-01 18:28:05,123");
+		assertParse(parser, "1970-01-01 00:00:00,000");
+		assertParse(parser, "2038-01-19 03:14:08,001");
+		// daylight saving time starts and ends
+		assertParse(parser, "2009-03-29 02:30:00,000");
+		assertParse(parser, "2009-10-25 02:30:00,000");
+	}
+
+	@Test
+	public void parseAcrossSecondRollover() throws Exception {
+		TimestampParser parser = new TimestampParser(TimestampParser.PATTERN, BERLIN);
+
+		// the epoch value of the last second is cached
+		assertParse(parser, "2009-03-01 18:28:59,000");
+		assertParse(parser, "2009-03-01 18:28:59,999");
+		assertParse(parser, "2009-03-01 18:29:00,000");
+		assertParse(parser, "2009-03-01 18:28:59,500");
+		assertParse(parser, "2009-03-01 23:59:59,999");
+		assertParse(parser, "2009-03-02 00:00:00,000");
+		assertParse(parser, "2009-12-31 23:59:59,999");
+		assertParse(parser, "2010-01-01 00:00:00,000");
+		assertParse(parser, "2009-12-31 23:59:59,998");
+	}
+
+	@Test
+	public void parseTextThatIsNotFixedWidth() throws Exception {
+		TimestampParser parser = new TimestampParser(TimestampParser.PATTERN, BERLIN);
+
+		// falls back to SimpleDateFormat
+		assertParse(parser, "2009-3-1 18:28:05,7  ");
+		assertParse(parser, "2009-03-01 8:28:05,123");
+		// lenient values
+		assertParse(parser, "2009-02-30 18:28:05,123");
+		assertParse(parser, "2009-13-01 25:61:61,999");
+		// characters behind the timestamp are ignored
+		assertParse(parser, "2009-03-01 18:28:05,123 INFO");
+	}
+
+	@Test
+	public void parseVariableWidthPattern() throws Exception {
+		String pattern = "dd MMM yyyy HH:mm:ss,SSS";
+		TimestampParser parser = new TimestampParser(pattern, BERLIN);
+
+		Assert.assertEquals(-1, parser.getLength());
+		Assert.assertFalse(parser.matches("01 Mar 2009 18:28:05,123", 0, 24));
+		assertParse(parser, new SimpleDateFormat(pattern).format(new Date(1235928485123L)));
+	}
+
+	@Test
+	public void parseOtherFixedWidthPattern() throws Exception {
+		TimestampParser parser = new TimestampParser("HH:mm:ss.SSS", BERLIN);
+
+		Assert.assertEquals(12, parser.getLength());
+		assertParse(parser, "18:28:05.123");
+		assertParse(parser, "18:28:05.124");
+		assertParse(parser, "00:00:00.000");
+	}
+
+	@Test
+	public void matches() {
+		TimestampParser parser = new TimestampParser(TimestampParser.PATTERN, BERLIN);
+
+		Assert.assertTrue(parser.matches("x2009-03-01 18:28:05,123 INFO", 1, 29));
+		Assert.assertFalse(parser.matches("2009-03-01 18:28:05,12", 0, 22));
+		Assert.assertFalse(parser.matches("2009-03-01 18:28:05.123", 0, 23));
+		Assert.assertFalse(parser.matches("2009-0a-01 18:28:05,123", 0, 23));
+	}
+
+	@Test(expected = ParseException.class)
+	public void parseInvalidText() throws Exception {
+		new TimestampParser(TimestampParser.PATTERN, BERLIN).parse("no timestamp", 0, 12);
+	}
+
+	private static void assertParse(TimestampParser parser, String text) throws ParseException {
+		SimpleDateFormat dateFormat = new SimpleDateFormat(parser.getPattern());
+		dateFormat.setTimeZone(BERLIN);
+		long expected = dateFormat.parse(text).getTime();
+
+		Assert.assertEquals(text, expected, parser.parse(text, 0, text.length()));
+
+		// the same text as raw bytes
+		RawTextDecoder decoder = new RawTextDecoder(Charset.forName("ISO-8859-1"), "\n");
+		byte[] bytes = ("|" + text).getBytes();
+		Assert.assertEquals(text, expected, parser.parse(bytes, 1, bytes.length, decoder));
+	}
+}
@@ -1,19 +1,21 @@
 package org.javakontor.sherlog.ui.colorfilter;
 
 import java.awt.Color;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.filter.LogEventFilterChangeType;
 import org.javakontor.sherlog.domain.filter.LogEventFilterMemento;
+import org.javakontor.sherlog.domain.filter.ThreadSafeLogEventFilter;
 import org.javakontor.sherlog.domain.impl.filter.AbstractLogEventFilter;
 
-public class ColorFilter extends AbstractLogEventFilter {
+public class ColorFilter extends AbstractLogEventFilter implements ThreadSafeLogEventFilter {
 
   private final List<Color> _colors;
 
   public ColorFilter() {
-    this._colors = new LinkedList<Color>();
+    this._colors = new CopyOnWriteArrayList<Color>();
   }
 
   public boolean matches(final LogEvent event) {
@@ -39,14 +41,19 @@ public class ColorFilter extends AbstractLogEventFilter {
 
   public void addColor(final Color color) {
     if (!this._colors.contains(color)) {
+      // the first color restricts the filter to colored events, further colors widen it
+      final LogEventFilterChangeType changeType = hasColors() ? LogEventFilterChangeType.WIDENED
+          : LogEventFilterChangeType.NARROWED;
       this._colors.add(color);
-      fireFilterChange();
+      fireFilterChange(changeType);
     }
   }
 
   public void removeColor(final Color color) {
-    this._colors.remove(color);
-    fireFilterChange();
+    if (this._colors.remove(color)) {
+      // removing the last color disables the filter
+      fireFilterChange(hasColors() ? LogEventFilterChangeType.NARROWED : LogEventFilterChangeType.WIDENED);
+    }
   }
 
   public boolean hasColor(final Color color) {
@@ -32,6 +32,9 @@ public class HistogramData {
    * <p>
    * Creates a new instance of type {@link HistogramData}.
    * </p>
+   * <p>
+   * The log events must be sorted by time stamp (as the lists of a store are).
+   * </p>
    * 
    * @param logEvents
    */
@@ -123,30 +126,14 @@ public class HistogramData {
       return;
     }
 
-    _values = new double[logEvents.size()];
-    Date minimum = null;
-    Date maximum = null;
-
-    for (int j = 0; j < _values.length; j++) {
-
-      //
-      Date date = new Date(logEvents.get(j).getTimeStamp());
+    // the log events of a store are sorted by time stamp
+    Date minimum = new Date(logEvents.get(0).getTimeStamp());
+    Date maximum = new Date(logEvents.get(logEvents.size() - 1).getTimeStamp());
 
-      //
-      if (minimum == null) {
-        minimum = date;
-      } else if (minimum.after(date)) {
-        minimum = date;
-      }
-
-      //
-      if (maximum == null) {
-        maximum = date;
-      } else if (date.after(maximum)) {
-        maximum = date;
-      }
-
-      _values[j] = logEvents.get(j).getTimeStamp();
+    _values = new double[logEvents.size()];
+    int j = 0;
+    for (LogEvent logEvent : logEvents) {
+      _values[j++] = logEvent.getTimeStamp();
     }
 
     Calendar calendarMinimum = new GregorianCalendar();
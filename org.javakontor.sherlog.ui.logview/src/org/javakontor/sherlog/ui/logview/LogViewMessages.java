@@ -8,9 +8,22 @@ public class LogViewMessages {
   /**
    * The (default) messageColumnTitle that is displayed in the statusbar
    */
-  @NLSMessage("%d stored messages, %d filtered messages, %d selected messages (%d filter registered)")
+  @NLSMessage("%d stored messages, %d filtered messages, %d selected messages (%d filter registered, %d KB filter cache)")
   public static String defaultStatusBarMessage;
 
+  /**
+   * Appended to the statusbar messageColumnTitle if the store indexes the messages
+   */
+  @NLSMessage(", message index %d%% (%d KB)")
+  public static String messageIndexStatusBarMessage;
+
+  /**
+   * Appended to the statusbar messageColumnTitle: the filtered and the stored number of errors (including fatal errors)
+   * and warnings
+   */
+  @NLSMessage(", %d/%d errors, %d/%d warnings")
+  public static String logLevelStatusBarMessage;
+
   // ~~ LogEventTable column titles ---------------------------------------------------
   @NLSMessage("Time")
   public static String timeColumnTitle;
@@ -75,7 +75,7 @@ public class LogEventTableController extends
     for (int i = minIndex; i <= maxIndex; i++) {
       if (selectionModel.isSelectedIndex(i)) {
         int convertedIndex = sherlogTable.convertRowIndexToModel(i);
-        events.add(getModel().getLogEventStore().getFilteredLogEvents().get(convertedIndex));
+        events.add(getView().getLogEventTableTableModel().getLogEvent(convertedIndex));
       }
     }
 
@@ -7,6 +7,7 @@ import org.javakontor.sherlog.application.mvc.AbstractModel;
 import org.javakontor.sherlog.application.request.SetStatusMessageRequest;
 import org.javakontor.sherlog.application.request.StatusMessage;
 import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogLevel;
 import org.javakontor.sherlog.domain.filter.LogEventFilter;
 import org.javakontor.sherlog.domain.filter.RegisteredFilterChangeListener;
 import org.javakontor.sherlog.domain.store.LogEventStore;
@@ -73,8 +74,8 @@ public class LogEventTableModel extends AbstractModel<LogEventTableModel, LogEve
         // since we work directly on the log event list from the log event store,
         // there is no need to set the logEvents here...
 
-        // fire model changed
-        fireModelChangedEvent(LogEventTableModelReasonForChange.logEventsChanged);
+        // fire model changed (the event describes the changed rows)
+        fireModelChangedEvent(LogEventTableModelReasonForChange.logEventsChanged, event);
 
         // set status messageColumnTitle request
         sendSetStatusMessageRequest();
@@ -160,7 +161,21 @@ public class LogEventTableModel extends AbstractModel<LogEventTableModel, LogEve
     // format the status messageColumnTitle
     String message = String.format(LogViewMessages.defaultStatusBarMessage, this._logEventStore.getLogEventCount(),
         this._logEventStore.getFilteredLogEvents().size(), this._selectedLogEvents.length, this._logEventStore
-            .getLogEventFilters().size());
+            .getLogEventFilters().size(), this._logEventStore.getFilterCacheSizeInBytes() / 1024);
+
+    // append the level counts (maintained by the store)
+    message += String.format(LogViewMessages.logLevelStatusBarMessage, getLogLevelCount(LogLevel.ERROR, true),
+        getLogLevelCount(LogLevel.ERROR, false), getLogLevelCount(LogLevel.WARN, true), getLogLevelCount(
+            LogLevel.WARN, false));
+
+    // append the progress of the message index
+    int indexedCount = this._logEventStore.getIndexedLogEventCount();
+    if (indexedCount >= 0) {
+      int logEventCount = this._logEventStore.getLogEventCount();
+      message += String.format(LogViewMessages.messageIndexStatusBarMessage, logEventCount == 0 ? 100
+          : (int) ((100L * Math.min(indexedCount, logEventCount)) / logEventCount), this._logEventStore
+          .getMessageIndexSizeInBytes() / 1024);
+    }
 
     // set the status messageColumnTitle
     StatusMessage statusMessage = new StatusMessage(message, StatusMessage.INFORMATION);
@@ -169,6 +184,22 @@ public class LogEventTableModel extends AbstractModel<LogEventTableModel, LogEve
     handleRequest(new SetStatusMessageRequest(this, statusMessage));
   }
 
+  /**
+   * <p>
+   * Returns the number of (filtered) log events whose level is the given level or - for {@link LogLevel#ERROR} - a
+   * fatal error.
+   * </p>
+   */
+  private int getLogLevelCount(LogLevel logLevel, boolean filtered) {
+    int count = filtered ? this._logEventStore.getFilteredLogLevelCount(logLevel) : this._logEventStore
+        .getLogLevelCount(logLevel);
+    if (logLevel == LogLevel.ERROR) {
+      count += filtered ? this._logEventStore.getFilteredLogLevelCount(LogLevel.FATAL) : this._logEventStore
+          .getLogLevelCount(LogLevel.FATAL);
+    }
+    return count;
+  }
+
   public ActionSet getActionGroupRegistry() {
     return _actionGroupRegistry;
   }
@@ -3,7 +3,8 @@ package org.javakontor.sherlog.ui.logview.tableview;
 public enum LogEventTableModelReasonForChange {
 
   /**
-   * some LogEvents have been added or removed from the model.
+   * some LogEvents have been added or removed from the model. object contains the LogEventStoreEvent that describes
+   * the changed rows
    */
   logEventsChanged,
 
@@ -34,7 +34,7 @@ public class LogEventTableTableModel extends AbstractTableModel {
       LogViewMessages.messageColumnTitle           };
 
   /** the list of all log events */
-  private final List<LogEvent>   _logEvents;
+  private List<LogEvent>         _logEvents;
 
   /**
    * <p>
@@ -50,6 +50,21 @@ public class LogEventTableTableModel extends AbstractTableModel {
     this._logEvents = logEventList;
   }
 
+  /**
+   * <p>
+   * Sets the list of log events, e.g. a new version of the filtered log events of a store. The caller has to notify
+   * the table about the changed rows.
+   * </p>
+   * 
+   * @param logEventList
+   *          the log event list.
+   */
+  public void setLogEvents(List<LogEvent> logEventList) {
+    Assert.notNull(logEventList);
+
+    this._logEvents = logEventList;
+  }
+
   /**
    * @see javax.swing.table.TableModel#getColumnCount()
    */
@@ -1,12 +1,16 @@
 package org.javakontor.sherlog.ui.logview.tableview;
 
 import java.awt.BorderLayout;
+import java.util.List;
 
 import javax.swing.JScrollPane;
 import javax.swing.table.TableColumnModel;
 
 import org.javakontor.sherlog.application.mvc.AbstractView;
 import org.javakontor.sherlog.application.mvc.ModelChangedEvent;
+import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.store.LogEventStoreChangeType;
+import org.javakontor.sherlog.domain.store.LogEventStoreEvent;
 import org.javakontor.sherlog.ui.logview.decorator.LogEventTableCellDecorator;
 import org.javakontor.sherlog.util.Assert;
 
@@ -85,7 +89,7 @@ public class LogEventTableView extends AbstractView<LogEventTableModel, LogEvent
 
     switch (event.getReasonForChange()) {
     case logEventsChanged:
-      this._logEventListTableModel.fireTableDataChanged();
+      updateRows((LogEventStoreEvent) event.getObjects()[0]);
       break;
     case decoratorAdded:
       this._logEventTableTable.addLogEventDecorator((LogEventTableCellDecorator) event.getObjects()[0]);
@@ -100,6 +104,74 @@ public class LogEventTableView extends AbstractView<LogEventTableModel, LogEvent
     }
   }
 
+  /**
+   * <p>
+   * Shows the version of the filtered log events the given event refers to and notifies the table about the rows that
+   * have changed, so that only these rows are repainted and the selection and scroll position are kept. If the event
+   * does not match the rows of the table (e.g. because the table has been created after the change), the whole table
+   * is updated.
+   * </p>
+   * 
+   * @param event
+   *          the event that describes the changed rows
+   */
+  private void updateRows(LogEventStoreEvent event) {
+    int firstIndex = event.getFirstIndex();
+    int lastIndex = event.getLastIndex();
+
+    int rowCount = this._logEventListTableModel.getRowCount();
+    List<LogEvent> logEvents = event.getSnapshot() != null ? event.getSnapshot().getFilteredLogEvents() : getModel()
+        .getLogEventStore().getFilteredLogEvents();
+    this._logEventListTableModel.setLogEvents(logEvents);
+
+    // inserted rows need not be consecutive, so their number is not the span of the indices
+    int changedRowCount = event.getChangeType() == LogEventStoreChangeType.INSERTED ? event.getIndices().length : Math
+        .max(0, lastIndex - firstIndex + 1);
+    switch (event.getChangeType()) {
+    case APPENDED:
+    case INSERTED:
+      if (rowCount + changedRowCount != logEvents.size()) {
+        this._logEventListTableModel.fireTableDataChanged();
+        return;
+      }
+      break;
+    case REMOVED:
+      if (rowCount - changedRowCount != logEvents.size()) {
+        this._logEventListTableModel.fireTableDataChanged();
+        return;
+      }
+      break;
+    default:
+      // refiltered
+    }
+
+    switch (event.getChangeType()) {
+    case APPENDED:
+      if (firstIndex <= lastIndex) {
+        this._logEventListTableModel.fireTableRowsInserted(firstIndex, lastIndex);
+      }
+      break;
+    case INSERTED:
+      // notify consecutive runs of inserted rows in ascending order
+      int[] indices = event.getIndices();
+      int runStart = 0;
+      for (int i = 1; i <= indices.length; i++) {
+        if ((i == indices.length) || (indices[i] != indices[i - 1] + 1)) {
+          this._logEventListTableModel.fireTableRowsInserted(indices[runStart], indices[i - 1]);
+          runStart = i;
+        }
+      }
+      break;
+    case REMOVED:
+      if (firstIndex <= lastIndex) {
+        this._logEventListTableModel.fireTableRowsDeleted(firstIndex, lastIndex);
+      }
+      break;
+    default:
+      this._logEventListTableModel.fireTableDataChanged();
+    }
+  }
+
   /**
    * <p>
    * Returns the 'log event table' table.
@@ -111,6 +183,17 @@ public class LogEventTableView extends AbstractView<LogEventTableModel, LogEvent
     return this._logEventTableTable;
   }
 
+  /**
+   * <p>
+   * Returns the 'log event table' table model, that contains the log events that are shown in the table.
+   * </p>
+   * 
+   * @return the 'log event table' table model.
+   */
+  LogEventTableTableModel getLogEventTableTableModel() {
+    return this._logEventListTableModel;
+  }
+
 /**
    * <p>
    * Adds the specified {@link LogEventTableCellDecorator.
@@ -140,4 +223,4 @@ public class LogEventTableView extends AbstractView<LogEventTableModel, LogEvent
     // remove the log event decorator
     this._logEventTableTable.removeLogEventDecorator(eventDecorator);
   }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -1,53 +1,227 @@
 package org.javakontor.sherlog.ui.simplefilter;
 
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
 import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.LogLevel;
+import org.javakontor.sherlog.domain.filter.CategoryLogEventFilter;
+import org.javakontor.sherlog.domain.filter.LogEventFilterChangeType;
 import org.javakontor.sherlog.domain.filter.LogEventFilterMemento;
+import org.javakontor.sherlog.domain.filter.LogLevelLogEventFilter;
+import org.javakontor.sherlog.domain.filter.MessageLogEventFilter;
+import org.javakontor.sherlog.domain.filter.MessagePatternLogEventFilter;
+import org.javakontor.sherlog.domain.filter.ThreadSafeLogEventFilter;
 import org.javakontor.sherlog.domain.impl.filter.AbstractLogEventFilter;
 
-public class SimpleLogEventFilter extends AbstractLogEventFilter {
+public class SimpleLogEventFilter extends AbstractLogEventFilter implements ThreadSafeLogEventFilter,
+    CategoryLogEventFilter, LogLevelLogEventFilter, MessageLogEventFilter, MessagePatternLogEventFilter {
+
+  /** the (private copy of the) configuration, replaced as a whole on restore */
+  private volatile SimpleLogEventFilterMemento _config;
 
-  private SimpleLogEventFilterMemento _config;
+  /** the compiled message pattern if the message is a regular expression, replaced together with the configuration */
+  private volatile Pattern                     _messagePattern;
 
   public SimpleLogEventFilter() {
     this._config = new SimpleLogEventFilterMemento(null, null, null, null);
   }
 
   public SimpleLogEventFilter(SimpleLogEventFilterMemento configuration) {
-    this._config = configuration;
+    setConfig(configuration);
   }
 
   @Override
   protected void onRestoreFromMemento(LogEventFilterMemento memento) {
-    // TODO copy memento
-    this._config = (SimpleLogEventFilterMemento) memento;
+    setConfig((SimpleLogEventFilterMemento) memento);
+  }
+
+  /**
+   * Copies the configuration and compiles the message pattern. A message that is not a valid regular expression is
+   * matched literally.
+   */
+  private synchronized void setConfig(SimpleLogEventFilterMemento memento) {
+    final SimpleLogEventFilterMemento config = copy(memento);
+    final Pattern messagePattern = config.isMessageSet() && config.isMessageRegex() ? compile(config.getMessage())
+        : null;
+
+    this._messagePattern = messagePattern;
+    this._config = config;
+  }
+
+  /**
+   * Compares the criteria of both mementos: a stricter log level or a longer category or message substring narrows the
+   * filter, a less strict log level or a shorter substring widens it.
+   */
+  @Override
+  protected LogEventFilterChangeType getChangeType(LogEventFilterMemento oldMemento, LogEventFilterMemento newMemento) {
+    final SimpleLogEventFilterMemento oldConfig = (SimpleLogEventFilterMemento) oldMemento;
+    final SimpleLogEventFilterMemento newConfig = (SimpleLogEventFilterMemento) newMemento;
+
+    return getLogLevelChangeType(oldConfig.getLogLevel(), newConfig.getLogLevel())
+        .combine(getEqualsChangeType(oldConfig.getThread(), newConfig.getThread()))
+        .combine(getSubstringChangeType(oldConfig.getCategory(), newConfig.getCategory()))
+        .combine(getMessageChangeType(oldConfig, newConfig));
   }
 
   public boolean matches(LogEvent event) {
+    final SimpleLogEventFilterMemento config = this._config;
 
-    if (this._config.isLogLevelSet() && !event.getLogLevel().isGreaterOrEqual(this._config.getLogLevel())) {
+    if (config.isLogLevelSet() && !event.getLogLevel().isGreaterOrEqual(config.getLogLevel())) {
       return false;
     }
 
-    if (this._config.isThreadSet() && !this._config.getThread().equals(event.getThreadName())) {
+    if (config.isThreadSet() && !config.getThread().equals(event.getThreadName())) {
       return false;
     }
 
-    if (this._config.isCategorySet() && (event.getCategory() != null)
-        && (event.getCategory().indexOf(this._config.getCategory()) == -1)) {
+    if (config.isCategorySet() && (event.getCategory() != null)
+        && (event.getCategory().indexOf(config.getCategory()) == -1)) {
       return false;
     }
 
-    if (this._config.isMessageSet() && (event.getMessage().indexOf(this._config.getMessage()) == -1)) {
-      return false;
+    if (config.isMessageSet()) {
+      if (config.isMessageRegex()) {
+        final Pattern messagePattern = getMessagePattern(config);
+        if ((event.getMessage() == null) || !messagePattern.matcher(event.getMessage()).find()) {
+          return false;
+        }
+      } else if (event.getMessage().indexOf(config.getMessage()) == -1) {
+        return false;
+      }
     }
 
     return true;
 
   }
 
+  public boolean isLogLevelRestricted() {
+    return this._config.isLogLevelSet();
+  }
+
+  public LogLevel getLogLevelThreshold() {
+    return this._config.getLogLevel();
+  }
+
+  public boolean isCategoryRestricted() {
+    return this._config.isCategorySet();
+  }
+
+  /**
+   * Categories are matched by substring, so every sub category of a matching category matches as well.
+   */
+  public boolean matchesCategory(String category) {
+    final SimpleLogEventFilterMemento config = this._config;
+
+    return !config.isCategorySet() || (category == null) || (category.indexOf(config.getCategory()) != -1);
+  }
+
+  public boolean isMessageRestricted() {
+    final SimpleLogEventFilterMemento config = this._config;
+
+    return config.isMessageSet() && !config.isMessageRegex();
+  }
+
+  public String getMessageSubstring() {
+    return this._config.getMessage();
+  }
+
+  public boolean isMessagePatternRestricted() {
+    final SimpleLogEventFilterMemento config = this._config;
+
+    return config.isMessageSet() && config.isMessageRegex();
+  }
+
+  public Pattern getMessagePattern() {
+    final SimpleLogEventFilterMemento config = this._config;
+
+    return config.isMessageSet() && config.isMessageRegex() ? getMessagePattern(config) : null;
+  }
+
+  /**
+   * Returns the compiled pattern of the given configuration. If the configuration has been replaced concurrently, the
+   * pattern might belong to the new configuration, so it is compiled again.
+   */
+  private Pattern getMessagePattern(SimpleLogEventFilterMemento config) {
+    final Pattern messagePattern = this._messagePattern;
+    if ((messagePattern != null) && messagePattern.pattern().equals(config.getMessage())) {
+      return messagePattern;
+    }
+    return compile(config.getMessage());
+  }
+
+  private static Pattern compile(String regex) {
+    try {
+      return Pattern.compile(regex);
+    } catch (PatternSyntaxException e) {
+      return Pattern.compile(regex, Pattern.LITERAL);
+    }
+  }
+
   public LogEventFilterMemento saveToMemento() {
-    // TODO copy
-    return this._config;
+    return copy(this._config);
+  }
+
+  private static SimpleLogEventFilterMemento copy(SimpleLogEventFilterMemento memento) {
+    return new SimpleLogEventFilterMemento(memento.getLogLevel(), memento.getThread(), memento.getCategory(), memento
+        .getMessage(), memento.isMessageRegex());
+  }
+
+  private static LogEventFilterChangeType getLogLevelChangeType(LogLevel oldLogLevel, LogLevel newLogLevel) {
+    if (oldLogLevel == newLogLevel) {
+      return LogEventFilterChangeType.UNCHANGED;
+    }
+    if ((newLogLevel == null) || ((oldLogLevel != null) && oldLogLevel.isGreaterOrEqual(newLogLevel))) {
+      return LogEventFilterChangeType.WIDENED;
+    }
+    return LogEventFilterChangeType.NARROWED;
+  }
+
+  private static LogEventFilterChangeType getEqualsChangeType(String oldValue, String newValue) {
+    if ((oldValue == null) ? (newValue == null) : oldValue.equals(newValue)) {
+      return LogEventFilterChangeType.UNCHANGED;
+    }
+    if (oldValue == null) {
+      return LogEventFilterChangeType.NARROWED;
+    }
+    return newValue == null ? LogEventFilterChangeType.WIDENED : LogEventFilterChangeType.CHANGED;
+  }
+
+  /**
+   * Regular expressions cannot be compared, so any change that involves a regular expression changes the filter
+   * (unless the message criterion is added or removed).
+   */
+  private static LogEventFilterChangeType getMessageChangeType(SimpleLogEventFilterMemento oldConfig,
+      SimpleLogEventFilterMemento newConfig) {
+    final boolean oldRegex = oldConfig.isMessageSet() && oldConfig.isMessageRegex();
+    final boolean newRegex = newConfig.isMessageSet() && newConfig.isMessageRegex();
+    if (!oldRegex && !newRegex) {
+      return getSubstringChangeType(oldConfig.getMessage(), newConfig.getMessage());
+    }
+    if (oldRegex && newRegex && oldConfig.getMessage().equals(newConfig.getMessage())) {
+      return LogEventFilterChangeType.UNCHANGED;
+    }
+    if (!oldConfig.isMessageSet()) {
+      return LogEventFilterChangeType.NARROWED;
+    }
+    if (!newConfig.isMessageSet()) {
+      return LogEventFilterChangeType.WIDENED;
+    }
+    return LogEventFilterChangeType.CHANGED;
+  }
+
+  private static LogEventFilterChangeType getSubstringChangeType(String oldValue, String newValue) {
+    if ((oldValue == null) ? (newValue == null) : oldValue.equals(newValue)) {
+      return LogEventFilterChangeType.UNCHANGED;
+    }
+    // every string that contains the longer substring also contains the shorter one
+    if ((oldValue == null) || ((newValue != null) && (newValue.indexOf(oldValue) != -1))) {
+      return LogEventFilterChangeType.NARROWED;
+    }
+    if ((newValue == null) || (oldValue.indexOf(newValue) != -1)) {
+      return LogEventFilterChangeType.WIDENED;
+    }
+    return LogEventFilterChangeType.CHANGED;
   }
 
 }
@@ -1,5 +1,7 @@
 package org.javakontor.sherlog.ui.simplefilter;
 
+import java.io.Serializable;
+
 import org.javakontor.sherlog.domain.LogLevel;
 import org.javakontor.sherlog.domain.filter.LogEventFilterMemento;
 
@@ -8,7 +10,10 @@ import org.javakontor.sherlog.domain.filter.LogEventFilterMemento;
  * 
  * @author Nils Hartmann (nils@nilshartmann.net)
  */
-public class SimpleLogEventFilterMemento implements LogEventFilterMemento {
+public class SimpleLogEventFilterMemento implements LogEventFilterMemento, Serializable {
+
+  /** the serialVersionUID (the memento is saved in session files) */
+  private static final long serialVersionUID = 1L;
 
   /**
    * might be null
@@ -21,6 +26,9 @@ public class SimpleLogEventFilterMemento implements LogEventFilterMemento {
 
   private String   _message;
 
+  /** <code>true</code> if the message is a regular expression */
+  private boolean  _messageRegex;
+
   public void setLogLevel(final LogLevel logLevel) {
     this._logLevel = logLevel;
   }
@@ -37,12 +45,22 @@ public class SimpleLogEventFilterMemento implements LogEventFilterMemento {
     this._message = message;
   }
 
+  public void setMessageRegex(final boolean messageRegex) {
+    this._messageRegex = messageRegex;
+  }
+
   public SimpleLogEventFilterMemento(final LogLevel logLevel, final String thread, final String category,
       final String message) {
+    this(logLevel, thread, category, message, false);
+  }
+
+  public SimpleLogEventFilterMemento(final LogLevel logLevel, final String thread, final String category,
+      final String message, final boolean messageRegex) {
     this._logLevel = logLevel;
     this._thread = thread;
     this._category = category;
     this._message = message;
+    this._messageRegex = messageRegex;
   }
 
   public SimpleLogEventFilterMemento() {
@@ -68,6 +86,10 @@ public class SimpleLogEventFilterMemento implements LogEventFilterMemento {
     return this._message;
   }
 
+  public boolean isMessageRegex() {
+    return this._messageRegex;
+  }
+
   public boolean isLogLevelSet() {
     return (this._logLevel != null);
   }
@@ -84,4 +106,34 @@ public class SimpleLogEventFilterMemento implements LogEventFilterMemento {
     return (this._message != null);
   }
 
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + ((this._category == null) ? 0 : this._category.hashCode());
+    result = prime * result + ((this._logLevel == null) ? 0 : this._logLevel.hashCode());
+    result = prime * result + ((this._message == null) ? 0 : this._message.hashCode());
+    result = prime * result + (this._messageRegex ? 1231 : 1237);
+    result = prime * result + ((this._thread == null) ? 0 : this._thread.hashCode());
+    return result;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof SimpleLogEventFilterMemento)) {
+      return false;
+    }
+    final SimpleLogEventFilterMemento other = (SimpleLogEventFilterMemento) obj;
+    return equals(this._logLevel, other._logLevel) && equals(this._thread, other._thread)
+        && equals(this._category, other._category) && equals(this._message, other._message)
+        && (this._messageRegex == other._messageRegex);
+  }
+
+  private static boolean equals(final Object o1, final Object o2) {
+    return o1 == null ? o2 == null : o1.equals(o2);
+  }
+
 }
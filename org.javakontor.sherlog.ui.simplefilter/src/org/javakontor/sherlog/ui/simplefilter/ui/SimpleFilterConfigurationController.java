@@ -53,5 +53,11 @@ public class SimpleFilterConfigurationController extends
         getModel().setMessage((String) getView().getMessageComboBox().getSelectedItem());
       }
     });
+
+    getView().getMessageRegexCheckBox().addActionListener(new ActionListener() {
+      public void actionPerformed(final ActionEvent e) {
+        getModel().setMessageRegex(getView().getMessageRegexCheckBox().isSelected());
+      }
+    });
   }
 }
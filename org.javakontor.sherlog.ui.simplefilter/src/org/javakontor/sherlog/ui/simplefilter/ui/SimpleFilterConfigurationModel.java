@@ -59,6 +59,10 @@ public class SimpleFilterConfigurationModel extends
     return this._memento.getMessage();
   }
 
+  public boolean isMessageRegex() {
+    return this._memento.isMessageRegex();
+  }
+
   public void setThreadName(final String threadName) {
     this._memento.setThread(threadName);
     this._threadNameHistory.addHistoryItem(threadName);
@@ -80,6 +84,12 @@ public class SimpleFilterConfigurationModel extends
     fireModelChangedEvent(DefaultReasonForChange.modelChanged);
   }
 
+  public void setMessageRegex(final boolean messageRegex) {
+    this._memento.setMessageRegex(messageRegex);
+    this._filter.restoreFromMemento(this._memento);
+    fireModelChangedEvent(DefaultReasonForChange.modelChanged);
+  }
+
   public LogLevel[] getAllLogLevels() {
     return LogLevel.values();
   }
@@ -9,6 +9,7 @@ import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.ComboBoxModel;
 import javax.swing.DefaultComboBoxModel;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.MutableComboBoxModel;
@@ -33,6 +34,8 @@ public class SimpleFilterConfigurationView extends AbstractView<SimpleFilterConf
 
   private JComboBox         _messageComboBox;
 
+  private JCheckBox         _messageRegexCheckBox;
+
   public SimpleFilterConfigurationView(final SimpleFilterConfigurationModel model) {
     super(model);
   }
@@ -45,6 +48,7 @@ public class SimpleFilterConfigurationView extends AbstractView<SimpleFilterConf
     setContent(this._threadComboBox, model.getThreadName(), model.getThreadNameHistory());
     setContent(this._categoryComboBox, model.getCategory(), model.getCategoryHistory());
     setContent(this._messageComboBox, model.getMessage(), model.getMessageHistory());
+    this._messageRegexCheckBox.setSelected(model.isMessageRegex());
   }
 
   JComboBox getLevelComboBox() {
@@ -63,6 +67,10 @@ public class SimpleFilterConfigurationView extends AbstractView<SimpleFilterConf
     return this._messageComboBox;
   }
 
+  JCheckBox getMessageRegexCheckBox() {
+    return this._messageRegexCheckBox;
+  }
+
   protected void setContent(final JComboBox comboBox, final String selectedItem, final String... history) {
     final HistoryComboBoxModel comboBoxModel = (HistoryComboBoxModel) comboBox.getModel();
     comboBoxModel.setContent(selectedItem, history);
@@ -80,6 +88,10 @@ public class SimpleFilterConfigurationView extends AbstractView<SimpleFilterConf
     this._threadComboBox = createAndAddComboBox(SimpleFilterMessages.thread);
     this._categoryComboBox = createAndAddComboBox(SimpleFilterMessages.category);
     this._messageComboBox = createAndAddComboBox(SimpleFilterMessages.message);
+
+    this._messageRegexCheckBox = new JCheckBox(SimpleFilterMessages.messageRegex);
+    this._messageRegexCheckBox.setAlignmentX(0);
+    add(this._messageRegexCheckBox);
   }
 
   private JComboBox createAndAddComboBox(final String label) {
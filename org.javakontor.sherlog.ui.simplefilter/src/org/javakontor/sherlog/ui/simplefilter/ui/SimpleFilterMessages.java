@@ -17,6 +17,9 @@ public class SimpleFilterMessages {
   @NLSMessage("Message")
   public static String message;
 
+  @NLSMessage("Regular expression")
+  public static String messageRegex;
+
   static {
     NLS.initialize(SimpleFilterMessages.class);
   }
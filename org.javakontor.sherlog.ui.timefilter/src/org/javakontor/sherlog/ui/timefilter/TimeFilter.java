@@ -1,14 +1,23 @@
 package org.javakontor.sherlog.ui.timefilter;
 
 import org.javakontor.sherlog.domain.LogEvent;
+import org.javakontor.sherlog.domain.filter.LogEventFilterChangeType;
 import org.javakontor.sherlog.domain.filter.LogEventFilterMemento;
+import org.javakontor.sherlog.domain.filter.ThreadSafeLogEventFilter;
+import org.javakontor.sherlog.domain.filter.TimeRangeLogEventFilter;
 import org.javakontor.sherlog.domain.impl.filter.AbstractLogEventFilter;
 
-public class TimeFilter extends AbstractLogEventFilter {
+/**
+ * <p>
+ * Matches the log events within a time range. Stores that are sorted by time stamp resolve the range with a binary
+ * search (see {@link TimeRangeLogEventFilter}) instead of invoking {@link #matches(LogEvent)} for each log event.
+ * </p>
+ */
+public class TimeFilter extends AbstractLogEventFilter implements ThreadSafeLogEventFilter, TimeRangeLogEventFilter {
 
-  private long _beforeTimestamp = -1;
+  private volatile long _beforeTimestamp = -1;
 
-  private long _afterTimestamp  = Long.MAX_VALUE;
+  private volatile long _afterTimestamp  = Long.MAX_VALUE;
 
   public TimeFilter() {
   }
@@ -20,6 +29,14 @@ public class TimeFilter extends AbstractLogEventFilter {
     return (_beforeTimestamp <= timestamp && timestamp <= _afterTimestamp);
   }
 
+  public long getFromTimeStamp() {
+    return _beforeTimestamp;
+  }
+
+  public long getToTimeStamp() {
+    return _afterTimestamp;
+  }
+
   public LogEventFilterMemento saveToMemento() {
     return null;
   }
@@ -30,20 +47,32 @@ public class TimeFilter extends AbstractLogEventFilter {
   }
 
   public void setBeforeTimestamp(long beforeTimestamp) {
+    if (beforeTimestamp == _beforeTimestamp) {
+      return;
+    }
+    // raising the lower bound narrows the time window
+    final LogEventFilterChangeType changeType = beforeTimestamp > _beforeTimestamp ? LogEventFilterChangeType.NARROWED
+        : LogEventFilterChangeType.WIDENED;
     _beforeTimestamp = beforeTimestamp;
-    fireFilterChange();
+    fireFilterChange(changeType);
   }
 
   public void setAfterTimestamp(long afterTimestamp) {
+    if (afterTimestamp == _afterTimestamp) {
+      return;
+    }
+    // lowering the upper bound narrows the time window
+    final LogEventFilterChangeType changeType = afterTimestamp < _afterTimestamp ? LogEventFilterChangeType.NARROWED
+        : LogEventFilterChangeType.WIDENED;
     _afterTimestamp = afterTimestamp;
-    fireFilterChange();
+    fireFilterChange(changeType);
   }
 
   public void reset() {
     _beforeTimestamp = -1;
     _afterTimestamp = Long.MAX_VALUE;
 
-    fireFilterChange();
+    fireFilterChange(LogEventFilterChangeType.WIDENED);
   }
 
 }